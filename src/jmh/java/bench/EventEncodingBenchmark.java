@@ -0,0 +1,74 @@
+package bench;
+
+import java.lang.invoke.MethodHandle;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of turning one event into bytes: the original String.format text line
+ * against EventEncoder writing into a reused buffer. Run with the GC profiler and
+ * compare gc.alloc.rate.norm (bytes allocated per event):
+ *
+ *   ./gradlew jmh -PjmhInclude=EventEncodingBenchmark -PjmhProfilers=gc
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EventEncodingBenchmark {
+    private static final MethodHandle NEW_ENCODER = Sut.constructor("EventEncoder");
+    private static final MethodHandle ENCODE = Sut.method("EventEncoder", "encode", ByteBuffer.class,
+            long.class, long.class, String.class, String.class, String.class, String.class);
+
+    private static final DateTimeFormatter MINUTES = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+
+    private static final String USER_ID = "u1042";
+    private static final String USERNAME = "alice";
+    private static final String ACTION = "VIEW_SCROLL";
+    private static final String DETAILS = "Viewed scroll ID: s42 (name = \"Field Notes\")";
+
+    private Object encoder;
+    private ByteBuffer buf;
+    private long seq;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        encoder = NEW_ENCODER.invoke();
+        buf = ByteBuffer.allocate(64 * 1024);
+    }
+
+    // The line format used before events were stored as JSON
+    @Benchmark
+    public byte[] legacyText() {
+        return String.format("[%s] userId=%s user=%s action=%s details=%s%n",
+                LocalDateTime.now().format(MINUTES), USER_ID, USERNAME, ACTION, DETAILS)
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public int encoder() throws Throwable {
+        if (buf.remaining() < 1024) {
+            buf.clear();
+        }
+        ByteBuffer out = (ByteBuffer) ENCODE.invoke(encoder, buf, System.currentTimeMillis(), seq++,
+                USER_ID, USERNAME, ACTION, DETAILS);
+        return out.position();
+    }
+}
@@ -0,0 +1,93 @@
+package bench;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Per-call latency of EventLogManager.log with 16 concurrent callers, comparing the
+ * ring buffer writer with writing on the caller's thread, with and without the
+ * audit hash chain.
+ *
+ *   ./gradlew jmh -PjmhInclude=EventLogBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(16)
+public class EventLogBenchmark {
+    private static final MethodHandle GET_INSTANCE = Sut.method("EventLogManager", "getInstance");
+    private static final MethodHandle FROM_PROPERTIES = Sut.method("EventLogConfig", "fromSystemProperties");
+    private static final MethodHandle SET_CONFIG = Sut.method("EventLogManager", "setConfig", Sut.type("EventLogConfig"));
+    private static final MethodHandle SHUTDOWN = Sut.method("EventLogManager", "shutdown");
+    private static final MethodHandle LOG = Sut.method("EventLogManager", "log",
+            String.class, String.class, String.class, String.class);
+
+    @Param({"true", "false"})
+    public boolean async;
+
+    @Param({"true", "false"})
+    public boolean auditChain;
+
+    private Path dir;
+    private Object manager;
+
+    @State(Scope.Thread)
+    public static class Caller {
+        final String userId = "u" + Thread.currentThread().getId();
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        dir = Files.createTempDirectory("eventlog-bench");
+        System.setProperty("vsas.eventlog.async", String.valueOf(async));
+        System.setProperty("vsas.eventlog.auditChain", String.valueOf(auditChain));
+        Sut.setStatic("EventLogManager", "LOG_FILE", dir.resolve("event_logs.txt").toString());
+
+        manager = GET_INSTANCE.invoke();
+        SHUTDOWN.invoke(manager);
+        SET_CONFIG.invoke(manager, FROM_PROPERTIES.invoke());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Throwable {
+        SHUTDOWN.invoke(manager);
+        deleteTree(dir);
+    }
+
+    @Benchmark
+    public void log(Caller caller) throws Throwable {
+        LOG.invoke(manager, caller.userId, "bench", "VIEW_SCROLL", "Viewed scroll ID: s42");
+    }
+
+    static void deleteTree(Path root) throws IOException {
+        if (root == null || !Files.exists(root)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package bench;
+
+import java.lang.invoke.MethodHandle;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time-range queries against event logs of 1M and 50M events spread over 30 days.
+ * With the per-segment time index the cost should follow the number of matching
+ * events, not the size of the log, so both sizes should score about the same for
+ * the fixed-size result.
+ *
+ * The logs are generated once into java.io.tmpdir/vsas-jmh-eventlog-<events> and
+ * reused by later runs (50M events take a few minutes and ~1 GB compressed).
+ *
+ *   ./gradlew jmh -PjmhInclude=EventLogTimeRangeBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class EventLogTimeRangeBenchmark {
+    private static final long START = 1_700_000_000_000L;
+    private static final long SPAN = TimeUnit.DAYS.toMillis(30);
+
+    private static final MethodHandle OPEN_WRITER = Sut.method("EventLogWriter", "open", String.class, Sut.type("EventLogConfig"));
+    private static final MethodHandle APPEND = Sut.method("EventLogWriter", "append",
+            long.class, String.class, String.class, String.class, String.class);
+    private static final MethodHandle CLOSE_WRITER = Sut.method("EventLogWriter", "close");
+    private static final MethodHandle AWAIT_BACKGROUND = Sut.method("EventLogSegments", "awaitBackgroundWork");
+    private static final MethodHandle NEW_CONFIG = Sut.constructor("EventLogConfig");
+    private static final MethodHandle BUFFER_SIZE = Sut.method("EventLogConfig", "bufferSize", int.class);
+    private static final MethodHandle BATCH_SIZE = Sut.method("EventLogConfig", "batchSize", int.class);
+
+    private static final MethodHandle NEW_MANAGER = Sut.constructor("EventLogManager");
+    private static final MethodHandle QUERY = Sut.method("EventLogManager", "query", Sut.type("EventQuery"));
+    private static final MethodHandle NEW_QUERY = Sut.constructor("EventQuery");
+    private static final MethodHandle FROM = Sut.method("EventQuery", "from", long.class);
+    private static final MethodHandle TO = Sut.method("EventQuery", "to", long.class);
+
+    @Param({"1000000", "50000000"})
+    public long events;
+
+    private Object manager;
+    private Object originalLogFile;
+    private long step;
+    private long mid;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        step = Math.max(1, SPAN / events);
+        mid = START + SPAN / 2;
+        Path log = Fixtures.cached("eventlog-" + events, dir -> generate(dir.resolve("event_logs.txt")))
+                .resolve("event_logs.txt");
+
+        originalLogFile = Sut.getStatic("EventLogManager", "LOG_FILE");
+        Sut.setStatic("EventLogManager", "LOG_FILE", log.toString());
+        manager = NEW_MANAGER.invoke();
+    }
+
+    private void generate(Path log) throws Throwable {
+        Object config = BATCH_SIZE.invoke(BUFFER_SIZE.invoke(NEW_CONFIG.invoke(), 65536), 4096);
+        Object writer = OPEN_WRITER.invoke(log.toString(), config);
+        try {
+            for (long i = 0; i < events; i++) {
+                APPEND.invoke(writer, START + i * step, "u" + (i % 1000), "user" + (i % 1000),
+                        i % 10 == 0 ? "LOGIN_SUCCESS" : "VIEW_SCROLL", "Viewed scroll ID: s" + (i % 5000));
+            }
+        } finally {
+            CLOSE_WRITER.invoke(writer);
+        }
+        AWAIT_BACKGROUND.invoke();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        Sut.setStatic("EventLogManager", "LOG_FILE", originalLogFile);
+    }
+
+    private int query(long from, long to) throws Throwable {
+        Object q = TO.invoke(FROM.invoke(NEW_QUERY.invoke(), from), to);
+        return ((List<?>) QUERY.invoke(manager, q)).size();
+    }
+
+    // The same 1000 matching events whatever the size of the log
+    @Benchmark
+    public int thousandEvents() throws Throwable {
+        return query(mid, mid + 1000 * step);
+    }
+
+    // "What happened between 14:00 and 14:05": the result grows with event density
+    @Benchmark
+    public int fiveMinutes() throws Throwable {
+        return query(mid, mid + TimeUnit.MINUTES.toMillis(5));
+    }
+}
@@ -0,0 +1,31 @@
+package bench;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Fixtures
+ * On-disk data sets that take too long to build per trial. Each is generated once
+ * into java.io.tmpdir/vsas-jmh-<name> and reused by later trials, forks and runs; the
+ * "complete" marker is written last, so an interrupted build is started again.
+ *
+ * Benchmarks that change a fixture must put it back in their teardown.
+ */
+final class Fixtures {
+    interface Builder {
+        void build(Path dir) throws Throwable;
+    }
+
+    private Fixtures() {}
+
+    static Path cached(String name, Builder builder) throws Throwable {
+        Path dir = Path.of(System.getProperty("java.io.tmpdir"), "vsas-jmh-" + name);
+        if (!Files.exists(dir.resolve("complete"))) {
+            EventLogBenchmark.deleteTree(dir);
+            Files.createDirectories(dir);
+            builder.build(dir);
+            Files.createFile(dir.resolve("complete"));
+        }
+        return dir;
+    }
+}
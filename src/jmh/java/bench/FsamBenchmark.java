@@ -0,0 +1,171 @@
+package bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fsam.FilesystemMemory;
+
+/**
+ * Throughput of the FilesystemMemory primitives every User and Scroll attribute goes
+ * through. Value reads and writes are parameterised by value size; lookups, creates,
+ * renames and listing by how many entries the directory holds (fan-out), which is
+ * where the filesystem's directory index starts to matter.
+ *
+ * Fan-out directories are built once and cached (see Fixtures); the first run at 1M
+ * entries takes a few minutes.
+ *
+ *   ./gradlew jmh -PjmhInclude=FsamBenchmark
+ *   ./gradlew jmh -PjmhInclude='FsamBenchmark.(childExists|listChildren)'
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FsamBenchmark {
+    private static final int VALUES = 256;
+
+    // FilesystemMemory is abstract; this is the smallest concrete node
+    static final class Node extends FilesystemMemory {
+        Node(File dir) {
+            setFileObj(dir);
+        }
+
+        @Override
+        public FilesystemMemory getChild(String childPath) {
+            Node child = new Node(new File(getFileObj(), childPath));
+            child.setParent(getFileObj());
+            return child;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Values {
+        @Param({"16", "1024", "65536"})
+        public int valueSize;
+
+        Path dir;
+        Node node;
+        String[] names = new String[VALUES];
+        String value;
+        int next;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            dir = Files.createTempDirectory("fsam-bench");
+            node = new Node(dir.toFile());
+            value = "v".repeat(valueSize);
+            for (int i = 0; i < VALUES; i++) {
+                names[i] = "value" + i;
+                node.setChildString(names[i], value);
+            }
+            node.setChildInt("count", 1_234_567);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            EventLogBenchmark.deleteTree(dir);
+        }
+
+        String nextName() {
+            next = (next + 1) % VALUES;
+            return names[next];
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Fanout {
+        @Param({"10", "1000", "100000", "1000000"})
+        public int fanout;
+
+        Node node;
+        String[] names;
+        int next;
+        int created;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Throwable {
+            names = new String[fanout];
+            for (int i = 0; i < fanout; i++) {
+                names[i] = String.format("e%07d", i);
+            }
+            Path dir = Fixtures.cached("fsam-fanout-" + fanout, d -> {
+                for (String name : names) {
+                    Files.createFile(d.resolve(name));
+                }
+            });
+            node = new Node(dir.toFile());
+        }
+
+        // Remove the directories createChildDir made so the cached fixture stays as built
+        @TearDown(Level.Iteration)
+        public void removeCreated() {
+            for (int i = 0; i < created; i++) {
+                new File(node.getFileObj(), "new" + i).delete();
+            }
+            created = 0;
+        }
+
+        // Steps through the entries in a scattered order so lookups do not hit neighbours
+        String nextName() {
+            next = (int) ((next + 7_919L) % fanout);
+            return names[next];
+        }
+    }
+
+    @Benchmark
+    public String getChildString(Values s) throws IOException {
+        return s.node.getChildString(s.nextName());
+    }
+
+    @Benchmark
+    public void setChildString(Values s) throws IOException {
+        s.node.setChildString(s.nextName(), s.value);
+    }
+
+    @Benchmark
+    public Integer getChildInt(Values s) throws IOException {
+        return s.node.getChildInt("count");
+    }
+
+    @Benchmark
+    public boolean childExists(Fanout s) {
+        return s.node.childExists(s.nextName());
+    }
+
+    @Benchmark
+    public void createChildDir(Fanout s) throws IOException {
+        s.node.createChildDir("new" + s.created++);
+    }
+
+    // One operation is a rename away and back, leaving the directory unchanged
+    @Benchmark
+    public void moveChild(Fanout s) throws IOException {
+        String name = s.nextName();
+        s.node.moveChild(name, name + ".moved");
+        s.node.moveChild(name + ".moved", name);
+    }
+
+    // What the managers do to enumerate records
+    @Benchmark
+    public String[] listChildren(Fanout s) {
+        return s.node.getFileObj().list();
+    }
+}
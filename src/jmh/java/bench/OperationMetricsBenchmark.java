@@ -0,0 +1,56 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import metrics.Metrics;
+import metrics.OperationMetrics;
+
+/**
+ * What the proxies pay per call for latency metrics: one start/stop pair, with
+ * recording on and off, from 4 threads sharing the operation.
+ *
+ *   ./gradlew jmh -PjmhInclude=OperationMetricsBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class OperationMetricsBenchmark {
+    private static final OperationMetrics OP = Metrics.operation("bench.operation");
+
+    @Param({"true", "false"})
+    public boolean enabled;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Metrics.setEnabled(enabled);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        Metrics.setEnabled(true);
+    }
+
+    @Benchmark
+    public void startStop() {
+        OP.stop(OP.start(), true);
+    }
+}
@@ -0,0 +1,166 @@
+package bench;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * How ScrollManager search, sorted listing, lookup by name and the admin scroll
+ * statistics scale with the size of the catalogue, from 10k to 1M scrolls, with the
+ * page cache warm (the steady state) and cold (after a restart or memory pressure).
+ *
+ * Catalogues are generated once per size and reused (see Fixtures): 1000 uploaders,
+ * names built from a ten-word vocabulary, upload dates spread over three years. The 1M
+ * catalogue is three million files and takes a while to build the first time.
+ *
+ * "cold" drops the OS page cache before every call, which needs root on Linux; on
+ * other systems those runs fail in setup and the warm runs go ahead.
+ *
+ * To record a scaling curve as CSV next to earlier ones:
+ *
+ *   ./gradlew jmh -PjmhInclude=ScrollScalingBenchmark -PjmhFormat=CSV \
+ *       -PjmhResults=benchmarks/scroll-scaling-$(date +%F).csv
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1, time = 10)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class ScrollScalingBenchmark {
+    private static final int UPLOADERS = 1000;
+    private static final String[] WORDS = {
+        "ledger", "map", "decree", "ballad", "chronicle", "recipe", "treaty", "letter", "census", "almanac"
+    };
+    private static final long START = 1_640_995_200_000L;   // 2022-01-01
+    private static final long SPAN = TimeUnit.DAYS.toMillis(3 * 365);
+
+    private static final MethodHandle NEW_SCROLL_MANAGER = Sut.constructor("ScrollManager", String.class);
+    private static final MethodHandle SEARCH = Sut.method("ScrollManager", "searchScrolls",
+            String.class, String.class, String.class, Date.class, Date.class);
+    private static final MethodHandle SORTED = Sut.method("ScrollManager", "getAllScrollsSorted");
+    private static final MethodHandle FIND_BY_NAME = Sut.method("ScrollManager", "findScrollByScrollName", String.class);
+    private static final MethodHandle NEW_USER_MANAGER = Sut.constructor("UserManager", String.class);
+    private static final MethodHandle GET_USER = Sut.method("UserManager", "getUser", String.class);
+    private static final MethodHandle CREATE_USER = Sut.method("UserManager", "createUser", String.class);
+    private static final MethodHandle SET_ADMIN = Sut.method("User", "setAdmin", boolean.class);
+    private static final MethodHandle NEW_ADMIN_MANAGER = Sut.constructor("AdminManager",
+            String.class, Sut.type("User"), Sut.type("ScrollManager"));
+    private static final MethodHandle SCROLL_STATS = Sut.method("AdminManager", "viewScrollStats");
+
+    @Param({"10000", "100000", "1000000"})
+    public int scrolls;
+
+    @Param({"warm", "cold"})
+    public String cache;
+
+    private Object scrollManager;
+    private Object adminManager;
+    private SplittableRandom random;
+
+    // The filters users actually combine in the search screen
+    @State(Scope.Benchmark)
+    public static class Query {
+        @Param({"uploader", "name", "dateRange", "uploaderAndDate"})
+        public String query;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        if (cache.equals("cold") && !Files.isWritable(Path.of("/proc/sys/vm/drop_caches"))) {
+            throw new IllegalStateException("cold runs need write access to /proc/sys/vm/drop_caches (root on Linux)");
+        }
+        Path dir = Fixtures.cached("scrolls-" + scrolls, this::generate);
+
+        scrollManager = NEW_SCROLL_MANAGER.invoke(dir.resolve("scrolls").toString());
+        Object userManager = NEW_USER_MANAGER.invoke(dir.resolve("users").toString());
+        adminManager = NEW_ADMIN_MANAGER.invoke(dir.resolve("users").toString(),
+                GET_USER.invoke(userManager, "admin"), scrollManager);
+        random = new SplittableRandom(42);
+    }
+
+    private void generate(Path dir) throws Throwable {
+        Path root = Files.createDirectories(dir.resolve("scrolls"));
+        SplittableRandom r = new SplittableRandom(7);
+        for (int i = 0; i < scrolls; i++) {
+            Path s = Files.createDirectory(root.resolve(String.format("s%07d", i)));
+            Files.writeString(s.resolve("scroll_name"), name(i));
+            Files.writeString(s.resolve("uploader_id"), uploader(i));
+            Files.writeString(s.resolve("scroll_blob"), "scroll " + i + " contents\n");
+            Path stamp = Files.createFile(s.resolve("upload_timestamp"));
+            Files.setLastModifiedTime(stamp, FileTime.fromMillis(START + r.nextLong(SPAN)));
+        }
+
+        Object userManager = NEW_USER_MANAGER.invoke(dir.resolve("users").toString());
+        SET_ADMIN.invoke(CREATE_USER.invoke(userManager, "admin"), true);
+    }
+
+    private static String name(int i) {
+        return WORDS[i % WORDS.length] + " of " + uploader(i) + " #" + i;
+    }
+
+    private static String uploader(int i) {
+        return String.format("u%03d", i % UPLOADERS);
+    }
+
+    @Setup(Level.Invocation)
+    public void dropCaches() throws IOException, InterruptedException {
+        if (cache.equals("cold")) {
+            new ProcessBuilder("sync").inheritIO().start().waitFor();
+            Files.writeString(Path.of("/proc/sys/vm/drop_caches"), "3");
+        }
+    }
+
+    @Benchmark
+    public List<?> searchScrolls(Query q) throws Throwable {
+        String uploader = uploader(random.nextInt(UPLOADERS));
+        Date from = new Date(START + random.nextLong(SPAN));
+        Date to = new Date(from.getTime() + TimeUnit.DAYS.toMillis(30));
+        switch (q.query) {
+            case "uploader":
+                return (List<?>) SEARCH.invoke(scrollManager, uploader, null, null, null, null);
+            case "name":
+                return (List<?>) SEARCH.invoke(scrollManager, null, null, WORDS[random.nextInt(WORDS.length)], null, null);
+            case "dateRange":
+                return (List<?>) SEARCH.invoke(scrollManager, null, null, null, from, to);
+            default:
+                return (List<?>) SEARCH.invoke(scrollManager, uploader, null, null, from, to);
+        }
+    }
+
+    @Benchmark
+    public List<?> getAllScrollsSorted() throws Throwable {
+        return (List<?>) SORTED.invoke(scrollManager);
+    }
+
+    // A name that exists somewhere in the catalogue, so on average half of it is read
+    @Benchmark
+    public Object findScrollByScrollName() throws Throwable {
+        return FIND_BY_NAME.invoke(scrollManager, name(random.nextInt(scrolls)));
+    }
+
+    @Benchmark
+    public Map<?, ?> viewScrollStats() throws Throwable {
+        return (Map<?, ?>) SCROLL_STATS.invoke(adminManager);
+    }
+}
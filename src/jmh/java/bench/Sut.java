@@ -0,0 +1,76 @@
+package bench;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+
+/**
+ * Sut
+ * Access to the application classes ("system under test"). They live in the default
+ * package, which cannot be imported from a named package, and JMH does not accept
+ * benchmarks in the default package, so benchmarks look them up here by name.
+ *
+ * Handles are meant to be stored in static final fields, where the JIT treats them as
+ * constants and the call costs the same as a direct one.
+ */
+final class Sut {
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private Sut() {}
+
+    static Class<?> type(String name) {
+        try {
+            return Class.forName(name);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("Application class not found: " + name, e);
+        }
+    }
+
+    // Instance or static method, public or not, declared on the type or a superclass
+    static MethodHandle method(String type, String name, Class<?>... params) {
+        for (Class<?> c = type(type); c != null; c = c.getSuperclass()) {
+            try {
+                Method m = c.getDeclaredMethod(name, params);
+                m.setAccessible(true);
+                return LOOKUP.unreflect(m);
+            } catch (NoSuchMethodException e) {
+                // keep looking in the superclass
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        throw new IllegalStateException("No method " + type + "." + name);
+    }
+
+    static MethodHandle constructor(String type, Class<?>... params) {
+        try {
+            Constructor<?> c = type(type).getDeclaredConstructor(params);
+            c.setAccessible(true);
+            return LOOKUP.unreflectConstructor(c);
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new IllegalStateException("No constructor for " + type, e);
+        }
+    }
+
+    static Object getStatic(String type, String field) {
+        try {
+            Field f = type(type).getDeclaredField(field);
+            f.setAccessible(true);
+            return f.get(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static void setStatic(String type, String field, Object value) {
+        try {
+            Field f = type(type).getDeclaredField(field);
+            f.setAccessible(true);
+            f.set(null, value);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -1,4 +1,5 @@
 import java.io.File;
+import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
@@ -11,19 +12,41 @@ public class AdminManager {
     private final UserManager userManager;
     private final User currentUser;
     private final ScrollManager scrollManager;
+    private final SessionManager.Session session;
 
     public AdminManager(String userRootPath, User currentUser, ScrollManager scrollManager) {
+        this(userRootPath, currentUser, scrollManager, null);
+    }
+
+    public AdminManager(String userRootPath, User currentUser, ScrollManager scrollManager, SessionManager.Session session) {
         this.userManager = new UserManager(userRootPath);
         this.currentUser = currentUser;
         this.scrollManager = scrollManager;
+        this.session = session;
     }
 
+    // With a session the check is answered from its principal snapshot (no I/O),
+    // otherwise fall back to reading the admin flag from the user directory
     private void checkAdmin() throws SecurityException {
+        if (session != null) {
+            if (!session.isAdmin()) {
+                throw new SecurityException("Access denied: user is not an admin.");
+            }
+            return;
+        }
+
         if (currentUser == null || !currentUser.getAdmin()) {
             throw new SecurityException("Access denied: user is not an admin.");
         }
     }
 
+    private String currentUserId() {
+        if (session != null) {
+            return session.getPrincipal().getUserId();
+        }
+        return currentUser.getUserId();
+    }
+
     // Will get used for CLI, most likely
     public boolean parseBooleanInput(String input) {
         if (input == null) return false;
@@ -36,6 +59,17 @@ public class AdminManager {
         return userManager.getAllUsers();
     }
 
+    // Filtered, sorted, paginated listing served from the in-memory user table
+    public UserTable.UserPage queryUsers(UserQuery query) {
+        checkAdmin();
+        return userManager.getTable().query(query);
+    }
+
+    public int countUsers(UserQuery query) {
+        checkAdmin();
+        return userManager.getTable().count(query);
+    }
+
     public User getUser(String userId) {
         checkAdmin();
         return userManager.getUser(userId);
@@ -95,10 +129,22 @@ public class AdminManager {
         }
     }
 
+    // Bulk create users from a CSV or JSONL file (see UserImporter for the format)
+    public UserImporter.ImportReport importUsers(String filePath) throws IOException {
+        checkAdmin();
+
+        Path input = Path.of(filePath);
+        if (!Files.isRegularFile(input)) {
+            throw new IOException("Import file not found: " + filePath);
+        }
+
+        return new UserImporter(userManager).importFile(input);
+    }
+
     public boolean deleteUser(String userId) {
         checkAdmin();
 
-        if (userId.equals(currentUser.getUserId())) {
+        if (userId.equals(currentUserId())) {
             System.err.println("Admins cannot delete their own account while logged in.");
             return false;
         }
@@ -120,35 +166,36 @@ public class AdminManager {
             return false;
         }
 
-        boolean success = true;
-        File[] files = userDir.listFiles();
-        if (files != null) {
-            for (File f : files) {
-                if (!f.delete()) {
-                    System.err.println("Failed to delete file: " + f.getName());
-                    success = false;
-                }
-            }
+        // Move the user out of the way and hide their scrolls straight away;
+        // the scrolls themselves are removed by the background worker
+        try {
+            userManager.tombstoneUser(userId);
+        } catch (UserDoesNotExistException | IOException e) {
+            System.err.println("Failed to delete user " + userId + ": " + e.getMessage());
+            return false;
         }
 
-        if (!userDir.delete()) {
-            System.err.println("Failed to delete user directory: " + userId);
-            success = false;
-        }
+        SessionManager.getInstance().revokeUser(userId);
 
-        for (Scroll s : scrollManager.getAllScrolls())
-        {
-            String uploaderId = s.getUploaderId();
-            // Delete scrolls uploaded by the deleted user
-            if (uploaderId != null && uploaderId.equals(userId))
-            {
-                scrollManager.deleteScroll(s.getScrollId());
-            }
+        try {
+            scrollManager.getIndex().hideUploader(userId);
+        } catch (IOException e) {
+            // The worker hides them again when it resumes; the scrolls are still deleted
+            System.err.println("Failed to hide scrolls of user " + userId + ": " + e.getMessage());
         }
 
-        return success;
+        deletionWorker().submit(userId);
+        return true;
+    }
+
+    private UserDeletionWorker deletionWorker() {
+        return UserDeletionWorker.forManagers(userManager, scrollManager);
+    }
 
-        // If we have subdirs, may need to create recursive delete
+    // Deletions whose scrolls are still being removed in the background
+    public List<UserDeletionWorker.Progress> getDeletionProgress() {
+        checkAdmin();
+        return deletionWorker().getProgress();
     }
 
     public boolean updateAdminStatus(String userId, boolean isAdmin) {
@@ -164,7 +211,11 @@ public class AdminManager {
             return false;
         }
 
-        return user.setAdmin(isAdmin);
+        boolean ok = user.setAdmin(isAdmin);
+        if (ok) {
+            SessionManager.getInstance().refresh(user);
+        }
+        return ok;
     }
 
     public Map<String, String> viewScrollStats() {
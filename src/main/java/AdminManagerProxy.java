@@ -1,143 +1,278 @@
+import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 
+import metrics.Metrics;
+import metrics.OperationMetrics;
+
 public class AdminManagerProxy {
+    private static final OperationMetrics GET_ALL_USERS = Metrics.operation("admin.getAllUsers");
+    private static final OperationMetrics QUERY_USERS = Metrics.operation("admin.queryUsers");
+    private static final OperationMetrics COUNT_USERS = Metrics.operation("admin.countUsers");
+    private static final OperationMetrics CREATE_USER = Metrics.operation("admin.createUser");
+    private static final OperationMetrics IMPORT_USERS = Metrics.operation("admin.importUsers");
+    private static final OperationMetrics DELETE_USER = Metrics.operation("admin.deleteUser");
+    private static final OperationMetrics DELETION_PROGRESS = Metrics.operation("admin.getDeletionProgress");
+    private static final OperationMetrics UPDATE_ADMIN_STATUS = Metrics.operation("admin.updateAdminStatus");
+    private static final OperationMetrics VIEW_SCROLL_STATS = Metrics.operation("admin.viewScrollStats");
+    private static final OperationMetrics VIEW_AS_USER = Metrics.operation("admin.viewAsUser");
+    private static final OperationMetrics VIEW_AS_GUEST = Metrics.operation("admin.viewAsGuest");
+
     private final AdminManager adminManager;
     private final EventLogManager logManager = EventLogManager.getInstance();
     private final User currentUser;
+    private final SessionManager.Session session;
 
     public AdminManagerProxy(AdminManager adminManager, User currentUser) {
+        this(adminManager, currentUser, null);
+    }
+
+    public AdminManagerProxy(AdminManager adminManager, User currentUser, SessionManager.Session session) {
         this.adminManager = adminManager;
         this.currentUser = currentUser;
+        this.session = session;
+    }
+
+    // Actor details for log entries, taken from the session snapshot when there is one
+    private String actorId() {
+        return session != null ? session.getPrincipal().getUserId() : currentUser.getUserId();
+    }
+
+    private String actorName() {
+        return session != null ? session.getPrincipal().getUsername() : currentUser.getUsername();
     }
 
     public List<User> getAllUsers() {
+        long start = GET_ALL_USERS.start();
+        boolean ok = false;
         try {
             List<User> users = adminManager.getAllUsers();
-            logManager.log(currentUser.getUserId(), currentUser.getUsername(), "ADMIN_VIEW_USERS", "Viewed all users");
+            logManager.log(actorId(), actorName(), "ADMIN_VIEW_USERS", "Viewed all users");
+            ok = true;
             return users;
         } catch (SecurityException e) {
-            logManager.log(currentUser.getUserId(), currentUser.getUsername(), "ADMIN_VIEW_USERS_DENIED", e.getMessage());
+            logManager.log(actorId(), actorName(), "ADMIN_VIEW_USERS_DENIED", e.getMessage());
             return List.of();
+        } finally {
+            GET_ALL_USERS.stop(start, ok);
+        }
+    }
+
+    public UserTable.UserPage queryUsers(UserQuery query) {
+        long start = QUERY_USERS.start();
+        boolean ok = false;
+        try {
+            UserTable.UserPage page = adminManager.queryUsers(query);
+            logManager.log(actorId(), actorName(), "ADMIN_VIEW_USERS", "Viewed user page");
+            ok = true;
+            return page;
+        } catch (SecurityException e) {
+            logManager.log(actorId(), actorName(), "ADMIN_VIEW_USERS_DENIED", e.getMessage());
+            return null;
+        } catch (IllegalArgumentException e) {
+            logManager.log(actorId(), actorName(), "ADMIN_VIEW_USERS_FAILED", e.getMessage());
+            return null;
+        } finally {
+            QUERY_USERS.stop(start, ok);
+        }
+    }
+
+    public int countUsers(UserQuery query) {
+        long start = COUNT_USERS.start();
+        boolean ok = false;
+        try {
+            int count = adminManager.countUsers(query);
+            logManager.log(actorId(), actorName(), "ADMIN_COUNT_USERS", "Counted users: " + count);
+            ok = true;
+            return count;
+        } catch (SecurityException e) {
+            logManager.log(actorId(), actorName(), "ADMIN_COUNT_USERS_DENIED", e.getMessage());
+            return -1;
+        } finally {
+            COUNT_USERS.stop(start, ok);
         }
     }
 
     public boolean createUser(String userId, String username, String password, boolean isAdmin) {
+        long start = CREATE_USER.start();
+        boolean ok = false;
         try {
-            boolean ok = adminManager.createUser(userId, username, password, isAdmin);
+            ok = adminManager.createUser(userId, username, password, isAdmin);
 
             if (ok) {
-                logManager.log(currentUser.getUserId(), currentUser.getUsername(),
+                logManager.log(actorId(), actorName(),
                         "ADMIN_CREATE_USER", "Created user: " + userId);
             } else {
-                logManager.log(currentUser.getUserId(), currentUser.getUsername(),
+                logManager.log(actorId(), actorName(),
                         "ADMIN_CREATE_USER_FAILED", "Failed to create user: " + userId);
             }
 
             return ok;
         } catch (SecurityException e) {
-            logManager.log(currentUser.getUserId(), currentUser.getUsername(),
+            logManager.log(actorId(), actorName(),
                     "ADMIN_CREATE_USER_DENIED", e.getMessage());
             return false;
+        } finally {
+            CREATE_USER.stop(start, ok);
+        }
+    }
+
+    public UserImporter.ImportReport importUsers(String filePath) {
+        long start = IMPORT_USERS.start();
+        boolean ok = false;
+        try {
+            UserImporter.ImportReport report = adminManager.importUsers(filePath);
+            logManager.log(actorId(), actorName(), "ADMIN_IMPORT_USERS",
+                    String.format("Imported %d users from %s (%d failed, %d skipped)",
+                            report.imported, filePath, report.failed(), report.skipped));
+            ok = true;
+            return report;
+        } catch (SecurityException e) {
+            logManager.log(actorId(), actorName(), "ADMIN_IMPORT_USERS_DENIED", e.getMessage());
+            return null;
+        } catch (IOException e) {
+            logManager.log(actorId(), actorName(), "ADMIN_IMPORT_USERS_FAILED", e.getMessage());
+            return null;
+        } finally {
+            IMPORT_USERS.stop(start, ok);
         }
     }
 
     public boolean deleteUser(String userId) {
+        long start = DELETE_USER.start();
+        boolean ok = false;
         try {
-            boolean ok = adminManager.deleteUser(userId);
+            ok = adminManager.deleteUser(userId);
 
             if (ok) {
-                logManager.log(currentUser.getUserId(), currentUser.getUsername(),
+                logManager.log(actorId(), actorName(),
                         "ADMIN_DELETE_USER", "Deleted user: " + userId);
             } else {
-                logManager.log(currentUser.getUserId(), currentUser.getUsername(),
+                logManager.log(actorId(), actorName(),
                         "ADMIN_DELETE_USER_FAILED", "Failed to delete user: " + userId);
             }
 
             return ok;
         } catch (SecurityException e) {
-            logManager.log(currentUser.getUserId(), currentUser.getUsername(),
+            logManager.log(actorId(), actorName(),
                     "ADMIN_DELETE_USER_DENIED", e.getMessage());
             return false;
+        } finally {
+            DELETE_USER.stop(start, ok);
+        }
+    }
+
+    // Read-only status of background deletions; not logged
+    public List<UserDeletionWorker.Progress> getDeletionProgress() {
+        long start = DELETION_PROGRESS.start();
+        boolean ok = false;
+        try {
+            List<UserDeletionWorker.Progress> progress = adminManager.getDeletionProgress();
+            ok = true;
+            return progress;
+        } catch (SecurityException e) {
+            logManager.log(actorId(), actorName(), "ADMIN_DELETION_STATUS_DENIED", e.getMessage());
+            return List.of();
+        } finally {
+            DELETION_PROGRESS.stop(start, ok);
         }
     }
 
     public boolean updateAdminStatus(String userId, boolean isAdmin) {
+        long start = UPDATE_ADMIN_STATUS.start();
+        boolean ok = false;
         try {
-            boolean ok = adminManager.updateAdminStatus(userId, isAdmin);
+            ok = adminManager.updateAdminStatus(userId, isAdmin);
 
             if (ok) {
-                logManager.log(currentUser.getUserId(), currentUser.getUsername(),
+                logManager.log(actorId(), actorName(),
                         "ADMIN_UPDATE_ROLE", "Updated admin status for: " + userId);
             } else {
-                logManager.log(currentUser.getUserId(), currentUser.getUsername(),
+                logManager.log(actorId(), actorName(),
                         "ADMIN_UPDATE_ROLE_FAILED", "Failed to update admin status for: " + userId);
             }
 
             return ok;
         } catch (SecurityException e) {
-            logManager.log(currentUser.getUserId(), currentUser.getUsername(),
+            logManager.log(actorId(), actorName(),
                     "ADMIN_UPDATE_ROLE_DENIED", e.getMessage());
             return false;
+        } finally {
+            UPDATE_ADMIN_STATUS.stop(start, ok);
         }
     }
-    
-    public Map<String, String> viewScrollStats(User adminUser) {
-        if (!adminUser.getAdmin()) {
-            logManager.log(adminUser.getUserId(), adminUser.getUsername(),
-                "VIEW_SCROLL_STATS_FAILED", "User is not an admin");
-            System.out.println("Access denied: Admins only.");
-            return Map.of();
-        }
 
+    public Map<String, String> viewScrollStats(User adminUser) {
+        long start = VIEW_SCROLL_STATS.start();
+        boolean ok = false;
         try {
+            if (!adminUser.getAdmin()) {
+                logManager.log(adminUser.getUserId(), adminUser.getUsername(),
+                    "VIEW_SCROLL_STATS_FAILED", "User is not an admin");
+                System.out.println("Access denied: Admins only.");
+                return Map.of();
+            }
+
             Map<String, String> stats = adminManager.viewScrollStats();
             logManager.log(adminUser.getUserId(), adminUser.getUsername(),
                 "VIEW_SCROLL_STATS", "Accessed scroll statistics");
+            ok = true;
             return stats;
         } catch (Exception e) {
             logManager.log(adminUser.getUserId(), adminUser.getUsername(),
                 "VIEW_SCROLL_STATS_FAILED", e.getMessage());
             System.out.println("Error viewing scroll statistics: " + e.getMessage());
             return Map.of();
+        } finally {
+            VIEW_SCROLL_STATS.stop(start, ok);
         }
     }
 
 
     public User viewAsUser(String targetUserId) {
+        long start = VIEW_AS_USER.start();
+        boolean ok = false;
         try {
             User user = adminManager.viewAsUser(targetUserId);
             if (user != null) {
-                logManager.log(currentUser.getUserId(), currentUser.getUsername(),
+                logManager.log(actorId(), actorName(),
                         "VIEW_AS_USER", "Viewed data of user: " + targetUserId);
             } else {
-                logManager.log(currentUser.getUserId(), currentUser.getUsername(),
+                logManager.log(actorId(), actorName(),
                         "VIEW_AS_USER_FAILED", "Failed to view user: " + targetUserId);
             }
+            ok = user != null;
             return user;
         } catch (SecurityException e) {
-            logManager.log(currentUser.getUserId(), currentUser.getUsername(),
+            logManager.log(actorId(), actorName(),
                     "VIEW_AS_USER_DENIED", e.getMessage());
             return null;
+        } finally {
+            VIEW_AS_USER.stop(start, ok);
         }
     }
 
     public ScrollManager.ScrollTextPreview viewAsGuest(String scrollId) {
+        long start = VIEW_AS_GUEST.start();
+        boolean ok = false;
         try {
             ScrollManager.ScrollTextPreview preview = adminManager.viewAsGuest(scrollId);
             if (preview != null) {
-                logManager.log(currentUser.getUserId(), currentUser.getUsername(),
+                logManager.log(actorId(), actorName(),
                         "VIEW_AS_GUEST", "Previewed scroll: " + scrollId);
             } else {
-                logManager.log(currentUser.getUserId(), currentUser.getUsername(),
+                logManager.log(actorId(), actorName(),
                         "VIEW_AS_GUEST_FAILED", "Failed to preview scroll: " + scrollId);
             }
+            ok = preview != null;
             return preview;
         } catch (SecurityException e) {
-            logManager.log(currentUser.getUserId(), currentUser.getUsername(),
+            logManager.log(actorId(), actorName(),
                     "VIEW_AS_GUEST_DENIED", e.getMessage());
             return null;
+        } finally {
+            VIEW_AS_GUEST.stop(start, ok);
         }
     }
- 
+
 }
@@ -1,7 +1,16 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
 import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
 
+import metrics.Metrics;
+
 public class AdminMenu {
+    private static final int EVENT_LOG_PAGE_SIZE = 20;
+
     public final AdminManagerProxy adminProxy;
     public final AdminManager adminManager;
     public final UserManagerProxy userProxy;
@@ -12,9 +21,14 @@ public class AdminMenu {
     public final Scanner scanner = new Scanner(System.in);
 
     public AdminMenu(AdminManager adminManager, UserManager userManager, ScrollManager scrollManager, User currentUser) {
+        this(adminManager, userManager, scrollManager, currentUser, null);
+    }
+
+    public AdminMenu(AdminManager adminManager, UserManager userManager, ScrollManager scrollManager, User currentUser,
+                     SessionManager.Session session) {
         this.currentUser = currentUser;
         this.adminManager = adminManager;
-        this.adminProxy = new AdminManagerProxy(adminManager, currentUser);
+        this.adminProxy = new AdminManagerProxy(adminManager, currentUser, session);
         this.userProxy = new UserManagerProxy(userManager);
         this.scrollProxy = new ScrollManagerProxy(scrollManager);
         this.realUserManager = userManager;
@@ -31,7 +45,11 @@ public class AdminMenu {
             System.out.println("5. View event logs");
             System.out.println("6. View scroll statistics");
             System.out.println("7. Spectate as Guest/Regular User");
-            System.out.println("8. Exit admin menu");
+            System.out.println("8. Import users from file");
+            System.out.println("9. Search users");
+            System.out.println("10. View event statistics");
+            System.out.println("11. View operation metrics");
+            System.out.println("12. Exit admin menu");
             System.out.print("Enter choice: ");
 
             String choice = scanner.nextLine().trim();
@@ -43,7 +61,11 @@ public class AdminMenu {
                 case "5" -> viewEventLogs();
                 case "6" -> viewScrollStats();
                 case "7" -> viewAsGuestOrRegularUser();
-                case "8" -> {
+                case "8" -> importUsers();
+                case "9" -> searchUsers();
+                case "10" -> viewEventStats();
+                case "11" -> viewOperationMetrics();
+                case "12" -> {
                     System.out.println("Exiting admin menu");
                     return;
                 }
@@ -53,29 +75,86 @@ public class AdminMenu {
     }
 
     public void viewAllUsers() {
-        try {
-            List<User> users = adminProxy.getAllUsers();
+        listUsers(new UserQuery());
+    }
+
+    public void searchUsers() {
+        UserQuery query = new UserQuery();
+
+        System.out.print("Role (admin/user, blank = any): ");
+        String role = scanner.nextLine().trim().toLowerCase();
+        if (role.equals("admin")) {
+            query.admin(true);
+        } else if (role.equals("user")) {
+            query.admin(false);
+        }
 
-            if (users.isEmpty()) {
-                System.out.println("(No users found)\n");
-                return;
+        System.out.print("Username starts with (blank = any): ");
+        query.usernamePrefix(scanner.nextLine());
+
+        System.out.print("Email domain (blank = any): ");
+        query.emailDomain(scanner.nextLine());
+
+        System.out.print("Sort by (id/username/name/email, prefix with - for descending): ");
+        String sort = scanner.nextLine().trim().toLowerCase();
+        boolean descending = sort.startsWith("-");
+        if (descending) {
+            sort = sort.substring(1);
+        }
+        switch (sort) {
+            case "username" -> query.sortBy(UserQuery.SortKey.USERNAME, descending);
+            case "name" -> query.sortBy(UserQuery.SortKey.NAME, descending);
+            case "email" -> query.sortBy(UserQuery.SortKey.EMAIL, descending);
+            default -> query.sortBy(UserQuery.SortKey.USER_ID, descending);
+        }
+
+        System.out.print("Count only? (yes/no): ");
+        if (adminManager.parseBooleanInput(scanner.nextLine())) {
+            int count = adminProxy.countUsers(query);
+            if (count >= 0) {
+                System.out.println("Matching users: " + count + "\n");
             }
+            return;
+        }
 
-            System.out.printf("%-10s %-20s %-10s%n", "USER ID", "USERNAME", "ROLE");
+        listUsers(query);
+    }
 
-            for (User u : users) {
-                if (u == null) continue;
-                String role = u.getAdmin() ? "Admin" : "User";
-                System.out.printf("%-10s %-20s %-10s%n", 
-                    u.getUserId(), 
-                    u.getUsername(), 
-                    role
+    // Print one page at a time; only prompts when there is a further page
+    private void listUsers(UserQuery query) {
+        UserTable.UserPage page = adminProxy.queryUsers(query);
+        if (page == null) {
+            System.out.println("Could not list users.\n");
+            return;
+        }
+        if (page.getRows().isEmpty()) {
+            System.out.println("(No users found)\n");
+            return;
+        }
+
+        System.out.printf("%-10s %-20s %-10s%n", "USER ID", "USERNAME", "ROLE");
+        while (true) {
+            for (UserTable.Row r : page.getRows()) {
+                System.out.printf("%-10s %-20s %-10s%n",
+                    r.getUserId(),
+                    r.getUsername(),
+                    r.isAdmin() ? "Admin" : "User"
                 );
             }
-            System.out.println();
-        } catch (SecurityException e) {
-            System.out.println(e.getMessage());
+
+            if (!page.hasMore()) {
+                break;
+            }
+            System.out.print("[N]ext page, anything else to stop: ");
+            if (!scanner.nextLine().trim().equalsIgnoreCase("n")) {
+                break;
+            }
+            page = adminProxy.queryUsers(query.after(page.getNextCursor()));
+            if (page == null) {
+                break;
+            }
         }
+        System.out.println();
     }
 
 
@@ -109,6 +188,29 @@ public class AdminMenu {
         }
     }
 
+    public void importUsers() {
+        System.out.print("Enter path to CSV or JSONL file: ");
+        String path = scanner.nextLine().trim();
+        if (path.isBlank()) {
+            System.out.println("Path cannot be empty.");
+            return;
+        }
+
+        UserImporter.ImportReport report = adminProxy.importUsers(path);
+        if (report == null) {
+            System.out.println("Import failed.");
+            return;
+        }
+
+        if (report.resumedAfterLine > 0) {
+            System.out.println("Resumed after line " + report.resumedAfterLine + ".");
+        }
+        System.out.printf("Imported: %d, Failed: %d%n", report.imported, report.failed());
+        for (UserImporter.RowError err : report.getErrors()) {
+            System.out.println("  " + err);
+        }
+    }
+
     public void deleteUser() {
         System.out.print("Enter user ID to delete: ");
         String userId = scanner.nextLine().trim();
@@ -126,7 +228,10 @@ public class AdminMenu {
 
         try {
             if (adminProxy.deleteUser(userId)) {
-                System.out.println("User deleted.");
+                System.out.println("User deleted. Their scrolls are hidden and will be removed in the background.");
+                for (UserDeletionWorker.Progress p : adminProxy.getDeletionProgress()) {
+                    System.out.println("  Pending deletion - " + p);
+                }
             } else {
                 System.out.println("Failed to delete user.");
             }
@@ -160,35 +265,112 @@ public class AdminMenu {
 
     public void viewEventLogs() {
         EventLogManager logManager = EventLogManager.getInstance();
-        System.out.println("\n=== Event Logs ===");
-
-        for (String log : logManager.getAllLogs()) {
-            System.out.println(log);
-        }
+        EventQuery query = new EventQuery();
 
         System.out.println("\nDo you want to filter the logs? (yes/no): ");
         String filterChoice = scanner.nextLine().trim().toLowerCase();
-        if (!filterChoice.equals("yes") && !filterChoice.equals("y")) {
-            return;
+        boolean filtered = filterChoice.equals("yes") || filterChoice.equals("y");
+        if (filtered) {
+            System.out.print("Filter by User ID (leave empty to skip): ");
+            query.userId(scanner.nextLine());
+
+            System.out.print("Filter by Username (leave empty to skip): ");
+            query.username(scanner.nextLine());
+
+            System.out.print("Filter by Action (leave empty to skip): ");
+            query.action(scanner.nextLine().toUpperCase());
         }
 
-        System.out.print("Filter by User ID (leave empty to skip): ");
-        String userIdFilter = scanner.nextLine().trim();
+        System.out.println(filtered ? "\n=== Filtered Event Logs (newest first) ===" : "\n=== Event Logs (newest first) ===");
+        try (EventLogReader reader = logManager.readBackward(query)) {
+            List<EventLogger> page = reader.nextPage(EVENT_LOG_PAGE_SIZE);
+            if (page.isEmpty()) {
+                System.out.println("No events found.");
+            }
+            while (!page.isEmpty()) {
+                for (EventLogger event : page) {
+                    System.out.println(event);
+                }
+                if (!reader.hasNext()) {
+                    break;
+                }
+                System.out.print("Press Enter for older events, or type q to stop: ");
+                if (!scanner.hasNextLine() || scanner.nextLine().trim().equalsIgnoreCase("q")) {
+                    break;
+                }
+                page = reader.nextPage(EVENT_LOG_PAGE_SIZE);
+            }
+        } catch (UncheckedIOException e) {
+            System.out.println("Failed to read logs: " + e.getCause().getMessage());
+        }
+    }
 
-        System.out.print("Filter by Username (leave empty to skip): ");
-        String usernameFilter = scanner.nextLine().trim();
+    public void viewEventStats() {
+        EventLogManager logManager = EventLogManager.getInstance();
+        EventStats.Snapshot hour = logManager.getStats(EventStats.WINDOW_MINUTES);
+        EventStats.Snapshot recent = logManager.getStats(5);
 
-        System.out.println("\n=== Filtered Event Logs ===");
-        for (String log : logManager.getAllLogs()) {
-            String logUserId = log.replaceAll(".*userId=(\\S+).*", "$1");
-            String logUsername = log.replaceAll(".*user=(\\S+).*", "$1");
+        System.out.println("\n=== Event Statistics ===");
+        if (logManager.isStatsRebuilding()) {
+            System.out.println("(still reading earlier events from the log; counts may be incomplete)");
+        }
+        System.out.printf("Events in the last 5 minutes: %d, last %d minutes: %d%n",
+                recent.getTotal(), hour.getMinutes(), hour.getTotal());
+        System.out.printf("Events per minute: avg %.1f, p50 %d, p95 %d, max %d%n", hour.perMinuteAverage(),
+                hour.perMinutePercentile(50), hour.perMinutePercentile(95), hour.perMinutePercentile(100));
+        System.out.printf("Failed logins in the last 5 minutes: %d%n", recent.count("LOGIN_FAILED"));
+
+        System.out.println("\nTop actions (last " + hour.getMinutes() + " minutes / last 5 minutes):");
+        printTop(hour.getByAction(), recent.getByAction());
+        System.out.println("\nMost active users (last " + hour.getMinutes() + " minutes / last 5 minutes):");
+        printTop(hour.getByUser(), recent.getByUser());
+
+        Map<String, Long> suppressed = logManager.getSuppressedCounts();
+        if (!suppressed.isEmpty()) {
+            System.out.println("\nCounted but not written to the log (sampling policy):");
+            suppressed.entrySet().stream().limit(10)
+                    .forEach(e -> System.out.printf("  %-28s %6d%n", e.getKey(), e.getValue()));
+        }
 
-            boolean matchesUserId = userIdFilter.isEmpty() || logUserId.equals(userIdFilter);
-            boolean matchesUsername = usernameFilter.isEmpty() || logUsername.equals(usernameFilter);
+        System.out.println("\nEvents per minute (last 10 minutes, oldest first):");
+        StringBuilder row = new StringBuilder();
+        for (long count : logManager.getStats(10).getPerMinute()) {
+            row.append(count).append(' ');
+        }
+        System.out.println(row.toString().trim());
+    }
 
-            if (matchesUserId && matchesUsername) {
-                System.out.println(log);
-            }
+    private static void printTop(Map<String, Long> counts, Map<String, Long> recentCounts) {
+        if (counts.isEmpty()) {
+            System.out.println("  (none)");
+            return;
+        }
+        counts.entrySet().stream().limit(10).forEach(e -> System.out.printf("  %-28s %6d / %d%n",
+                e.getKey(), e.getValue(), recentCounts.getOrDefault(e.getKey(), 0L)));
+    }
+
+    // Latency and failures per proxy operation since startup
+    public void viewOperationMetrics() {
+        System.out.println("\n=== Operation Metrics ===");
+        if (!Metrics.isEnabled()) {
+            System.out.println("(recording is off; start with -Dvsas.metrics=true)");
+        }
+        if (Metrics.operations().isEmpty()) {
+            System.out.println("No operations recorded yet.");
+            return;
+        }
+        System.out.print(Metrics.report());
+
+        System.out.print("\nExport to CSV file (blank to skip): ");
+        String path = scanner.hasNextLine() ? scanner.nextLine().trim() : "";
+        if (path.isEmpty()) {
+            return;
+        }
+        try {
+            Metrics.export(Path.of(path));
+            System.out.println("Metrics written to " + path);
+        } catch (IOException | InvalidPathException e) {
+            System.out.println("Could not write metrics: " + e.getMessage());
         }
     }
 
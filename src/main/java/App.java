@@ -1,10 +1,28 @@
+import java.io.IOException;
+
+import fsam.ChangeFeed;
+import metrics.MetricsServer;
+
 public class App {
     public static void main(String[] args) {
+        // Opt-in: -Dvsas.metrics.port=9464
+        MetricsServer.startFromSystemProperties();
+
         String userRoot = "vsas_data/users";
         String scrollRoot = "vsas_data/scrolls";
 
         UserManager userManager = new UserManager(userRoot);
         ScrollManager scrollManager = new ScrollManager(scrollRoot);
+
+        // Opt-in: -Dvsas.watch=true picks up changes made outside this process
+        if (Boolean.getBoolean("vsas.watch")) {
+            try {
+                userManager.getTable().follow(ChangeFeed.forRoot(userManager.getFileObj()).start());
+                scrollManager.getIndex().follow(ChangeFeed.forRoot(scrollManager.getFileObj()).start());
+            } catch (IOException e) {
+                System.err.println("Change feed not started: " + e.getMessage());
+            }
+        }
         UserInterface userInteface = new UserInterface(userManager, scrollManager);
         userInteface.start();
     }
@@ -0,0 +1,399 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * AuditChain
+ * Hash chain over the bytes of one event log segment, kept in "<segment>.chain".
+ *
+ * The writer feeds every byte it appends to a running SHA-256. Roughly every
+ * chainBlockBytes it closes a block: the block's hash is
+ * SHA-256(previous hash || block bytes) and a checkpoint line with the block's end
+ * offset, its hash and an HMAC-SHA256 of both is appended to the chain file. The
+ * first line names the hash the chain starts from, which is the last hash of the
+ * previous segment, so segments are linked to each other as well. The chain file
+ * is renamed together with its segment when the segment is sealed.
+ *
+ * Editing, removing or reordering events changes a block hash; rewriting the chain
+ * to match needs the HMAC key. The key is read from the file named by
+ * vsas.eventlog.auditKeyFile, or "<log>.key" next to the log, which the writer
+ * creates on first use. Keep it elsewhere to protect against someone who can write
+ * the log.
+ *
+ * A chain is never re-anchored silently. When the log has bytes but no usable chain,
+ * is shorter than its chain, or no longer matches the chain's last checkpoint, the
+ * old chain (if any) is set aside as "<chain>.<millis>.truncated" or ".invalid" and
+ * the new chain records why it restarted in a signed "anchor" line. Bytes written
+ * after the last checkpoint of an earlier run (a crash) are only taken on once that
+ * checkpoint still matches, and are recorded in a signed "adopted" line. The
+ * verifier reports all of these.
+ *
+ * File format (tab separated):
+ *   prev  <hex hash>  <start offset>  <hmac>     bytes before start are not chained
+ *   anchor  <start offset>  <reason>  <hmac>     the chain was restarted over existing bytes
+ *   adopted  <from>  <to>  <hmac>                tail hashed in on reopen, never checkpointed
+ *   <end offset>  <hex hash>  <hmac>             one line per block
+ *
+ * Hashing happens on the thread doing the write (the background writer in async
+ * mode), so logging callers do not pay for it.
+ */
+final class AuditChain {
+    static final String SUFFIX = ".chain";
+    static final String KEY_SUFFIX = ".key";
+    static final String ANCHOR = "anchor";
+    static final String ADOPTED = "adopted";
+    static final String TRUNCATED = "truncated";
+    static final String INVALID = "invalid";
+    static final byte[] GENESIS = new byte[32];
+
+    private static final HexFormat HEX = HexFormat.of();
+
+    private final Path file;
+    private final long blockBytes;
+    private final Mac mac;
+    private final MessageDigest digest;
+    private BufferedWriter out;
+    private byte[] lastHash;
+    private long lastEnd;
+    private long written;
+    private String restartReason;
+
+    private AuditChain(Path file, long blockBytes, byte[] key) {
+        this.file = file;
+        this.blockBytes = blockBytes;
+        this.mac = newMac(key);
+        this.digest = sha256();
+    }
+
+    static Path chainPath(Path segment) {
+        return segment.resolveSibling(segment.getFileName() + SUFFIX);
+    }
+
+    /**
+     * Chain for the active file, which currently holds `size` bytes. An existing chain
+     * is continued once its last checkpoint has been checked against the file (bytes
+     * written after it are hashed in now); otherwise a new one starts at `size`, from
+     * `prevHash`, recording why if the file already held data.
+     */
+    static AuditChain open(Path active, long size, byte[] prevHash, long blockBytes, byte[] key) throws IOException {
+        AuditChain c = new AuditChain(chainPath(active), blockBytes, key);
+        Parsed existing = Parsed.read(c.file);
+        String reason = null;
+
+        if (existing != null && existing.coveredEnd() > size) {
+            // The log is shorter than its chain: keep the evidence and start over
+            c.setAside(TRUNCATED);
+            reason = "log is shorter than its chain (" + size + " < " + existing.coveredEnd() + " bytes)";
+            existing = null;
+        } else if (existing != null && !c.lastCheckpointHolds(existing, active)) {
+            c.setAside(INVALID);
+            reason = "log no longer matches the last checkpoint of its chain";
+            existing = null;
+        } else if (existing == null && size > 0) {
+            if (Files.exists(c.file)) {
+                c.setAside(INVALID);
+                reason = "chain file is unreadable";
+            } else {
+                reason = "log has " + size + " bytes but no chain";
+            }
+        }
+
+        if (existing == null) {
+            c.lastHash = prevHash;
+            c.lastEnd = size;
+            c.written = size;
+            c.out = Files.newBufferedWriter(c.file, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+            c.writeLine("prev\t" + HEX.formatHex(prevHash) + "\t" + size);
+            if (reason != null) {
+                c.writeLine(ANCHOR + "\t" + size + "\t" + reason);
+                c.restartReason = reason;
+                System.err.println("Event log audit chain restarted at byte " + size + ": " + reason);
+            }
+        } else {
+            c.lastHash = existing.coveredHash();
+            c.lastEnd = existing.coveredEnd();
+            c.written = c.lastEnd;
+            c.out = Files.newBufferedWriter(c.file, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        }
+        c.digest.update(c.lastHash);
+
+        if (size > c.written) {
+            c.writeLine(ADOPTED + "\t" + c.written + "\t" + size);
+            c.hashTail(active, size);
+        }
+        return c;
+    }
+
+    // Why this chain was restarted over existing bytes, or null
+    String getRestartReason() {
+        return restartReason;
+    }
+
+    private void setAside(String why) throws IOException {
+        Files.move(file, file.resolveSibling(file.getFileName() + "." + System.currentTimeMillis() + "." + why));
+    }
+
+    // The header and last checkpoint are signed with our key, and the last block
+    // still hashes to that checkpoint
+    private boolean lastCheckpointHolds(Parsed p, Path active) throws IOException {
+        if (!signed(p.headerBody, p.headerSig)) {
+            return false;
+        }
+        int n = p.size();
+        if (n == 0) {
+            return true;
+        }
+        if (!signed(p.bodies.get(n - 1), p.sigs.get(n - 1))) {
+            return false;
+        }
+        long from = n > 1 ? p.end(n - 2) : p.start;
+        byte[] prev = unhex(n > 1 ? p.hashes.get(n - 2) : p.prevHex);
+        try (FileChannel ch = FileChannel.open(active, StandardOpenOption.READ);
+             InputStream in = Channels.newInputStream(ch.position(from))) {
+            byte[] h = hashBlock(sha256(), prev, in, p.end(n - 1) - from, new byte[64 * 1024]);
+            return h != null && hex(h).equals(p.hashes.get(n - 1));
+        }
+    }
+
+    private boolean signed(String body, String sig) {
+        return MessageDigest.isEqual(sign(mac, body).getBytes(StandardCharsets.US_ASCII),
+                sig.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    // Bytes appended after the last checkpoint of an earlier run
+    private void hashTail(Path active, long size) throws IOException {
+        try (FileChannel ch = FileChannel.open(active, StandardOpenOption.READ)) {
+            ch.position(written);
+            ByteBuffer buf = ByteBuffer.allocate(64 * 1024);
+            while (written < size) {
+                buf.clear().limit((int) Math.min(buf.capacity(), size - written));
+                int n = ch.read(buf);
+                if (n < 0) {
+                    break;
+                }
+                update(buf.array(), 0, n);
+            }
+        }
+    }
+
+    void update(byte[] a, int off, int len) {
+        digest.update(a, off, len);
+        written += len;
+    }
+
+    void maybeCheckpoint() throws IOException {
+        if (written - lastEnd >= blockBytes) {
+            checkpoint();
+        }
+    }
+
+    void checkpoint() throws IOException {
+        if (written == lastEnd) {
+            return;
+        }
+        byte[] hash = digest.digest();
+        writeLine(written + "\t" + HEX.formatHex(hash));
+        lastHash = hash;
+        lastEnd = written;
+        digest.update(hash);
+    }
+
+    private void writeLine(String body) throws IOException {
+        out.write(body + "\t" + sign(mac, body) + "\n");
+        out.flush();
+    }
+
+    byte[] getLastHash() {
+        return lastHash.clone();
+    }
+
+    // Checkpoint everything and close; returns the final hash
+    byte[] close() throws IOException {
+        try {
+            checkpoint();
+        } finally {
+            out.close();
+        }
+        return getLastHash();
+    }
+
+    // ---[ Keys and signatures ]---
+
+    static Path keyPath(Path active) {
+        String configured = System.getProperty("vsas.eventlog.auditKeyFile");
+        return configured != null ? Path.of(configured) : active.resolveSibling(active.getFileName() + KEY_SUFFIX);
+    }
+
+    // For the writer: creates the key on first use
+    static byte[] loadKey(Path active) throws IOException {
+        Path keyFile = keyPath(active);
+        if (Files.exists(keyFile)) {
+            return Files.readAllBytes(keyFile);
+        }
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        Files.write(keyFile, key, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        try {
+            Files.setPosixFilePermissions(keyFile, PosixFilePermissions.fromString("rw-------"));
+        } catch (UnsupportedOperationException e) {
+            // not a POSIX file system
+        }
+        return key;
+    }
+
+    // For the verifier: a missing key is an error, never a fresh one
+    static byte[] readKey(Path active) throws IOException {
+        Path keyFile = keyPath(active);
+        if (!Files.exists(keyFile)) {
+            throw new NoSuchFileException(keyFile.toString(), null, "audit key not found");
+        }
+        return Files.readAllBytes(keyFile);
+    }
+
+    static Mac newMac(byte[] key) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 not available", e);
+        }
+    }
+
+    static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    static String sign(Mac mac, String body) {
+        return HEX.formatHex(mac.doFinal(body.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    static String hex(byte[] b) {
+        return HEX.formatHex(b);
+    }
+
+    static byte[] unhex(String s) {
+        return HEX.parseHex(s);
+    }
+
+    // Hash every chained block of a stored segment as it is read
+    static byte[] hashBlock(MessageDigest d, byte[] prev, InputStream in, long length, byte[] buf) throws IOException {
+        d.reset();
+        d.update(prev);
+        long left = length;
+        while (left > 0) {
+            int n = in.read(buf, 0, (int) Math.min(buf.length, left));
+            if (n < 0) {
+                return null; // file ends inside the block
+            }
+            d.update(buf, 0, n);
+            left -= n;
+        }
+        return d.digest();
+    }
+
+    /**
+     * Parsed
+     * Contents of a chain file as written; signatures are not checked here.
+     */
+    static final class Parsed {
+        final String prevHex;
+        final long start;
+        final String headerBody;
+        final String headerSig;
+        final List<Long> ends = new ArrayList<>();
+        final List<String> hashes = new ArrayList<>();
+        final List<String> bodies = new ArrayList<>();
+        final List<String> sigs = new ArrayList<>();
+        // Signed anchor / adopted lines, kept for the verifier to report
+        final List<String> markerBodies = new ArrayList<>();
+        final List<String> markerSigs = new ArrayList<>();
+
+        private Parsed(String prevHex, long start, String headerBody, String headerSig) {
+            this.prevHex = prevHex;
+            this.start = start;
+            this.headerBody = headerBody;
+            this.headerSig = headerSig;
+        }
+
+        // Null if there is no chain file or its header is unreadable
+        static Parsed read(Path file) throws IOException {
+            if (!Files.exists(file)) {
+                return null;
+            }
+            List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+            if (lines.isEmpty()) {
+                return null;
+            }
+            String[] h = lines.get(0).split("\t");
+            if (h.length != 4 || !h[0].equals("prev")) {
+                return null;
+            }
+            Parsed p;
+            try {
+                p = new Parsed(h[1], Long.parseLong(h[2]), h[0] + "\t" + h[1] + "\t" + h[2], h[3]);
+                for (String line : lines.subList(1, lines.size())) {
+                    String[] f = line.split("\t");
+                    if (f.length == 4 && (f[0].equals(ANCHOR) || f[0].equals(ADOPTED))) {
+                        p.markerBodies.add(f[0] + "\t" + f[1] + "\t" + f[2]);
+                        p.markerSigs.add(f[3]);
+                        continue;
+                    }
+                    if (f.length != 3) {
+                        continue; // torn last line after a crash
+                    }
+                    p.ends.add(Long.parseLong(f[0]));
+                    p.hashes.add(f[1]);
+                    p.bodies.add(f[0] + "\t" + f[1]);
+                    p.sigs.add(f[2]);
+                }
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            return p;
+        }
+
+        int size() {
+            return ends.size();
+        }
+
+        long end(int i) {
+            return ends.get(i);
+        }
+
+        long coveredEnd() {
+            return ends.isEmpty() ? start : end(ends.size() - 1);
+        }
+
+        byte[] coveredHash() {
+            return unhex(ends.isEmpty() ? prevHex : hashes.get(hashes.size() - 1));
+        }
+
+        // Identifies the chain across the rename from active file to sealed segment
+        String id() {
+            return prevHex + ":" + start;
+        }
+    }
+}
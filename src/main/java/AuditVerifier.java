@@ -0,0 +1,460 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPInputStream;
+import javax.crypto.Mac;
+
+/**
+ * AuditVerifier
+ * Checks the event log against its hash chains (see AuditChain).
+ *
+ * Every segment is checked on its own thread, as many at a time as there are
+ * cores: checkpoint signatures first, then the hash of every block against its
+ * checkpoint. The links between segments (each chain starts from the previous
+ * segment's last hash) are compared afterwards, which shows segments that were
+ * removed, swapped or added.
+ *
+ * Bytes no chain vouches for are problems too: a chain that starts after the
+ * beginning of its segment, a chain restarted over existing data ("anchor"), a tail
+ * chained on reopen without a checkpoint ("adopted"), and any chain the writer set
+ * aside as ".truncated" or ".invalid". They stay reported until someone has looked
+ * into them and removed the evidence.
+ *
+ * The key must already exist; verifying without it would prove nothing.
+ *
+ * Verified progress is kept, signed, in "<log>.verified". Later runs skip sealed
+ * segments that were already verified in full and continue the active segment from
+ * its last verified checkpoint, so only data added since then is read. Use full
+ * to re-check everything.
+ *
+ *   java -cp build/classes/java/main AuditVerifier [--full] [log file]
+ */
+public final class AuditVerifier {
+    static final String STATE_SUFFIX = ".verified";
+
+    private static final int BUFFER = 256 * 1024;
+
+    private final EventLogSegments segments;
+    private final Path statePath;
+    private final byte[] key;
+
+    private AuditVerifier(Path log) throws IOException {
+        this.segments = EventLogSegments.load(log);
+        this.statePath = segments.getActive().resolveSibling(segments.getActive().getFileName() + STATE_SUFFIX);
+        this.key = AuditChain.readKey(segments.getActive());
+    }
+
+    public static Report verify(String logFile, boolean full) throws IOException {
+        return new AuditVerifier(Path.of(logFile)).run(full);
+    }
+
+    /**
+     * Report
+     * Outcome of one verification run.
+     */
+    public static final class Report {
+        private final List<String> problems = new ArrayList<>();
+        private int checked;
+        private int skipped;
+        private long bytes;
+        private long pendingBytes;
+        private long elapsedMs;
+
+        public boolean isOk() { return problems.isEmpty(); }
+        public List<String> getProblems() { return Collections.unmodifiableList(problems); }
+        public int getSegmentsChecked() { return checked; }
+        public int getSegmentsSkipped() { return skipped; }
+        public long getBytesChecked() { return bytes; }
+        // Bytes of the active file written after its last checkpoint
+        public long getPendingBytes() { return pendingBytes; }
+        public long getElapsedMs() { return elapsedMs; }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(isOk() ? "OK" : "FAILED").append(": ").append(checked).append(" segment(s) checked, ")
+                    .append(skipped).append(" already verified, ").append(bytes).append(" bytes in ")
+                    .append(elapsedMs).append(" ms");
+            if (pendingBytes > 0) {
+                sb.append(", ").append(pendingBytes).append(" bytes not yet checkpointed");
+            }
+            for (String p : problems) {
+                sb.append(System.lineSeparator()).append("  ").append(p);
+            }
+            return sb.toString();
+        }
+    }
+
+    // One stored file with its chain
+    private static final class Target {
+        final String name;
+        final Path file;
+        final Path chainFile;
+        final boolean active;
+
+        Target(String name, Path file, Path chainFile, boolean active) {
+            this.name = name;
+            this.file = file;
+            this.chainFile = chainFile;
+            this.active = active;
+        }
+    }
+
+    private static final class Result {
+        final Target target;
+        final List<String> problems = new ArrayList<>();
+        AuditChain.Parsed chain;
+        boolean skipped;
+        long bytes;
+        long pending;
+        // Furthest checkpoint verified without a break, for the state file
+        long verifiedEnd = -1;
+        String verifiedHash;
+
+        Result(Target target) {
+            this.target = target;
+        }
+    }
+
+    private Report run(boolean full) throws IOException {
+        long start = System.nanoTime();
+        List<Target> targets = new ArrayList<>();
+        for (EventLogSegments.Segment s : segments.sealed()) {
+            targets.add(new Target(s.name, segments.getActive().resolveSibling(s.name), segments.chainPath(s.seq), false));
+        }
+        Path active = segments.getActive();
+        targets.add(new Target(active.getFileName().toString(), active, AuditChain.chainPath(active), true));
+
+        Map<String, String[]> state = full ? new HashMap<>() : readState();
+        List<Result> results = checkAll(targets, state);
+
+        Report report = new Report();
+        report.problems.addAll(setAsideChains(active));
+        AuditChain.Parsed previous = null;
+        for (Result r : results) {
+            report.problems.addAll(r.problems);
+            if (r.skipped) {
+                report.skipped++;
+            } else {
+                report.checked++;
+            }
+            report.bytes += r.bytes;
+            report.pendingBytes += r.pending;
+            linkProblem(previous, r).ifPresent(report.problems::add);
+            if (r.chain != null) {
+                previous = r.chain;
+            }
+        }
+
+        saveState(state, results);
+        report.elapsedMs = (System.nanoTime() - start) / 1_000_000;
+        return report;
+    }
+
+    // Segments are independent once their chains are known, so check them in parallel
+    private List<Result> checkAll(List<Target> targets, Map<String, String[]> state) throws IOException {
+        int threads = Math.max(1, Math.min(targets.size(), Runtime.getRuntime().availableProcessors()));
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "audit-verifier");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            List<Callable<Result>> tasks = new ArrayList<>();
+            for (Target t : targets) {
+                tasks.add(() -> check(t, state));
+            }
+            List<Result> results = new ArrayList<>();
+            for (Future<Result> f : pool.invokeAll(tasks)) {
+                results.add(f.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Verification interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Verification failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    // Each chain must start where the chain before it ended
+    private static Optional<String> linkProblem(AuditChain.Parsed previous, Result r) {
+        if (r.chain == null) {
+            if (previous != null && !(r.target.active && isEmpty(r.target.file))) {
+                return Optional.of(r.target.name + ": no audit chain (removed?)");
+            }
+            return Optional.empty();
+        }
+        if (previous != null && !AuditChain.hex(previous.coveredHash()).equals(r.chain.prevHex)) {
+            return Optional.of(r.target.name
+                    + ": does not follow the segment before it (a segment was removed, replaced or reordered)");
+        }
+        return Optional.empty();
+    }
+
+    private static boolean isEmpty(Path file) {
+        try {
+            return !Files.exists(file) || Files.size(file) == 0;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // Chains the writer moved out of the way before starting a new one
+    private static List<String> setAsideChains(Path active) throws IOException {
+        String prefix = AuditChain.chainPath(active).getFileName() + ".";
+        List<String> problems = new ArrayList<>();
+        try (DirectoryStream<Path> dir = Files.newDirectoryStream(active.toAbsolutePath().getParent(), prefix + "*")) {
+            for (Path p : dir) {
+                String name = p.getFileName().toString();
+                if (name.endsWith("." + AuditChain.TRUNCATED)) {
+                    problems.add(name + ": chain set aside because the log was shorter than it (truncated)");
+                } else if (name.endsWith("." + AuditChain.INVALID)) {
+                    problems.add(name + ": chain set aside because the log no longer matched it");
+                }
+            }
+        }
+        Collections.sort(problems);
+        return problems;
+    }
+
+    // ---[ One segment ]---
+    private Result check(Target t, Map<String, String[]> state) {
+        Result r = new Result(t);
+        try {
+            r.chain = AuditChain.Parsed.read(t.chainFile);
+            if (r.chain == null) {
+                return r;
+            }
+            int valid = checkSignatures(r);
+            if (valid < 0) {
+                return r;
+            }
+            reportUnchained(r);
+
+            // Resume from the last checkpoint verified by an earlier run
+            AuditChain.Parsed c = r.chain;
+            int from = -1;
+            String[] done = state.get(c.id());
+            if (done != null) {
+                for (int i = 0; i < valid; i++) {
+                    if (c.end(i) == Long.parseLong(done[0]) && c.hashes.get(i).equals(done[1])) {
+                        from = i;
+                        break;
+                    }
+                }
+            }
+            if (from >= 0 && from == valid - 1 && !t.active) {
+                r.skipped = true;
+                r.verifiedEnd = c.end(from);
+                r.verifiedHash = c.hashes.get(from);
+                return r;
+            }
+            hashBlocks(r, from, valid);
+        } catch (NoSuchFileException e) {
+            r.problems.add(t.name + ": missing (" + e.getFile() + ")");
+        } catch (IOException | RuntimeException e) {
+            r.problems.add(t.name + ": could not be checked: " + e);
+        }
+        return r;
+    }
+
+    // Number of checkpoints with good signatures, or -1 if the header is bad
+    private int checkSignatures(Result r) {
+        AuditChain.Parsed c = r.chain;
+        Mac mac = AuditChain.newMac(key);
+        if (!MessageDigest.isEqual(bytes(AuditChain.sign(mac, c.headerBody)), bytes(c.headerSig))) {
+            r.problems.add(r.target.name + ": chain header signature is invalid");
+            return -1;
+        }
+        for (int i = 0; i < c.size(); i++) {
+            if (!MessageDigest.isEqual(bytes(AuditChain.sign(mac, c.bodies.get(i))), bytes(c.sigs.get(i)))) {
+                // The writer may be halfway through the last line of the active chain
+                if (!(r.target.active && i == c.size() - 1)) {
+                    r.problems.add(r.target.name + ": checkpoint " + (i + 1) + " signature is invalid");
+                }
+                return i;
+            }
+        }
+        return c.size();
+    }
+
+    // Parts of the segment that no chain vouches for; cheap, so checked on every run
+    private void reportUnchained(Result r) {
+        AuditChain.Parsed c = r.chain;
+        Mac mac = AuditChain.newMac(key);
+        boolean anchored = false;
+        for (int i = 0; i < c.markerBodies.size(); i++) {
+            String body = c.markerBodies.get(i);
+            if (!MessageDigest.isEqual(bytes(AuditChain.sign(mac, body)), bytes(c.markerSigs.get(i)))) {
+                r.problems.add(r.target.name + ": chain marker signature is invalid");
+                continue;
+            }
+            String[] f = body.split("\t");
+            if (f[0].equals(AuditChain.ANCHOR)) {
+                anchored = true;
+                r.problems.add(r.target.name + ": audit chain restarted at byte " + f[1] + " (" + f[2]
+                        + "); bytes before it cannot be verified");
+            } else {
+                r.problems.add(r.target.name + ": bytes " + f[1] + "-" + f[2]
+                        + " were chained on restart without a checkpoint (unclean shutdown)");
+            }
+        }
+        if (c.start > 0 && !anchored) {
+            r.problems.add(r.target.name + ": bytes 0-" + c.start + " are not covered by the audit chain");
+        }
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    // Re-hash checkpoints from+1 .. valid-1 (from -1 means from the chain's start)
+    private void hashBlocks(Result r, int from, int valid) throws IOException {
+        AuditChain.Parsed c = r.chain;
+        long pos = from < 0 ? c.start : c.end(from);
+        byte[] prev = AuditChain.unhex(from < 0 ? c.prevHex : c.hashes.get(from));
+        boolean unbroken = true;
+        if (from >= 0) {
+            r.verifiedEnd = pos;
+            r.verifiedHash = c.hashes.get(from);
+        }
+
+        MessageDigest d = AuditChain.sha256();
+        byte[] buf = new byte[BUFFER];
+        try (InputStream in = openAt(r.target.file, pos)) {
+            for (int i = from + 1; i < valid; i++) {
+                long end = c.end(i);
+                byte[] h = AuditChain.hashBlock(d, prev, in, end - pos, buf);
+                if (h == null) {
+                    r.problems.add(r.target.name + ": ends before checkpoint " + (i + 1) + " at byte " + end
+                            + " (truncated)");
+                    return;
+                }
+                r.bytes += end - pos;
+                if (!AuditChain.hex(h).equals(c.hashes.get(i))) {
+                    r.problems.add(r.target.name + ": bytes " + pos + "-" + end + " do not match checkpoint " + (i + 1));
+                    unbroken = false;
+                } else if (unbroken) {
+                    r.verifiedEnd = end;
+                    r.verifiedHash = c.hashes.get(i);
+                }
+                // Carry on from the recorded hash to find any further damage
+                prev = AuditChain.unhex(c.hashes.get(i));
+                pos = end;
+            }
+
+            long rest = in.transferTo(OutputStream.nullOutputStream());
+            if (rest > 0 && r.target.active) {
+                r.pending = rest;
+            } else if (rest > 0) {
+                r.problems.add(r.target.name + ": " + rest + " bytes after the last checkpoint");
+            }
+        } catch (EOFException e) {
+            r.problems.add(r.target.name + ": shorter than the start of its chain (truncated)");
+        }
+    }
+
+    // Uncompressed content from the given offset
+    private static InputStream openAt(Path file, long pos) throws IOException {
+        if (file.getFileName().toString().endsWith(".gz")) {
+            InputStream in = new GZIPInputStream(Files.newInputStream(file), BUFFER);
+            in.skipNBytes(pos);
+            return in;
+        }
+        FileChannel ch = FileChannel.open(file, StandardOpenOption.READ);
+        if (ch.size() < pos) {
+            ch.close();
+            throw new EOFException();
+        }
+        ch.position(pos);
+        return Channels.newInputStream(ch);
+    }
+
+    // ---[ Verified state ]---
+
+    // chain id -> {end, hash}; lines with a bad signature are ignored
+    private Map<String, String[]> readState() throws IOException {
+        Map<String, String[]> state = new HashMap<>();
+        if (!Files.exists(statePath)) {
+            return state;
+        }
+        Mac mac = AuditChain.newMac(key);
+        for (String line : Files.readAllLines(statePath, StandardCharsets.UTF_8)) {
+            int cut = line.lastIndexOf('\t');
+            if (cut < 0) {
+                continue;
+            }
+            String body = line.substring(0, cut);
+            String[] f = body.split("\t");
+            if (f.length == 3 && MessageDigest.isEqual(bytes(AuditChain.sign(mac, body)), bytes(line.substring(cut + 1)))) {
+                state.put(f[0], new String[] {f[1], f[2]});
+            }
+        }
+        return state;
+    }
+
+    private void saveState(Map<String, String[]> state, List<Result> results) throws IOException {
+        Map<String, String[]> next = new HashMap<>();
+        for (Result r : results) {
+            if (r.chain == null) {
+                continue;
+            }
+            if (r.verifiedEnd >= 0) {
+                next.put(r.chain.id(), new String[] {Long.toString(r.verifiedEnd), r.verifiedHash});
+            } else if (state.containsKey(r.chain.id()) && r.problems.isEmpty()) {
+                next.put(r.chain.id(), state.get(r.chain.id()));
+            }
+        }
+        Mac mac = AuditChain.newMac(key);
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, String[]> e : next.entrySet()) {
+            String body = e.getKey() + "\t" + e.getValue()[0] + "\t" + e.getValue()[1];
+            sb.append(body).append('\t').append(AuditChain.sign(mac, body)).append('\n');
+        }
+        Path tmp = statePath.resolveSibling(statePath.getFileName() + ".tmp");
+        Files.writeString(tmp, sb.toString(), StandardCharsets.UTF_8);
+        Files.move(tmp, statePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static void main(String[] args) throws IOException {
+        boolean full = false;
+        String log = EventLogManager.LOG_FILE;
+        for (String a : args) {
+            if (a.equals("--full")) {
+                full = true;
+            } else {
+                log = a;
+            }
+        }
+        Report report = verify(log, full);
+        System.out.println(report);
+        if (!report.isOk()) {
+            System.exit(1);
+        }
+    }
+}
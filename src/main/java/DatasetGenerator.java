@@ -0,0 +1,419 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import security.PasswordHasher;
+
+/**
+ * DatasetGenerator
+ * Writes a synthetic data directory in the layout UserManager, ScrollManager and the
+ * event log use, at whatever scale is asked for:
+ *
+ *   <out>/users/<id>/...      username, name, email, phone, admin, password_*
+ *   <out>/scrolls/<id>/...    scroll_name, uploader_id, upload_timestamp, scroll_blob
+ *   <out>/event_logs.txt      activity by the same users on the same scrolls
+ *   <out>/dataset.properties  what was generated, read by LoadHarness --data
+ *
+ * Distributions follow what production catalogues look like: uploaders and event
+ * actors are Zipfian (a few users do most of the work), blob sizes are log-normal,
+ * and upload and event times come in bursts rather than evenly.
+ *
+ * Every record takes its values from a random generator seeded with the run seed
+ * and its own index, so the output is the same for a seed however many threads
+ * write it. Users and scrolls are written in parallel chunks; the event log is
+ * written alongside on its own thread.
+ *
+ * All users share one password (PBKDF2 is computed once, not per user).
+ *
+ *   java -cp build/classes/java/main DatasetGenerator --out vsas_data_big --users 1000000 --scrolls 5000000
+ */
+public final class DatasetGenerator {
+    private static final int CHUNK = 10_000;
+    private static final int BURSTS = 200;
+    static final String PROPERTIES = "dataset.properties";
+    private static final String[] FIRST = {
+        "Ada", "Brook", "Cyrus", "Dana", "Elio", "Faye", "Gus", "Hana", "Ivo", "Juno", "Kai", "Lena", "Milo", "Nia"
+    };
+    private static final String[] LAST = {
+        "Archer", "Baker", "Carter", "Dalton", "Ellis", "Fletcher", "Granger", "Hale", "Ingram", "Jarvis"
+    };
+    private static final String[] DOMAINS = { "example.org", "example.org", "example.org", "mail.test", "uni.test" };
+    private static final String[] WORDS = {
+        "ledger", "map", "decree", "ballad", "chronicle", "recipe", "treaty", "letter", "census", "almanac",
+        "psalm", "charter", "deed", "saga", "register", "atlas"
+    };
+    private static final String TEXT = "Lorem ipsum dolor sit amet, consectetur adipiscing elit, sed do eiusmod tempor "
+            + "incididunt ut labore et dolore magna aliqua.\n";
+
+    /**
+     * Options
+     * Generator settings, from the command line or set directly by tests.
+     */
+    static final class Options {
+        Path out = Path.of("vsas_data_synth");
+        int users = 10_000;
+        int scrolls = 100_000;
+        long events = 1_000_000;
+        long seed = 1;
+        int threads = Runtime.getRuntime().availableProcessors();
+        double zipf = 1.1;
+        long blobMedian = 8 * 1024;
+        double blobSigma = 1.0;
+        long blobMax = 16L * 1024 * 1024;
+        LocalDate start = LocalDate.of(2024, 1, 1);
+        int days = 365;
+        double adminShare = 0.001;
+        String password = "Synthetic-password-1";
+
+        static Options parse(String[] args) {
+            Options o = new Options();
+            for (int i = 0; i < args.length; i += 2) {
+                String a = args[i];
+                if (i + 1 >= args.length) {
+                    throw new IllegalArgumentException("Missing value for " + a);
+                }
+                String v = args[i + 1];
+                switch (a) {
+                    case "--out" -> o.out = Path.of(v);
+                    case "--users" -> o.users = Integer.parseInt(v);
+                    case "--scrolls" -> o.scrolls = Integer.parseInt(v);
+                    case "--events" -> o.events = Long.parseLong(v);
+                    case "--seed" -> o.seed = Long.parseLong(v);
+                    case "--threads" -> o.threads = Integer.parseInt(v);
+                    case "--zipf" -> o.zipf = Double.parseDouble(v);
+                    case "--blob-median" -> o.blobMedian = Long.parseLong(v);
+                    case "--blob-sigma" -> o.blobSigma = Double.parseDouble(v);
+                    case "--start" -> o.start = LocalDate.parse(v);
+                    case "--days" -> o.days = Integer.parseInt(v);
+                    case "--password" -> o.password = v;
+                    default -> throw new IllegalArgumentException("Unknown option: " + a);
+                }
+            }
+            if (o.users < 1 || o.scrolls < 0 || o.events < 0 || o.threads < 1 || o.days < 1
+                    || o.zipf <= 0 || o.blobMedian < 1 || o.blobSigma < 0) {
+                throw new IllegalArgumentException("Counts, threads and days must be positive");
+            }
+            return o;
+        }
+    }
+
+    /**
+     * Zipf
+     * Ranks 1..n with P(k) proportional to 1/k^s, by rejection-inversion (Hörmann and
+     * Derflinger), so sampling is O(1) with no table however large n is.
+     */
+    static final class Zipf {
+        private final long n;
+        private final double s;
+        private final double hX1;
+        private final double hN;
+        private final double threshold;
+
+        Zipf(long n, double s) {
+            this.n = n;
+            this.s = s;
+            this.hX1 = bigH(1.5) - 1.0;
+            this.hN = bigH(n + 0.5);
+            this.threshold = 2.0 - bigHInverse(bigH(2.5) - h(2.0));
+        }
+
+        long sample(SplittableRandom r) {
+            while (true) {
+                double u = hN + r.nextDouble() * (hX1 - hN);
+                double x = bigHInverse(u);
+                long k = Math.max(1, Math.min(n, (long) (x + 0.5)));
+                if (k - x <= threshold || u >= bigH(k + 0.5) - h(k)) {
+                    return k;
+                }
+            }
+        }
+
+        private double h(double x) {
+            return Math.exp(-s * Math.log(x));
+        }
+
+        // Integral of h, (x^(1-s) - 1) / (1-s), written to stay accurate when s is near 1
+        private double bigH(double x) {
+            double log = Math.log(x);
+            return expm1OverX((1.0 - s) * log) * log;
+        }
+
+        private double bigHInverse(double x) {
+            double t = x * (1.0 - s);
+            if (t < -1.0) {
+                t = -1.0;
+            }
+            return Math.exp(log1pOverX(t) * x);
+        }
+
+        private static double expm1OverX(double x) {
+            return Math.abs(x) > 1e-8 ? Math.expm1(x) / x : 1.0 + x * 0.5 * (1.0 + x / 3.0 * (1.0 + 0.25 * x));
+        }
+
+        private static double log1pOverX(double x) {
+            return Math.abs(x) > 1e-8 ? Math.log1p(x) / x : 1.0 - x * (0.5 - x * (1.0 / 3.0 - 0.25 * x));
+        }
+    }
+
+    private final Options options;
+    private final Path usersRoot;
+    private final Path scrollsRoot;
+    private final long startMs;
+    private final long spanMs;
+    private final long[] bursts = new long[BURSTS];
+    private final byte[] blobText;
+    private final UserManager.PasswordRecord password;
+    private final AtomicLong written = new AtomicLong();
+
+    private DatasetGenerator(Options options) {
+        this.options = options;
+        this.usersRoot = options.out.resolve("users");
+        this.scrollsRoot = options.out.resolve("scrolls");
+        this.startMs = options.start.atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+        this.spanMs = TimeUnit.DAYS.toMillis(options.days);
+
+        SplittableRandom r = new SplittableRandom(options.seed);
+        for (int i = 0; i < BURSTS; i++) {
+            bursts[i] = startMs + r.nextLong(spanMs);
+        }
+
+        int max = (int) Math.min(options.blobMax, Math.max(options.blobMedian * 64, 64 * 1024));
+        StringBuilder sb = new StringBuilder(max + TEXT.length());
+        while (sb.length() < max) {
+            sb.append(TEXT);
+        }
+        this.blobText = sb.toString().getBytes(StandardCharsets.UTF_8);
+
+        // Salt from the seed rather than SecureRandom, so the files are the same on every run
+        byte[] salt = new byte[PasswordHasher.DEFAULT_SALT_BYTES];
+        r.nextBytes(salt);
+        byte[] derived = PasswordHasher.deriveKey(options.password.toCharArray(), salt,
+                PasswordHasher.DEFAULT_ITERATIONS, PasswordHasher.DEFAULT_KEY_LENGTH_BITS);
+        this.password = new UserManager.PasswordRecord(PasswordHasher.toBase64(derived), PasswordHasher.toBase64(salt),
+                PasswordHasher.DEFAULT_ALGO, PasswordHasher.DEFAULT_ITERATIONS);
+    }
+
+    static String userId(long index) {
+        return String.format("user%07d", index);
+    }
+
+    static String scrollId(long index) {
+        return String.format("s%08d", index);
+    }
+
+    // Independent generator for record <index> of a kind, the same on any thread
+    private SplittableRandom randomFor(long kind, long index) {
+        return new SplittableRandom(options.seed * 0x9E3779B97F4A7C15L + kind * 0xC2B2AE3D27D4EB4FL + index);
+    }
+
+    public static void generate(Options options) throws IOException, InterruptedException {
+        new DatasetGenerator(options).run();
+    }
+
+    private void run() throws IOException, InterruptedException {
+        for (Path root : List.of(usersRoot, scrollsRoot)) {
+            if (Files.isDirectory(root)) {
+                try (var entries = Files.list(root)) {
+                    if (entries.findAny().isPresent()) {
+                        throw new IOException(root + " is not empty; generate into a new directory");
+                    }
+                }
+            }
+            Files.createDirectories(root);
+        }
+
+        long began = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(options.threads);
+        try {
+            List<Future<?>> work = new ArrayList<>();
+            work.add(pool.submit(() -> {
+                writeEventLog();
+                return null;
+            }));
+            for (int from = 0; from < options.users; from += CHUNK) {
+                int first = from;
+                work.add(pool.submit(() -> {
+                    writeUsers(first, Math.min(options.users, first + CHUNK));
+                    return null;
+                }));
+            }
+            for (int from = 0; from < options.scrolls; from += CHUNK) {
+                int first = from;
+                work.add(pool.submit(() -> {
+                    writeScrolls(first, Math.min(options.scrolls, first + CHUNK));
+                    return null;
+                }));
+            }
+            for (Future<?> f : work) {
+                f.get();
+            }
+        } catch (ExecutionException e) {
+            throw new IOException("Dataset generation failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        EventLogSegments.awaitBackgroundWork();
+        writeProperties();
+
+        System.out.printf("Generated %d users, %d scrolls and %d events (%.1f MB of files) in %s in %.1f s%n",
+                options.users, options.scrolls, options.events, written.get() / 1e6, options.out,
+                (System.nanoTime() - began) / 1e9);
+    }
+
+    // ---[ Users ]---
+    private void writeUsers(int from, int to) throws IOException {
+        for (int i = from; i < to; i++) {
+            SplittableRandom r = randomFor(1, i);
+            String id = userId(i);
+            Path dir = Files.createDirectory(usersRoot.resolve(id));
+            String first = FIRST[r.nextInt(FIRST.length)];
+            String last = LAST[r.nextInt(LAST.length)];
+            write(dir, "username", id);
+            write(dir, "name", first + " " + last);
+            write(dir, "email", id + "@" + DOMAINS[r.nextInt(DOMAINS.length)]);
+            write(dir, "phone", String.format("04%08d", r.nextInt(100_000_000)));
+            write(dir, "admin", Boolean.toString(i == 0 || r.nextDouble() < options.adminShare));
+            write(dir, "password_hash", password.hashB64);
+            write(dir, "password_salt", password.saltB64);
+            write(dir, "password_algo", password.algo);
+            write(dir, "password_iters", Integer.toString(password.iterations));
+        }
+    }
+
+    // ---[ Scrolls ]---
+    private void writeScrolls(int from, int to) throws IOException {
+        Zipf uploaders = new Zipf(options.users, options.zipf);
+        for (int i = from; i < to; i++) {
+            SplittableRandom r = randomFor(2, i);
+            Path dir = Files.createDirectory(scrollsRoot.resolve(scrollId(i)));
+            write(dir, "scroll_name", WORDS[r.nextInt(WORDS.length)] + " " + WORDS[r.nextInt(WORDS.length)] + " " + i);
+            write(dir, "uploader_id", userId(uploaders.sample(r) - 1));
+
+            Path stamp = Files.createFile(dir.resolve("upload_timestamp"));
+            Files.setLastModifiedTime(stamp, FileTime.fromMillis(burstyTime(r)));
+
+            // Log-normal around the median, e.g. sigma 1 puts 95% within 7x either side
+            double size = options.blobMedian * Math.exp(options.blobSigma * r.nextGaussian());
+            int len = (int) Math.max(1, Math.min(size, blobText.length));
+            try (OutputStream os = Files.newOutputStream(dir.resolve("scroll_blob"))) {
+                os.write(blobText, 0, len);
+            }
+            written.addAndGet(len);
+        }
+    }
+
+    // Most uploads cluster within hours of one of the burst centres, the rest are spread out
+    private long burstyTime(SplittableRandom r) {
+        if (r.nextDouble() < 0.3) {
+            return startMs + r.nextLong(spanMs);
+        }
+        long t = bursts[r.nextInt(BURSTS)] + (long) (-Math.log(1 - r.nextDouble()) * TimeUnit.HOURS.toMillis(3));
+        return Math.min(t, startMs + spanMs - 1);
+    }
+
+    private void write(Path dir, String attribute, String value) throws IOException {
+        byte[] b = value.getBytes(StandardCharsets.UTF_8);
+        Files.write(dir.resolve(attribute), b);
+        written.addAndGet(b.length);
+    }
+
+    // ---[ Event log ]---
+    // Time-ordered, so the writer runs on one thread. Arrivals switch between a calm
+    // and a busy rate (20x), which gives the bursts a real log has.
+    private void writeEventLog() throws IOException {
+        if (options.events == 0) {
+            return;
+        }
+        SplittableRandom r = randomFor(3, 0);
+        Zipf actors = new Zipf(options.users, options.zipf);
+        Zipf popular = options.scrolls > 0 ? new Zipf(options.scrolls, options.zipf) : null;
+
+        // Half the time in each state on average; the calm gap is chosen so the events
+        // fill about 95% of the span
+        double meanGap = (double) spanMs / options.events;
+        double calmGap = 0.95 * meanGap / 0.525;
+        double busyGap = calmGap / 20;
+        boolean busy = false;
+        double t = startMs;
+
+        EventLogConfig config = new EventLogConfig().bufferSize(65536).batchSize(4096).segmentAgeMs(0);
+        EventLogWriter w = EventLogWriter.open(options.out.resolve("event_logs.txt").toString(), config);
+        try {
+            for (long n = 0; n < options.events; n++) {
+                if (r.nextDouble() < 0.001) {
+                    busy = !busy;
+                }
+                t += -Math.log(1 - r.nextDouble()) * (busy ? busyGap : calmGap);
+                long now = Math.min((long) t, startMs + spanMs - 1);
+
+                String user = userId(actors.sample(r) - 1);
+                String scroll = popular != null ? scrollId(popular.sample(r) - 1) : "none";
+                int p = r.nextInt(100);
+                if (p < 45) {
+                    w.append(now, user, user, "VIEW_SCROLL", "Viewed scroll ID: " + scroll);
+                } else if (p < 60) {
+                    w.append(now, user, user, "SEARCH_SCROLL", "Searched scroll name: " + WORDS[r.nextInt(WORDS.length)]);
+                } else if (p < 72) {
+                    w.append(now, user, user, "LOGIN_SUCCESS", "User logged in");
+                } else if (p < 80) {
+                    w.append(now, user, user, "LOGOUT", "User logged out");
+                } else if (p < 90) {
+                    w.append(now, user, user, "DOWNLOAD_SCROLL", "Downloaded scroll ID: " + scroll);
+                } else if (p < 94) {
+                    w.append(now, user, user, "ADD_SCROLL", "Created scroll ID: " + scroll);
+                } else if (p < 97) {
+                    w.append(now, user, user, "UPDATE_SCROLL", "Updated scroll ID: " + scroll);
+                } else if (p < 99) {
+                    w.append(now, "UNKNOWN", user, "LOGIN_FAILED", "Incorrect password");
+                } else {
+                    w.append(now, userId(0), userId(0), "ADMIN_VIEW_USERS", "Viewed all users");
+                }
+            }
+        } finally {
+            w.close();
+        }
+    }
+
+    // Plain key=value lines (no timestamp comment, unlike Properties.store)
+    private void writeProperties() throws IOException {
+        List<String> lines = List.of(
+                "users=" + options.users,
+                "scrolls=" + options.scrolls,
+                "events=" + options.events,
+                "seed=" + options.seed,
+                "user.format=user%07d",
+                "admin=" + userId(0),
+                "password=" + options.password);
+        Files.write(options.out.resolve(PROPERTIES), lines);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options;
+        try {
+            options = Options.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: DatasetGenerator [--out DIR] [--users N] [--scrolls N] [--events N] [--seed N]");
+            System.err.println("                        [--threads N] [--zipf S] [--blob-median BYTES] [--blob-sigma S]");
+            System.err.println("                        [--start YYYY-MM-DD] [--days N] [--password P]");
+            System.exit(2);
+            return;
+        }
+        generate(options);
+        System.exit(0);
+    }
+}
@@ -0,0 +1,67 @@
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * EventCategory
+ * What kind of operation an event action records. Used to pick the EventPolicy
+ * that decides whether the event is written to the log.
+ *
+ * SECURITY covers sign-in, every account change, every admin action (including
+ * admin views such as VIEW_SCROLL_STATS and VIEW_AS_*), deletes and restores;
+ * these are always written. READ covers the high-volume browse actions, viewing
+ * and searching scrolls. WRITE covers scroll changes and downloads.
+ *
+ * Every action the application logs is listed below; a new action must be added
+ * here. A "_FAILED", "_DENIED" or "_ERROR" variant belongs to its action's
+ * category. Anything unlisted is a WRITE, which is written by default.
+ */
+public enum EventCategory {
+    SECURITY,
+    WRITE,
+    READ;
+
+    private static final Map<String, EventCategory> ACTIONS = new HashMap<>();
+
+    static {
+        // Sign-in and accounts (UserManagerProxy)
+        register(SECURITY, "LOGIN", "LOGIN_SUCCESS", "LOGOUT", "CREATE_USER", "UPDATE_PROFILE",
+                "UPDATE_PASSWORD", "CHANGE_PASSWORD", "CHANGE_USER_ID", "VIEW_ALL_USERS");
+        // Admin actions (AdminManagerProxy)
+        register(SECURITY, "ADMIN_VIEW_USERS", "ADMIN_COUNT_USERS", "ADMIN_CREATE_USER", "ADMIN_IMPORT_USERS",
+                "ADMIN_DELETE_USER", "ADMIN_DELETION_STATUS", "ADMIN_UPDATE_ROLE", "VIEW_SCROLL_STATS",
+                "VIEW_AS_USER", "VIEW_AS_GUEST");
+        // Destructive scroll actions and the log's own records
+        register(SECURITY, "DELETE_SCROLL", "RESTORE_SCROLL", "SYSTEM_AUDIT_CHAIN_RESTARTED");
+
+        register(WRITE, "ADD_SCROLL", "UPDATE_SCROLL", "UPDATE_SCROLL_FILE", "CHANGE_SCROLL_ID", "DOWNLOAD_SCROLL");
+
+        register(READ, "VIEW_SCROLL", "SEARCH_SCROLL", "VIEW_ALL_SCROLLS");
+    }
+
+    private static void register(EventCategory category, String... actions) {
+        for (String action : actions) {
+            ACTIONS.put(action, category);
+        }
+    }
+
+    public static EventCategory of(String action) {
+        if (action == null) {
+            return WRITE;
+        }
+        EventCategory c = ACTIONS.get(action);
+        if (c == null) {
+            c = ACTIONS.get(withoutOutcome(action));
+        }
+        return c == null ? WRITE : c;
+    }
+
+    // "ADMIN_DELETE_USER_DENIED" -> "ADMIN_DELETE_USER"
+    private static String withoutOutcome(String action) {
+        for (String suffix : new String[] {"_FAILED", "_DENIED", "_ERROR"}) {
+            if (action.endsWith(suffix)) {
+                return action.substring(0, action.length() - suffix.length());
+            }
+        }
+        return action;
+    }
+}
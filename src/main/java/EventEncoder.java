@@ -0,0 +1,188 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * EventEncoder
+ * Writes one event as a JSON line straight into a heap ByteBuffer:
+ *
+ *   {"ts":1700000000123,"seq":42,"time":"2023-11-14 22:13:20.123","userId":"u1",...}
+ *
+ * Strings are escaped and UTF-8 encoded char by char into the buffer's array, and
+ * numbers are written digit by digit, so encoding an event allocates nothing once
+ * the buffer is big enough. The "yyyy-MM-dd HH:mm:ss" part of "time" is formatted
+ * at most once per second and reused for every event in that second.
+ *
+ * Not thread-safe: each writing thread keeps its own encoder.
+ */
+final class EventEncoder {
+    private static final DateTimeFormatter SECOND_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] TS = ascii("{\"ts\":");
+    private static final byte[] SEQ = ascii(",\"seq\":");
+    private static final byte[] TIME = ascii(",\"time\":\"");
+    private static final byte[] USER_ID = ascii(",\"userId\":");
+    private static final byte[] USERNAME = ascii(",\"username\":");
+    private static final byte[] ACTION = ascii(",\"action\":");
+    private static final byte[] DETAILS = ascii(",\"details\":");
+    private static final byte[] NULL = ascii("null");
+
+    // Longest fixed part of a line: keys, punctuation, two longs and the time
+    private static final int FIXED_BYTES = 192;
+
+    private final ZoneId zone;
+    private long cachedSecond = Long.MIN_VALUE;
+    private final byte[] secondPrefix = new byte[19];
+
+    EventEncoder() {
+        this(ZoneId.systemDefault());
+    }
+
+    EventEncoder(ZoneId zone) {
+        this.zone = zone;
+    }
+
+    /**
+     * Appends the event and a trailing newline at buf's position. Returns the buffer
+     * to keep using, which is a larger copy if buf did not have room. A negative
+     * sequence number is left out of the line.
+     */
+    ByteBuffer encode(ByteBuffer buf, long timeMillis, long sequence, String userId, String username,
+                      String action, String details) {
+        int worst = FIXED_BYTES + 6 * (length(userId) + length(username) + length(action) + length(details));
+        if (buf.remaining() < worst) {
+            ByteBuffer bigger = ByteBuffer.allocate(Math.max(buf.capacity() * 2, buf.position() + worst));
+            buf.flip();
+            bigger.put(buf);
+            buf = bigger;
+        }
+
+        byte[] a = buf.array();
+        int p = buf.arrayOffset() + buf.position();
+        p = put(a, p, TS);
+        p = putLong(a, p, timeMillis);
+        if (sequence >= 0) {
+            p = put(a, p, SEQ);
+            p = putLong(a, p, sequence);
+        }
+        p = put(a, p, TIME);
+        p = putTime(a, p, timeMillis);
+        a[p++] = '"';
+        p = put(a, p, USER_ID);
+        p = putString(a, p, userId);
+        p = put(a, p, USERNAME);
+        p = putString(a, p, username);
+        p = put(a, p, ACTION);
+        p = putString(a, p, action);
+        p = put(a, p, DETAILS);
+        p = putString(a, p, details);
+        a[p++] = '}';
+        a[p++] = '\n';
+        buf.position(p - buf.arrayOffset());
+        return buf;
+    }
+
+    private int putTime(byte[] a, int p, long millis) {
+        long second = Math.floorDiv(millis, 1000);
+        if (second != cachedSecond) {
+            String s = SECOND_FORMAT.format(Instant.ofEpochSecond(second).atZone(zone));
+            for (int i = 0; i < secondPrefix.length; i++) {
+                secondPrefix[i] = (byte) s.charAt(i); // digits, '-', ' ' and ':' only
+            }
+            cachedSecond = second;
+        }
+        System.arraycopy(secondPrefix, 0, a, p, secondPrefix.length);
+        p += secondPrefix.length;
+
+        int ms = Math.floorMod(millis, 1000);
+        a[p++] = '.';
+        a[p++] = (byte) ('0' + ms / 100);
+        a[p++] = (byte) ('0' + ms / 10 % 10);
+        a[p++] = (byte) ('0' + ms % 10);
+        return p;
+    }
+
+    private static int put(byte[] a, int p, byte[] bytes) {
+        System.arraycopy(bytes, 0, a, p, bytes.length);
+        return p + bytes.length;
+    }
+
+    private static int putLong(byte[] a, int p, long v) {
+        if (v == Long.MIN_VALUE) {
+            return put(a, p, ascii(Long.toString(v)));
+        }
+        if (v < 0) {
+            a[p++] = '-';
+            v = -v;
+        }
+        int digits = 1;
+        for (long t = v; t >= 10; t /= 10) {
+            digits++;
+        }
+        for (int i = p + digits - 1; i >= p; i--) {
+            a[i] = (byte) ('0' + v % 10);
+            v /= 10;
+        }
+        return p + digits;
+    }
+
+    // JSON string literal, UTF-8 encoded; unpaired surrogates become '?'
+    private static int putString(byte[] a, int p, String s) {
+        if (s == null) {
+            return put(a, p, NULL);
+        }
+        a[p++] = '"';
+        int n = s.length();
+        for (int i = 0; i < n; i++) {
+            char c = s.charAt(i);
+            if (c >= 0x20 && c < 0x80) {
+                if (c == '"' || c == '\\') {
+                    a[p++] = '\\';
+                }
+                a[p++] = (byte) c;
+            } else if (c < 0x20) {
+                a[p++] = '\\';
+                switch (c) {
+                    case '\n' -> a[p++] = 'n';
+                    case '\r' -> a[p++] = 'r';
+                    case '\t' -> a[p++] = 't';
+                    default -> {
+                        a[p++] = 'u';
+                        a[p++] = '0';
+                        a[p++] = '0';
+                        a[p++] = HEX[c >> 4];
+                        a[p++] = HEX[c & 0xF];
+                    }
+                }
+            } else if (c < 0x800) {
+                a[p++] = (byte) (0xC0 | (c >> 6));
+                a[p++] = (byte) (0x80 | (c & 0x3F));
+            } else if (!Character.isSurrogate(c)) {
+                a[p++] = (byte) (0xE0 | (c >> 12));
+                a[p++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                a[p++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                a[p++] = (byte) (0xF0 | (cp >> 18));
+                a[p++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                a[p++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                a[p++] = (byte) (0x80 | (cp & 0x3F));
+            } else {
+                a[p++] = '?';
+            }
+        }
+        a[p++] = '"';
+        return p;
+    }
+
+    private static int length(String s) {
+        return s == null ? 0 : s.length();
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,176 @@
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * EventLogConfig
+ * Settings for the event log writer. Defaults can be overridden with system
+ * properties (e.g. -Dvsas.eventlog.flushIntervalMs=50) or set directly and
+ * handed to EventLogManager.setConfig.
+ *
+ * Sampling policies (see EventPolicy) take effect on the next logged event.
+ * SECURITY events and warnings are always written and cannot be sampled.
+ */
+public class EventLogConfig {
+    private boolean async = true;
+    private int bufferSize = 8192;
+    private int batchSize = 256;
+    private long flushIntervalMs = 100;
+    private boolean fsyncOnShutdown = true;
+
+    // Segments (0 disables a limit)
+    private long segmentBytes = 64L * 1024 * 1024;
+    private long segmentAgeMs = 24L * 60 * 60 * 1000;
+    private boolean compressSealed = true;
+    private int retainSegments = 0;
+    private long retainBytes = 0;
+    private long retainMs = 0;
+    private int indexEvery = 1024;
+
+    // Tamper evidence (see AuditChain)
+    private boolean auditChain = true;
+    private long chainBlockBytes = 1024 * 1024;
+
+    // Which events are written, per category
+    private final Map<EventCategory, EventPolicy> policies = new EnumMap<>(EventCategory.class);
+    {
+        policies.put(EventCategory.SECURITY, EventPolicy.ALWAYS);
+        policies.put(EventCategory.WRITE, EventPolicy.ALWAYS);
+        policies.put(EventCategory.READ, EventPolicy.sample(0.1));
+    }
+
+    public static EventLogConfig fromSystemProperties() {
+        EventLogConfig c = new EventLogConfig();
+        c.async = Boolean.parseBoolean(System.getProperty("vsas.eventlog.async", "true"));
+        c.bufferSize(Integer.getInteger("vsas.eventlog.bufferSize", c.bufferSize));
+        c.batchSize(Integer.getInteger("vsas.eventlog.batchSize", c.batchSize));
+        c.flushIntervalMs(Long.getLong("vsas.eventlog.flushIntervalMs", c.flushIntervalMs));
+        c.fsyncOnShutdown = Boolean.parseBoolean(System.getProperty("vsas.eventlog.fsyncOnShutdown", "true"));
+        c.segmentBytes(Long.getLong("vsas.eventlog.segmentBytes", c.segmentBytes));
+        c.segmentAgeMs(Long.getLong("vsas.eventlog.segmentAgeMs", c.segmentAgeMs));
+        c.compressSealed = Boolean.parseBoolean(System.getProperty("vsas.eventlog.compress", "true"));
+        c.retainSegments(Integer.getInteger("vsas.eventlog.retainSegments", c.retainSegments));
+        c.retainBytes(Long.getLong("vsas.eventlog.retainBytes", c.retainBytes));
+        c.retainMs(Long.getLong("vsas.eventlog.retainMs", c.retainMs));
+        c.indexEvery(Integer.getInteger("vsas.eventlog.indexEvery", c.indexEvery));
+        c.auditChain = Boolean.parseBoolean(System.getProperty("vsas.eventlog.auditChain", "true"));
+        c.chainBlockBytes(Long.getLong("vsas.eventlog.chainBlockBytes", c.chainBlockBytes));
+        for (EventCategory category : EventCategory.values()) {
+            String policy = System.getProperty("vsas.eventlog.policy." + category.name().toLowerCase());
+            if (policy != null) {
+                try {
+                    c.policy(category, EventPolicy.parse(policy));
+                } catch (IllegalArgumentException e) {
+                    System.err.println("Ignoring vsas.eventlog.policy." + category.name().toLowerCase() + ": "
+                            + e.getMessage());
+                }
+            }
+        }
+        return c;
+    }
+
+    // false writes each event on the caller's thread (no background writer)
+    public EventLogConfig async(boolean async) {
+        this.async = async;
+        return this;
+    }
+
+    // Ring buffer capacity, rounded up to a power of two
+    public EventLogConfig bufferSize(int size) {
+        this.bufferSize = Integer.highestOneBit(Math.max(2, size) * 2 - 1);
+        return this;
+    }
+
+    // Events written per channel write once this many are waiting
+    public EventLogConfig batchSize(int size) {
+        this.batchSize = Math.max(1, size);
+        return this;
+    }
+
+    // Longest an event waits in the buffer before being written
+    public EventLogConfig flushIntervalMs(long ms) {
+        this.flushIntervalMs = Math.max(1, ms);
+        return this;
+    }
+
+    public EventLogConfig fsyncOnShutdown(boolean fsync) {
+        this.fsyncOnShutdown = fsync;
+        return this;
+    }
+
+    // Seal the active segment once it reaches this size
+    public EventLogConfig segmentBytes(long bytes) {
+        this.segmentBytes = Math.max(0, bytes);
+        return this;
+    }
+
+    // Seal the active segment once its first event is this old
+    public EventLogConfig segmentAgeMs(long ms) {
+        this.segmentAgeMs = Math.max(0, ms);
+        return this;
+    }
+
+    // gzip sealed segments in the background
+    public EventLogConfig compressSealed(boolean compress) {
+        this.compressSealed = compress;
+        return this;
+    }
+
+    // Retention: whole sealed segments are dropped, oldest first, past any of these
+    public EventLogConfig retainSegments(int count) {
+        this.retainSegments = Math.max(0, count);
+        return this;
+    }
+
+    public EventLogConfig retainBytes(long bytes) {
+        this.retainBytes = Math.max(0, bytes);
+        return this;
+    }
+
+    public EventLogConfig retainMs(long ms) {
+        this.retainMs = Math.max(0, ms);
+        return this;
+    }
+
+    // Events per block of a sealed segment's time index (and per gzip member)
+    public EventLogConfig indexEvery(int events) {
+        this.indexEvery = Math.max(1, events);
+        return this;
+    }
+
+    // Keep a signed hash chain over everything written
+    public EventLogConfig auditChain(boolean enabled) {
+        this.auditChain = enabled;
+        return this;
+    }
+
+    // Bytes between two signed checkpoints of the hash chain
+    public EventLogConfig chainBlockBytes(long bytes) {
+        this.chainBlockBytes = Math.max(1, bytes);
+        return this;
+    }
+
+    // SECURITY events must always be written
+    public EventLogConfig policy(EventCategory category, EventPolicy policy) {
+        if (category == EventCategory.SECURITY && policy != EventPolicy.ALWAYS) {
+            throw new IllegalArgumentException("Security events cannot be sampled");
+        }
+        policies.put(category, policy);
+        return this;
+    }
+
+    public boolean isAsync() { return async; }
+    public int getBufferSize() { return bufferSize; }
+    public int getBatchSize() { return Math.min(batchSize, bufferSize); }
+    public long getFlushIntervalMs() { return flushIntervalMs; }
+    public boolean isFsyncOnShutdown() { return fsyncOnShutdown; }
+    public long getSegmentBytes() { return segmentBytes; }
+    public long getSegmentAgeMs() { return segmentAgeMs; }
+    public boolean isCompressSealed() { return compressSealed; }
+    public int getRetainSegments() { return retainSegments; }
+    public long getRetainBytes() { return retainBytes; }
+    public long getRetainMs() { return retainMs; }
+    public int getIndexEvery() { return indexEvery; }
+    public boolean isAuditChain() { return auditChain; }
+    public long getChainBlockBytes() { return chainBlockBytes; }
+    public EventPolicy getPolicy(EventCategory category) { return policies.get(category); }
+}
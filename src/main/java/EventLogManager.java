@@ -1,19 +1,47 @@
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
-import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+import metrics.EventLogAppendEvent;
+import metrics.Metrics;
 
 public class EventLogManager {
-    protected static String LOG_FILE = "./event_logs.txt";
+    protected static String LOG_FILE = System.getProperty("vsas.eventlog.file", "./event_logs.txt");
     protected static EventLogManager instance;
 
+    static {
+        // Drain buffered events before the JVM exits
+        Runtime.getRuntime().addShutdownHook(new Thread(EventLogWriter::closeAll, "event-log-shutdown"));
+    }
+
+    private volatile EventLogConfig config = EventLogConfig.fromSystemProperties();
+    private volatile EventLogWriter writer;
+
+    // Rolling counts for the log file named by statsFile
+    private volatile EventStats stats = new EventStats();
+    private volatile String statsFile;
+    private volatile Thread statsRebuild;
+
+    // Events counted but not written because of their category's policy, per action
+    private final ConcurrentHashMap<String, LongAdder> suppressed = new ConcurrentHashMap<>();
+
     protected EventLogManager() {}
 
-    public static EventLogManager getInstance() {
+    static {
+        Metrics.gauge("vsas_eventlog_queue_depth", "Events waiting for the event log writer", () -> {
+            EventLogManager m = instance;
+            return m == null ? 0 : m.getQueueDepth();
+        });
+    }
+
+    public static synchronized EventLogManager getInstance() {
         if (instance == null) {
             instance = new EventLogManager();
         }
@@ -21,36 +49,209 @@ public class EventLogManager {
     }
 
     public void log(String userId, String username, String action, String details) {
-        File logFile = new File(LOG_FILE);
-        logFile.getParentFile().mkdirs();
-
-        EventLogger entry = new EventLogger(userId, username, action, details);
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(LOG_FILE, true))) {
-            writer.write(entry.toString());
-            writer.newLine();
+        EventLogAppendEvent event = new EventLogAppendEvent();
+        event.begin();
+        long now = System.currentTimeMillis();
+        EventLogWriter w = null;
+        boolean written = false;
+        try {
+            w = writer();
+            stats.record(now, userId, action);
+            if (!shouldWrite(action)) {
+                suppressed.computeIfAbsent(action == null ? "UNKNOWN" : action, k -> new LongAdder()).increment();
+                return;
+            }
+            w.append(now, userId, username, action, details);
+            written = true;
         } catch (IOException e) {
             System.err.println("Failed to write event log: " + e.getMessage());
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.action = action;
+                event.category = EventCategory.of(action).name();
+                event.written = written;
+                event.queueDepth = w == null ? 0 : w.queueDepth();
+                event.commit();
+            }
+        }
+    }
+
+    // Security events and warnings are always written; others follow their category's policy
+    private boolean shouldWrite(String action) {
+        EventCategory category = EventCategory.of(action);
+        if (category == EventCategory.SECURITY || EventSeverity.of(action) == EventSeverity.WARNING) {
+            return true;
+        }
+        return config.getPolicy(category).shouldWrite();
+    }
+
+    // Number of events per action that were counted but not written, highest first
+    public Map<String, Long> getSuppressedCounts() {
+        Map<String, Long> out = new LinkedHashMap<>();
+        suppressed.entrySet().stream()
+                .sorted((a, b) -> Long.compare(b.getValue().sum(), a.getValue().sum()))
+                .forEach(e -> out.put(e.getKey(), e.getValue().sum()));
+        return out;
+    }
+
+    // Lock-free once the writer for the current LOG_FILE is open
+    private EventLogWriter writer() throws IOException {
+        EventLogWriter w = writer;
+        if (w != null && w.isOpen() && w.isFor(LOG_FILE)) {
+            return w;
+        }
+        synchronized (this) {
+            w = writer;
+            if (w == null || !w.isOpen() || !w.isFor(LOG_FILE)) {
+                if (w != null) {
+                    w.close();
+                }
+                w = EventLogWriter.open(LOG_FILE, config);
+                writer = w;
+                if (!LOG_FILE.equals(statsFile)) {
+                    startStatsRebuild(w);
+                }
+            }
+            return w;
+        }
+    }
+
+    public long getQueueDepth() {
+        EventLogWriter w = writer;
+        return w == null ? 0 : w.queueDepth();
+    }
+
+    // Wait until every event logged so far has reached the file
+    public void flush() {
+        EventLogWriter w = writer;
+        if (w != null) {
+            w.flush();
+        }
+    }
+
+    // Drain and close the writer; the next log call opens a new one
+    public synchronized void shutdown() {
+        if (writer != null) {
+            writer.close();
+            writer = null;
         }
     }
 
+    // Applies to the next writer; call shutdown() first to switch immediately
+    public void setConfig(EventLogConfig config) {
+        this.config = config;
+    }
+
+    // Every event across all segments, oldest first, in display form
     public List<String> getAllLogs() {
+        flush();
         List<String> logs = new ArrayList<>();
 
-        File logFile = new File(LOG_FILE);
-        if (!logFile.exists()) {
-            return logs;
+        try (Stream<String> lines = segments().lines()) {
+            lines.forEach(line -> {
+                EventLogger e = EventLogger.parse(line);
+                logs.add(e == null ? line : e.toString());
+            });
+        } catch (UncheckedIOException e) {
+            System.err.println("Failed to read logs: " + e.getCause().getMessage());
         }
+        return logs;
+    }
 
-        try (BufferedReader reader = new BufferedReader(new FileReader(LOG_FILE))) {
-            String line;
-            while ((line = reader.readLine()) != null) logs.add(line);
+    // Events matching the query, oldest first, up to its limit
+    // Segments whose index or time range rules them out are not read at all
+    public List<EventLogger> query(EventQuery q) {
+        List<EventLogger> out = new ArrayList<>();
+
+        try (Stream<EventLogger> events = stream(q)) {
+            events.forEach(out::add);
+        } catch (UncheckedIOException e) {
+            System.err.println("Failed to read logs: " + e.getCause().getMessage());
+        }
+        return out;
+    }
+
+    // Lazily read events matching the query, oldest first; close the stream when done
+    public Stream<EventLogger> stream(EventQuery q) {
+        flush();
+        return segments().lines(q)
+                .filter(q::mayMatchLine)
+                .map(EventLogger::parse)
+                .filter(e -> e != null && q.matches(e))
+                .limit(q.getLimit());
+    }
+
+    // Events matching the query, newest first, read backward from the end of the log
+    public EventLogReader readBackward(EventQuery q) {
+        flush();
+        return EventLogReader.backward(segments(), q);
+    }
+
+    // Segments of the current LOG_FILE, from the open writer if there is one
+    EventLogSegments segments() {
+        EventLogWriter w = writer;
+        if (w != null && w.isOpen() && w.isFor(LOG_FILE)) {
+            return w.getSegments();
+        }
+        return EventLogSegments.load(Path.of(LOG_FILE));
+    }
+
+    // Counts for the last `minutes` minutes (at most EventStats.WINDOW_MINUTES)
+    public EventStats.Snapshot getStats(int minutes) {
+        try {
+            writer(); // the first open starts the rebuild from the log
         } catch (IOException e) {
-            System.err.println("Failed to read logs: " + e.getMessage());
+            System.err.println("Failed to open event log: " + e.getMessage());
+        }
+        return stats.snapshot(System.currentTimeMillis(), minutes);
+    }
+
+    // True while counts for events logged before this run are still being read back
+    public boolean isStatsRebuilding() {
+        Thread t = statsRebuild;
+        return t != null && t.isAlive();
+    }
+
+    /*
+     * Called with the lock held when a writer opens for a new file. Counts start empty
+     * and events already in the log's window are added on a background thread; only
+     * those written before this writer (by sequence number, or by time for older lines)
+     * are counted so nothing is counted twice.
+     */
+    private void startStatsRebuild(EventLogWriter w) {
+        EventStats fresh = new EventStats();
+        stats = fresh;
+        statsFile = LOG_FILE;
+
+        long openedAt = System.currentTimeMillis();
+        long firstSequence = w.getFirstSequence();
+        EventQuery recent = new EventQuery().from(openedAt - EventStats.WINDOW_MINUTES * 60_000L);
+        EventLogSegments segments = w.getSegments();
+
+        Thread t = new Thread(() -> {
+            try (Stream<String> lines = segments.lines(recent)) {
+                lines.map(EventLogger::parse)
+                        .filter(e -> e != null && recent.matches(e))
+                        .filter(e -> e.getSequence() >= 0 ? e.getSequence() < firstSequence : e.getTimeMillis() < openedAt)
+                        .forEach(e -> fresh.record(e.getTimeMillis(), e.getUserId(), e.getAction()));
+            } catch (UncheckedIOException e) {
+                System.err.println("Failed to rebuild event stats: " + e.getCause().getMessage());
+            }
+        }, "event-stats-rebuild");
+        t.setDaemon(true);
+        statsRebuild = t;
+        t.start();
+    }
+
+    void awaitStatsRebuild() throws InterruptedException {
+        Thread t = statsRebuild;
+        if (t != null) {
+            t.join();
         }
-        return logs;
     }
 
-    static void setInstanceForTesting(EventLogManager newInstance) {
+    static synchronized void setInstanceForTesting(EventLogManager newInstance) {
         instance = newInstance;
     }
 
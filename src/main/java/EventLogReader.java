@@ -0,0 +1,239 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * EventLogReader
+ * Walks an event log newest first without loading it into memory.
+ *
+ * Files are visited from the active segment back to the oldest sealed one. Each
+ * file is memory-mapped one block at a time from its end and split on newlines
+ * while scanning backward, so only the current block and the current line are
+ * held. A gzipped segment cannot be read backward, so it is first inflated into
+ * a temporary file that is deleted as soon as the reader moves past it.
+ *
+ * The active file is read up to its size when the reader reaches it; events
+ * appended after that are not returned. Close the reader when done.
+ */
+public class EventLogReader implements Iterator<EventLogger>, Closeable {
+    static final int BLOCK_SIZE = 1 << 20;
+
+    private final EventQuery query;
+    private final Deque<Path> files;
+    private final int blockSize;
+
+    private ReverseLines current;
+    private Path inflated;
+    private EventLogger next;
+    private int returned = 0;
+    private boolean closed = false;
+
+    EventLogReader(List<Path> oldestFirst, EventQuery query, int blockSize) {
+        this.query = query;
+        this.files = new ArrayDeque<>(oldestFirst);
+        this.blockSize = blockSize;
+    }
+
+    // Newest-first reader over the segments that may hold matches for q
+    static EventLogReader backward(EventLogSegments segments, EventQuery q) {
+        return new EventLogReader(segments.files(q), q, BLOCK_SIZE);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null && !closed && (query == null || returned < query.getLimit())) {
+            try {
+                next = advance();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public EventLogger next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        EventLogger e = next;
+        next = null;
+        returned++;
+        return e;
+    }
+
+    // Up to n further events, newest first; empty once the log is exhausted
+    public List<EventLogger> nextPage(int n) {
+        List<EventLogger> page = new ArrayList<>(Math.min(n, 256));
+        while (page.size() < n && hasNext()) {
+            page.add(next());
+        }
+        return page;
+    }
+
+    private EventLogger advance() throws IOException {
+        while (true) {
+            if (current == null && !openNextFile()) {
+                return null;
+            }
+            String line;
+            while ((line = current.readLine()) != null) {
+                if (line.isEmpty() || (query != null && !query.mayMatchLine(line))) {
+                    continue;
+                }
+                EventLogger e = EventLogger.parse(line);
+                if (e != null && (query == null || query.matches(e))) {
+                    return e;
+                }
+            }
+            closeCurrent();
+        }
+    }
+
+    private boolean openNextFile() throws IOException {
+        while (!files.isEmpty()) {
+            Path file = files.pollLast();
+            Path source = file;
+            if (!Files.exists(source) && !source.getFileName().toString().endsWith(".gz")) {
+                source = file.resolveSibling(file.getFileName() + ".gz"); // compressed meanwhile
+            }
+            try {
+                if (source.getFileName().toString().endsWith(".gz")) {
+                    inflated = inflate(source);
+                    source = inflated;
+                }
+                current = new ReverseLines(FileChannel.open(source, StandardOpenOption.READ), blockSize);
+                return true;
+            } catch (NoSuchFileException e) {
+                deleteInflated(); // dropped by retention, or the log was never written
+            }
+        }
+        return false;
+    }
+
+    private static Path inflate(Path gz) throws IOException {
+        Path tmp = Files.createTempFile("eventlog-", ".seg");
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(gz), 64 * 1024)) {
+            Files.copy(in, tmp, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        return tmp;
+    }
+
+    private void closeCurrent() throws IOException {
+        if (current != null) {
+            current.close();
+            current = null;
+        }
+        deleteInflated();
+    }
+
+    private void deleteInflated() throws IOException {
+        if (inflated != null) {
+            Files.deleteIfExists(inflated);
+            inflated = null;
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        next = null;
+        files.clear();
+        try {
+            closeCurrent();
+        } catch (IOException e) {
+            System.err.println("Failed to close event log reader: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Lines of one file from last to first, read through mapped blocks.
+     * Newline bytes never occur inside a multi-byte UTF-8 sequence, so splitting
+     * on raw bytes is safe; each line is decoded once it is complete.
+     */
+    static final class ReverseLines implements Closeable {
+        private final FileChannel channel;
+        private final int blockSize;
+        private MappedByteBuffer block;
+        private long blockStart;
+        private int pos = 0;
+        private boolean done = false;
+
+        // Bytes of the line being assembled, last byte first
+        private byte[] line = new byte[256];
+        private int lineLen = 0;
+
+        ReverseLines(FileChannel channel, int blockSize) throws IOException {
+            this.channel = channel;
+            this.blockSize = blockSize;
+            this.blockStart = channel.size();
+        }
+
+        // Next line going backward, without its newline; null before the start of the file
+        String readLine() throws IOException {
+            if (done) {
+                return null;
+            }
+            while (true) {
+                if (pos == 0) {
+                    if (blockStart == 0) {
+                        done = true;
+                        return lineLen == 0 ? null : takeLine();
+                    }
+                    long start = Math.max(0, blockStart - blockSize);
+                    pos = (int) (blockStart - start);
+                    block = channel.map(FileChannel.MapMode.READ_ONLY, start, pos);
+                    blockStart = start;
+                }
+                byte b = block.get(--pos);
+                if (b == '\n') {
+                    return takeLine();
+                }
+                if (lineLen == line.length) {
+                    line = Arrays.copyOf(line, line.length * 2);
+                }
+                line[lineLen++] = b;
+            }
+        }
+
+        private String takeLine() {
+            for (int i = 0, j = lineLen - 1; i < j; i++, j--) {
+                byte t = line[i];
+                line[i] = line[j];
+                line[j] = t;
+            }
+            String s = new String(line, 0, lineLen, StandardCharsets.UTF_8);
+            lineLen = 0;
+            if (line.length > 64 * 1024) {
+                line = new byte[256]; // don't keep one huge line's buffer around
+            }
+            return s;
+        }
+
+        @Override
+        public void close() throws IOException {
+            block = null;
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,623 @@
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import fsam.ProcessLocks;
+
+/**
+ * EventLogSegments
+ * Sealed segments of one event log and the manifest that lists them.
+ *
+ * The active segment is the log file itself. When it is sealed it is renamed to
+ * "<log>.<seq>" and recorded in "<log>.manifest" together with the time range of its
+ * events; a background thread then gzips it to "<log>.<seq>.gz". Retention drops
+ * whole sealed segments, oldest first, so nothing is ever rewritten. Readers get
+ * every segment in order followed by the active file.
+ *
+ * Manifest lines: seq, file name, first and last event time (epoch ms), size in bytes,
+ * separated by tabs. Only the log's one writer (see EventLogWriter) changes the
+ * segments, and it replaces the manifest atomically on every change; if it is
+ * missing it is rebuilt from the files on disk.
+ *
+ * Each sealed segment can also have a sparse index "<log>.<seq>.idx" listing the
+ * distinct user IDs and actions it contains, so queries skip segments that cannot
+ * match. A segment without one is simply always scanned.
+ *
+ * The background thread also writes a SegmentTimeIndex "<log>.<seq>.tidx" for
+ * every sealed segment, compressing it as one gzip member per block of events.
+ * Time-range queries then read only the blocks that can hold matching events,
+ * so their cost follows the size of the result rather than the log. The active
+ * segment is always read in full; its size is capped by the rotation settings.
+ */
+final class EventLogSegments {
+    static final String MANIFEST_SUFFIX = ".manifest";
+    static final String INDEX_SUFFIX = ".idx";
+
+    private static final ExecutorService COMPRESSOR = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "event-log-compressor");
+        t.setDaemon(true);
+        return t;
+    });
+
+    static final class Segment {
+        final long seq;
+        final long firstMillis;
+        final long lastMillis;
+        String name;
+        long bytes;
+
+        Segment(long seq, String name, long firstMillis, long lastMillis, long bytes) {
+            this.seq = seq;
+            this.name = name;
+            this.firstMillis = firstMillis;
+            this.lastMillis = lastMillis;
+            this.bytes = bytes;
+        }
+
+        boolean isCompressed() {
+            return name.endsWith(".gz");
+        }
+
+        private Segment copy() {
+            return new Segment(seq, name, firstMillis, lastMillis, bytes);
+        }
+    }
+
+    private final Path active;
+    private final Path dir;
+    private final Pattern segmentName;
+    private final List<Segment> sealed = new ArrayList<>();
+    private final Map<Long, Optional<SegmentIndex>> indexes = new ConcurrentHashMap<>();
+    private final Map<String, Optional<SegmentTimeIndex>> timeIndexes = new ConcurrentHashMap<>();
+    // Manifest rebuilt from the files on disk and not saved yet
+    private boolean rebuilt;
+
+    // Distinct user IDs and actions in one sealed segment
+    static final class SegmentIndex {
+        final Set<String> userIds;
+        final Set<String> actions;
+
+        SegmentIndex(Set<String> userIds, Set<String> actions) {
+            this.userIds = userIds;
+            this.actions = actions;
+        }
+    }
+
+    private EventLogSegments(Path active) {
+        this.active = active.toAbsolutePath().normalize();
+        this.dir = this.active.getParent();
+        this.segmentName = Pattern.compile(Pattern.quote(this.active.getFileName().toString()) + "\\.(\\d+)(\\.gz)?");
+    }
+
+    static EventLogSegments load(Path active) {
+        EventLogSegments s = new EventLogSegments(active);
+        try {
+            s.readManifest();
+        } catch (IOException e) {
+            System.err.println("Failed to read event log manifest: " + e.getMessage());
+        }
+        return s;
+    }
+
+    Path getActive() {
+        return active;
+    }
+
+    private Path manifestPath() {
+        return dir.resolve(active.getFileName() + MANIFEST_SUFFIX);
+    }
+
+    // ---[ Manifest ]---
+    private void readManifest() throws IOException {
+        Path manifest = manifestPath();
+        if (!Files.exists(manifest)) {
+            rebuildFromDisk();
+            return;
+        }
+        for (String line : Files.readAllLines(manifest, StandardCharsets.UTF_8)) {
+            if (line.isBlank() || line.startsWith("#")) {
+                continue;
+            }
+            String[] f = line.split("\t");
+            if (f.length < 5) {
+                continue;
+            }
+            sealed.add(new Segment(Long.parseLong(f[0]), f[1], Long.parseLong(f[2]), Long.parseLong(f[3]),
+                    Long.parseLong(f[4])));
+        }
+    }
+
+    // Best effort when the manifest has been lost: time ranges come from file times
+    private void rebuildFromDisk() throws IOException {
+        if (dir == null || !Files.isDirectory(dir)) {
+            return;
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            files.forEach(p -> {
+                Matcher m = segmentName.matcher(p.getFileName().toString());
+                if (m.matches()) {
+                    try {
+                        // First event time unknown; the file time bounds the last one
+                        long modified = Files.getLastModifiedTime(p).toMillis();
+                        sealed.add(new Segment(Long.parseLong(m.group(1)), p.getFileName().toString(),
+                                0, modified, Files.size(p)));
+                    } catch (IOException e) {
+                        // gone in the meantime
+                    }
+                }
+            });
+        }
+        sealed.sort((a, b) -> Long.compare(a.seq, b.seq));
+        rebuilt = !sealed.isEmpty();
+    }
+
+    // Only the log's writer writes the manifest, so a reader's rebuild stays in memory
+    // until the writer opens and saves it
+    synchronized void saveIfRebuilt() throws IOException {
+        if (rebuilt) {
+            saveManifest();
+        }
+    }
+
+    private void saveManifest() throws IOException {
+        StringBuilder sb = new StringBuilder("# seq\tfile\tfirst_ms\tlast_ms\tbytes\n");
+        for (Segment s : sealed) {
+            sb.append(s.seq).append('\t').append(s.name).append('\t').append(s.firstMillis).append('\t')
+                    .append(s.lastMillis).append('\t').append(s.bytes).append('\n');
+        }
+        // Unique per thread, like FSAM's temp files, so concurrent writes never share one
+        Path tmp = dir.resolve(String.format(".%s.%d-%d.tmp", manifestPath().getFileName(),
+                ProcessHandle.current().pid(), Thread.currentThread().getId()));
+        Files.writeString(tmp, sb.toString(), StandardCharsets.UTF_8);
+        Files.move(tmp, manifestPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        rebuilt = false;
+    }
+
+    // Copy of the sealed segments, oldest first
+    synchronized List<Segment> sealed() {
+        List<Segment> out = new ArrayList<>(sealed.size());
+        for (Segment s : sealed) {
+            out.add(s.copy());
+        }
+        return out;
+    }
+
+    // ---[ Writer side ]---
+
+    // Rename the (closed) active file into a new sealed segment
+    // index may be null when the writer does not know every event in the file
+    synchronized Segment seal(long firstMillis, long lastMillis, SegmentIndex index) throws IOException {
+        long seq = sealed.isEmpty() ? 1 : sealed.get(sealed.size() - 1).seq + 1;
+        String name = active.getFileName() + "." + seq;
+        Path target = dir.resolve(name);
+        Files.move(active, target, StandardCopyOption.ATOMIC_MOVE);
+        Path chain = AuditChain.chainPath(active);
+        if (Files.exists(chain)) {
+            Files.move(chain, chainPath(seq), StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        if (index != null && writeIndex(indexPath(seq), index)) {
+            indexes.put(seq, Optional.of(index));
+        }
+
+        Segment s = new Segment(seq, name, firstMillis, lastMillis, Files.size(target));
+        sealed.add(s);
+        saveManifest();
+        return s;
+    }
+
+    // Compress every uncompressed sealed segment in the background, then apply retention
+    // Only the process holding the log's compaction lease does this; the others
+    // leave it to that one
+    void compressPending(EventLogConfig config) {
+        COMPRESSOR.execute(() -> {
+            try (ProcessLocks.Lease lease = ProcessLocks.forRoot(dir.toFile())
+                    .tryLease(active.getFileName() + "-compaction")) {
+                if (lease != null) {
+                    compactNow(config);
+                }
+            } catch (IOException e) {
+                System.err.println("Event log compaction skipped: " + e.getMessage());
+            }
+        });
+    }
+
+    private void compactNow(EventLogConfig config) {
+        for (Segment s : sealed()) {
+            if (s.isCompressed()) {
+                continue;
+            }
+            if (config.isCompressSealed()) {
+                compress(s, config.getIndexEvery());
+            } else if (timeIndex(dir.resolve(s.name)) == null) {
+                indexInPlace(s, config.getIndexEvery());
+            }
+        }
+        applyRetention(config, System.currentTimeMillis());
+    }
+
+    // Wait for queued compression / retention work (tests and tools)
+    static void awaitBackgroundWork() throws InterruptedException {
+        try {
+            COMPRESSOR.submit(() -> { }).get();
+        } catch (ExecutionException e) {
+            // no-op task
+        }
+    }
+
+    // gzip one block of events per member, recording where each member starts
+    private void compress(Segment s, int indexEvery) {
+        Path src = dir.resolve(s.name);
+        Path gz = dir.resolve(s.name + ".gz");
+        Path tmp = dir.resolve(s.name + ".gz.tmp");
+        try {
+            SegmentTimeIndex timeIndex;
+            try (InputStream in = Files.newInputStream(src);
+                 OutputStream out = new BufferedOutputStream(Files.newOutputStream(tmp), 64 * 1024)) {
+                timeIndex = SegmentTimeIndex.build(in, out, gz.getFileName().toString(), indexEvery);
+            }
+            Files.move(tmp, gz, StandardCopyOption.ATOMIC_MOVE);
+            saveTimeIndex(s.seq, timeIndex);
+
+            synchronized (this) {
+                for (Segment cur : sealed) {
+                    if (cur.seq == s.seq) {
+                        cur.name = gz.getFileName().toString();
+                        cur.bytes = Files.size(gz);
+                    }
+                }
+                saveManifest();
+            }
+            // Readers that picked up the old name fall back to the .gz file
+            Files.deleteIfExists(src);
+        } catch (NoSuchFileException e) {
+            // dropped by retention in the meantime
+        } catch (IOException e) {
+            System.err.println("Failed to compress event log segment " + s.name + ": " + e.getMessage());
+        }
+    }
+
+    // Time index for a segment that stays uncompressed
+    private void indexInPlace(Segment s, int indexEvery) {
+        try (InputStream in = Files.newInputStream(dir.resolve(s.name))) {
+            saveTimeIndex(s.seq, SegmentTimeIndex.build(in, null, s.name, indexEvery));
+        } catch (NoSuchFileException e) {
+            // dropped by retention in the meantime
+        } catch (IOException e) {
+            System.err.println("Failed to index event log segment " + s.name + ": " + e.getMessage());
+        }
+    }
+
+    private void saveTimeIndex(long seq, SegmentTimeIndex timeIndex) {
+        try {
+            timeIndex.write(timeIndexPath(seq));
+            timeIndexes.put(timeIndex.getFileName(), Optional.of(timeIndex));
+        } catch (IOException e) {
+            System.err.println("Failed to write event log time index: " + e.getMessage());
+        }
+    }
+
+    // Drop whole sealed segments, oldest first, until every limit is met
+    synchronized int applyRetention(EventLogConfig config, long now) {
+        int dropped = 0;
+        long total = 0;
+        for (Segment s : sealed) {
+            total += s.bytes;
+        }
+
+        while (!sealed.isEmpty()) {
+            Segment oldest = sealed.get(0);
+            boolean tooMany = config.getRetainSegments() > 0 && sealed.size() > config.getRetainSegments();
+            boolean tooBig = config.getRetainBytes() > 0 && total > config.getRetainBytes();
+            boolean tooOld = config.getRetainMs() > 0 && oldest.lastMillis < now - config.getRetainMs();
+            if (!tooMany && !tooBig && !tooOld) {
+                break;
+            }
+
+            sealed.remove(0);
+            total -= oldest.bytes;
+            dropped++;
+            indexes.remove(oldest.seq);
+            timeIndexes.remove(oldest.name);
+            timeIndexes.remove(oldest.name.replaceFirst("\\.gz$", ""));
+            try {
+                Files.deleteIfExists(indexPath(oldest.seq));
+                Files.deleteIfExists(timeIndexPath(oldest.seq));
+                Files.deleteIfExists(chainPath(oldest.seq));
+                Files.deleteIfExists(dir.resolve(oldest.name));
+                // Uncompressed original if it was still being compressed
+                Files.deleteIfExists(dir.resolve(oldest.name.replaceFirst("\\.gz$", "")));
+            } catch (IOException e) {
+                System.err.println("Failed to drop event log segment " + oldest.name + ": " + e.getMessage());
+            }
+        }
+
+        if (dropped > 0) {
+            try {
+                saveManifest();
+            } catch (IOException e) {
+                System.err.println("Failed to write event log manifest: " + e.getMessage());
+            }
+        }
+        return dropped;
+    }
+
+    // ---[ Sparse indexes ]---
+    private Path indexPath(long seq) {
+        return dir.resolve(active.getFileName() + "." + seq + INDEX_SUFFIX);
+    }
+
+    private Path timeIndexPath(long seq) {
+        return dir.resolve(active.getFileName() + "." + seq + SegmentTimeIndex.SUFFIX);
+    }
+
+    // Audit chain of a sealed segment, whether or not it has been compressed
+    Path chainPath(long seq) {
+        return dir.resolve(active.getFileName() + "." + seq + AuditChain.SUFFIX);
+    }
+
+    // Hash the next segment's chain starts from: the end of the newest sealed chain
+    byte[] lastChainHash() {
+        List<Segment> all = sealed();
+        for (int i = all.size() - 1; i >= 0; i--) {
+            try {
+                AuditChain.Parsed c = AuditChain.Parsed.read(chainPath(all.get(i).seq));
+                if (c != null) {
+                    return c.coveredHash();
+                }
+            } catch (IOException e) {
+                System.err.println("Failed to read audit chain: " + e.getMessage());
+            }
+        }
+        return AuditChain.GENESIS;
+    }
+
+    // Time index of a stored segment file, if one was written for exactly that file
+    SegmentTimeIndex timeIndex(Path file) {
+        String name = file.getFileName().toString();
+        Matcher m = segmentName.matcher(name);
+        if (!m.matches()) {
+            return null;
+        }
+        return timeIndexes.computeIfAbsent(name, k -> {
+            SegmentTimeIndex idx = SegmentTimeIndex.read(timeIndexPath(Long.parseLong(m.group(1))));
+            return idx != null && idx.getFileName().equals(name) ? Optional.of(idx) : Optional.empty();
+        }).orElse(null);
+    }
+
+    // "u<TAB>userId" and "a<TAB>action" lines; not written if a value would break the format
+    private static boolean writeIndex(Path p, SegmentIndex index) {
+        StringBuilder sb = new StringBuilder();
+        for (String u : index.userIds) {
+            if (u == null || u.indexOf('\n') >= 0) {
+                return false;
+            }
+            sb.append("u\t").append(u).append('\n');
+        }
+        for (String a : index.actions) {
+            if (a == null || a.indexOf('\n') >= 0) {
+                return false;
+            }
+            sb.append("a\t").append(a).append('\n');
+        }
+        try {
+            Files.writeString(p, sb.toString(), StandardCharsets.UTF_8);
+            return true;
+        } catch (IOException e) {
+            System.err.println("Failed to write event log index: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private SegmentIndex index(long seq) {
+        return indexes.computeIfAbsent(seq, k -> {
+            Path p = indexPath(k);
+            if (!Files.exists(p)) {
+                return Optional.empty();
+            }
+            Set<String> users = new HashSet<>();
+            Set<String> actions = new HashSet<>();
+            try {
+                for (String line : Files.readAllLines(p, StandardCharsets.UTF_8)) {
+                    if (line.startsWith("u\t")) {
+                        users.add(line.substring(2));
+                    } else if (line.startsWith("a\t")) {
+                        actions.add(line.substring(2));
+                    }
+                }
+            } catch (IOException e) {
+                return Optional.empty();
+            }
+            return Optional.of(new SegmentIndex(users, actions));
+        }).orElse(null);
+    }
+
+    // False only when the segment certainly holds no event matching the query
+    boolean mayContain(Segment s, EventQuery q) {
+        if (q.hasTimeRange() && !q.overlaps(s.firstMillis, s.lastMillis)) {
+            return false;
+        }
+        if (q.getUserId() == null && q.getAction() == null) {
+            return true;
+        }
+        SegmentIndex idx = index(s.seq);
+        return idx == null
+                || ((q.getUserId() == null || idx.userIds.contains(q.getUserId()))
+                    && (q.getAction() == null || idx.actions.contains(q.getAction())));
+    }
+
+    // ---[ Reading ]---
+
+    // Every line of the log, oldest first: sealed segments, then the active file
+    Stream<String> lines() {
+        return lines(null);
+    }
+
+    // Lines of the segments that may hold matches for q (all of them if q is null)
+    Stream<String> lines(EventQuery q) {
+        return files(q).stream().flatMap(f -> linesOf(f, q));
+    }
+
+    // Files that may hold matches for q, oldest first, ending with the active file
+    List<Path> files(EventQuery q) {
+        List<Path> files = new ArrayList<>();
+        for (Segment s : sealed()) {
+            if (q == null || mayContain(s, q)) {
+                files.add(dir.resolve(s.name));
+            }
+        }
+        files.add(active);
+        return files;
+    }
+
+    // Only the blocks of a sealed segment that can hold events in q's time range
+    private Stream<String> linesOf(Path file, EventQuery q) {
+        if (q == null || !q.hasTimeRange() || file.equals(active)) {
+            return linesOf(file);
+        }
+        Path stored = Files.exists(file) ? file : file.resolveSibling(file.getFileName() + ".gz");
+        SegmentTimeIndex idx = timeIndex(stored);
+        if (idx == null) {
+            return linesOf(file);
+        }
+        long[] range = idx.range(q.getFromMillis(), q.getToMillis());
+        if (range == null) {
+            return Stream.empty();
+        }
+        try {
+            return asLines(openRange(stored, range[0], range[1]));
+        } catch (NoSuchFileException e) {
+            return linesOf(file); // compressed or dropped since the index was read
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static BufferedReader openRange(Path file, long start, long end) throws IOException {
+        FileChannel ch = FileChannel.open(file, StandardOpenOption.READ);
+        InputStream in;
+        try {
+            ch.position(start);
+            in = Channels.newInputStream(ch);
+            if (end >= 0) {
+                in = new LimitedInputStream(in, end - start);
+            }
+            if (file.getFileName().toString().endsWith(".gz")) {
+                in = new GZIPInputStream(in, 64 * 1024);
+            }
+        } catch (IOException e) {
+            ch.close();
+            throw e;
+        }
+        return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 64 * 1024);
+    }
+
+    // Stops after `limit` bytes, so a gzip reader ends at a member boundary
+    private static final class LimitedInputStream extends FilterInputStream {
+        private long remaining;
+
+        LimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = in.read();
+            if (b >= 0) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int n = in.read(b, off, (int) Math.min(len, remaining));
+            if (n > 0) {
+                remaining -= n;
+            }
+            return n;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(in.available(), remaining);
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = in.skip(Math.min(n, remaining));
+            remaining -= skipped;
+            return skipped;
+        }
+    }
+
+    private static Stream<String> linesOf(Path file) {
+        try {
+            BufferedReader r = open(file);
+            return r == null ? Stream.empty() : asLines(r);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Stream<String> asLines(BufferedReader r) {
+        return r.lines().onClose(() -> {
+            try {
+                r.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    // Reader for a segment file, following a concurrent compression; null if it is gone
+    static BufferedReader open(Path file) throws IOException {
+        Path p = file;
+        if (!Files.exists(p) && !p.getFileName().toString().endsWith(".gz")) {
+            p = file.resolveSibling(file.getFileName() + ".gz");
+        }
+        if (!Files.exists(p)) {
+            return null;
+        }
+
+        InputStream in = Files.newInputStream(p);
+        if (p.getFileName().toString().endsWith(".gz")) {
+            in = new GZIPInputStream(in, 64 * 1024);
+        }
+        return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 64 * 1024);
+    }
+}
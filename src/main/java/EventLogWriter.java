@@ -0,0 +1,510 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+import fsam.ProcessLocks;
+
+/**
+ * EventLogWriter
+ * Appends events to one log file through a single long-lived FileChannel.
+ *
+ * In async mode producers claim a sequence number with a CAS, fill the matching
+ * preallocated slot of a ring buffer and publish it; no locks are taken on the
+ * logging path. One consumer thread drains published slots in order and writes
+ * them in batches, either once a batch is full or when the flush interval runs
+ * out. When the buffer is full producers wait for the consumer (nothing is dropped).
+ *
+ * In sync mode (EventLogConfig.async(false)) events are written on the caller's
+ * thread under a lock, still through the same open channel.
+ *
+ * After each write the active file is sealed into a new segment (see
+ * EventLogSegments) once it passes the configured size or age.
+ *
+ * Events are encoded by EventEncoder straight into the write buffers. Each gets the
+ * next sequence number as it is encoded, so numbers follow the order in the file;
+ * a reopened log continues from the last number found in it.
+ *
+ * Every written buffer is also fed to the segment's AuditChain, which adds a signed
+ * checkpoint to "<log>.chain" every chainBlockBytes. That work stays on the writing
+ * thread, after the events have left the ring buffer.
+ *
+ * A log file has one writer at a time: appends, rotation, the manifest and the
+ * audit chain all assume no one else touches the active segment. open() takes the
+ * "<file>-writer" lease from ProcessLocks, and while another writer (in this
+ * process or another one) holds it, moves on to the instance files "<name>-2.txt",
+ * "<name>-3.txt" and so on, taking the first one that is free. Every instance
+ * sharing a directory thus gets its own complete, chained log instead of losing
+ * its events.
+ */
+final class EventLogWriter {
+    private static final Set<EventLogWriter> OPEN = ConcurrentHashMap.newKeySet();
+
+    // Mutable, preallocated ring buffer entry
+    private static final class Slot {
+        long timestamp;
+        String userId;
+        String username;
+        String action;
+        String details;
+    }
+
+    static final int MAX_INSTANCES = 64;
+
+    // The log asked for, and the file actually written (an instance file when
+    // another writer holds the first)
+    private final String logFile;
+    private final EventLogConfig config;
+    private final EventLogSegments segments;
+    private final ProcessLocks.Lease lease;
+    private FileChannel channel;
+
+    // Active segment state; only touched with the lock held
+    private long segmentBytes;
+    private long segmentFirst = -1;
+    private long segmentLast = -1;
+    private Set<String> segmentUsers = new HashSet<>();
+    private Set<String> segmentActions = new HashSet<>();
+    private boolean segmentFullyKnown = true;
+    private final byte[] chainKey;
+    private AuditChain chain;
+
+    private final Slot[] slots;
+    private final AtomicLongArray published;
+    private final int mask;
+    private final AtomicLong claimed = new AtomicLong(-1);
+    private volatile long consumed = -1;
+    private volatile long written = -1;
+    private volatile boolean running = true;
+    // Producers between their running check and publishing their slot; the
+    // consumer does not stop while any are left
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile boolean flushRequested = false;
+    private final Thread consumer;
+
+    // Consumer's batch buffer, and the one used for writes on the caller's thread
+    private ByteBuffer batch = ByteBuffer.allocate(64 * 1024);
+    private ByteBuffer direct = ByteBuffer.allocate(1024);
+    private final EventEncoder batchEncoder = new EventEncoder();
+    private final EventEncoder directEncoder = new EventEncoder();
+    private final AtomicLong sequence;
+    private final long firstSequence;
+
+    private EventLogWriter(String logFile, EventLogConfig config, EventLogSegments segments,
+                           ProcessLocks.Lease lease) throws IOException {
+        this.logFile = logFile;
+        this.config = config;
+        this.segments = segments;
+        this.lease = lease;
+        this.channel = openChannel();
+
+        // Reopening a non-empty active file: best guess for when it was started
+        this.segmentBytes = channel.size();
+        if (segmentBytes > 0) {
+            segmentFirst = segmentLast = Files.getLastModifiedTime(segments.getActive()).toMillis();
+            // Events written before this run are not in the index sets
+            segmentFullyKnown = false;
+        }
+        this.chainKey = config.isAuditChain() ? loadChainKey(segments.getActive()) : null;
+        this.chain = openChain(segments.lastChainHash());
+        this.firstSequence = lastSequence(segments) + 1;
+        this.sequence = new AtomicLong(firstSequence);
+
+        int capacity = config.isAsync() ? config.getBufferSize() : 1;
+        this.slots = new Slot[capacity];
+        this.published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new Slot();
+            published.set(i, -1);
+        }
+        this.mask = capacity - 1;
+
+        if (config.isAsync()) {
+            consumer = new Thread(this::consumeLoop, "event-log-writer");
+            consumer.setDaemon(true);
+            consumer.start();
+        } else {
+            consumer = null;
+        }
+    }
+
+    // Sequence number of the newest event in the log, or -1 if there is none
+    // Only the newest segment holding any event is read, backward from its end
+    private static long lastSequence(EventLogSegments segments) {
+        try (EventLogReader reader = EventLogReader.backward(segments, null)) {
+            return reader.hasNext() ? reader.next().getSequence() : -1;
+        } catch (UncheckedIOException e) {
+            System.err.println("Failed to read last event sequence: " + e.getCause().getMessage());
+            return -1;
+        }
+    }
+
+    static EventLogWriter open(String logFile, EventLogConfig config) throws IOException {
+        Path path = Path.of(logFile).toAbsolutePath().normalize();
+        Files.createDirectories(path.getParent());
+        ProcessLocks locks = ProcessLocks.forRoot(path.getParent().toFile());
+
+        Path active = null;
+        ProcessLocks.Lease lease = null;
+        for (int n = 1; n <= MAX_INSTANCES && lease == null; n++) {
+            active = instancePath(path, n);
+            lease = locks.tryLease(active.getFileName() + "-writer");
+        }
+        if (lease == null) {
+            throw new IOException("Event log " + logFile + " and its " + (MAX_INSTANCES - 1)
+                    + " instance files are all open for writing elsewhere");
+        }
+        if (!active.equals(path)) {
+            System.err.println("Event log " + logFile + " is in use by another instance; writing to "
+                    + active.getFileName());
+        }
+
+        EventLogWriter w;
+        try {
+            EventLogSegments segments = EventLogSegments.load(active);
+            segments.saveIfRebuilt();
+            w = new EventLogWriter(logFile, config, segments, lease);
+        } catch (IOException | RuntimeException e) {
+            lease.close();
+            throw e;
+        }
+        OPEN.add(w);
+
+        // A restarted chain leaves earlier bytes unverifiable; say so in the log itself
+        if (w.chain != null && w.chain.getRestartReason() != null) {
+            w.append(System.currentTimeMillis(), "SYSTEM", "SYSTEM", "SYSTEM_AUDIT_CHAIN_RESTARTED",
+                    w.chain.getRestartReason());
+        }
+
+        // Finish compression / retention interrupted by the last shutdown
+        w.segments.compressPending(config);
+        return w;
+    }
+
+    // The n-th instance file of a log: the log itself, then "<name>-<n>.<ext>"
+    static Path instancePath(Path log, int n) {
+        if (n == 1) {
+            return log;
+        }
+        String name = log.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String instance = dot > 0
+                ? name.substring(0, dot) + "-" + n + name.substring(dot)
+                : name + "-" + n;
+        return log.resolveSibling(instance);
+    }
+
+    private FileChannel openChannel() throws IOException {
+        return FileChannel.open(segments.getActive(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+
+    private static byte[] loadChainKey(Path active) {
+        try {
+            return AuditChain.loadKey(active);
+        } catch (IOException e) {
+            System.err.println("Failed to load event log audit key: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Null when the chain is off or could not be opened; events are still written
+    private AuditChain openChain(byte[] prevHash) {
+        if (chainKey == null) {
+            return null;
+        }
+        try {
+            return AuditChain.open(segments.getActive(), segmentBytes, prevHash, config.getChainBlockBytes(), chainKey);
+        } catch (IOException e) {
+            System.err.println("Failed to open event log audit chain: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Final hash of the current segment's chain, for the next segment to start from
+    private byte[] closeChain() {
+        if (chain == null) {
+            return segments.lastChainHash();
+        }
+        try {
+            return chain.close();
+        } catch (IOException e) {
+            System.err.println("Failed to close event log audit chain: " + e.getMessage());
+            return chain.getLastHash();
+        } finally {
+            chain = null;
+        }
+    }
+
+    EventLogSegments getSegments() {
+        return segments;
+    }
+
+    // Events logged but not yet copied out of the ring buffer
+    long queueDepth() {
+        return Math.max(0, claimed.get() - consumed);
+    }
+
+    // Sequence number of the first event written by this writer
+    long getFirstSequence() {
+        return firstSequence;
+    }
+
+    // Used by the shutdown hook
+    static void closeAll() {
+        for (EventLogWriter w : new ArrayList<>(OPEN)) {
+            w.close();
+        }
+    }
+
+    boolean isOpen() {
+        return running;
+    }
+
+    boolean isFor(String file) {
+        return logFile == file || logFile.equals(file);
+    }
+
+    // ---[ Producer side ]---
+    // Once close() has begun, events are written on the caller's thread, and fail
+    // with an IOException if the channel is already closed; none is left behind in
+    // the ring buffer
+    void append(long now, String userId, String username, String action, String details) throws IOException {
+        inFlight.incrementAndGet();
+        try {
+            if (!config.isAsync() || !running) {
+                synchronized (this) {
+                    direct.clear();
+                    direct = directEncoder.encode(direct, now, sequence.getAndIncrement(),
+                            userId, username, action, details);
+                    noteEvent(now, userId, action);
+                    direct.flip();
+                    writeFully(direct);
+                    maybeRotate();
+                }
+                return;
+            }
+
+            long seq = claim();
+            Slot s = slots[(int) (seq & mask)];
+            s.timestamp = now;
+            s.userId = userId;
+            s.username = username;
+            s.action = action;
+            s.details = details;
+            published.lazySet((int) (seq & mask), seq);
+
+            if (seq - consumed >= config.getBatchSize()) {
+                LockSupport.unpark(consumer);
+            }
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    private long claim() {
+        int spins = 0;
+        while (true) {
+            long cur = claimed.get();
+            long next = cur + 1;
+            if (next - consumed > slots.length) {
+                // Buffer full: let the consumer catch up
+                LockSupport.unpark(consumer);
+                if (++spins < 100) {
+                    Thread.onSpinWait();
+                } else {
+                    LockSupport.parkNanos(10_000);
+                }
+                continue;
+            }
+            if (claimed.compareAndSet(cur, next)) {
+                return next;
+            }
+        }
+    }
+
+    // Block until everything logged before this call is in the file
+    void flush() {
+        if (consumer == null) {
+            return;
+        }
+        long target = claimed.get();
+        while (written < target && consumer.isAlive()) {
+            flushRequested = true;
+            LockSupport.unpark(consumer);
+            LockSupport.parkNanos(50_000);
+        }
+    }
+
+    // ---[ Consumer side ]---
+    private void consumeLoop() {
+        long intervalNanos = TimeUnit.MILLISECONDS.toNanos(config.getFlushIntervalMs());
+        long oldestWaiting = 0;
+
+        while (true) {
+            int available = available();
+            boolean stopping = !running;
+
+            if (available == 0) {
+                // In-flight first: a producer that finished before this read has
+                // already claimed, and one that starts after it sees running == false
+                if (stopping && inFlight.get() == 0 && claimed.get() == consumed) {
+                    return;
+                }
+                LockSupport.parkNanos(stopping ? 10_000 : intervalNanos);
+                continue;
+            }
+
+            long now = System.nanoTime();
+            if (oldestWaiting == 0) {
+                oldestWaiting = now;
+            }
+            if (available >= config.getBatchSize() || flushRequested || stopping
+                    || now - oldestWaiting >= intervalNanos) {
+                flushRequested = false;
+                drain(available);
+                oldestWaiting = 0;
+            } else {
+                LockSupport.parkNanos(intervalNanos - (now - oldestWaiting));
+            }
+        }
+    }
+
+    // Number of contiguous published slots after the last consumed one
+    private int available() {
+        long next = consumed + 1;
+        int n = 0;
+        while (n < slots.length && published.get((int) ((next + n) & mask)) == next + n) {
+            n++;
+        }
+        return n;
+    }
+
+    // Numbering, segment bookkeeping and the write share the lock with the sync path
+    // (used once the writer is closing), so the file stays in sequence order
+    private void drain(int count) {
+        long first = consumed + 1;
+        synchronized (this) {
+            batch.clear();
+            for (int i = 0; i < count; i++) {
+                Slot s = slots[(int) ((first + i) & mask)];
+                batch = batchEncoder.encode(batch, s.timestamp, sequence.getAndIncrement(),
+                        s.userId, s.username, s.action, s.details);
+                noteEvent(s.timestamp, s.userId, s.action);
+                s.userId = s.username = s.action = s.details = null;
+            }
+            // Slots are free again as soon as they have been copied out
+            consumed = first + count - 1;
+
+            batch.flip();
+            try {
+                writeFully(batch);
+                maybeRotate();
+            } catch (IOException e) {
+                System.err.println("Failed to write event log: " + e.getMessage());
+            }
+        }
+        written = consumed;
+    }
+
+    private void writeFully(ByteBuffer buf) throws IOException {
+        if (chain != null) {
+            chain.update(buf.array(), buf.arrayOffset() + buf.position(), buf.remaining());
+        }
+        while (buf.hasRemaining()) {
+            segmentBytes += channel.write(buf);
+        }
+        if (chain != null) {
+            chain.maybeCheckpoint();
+        }
+    }
+
+    // ---[ Segments ]---
+    private void noteEvent(long timestamp, String userId, String action) {
+        // Times are only roughly ordered, so track the lowest rather than the first
+        segmentFirst = segmentFirst < 0 ? timestamp : Math.min(segmentFirst, timestamp);
+        segmentLast = Math.max(segmentLast, timestamp);
+        segmentUsers.add(userId);
+        segmentActions.add(action);
+    }
+
+    // Called with the lock held, after a write
+    private void maybeRotate() {
+        if (segmentBytes == 0) {
+            return;
+        }
+        boolean full = config.getSegmentBytes() > 0 && segmentBytes >= config.getSegmentBytes();
+        boolean old = config.getSegmentAgeMs() > 0 && segmentFirst >= 0
+                && System.currentTimeMillis() - segmentFirst >= config.getSegmentAgeMs();
+        if (full || old) {
+            rotate();
+        }
+    }
+
+    private void rotate() {
+        byte[] chainHash = closeChain();
+        try {
+            channel.close();
+            segments.seal(segmentFirst, segmentLast, segmentFullyKnown
+                    ? new EventLogSegments.SegmentIndex(segmentUsers, segmentActions) : null);
+            segmentBytes = 0;
+            segmentFirst = segmentLast = -1;
+            segmentUsers = new HashSet<>();
+            segmentActions = new HashSet<>();
+            segmentFullyKnown = true;
+            segments.compressPending(config);
+        } catch (IOException e) {
+            System.err.println("Failed to rotate event log: " + e.getMessage());
+        }
+
+        try {
+            channel = openChannel();
+            segmentBytes = channel.size();
+        } catch (IOException e) {
+            System.err.println("Failed to reopen event log: " + e.getMessage());
+        }
+        chain = openChain(chainHash);
+    }
+
+    // ---[ Shutdown ]---
+    void close() {
+        if (!OPEN.remove(this)) {
+            return;
+        }
+        running = false;
+
+        if (consumer != null) {
+            LockSupport.unpark(consumer);
+            try {
+                consumer.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        synchronized (this) {
+            closeChain();
+            try {
+                if (config.isFsyncOnShutdown()) {
+                    channel.force(true);
+                }
+                channel.close();
+            } catch (IOException e) {
+                System.err.println("Failed to close event log: " + e.getMessage());
+            }
+            lease.close();
+        }
+    }
+}
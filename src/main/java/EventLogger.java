@@ -1,26 +1,115 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Map;
 
+/**
+ * EventLogger
+ * One audit event. Stored one per line as a flat JSON object
+ * ({"ts":..., "seq":..., "time":..., "userId":..., "username":..., "action":..., "details":...},
+ * see EventEncoder); toString gives the human readable form shown to admins. parse
+ * also accepts lines written in the older "[time] userId=... user=..." text format.
+ *
+ * The sequence number is assigned by the writer and increases by one per event in
+ * the log, so events logged in the same millisecond keep their order. It is -1 for
+ * events that have not been written yet and for older lines without one.
+ */
 public class EventLogger {
-    private LocalDateTime timestamp;
-    private String userId;
-    private String username;
-    private String action;
-    private String details;
+    private final long timeMillis;
+    private final long sequence;
+    private final String userId;
+    private final String username;
+    private final String action;
+    private final String details;
 
+    // Older text lines only carry minutes
     private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+    private static final DateTimeFormatter DISPLAY_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
 
     public EventLogger(String userId, String username, String action, String details) {
-        this.timestamp = LocalDateTime.now();
+        this(System.currentTimeMillis(), userId, username, action, details);
+    }
+
+    // Used by the writer, which captures the time when the event is logged
+    EventLogger(long timeMillis, String userId, String username, String action, String details) {
+        this(timeMillis, -1, userId, username, action, details);
+    }
+
+    EventLogger(long timeMillis, long sequence, String userId, String username, String action, String details) {
+        this.timeMillis = timeMillis;
+        this.sequence = sequence;
         this.userId = userId;
         this.username = username;
         this.action = action;
         this.details = details;
     }
 
+    public long getTimeMillis() { return timeMillis; }
+    public long getSequence() { return sequence; }
+    public String getUserId() { return userId; }
+    public String getUsername() { return username; }
+    public String getAction() { return action; }
+    public String getDetails() { return details; }
+
+    public LocalDateTime getTimestamp() {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(timeMillis), ZoneId.systemDefault());
+    }
+
+    public String toJson() {
+        ByteBuffer buf = new EventEncoder().encode(ByteBuffer.allocate(256), timeMillis, sequence,
+                userId, username, action, details);
+        return new String(buf.array(), 0, buf.position() - 1, StandardCharsets.UTF_8); // without the newline
+    }
+
+    // Parse a stored line (JSON or the older text format); null if it is neither
+    public static EventLogger parse(String line) {
+        if (line == null || line.isEmpty()) {
+            return null;
+        }
+        try {
+            if (line.charAt(0) == '{') {
+                Map<String, String> f = FlatJson.parse(line);
+                String ts = f.get("ts");
+                String seq = f.get("seq");
+                return new EventLogger(ts == null ? 0 : Long.parseLong(ts), seq == null ? -1 : Long.parseLong(seq),
+                        f.get("userId"), f.get("username"), f.get("action"), f.get("details"));
+            }
+            if (line.charAt(0) == '[') {
+                return parseText(line);
+            }
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            // fall through
+        }
+        return null;
+    }
+
+    // "[yyyy-MM-dd HH:mm] userId=<id> user=<name> action=<action> details=<rest of line>"
+    private static EventLogger parseText(String line) {
+        int close = line.indexOf(']');
+        int u = line.indexOf(" userId=", close);
+        int n = line.indexOf(" user=", u + 1);
+        int a = line.indexOf(" action=", n + 1);
+        int d = line.indexOf(" details=", a + 1);
+        if (close < 0 || u < 0 || n < 0 || a < 0 || d < 0) {
+            return null;
+        }
+        LocalDateTime time = LocalDateTime.parse(line.substring(1, close), FORMATTER);
+        long millis = time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        return new EventLogger(millis, line.substring(u + 8, n), line.substring(n + 6, a),
+                line.substring(a + 8, d), line.substring(d + 9));
+    }
+
     @Override
     public String toString() {
-        return String.format("[%s] userId=%s user=%s action=%s details=%s",
-                timestamp.format(FORMATTER), userId, username, action, details);
+        StringBuilder sb = new StringBuilder(96).append('[').append(getTimestamp().format(DISPLAY_FORMATTER)).append(']');
+        if (sequence >= 0) {
+            sb.append(" #").append(sequence);
+        }
+        return sb.append(" userId=").append(userId).append(" user=").append(username)
+                .append(" action=").append(action).append(" details=").append(details).toString();
     }
 }
@@ -0,0 +1,73 @@
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * EventPolicy
+ * Whether events of one EventCategory are written to the log: always, a random
+ * sample of them at a given rate, or never (COUNT_ONLY). Events that are not
+ * written are still counted in the manager's EventStats.
+ *
+ * Parsed from "always", "count" or "sample:<rate>" (rate between 0 and 1).
+ */
+public final class EventPolicy {
+    public enum Mode { ALWAYS, SAMPLE, COUNT_ONLY }
+
+    public static final EventPolicy ALWAYS = new EventPolicy(Mode.ALWAYS, 1.0);
+    public static final EventPolicy COUNT_ONLY = new EventPolicy(Mode.COUNT_ONLY, 0.0);
+
+    private final Mode mode;
+    private final double rate;
+
+    private EventPolicy(Mode mode, double rate) {
+        this.mode = mode;
+        this.rate = rate;
+    }
+
+    public static EventPolicy sample(double rate) {
+        if (!(rate >= 0 && rate <= 1)) {
+            throw new IllegalArgumentException("Sample rate must be between 0 and 1: " + rate);
+        }
+        if (rate == 1) {
+            return ALWAYS;
+        }
+        return rate == 0 ? COUNT_ONLY : new EventPolicy(Mode.SAMPLE, rate);
+    }
+
+    public static EventPolicy parse(String s) {
+        String v = s.trim().toLowerCase();
+        if (v.equals("always")) {
+            return ALWAYS;
+        }
+        if (v.equals("count")) {
+            return COUNT_ONLY;
+        }
+        if (v.startsWith("sample:")) {
+            try {
+                return sample(Double.parseDouble(v.substring(7)));
+            } catch (NumberFormatException e) {
+                // fall through
+            }
+        }
+        throw new IllegalArgumentException("Expected always, count or sample:<rate>, got: " + s);
+    }
+
+    public Mode getMode() { return mode; }
+    public double getRate() { return rate; }
+
+    // Decide for one event; lock-free
+    boolean shouldWrite() {
+        return switch (mode) {
+            case ALWAYS -> true;
+            case COUNT_ONLY -> false;
+            case SAMPLE -> ThreadLocalRandom.current().nextDouble() < rate;
+        };
+    }
+
+    @Override
+    public String toString() {
+        return switch (mode) {
+            case ALWAYS -> "always";
+            case COUNT_ONLY -> "count";
+            case SAMPLE -> "sample:" + rate;
+        };
+    }
+}
@@ -0,0 +1,110 @@
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * EventQuery
+ * Field filters for EventLogManager.query. Unset filters match everything; the
+ * time range is inclusive of "from" and exclusive of "to" (epoch milliseconds).
+ */
+public class EventQuery {
+    public static final int NO_LIMIT = Integer.MAX_VALUE;
+
+    private String userId = null;
+    private String username = null;
+    private String action = null;
+    private long fromMillis = Long.MIN_VALUE;
+    private long toMillis = Long.MAX_VALUE;
+    private int limit = NO_LIMIT;
+
+    // Cheap substring checks that reject most non-matching JSON lines before parsing
+    private String userIdNeedle = null;
+    private String actionNeedle = null;
+
+    public EventQuery userId(String userId) {
+        this.userId = blankToNull(userId);
+        this.userIdNeedle = needle("userId", this.userId);
+        return this;
+    }
+
+    public EventQuery username(String username) {
+        this.username = blankToNull(username);
+        return this;
+    }
+
+    public EventQuery action(String action) {
+        this.action = blankToNull(action);
+        this.actionNeedle = needle("action", this.action);
+        return this;
+    }
+
+    public EventQuery from(long millis) {
+        this.fromMillis = millis;
+        return this;
+    }
+
+    public EventQuery to(long millis) {
+        this.toMillis = millis;
+        return this;
+    }
+
+    public EventQuery between(LocalDateTime from, LocalDateTime to) {
+        ZoneId zone = ZoneId.systemDefault();
+        if (from != null) {
+            from(from.atZone(zone).toInstant().toEpochMilli());
+        }
+        if (to != null) {
+            to(to.atZone(zone).toInstant().toEpochMilli());
+        }
+        return this;
+    }
+
+    public EventQuery limit(int limit) {
+        this.limit = Math.max(1, limit);
+        return this;
+    }
+
+    public String getUserId() { return userId; }
+    public String getUsername() { return username; }
+    public String getAction() { return action; }
+    public long getFromMillis() { return fromMillis; }
+    public long getToMillis() { return toMillis; }
+    public int getLimit() { return limit; }
+
+    boolean hasTimeRange() {
+        return fromMillis != Long.MIN_VALUE || toMillis != Long.MAX_VALUE;
+    }
+
+    // True if events in [first, last] could fall inside the time range
+    boolean overlaps(long first, long last) {
+        return last >= fromMillis && first < toMillis;
+    }
+
+    // Fast reject on the raw line; false means the line cannot match
+    boolean mayMatchLine(String line) {
+        if (line.isEmpty() || line.charAt(0) != '{') {
+            return true; // older text lines are checked after parsing
+        }
+        return (userIdNeedle == null || line.contains(userIdNeedle))
+                && (actionNeedle == null || line.contains(actionNeedle));
+    }
+
+    public boolean matches(EventLogger e) {
+        return (userId == null || userId.equals(e.getUserId()))
+                && (username == null || username.equals(e.getUsername()))
+                && (action == null || action.equals(e.getAction()))
+                && e.getTimeMillis() >= fromMillis && e.getTimeMillis() < toMillis;
+    }
+
+    private static String needle(String field, String value) {
+        if (value == null) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder().append('"').append(field).append("\":");
+        FlatJson.appendString(sb, value);
+        return sb.toString();
+    }
+
+    private static String blankToNull(String s) {
+        return (s == null || s.isBlank()) ? null : s.trim();
+    }
+}
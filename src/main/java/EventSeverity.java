@@ -0,0 +1,17 @@
+/**
+ * EventSeverity
+ * WARNING for actions that record a failure or a refused request
+ * ("..._FAILED", "..._DENIED", "..._ERROR"); INFO otherwise. Warnings are always
+ * written, whatever the policy for their category.
+ */
+public enum EventSeverity {
+    INFO,
+    WARNING;
+
+    public static EventSeverity of(String action) {
+        if (action != null && (action.endsWith("_FAILED") || action.endsWith("_DENIED") || action.endsWith("_ERROR"))) {
+            return WARNING;
+        }
+        return INFO;
+    }
+}
@@ -0,0 +1,153 @@
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * EventStats
+ * Rolling counts of logged events over the last WINDOW_MINUTES minutes.
+ *
+ * Counts are kept in one bucket per minute, in a ring indexed by the minute. A
+ * bucket holds the total plus counts per action and per user. Recording an event
+ * takes no locks: the current bucket is found in an AtomicReferenceArray, a bucket
+ * left over from an earlier pass of the ring is replaced with a CAS, and counts
+ * are LongAdders. Events older than the window are ignored.
+ *
+ * Because counts stay split by minute, a snapshot can report per-minute rates and
+ * their percentiles as well as totals for any window up to WINDOW_MINUTES.
+ */
+public class EventStats {
+    public static final int WINDOW_MINUTES = 60;
+    private static final long MINUTE_MS = 60_000L;
+
+    private static final class Bucket {
+        final long minute;
+        final LongAdder total = new LongAdder();
+        final ConcurrentHashMap<String, LongAdder> byAction = new ConcurrentHashMap<>();
+        final ConcurrentHashMap<String, LongAdder> byUser = new ConcurrentHashMap<>();
+
+        Bucket(long minute) {
+            this.minute = minute;
+        }
+    }
+
+    private final AtomicReferenceArray<Bucket> ring = new AtomicReferenceArray<>(WINDOW_MINUTES);
+
+    public void record(long timeMillis, String userId, String action) {
+        Bucket b = bucketFor(Math.floorDiv(timeMillis, MINUTE_MS));
+        if (b == null) {
+            return;
+        }
+        b.total.increment();
+        increment(b.byAction, action == null ? "UNKNOWN" : action);
+        increment(b.byUser, userId == null ? "UNKNOWN" : userId);
+    }
+
+    private Bucket bucketFor(long minute) {
+        int i = (int) Math.floorMod(minute, (long) WINDOW_MINUTES);
+        while (true) {
+            Bucket b = ring.get(i);
+            if (b != null && b.minute == minute) {
+                return b;
+            }
+            if (b != null && b.minute > minute) {
+                return null; // slot already belongs to a later minute: outside the window
+            }
+            Bucket fresh = new Bucket(minute);
+            if (ring.compareAndSet(i, b, fresh)) {
+                return fresh;
+            }
+        }
+    }
+
+    private static void increment(ConcurrentHashMap<String, LongAdder> counts, String key) {
+        LongAdder a = counts.get(key);
+        if (a == null) {
+            a = counts.computeIfAbsent(key, k -> new LongAdder());
+        }
+        a.increment();
+    }
+
+    // Counts for the `minutes` minutes up to and including the one containing now
+    public Snapshot snapshot(long now, int minutes) {
+        minutes = Math.max(1, Math.min(WINDOW_MINUTES, minutes));
+        long last = Math.floorDiv(now, MINUTE_MS);
+        long first = last - minutes + 1;
+
+        long[] perMinute = new long[minutes];
+        Map<String, Long> byAction = new HashMap<>();
+        Map<String, Long> byUser = new HashMap<>();
+        for (int i = 0; i < WINDOW_MINUTES; i++) {
+            Bucket b = ring.get(i);
+            if (b == null || b.minute < first || b.minute > last) {
+                continue;
+            }
+            perMinute[(int) (b.minute - first)] = b.total.sum();
+            b.byAction.forEach((k, v) -> byAction.merge(k, v.sum(), Long::sum));
+            b.byUser.forEach((k, v) -> byUser.merge(k, v.sum(), Long::sum));
+        }
+        return new Snapshot(first * MINUTE_MS, perMinute, byAction, byUser);
+    }
+
+    /**
+     * Snapshot
+     * Counts for a run of whole minutes, oldest minute first.
+     */
+    public static final class Snapshot {
+        private final long startMillis;
+        private final long[] perMinute;
+        private final Map<String, Long> byAction;
+        private final Map<String, Long> byUser;
+
+        private Snapshot(long startMillis, long[] perMinute, Map<String, Long> byAction, Map<String, Long> byUser) {
+            this.startMillis = startMillis;
+            this.perMinute = perMinute;
+            this.byAction = sortedByCount(byAction);
+            this.byUser = sortedByCount(byUser);
+        }
+
+        public long getStartMillis() { return startMillis; }
+        public int getMinutes() { return perMinute.length; }
+        public long[] getPerMinute() { return perMinute.clone(); }
+
+        // Counts per action / user, highest first
+        public Map<String, Long> getByAction() { return byAction; }
+        public Map<String, Long> getByUser() { return byUser; }
+
+        public long getTotal() {
+            long sum = 0;
+            for (long c : perMinute) {
+                sum += c;
+            }
+            return sum;
+        }
+
+        public long count(String action) {
+            return byAction.getOrDefault(action, 0L);
+        }
+
+        public double perMinuteAverage() {
+            return (double) getTotal() / perMinute.length;
+        }
+
+        // Nearest-rank percentile (0-100) of the per-minute event counts
+        public long perMinutePercentile(double p) {
+            long[] sorted = perMinute.clone();
+            Arrays.sort(sorted);
+            int rank = (int) Math.ceil(p / 100.0 * sorted.length);
+            return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+        }
+
+        private static Map<String, Long> sortedByCount(Map<String, Long> counts) {
+            Map<String, Long> out = new LinkedHashMap<>();
+            counts.entrySet().stream()
+                    .sorted(Map.Entry.<String, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                    .forEach(e -> out.put(e.getKey(), e.getValue()));
+            return Collections.unmodifiableMap(out);
+        }
+    }
+}
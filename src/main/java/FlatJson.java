@@ -0,0 +1,139 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * FlatJson
+ * Minimal reader/writer for single-level JSON objects of string, number and
+ * boolean values (one object per line, as used by JSONL files).
+ * Nested objects and arrays are not supported.
+ */
+final class FlatJson {
+    private FlatJson() {} // static helper only
+
+    // Parse a single flat object; values are returned as their text (strings unescaped)
+    static Map<String, String> parse(String line) {
+        Map<String, String> out = new LinkedHashMap<>();
+        int i = skipWs(line, 0);
+        if (i >= line.length() || line.charAt(i) != '{') {
+            throw new IllegalArgumentException("Expected '{'");
+        }
+        i = skipWs(line, i + 1);
+        if (i < line.length() && line.charAt(i) == '}') {
+            return out;
+        }
+
+        StringBuilder sb = new StringBuilder(32);
+        while (true) {
+            if (i >= line.length() || line.charAt(i) != '"') {
+                throw new IllegalArgumentException("Expected field name at " + i);
+            }
+            sb.setLength(0);
+            i = readString(line, i + 1, sb);
+            String key = sb.toString();
+
+            i = skipWs(line, i);
+            if (i >= line.length() || line.charAt(i) != ':') {
+                throw new IllegalArgumentException("Expected ':' at " + i);
+            }
+            i = skipWs(line, i + 1);
+
+            String value;
+            if (i < line.length() && line.charAt(i) == '"') {
+                sb.setLength(0);
+                i = readString(line, i + 1, sb);
+                value = sb.toString();
+            } else {
+                int start = i;
+                while (i < line.length() && ",} \t".indexOf(line.charAt(i)) < 0) {
+                    i++;
+                }
+                value = line.substring(start, i);
+                if (value.equals("null")) {
+                    value = null;
+                }
+            }
+            out.put(key, value);
+
+            i = skipWs(line, i);
+            if (i >= line.length()) {
+                throw new IllegalArgumentException("Unterminated object");
+            }
+            char c = line.charAt(i);
+            if (c == '}') {
+                return out;
+            }
+            if (c != ',') {
+                throw new IllegalArgumentException("Expected ',' or '}' at " + i);
+            }
+            i = skipWs(line, i + 1);
+        }
+    }
+
+    // Append a JSON string literal (with quotes) for v
+    static void appendString(StringBuilder sb, String v) {
+        if (v == null) {
+            sb.append("null");
+            return;
+        }
+        sb.append('"');
+        for (int i = 0; i < v.length(); i++) {
+            char c = v.charAt(i);
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+                }
+            }
+        }
+        sb.append('"');
+    }
+
+    private static int skipWs(String s, int i) {
+        while (i < s.length() && Character.isWhitespace(s.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    // Reads from just after an opening quote; returns the index after the closing quote
+    private static int readString(String s, int i, StringBuilder out) {
+        while (i < s.length()) {
+            char c = s.charAt(i++);
+            if (c == '"') {
+                return i;
+            }
+            if (c != '\\') {
+                out.append(c);
+                continue;
+            }
+            if (i >= s.length()) {
+                break;
+            }
+            char e = s.charAt(i++);
+            switch (e) {
+                case 'n' -> out.append('\n');
+                case 'r' -> out.append('\r');
+                case 't' -> out.append('\t');
+                case 'b' -> out.append('\b');
+                case 'f' -> out.append('\f');
+                case 'u' -> {
+                    if (i + 4 > s.length()) {
+                        throw new IllegalArgumentException("Bad unicode escape");
+                    }
+                    out.append((char) Integer.parseInt(s.substring(i, i + 4), 16));
+                    i += 4;
+                }
+                default -> out.append(e);
+            }
+        }
+        throw new IllegalArgumentException("Unterminated string");
+    }
+}
@@ -0,0 +1,553 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+import metrics.LatencyHistogram;
+
+/**
+ * LoadHarness
+ * Headless multi-user load test. Simulated users log in and then drive
+ * UserManagerProxy, ScrollManagerProxy and AdminManagerProxy (search and preview go
+ * to ScrollManager as UserInterface does) with a weighted mix of operations, against
+ * a data directory seeded with users and scrolls. Without --data a temporary
+ * directory is used and removed afterwards; with it, users and scrolls from an
+ * earlier run are reused, and a directory made by DatasetGenerator is used as is.
+ *
+ * Closed loop (default): each user runs one operation after another, pausing for an
+ * exponentially distributed think time in between. Open loop (--rate): operations
+ * arrive at a fixed average rate whatever the response times, and latency is
+ * measured from the scheduled arrival, so queueing delay is included.
+ *
+ * Users run on virtual threads when the JVM has them (21+), otherwise on platform
+ * threads. The report lists throughput, error rate and p50/p99/p999 latency per
+ * operation.
+ *
+ *   java -cp build/classes/java/main LoadHarness --users 200 --duration 120 --think 500
+ *   java -cp build/classes/java/main LoadHarness --users 500 --rate 300 --csv load.csv
+ */
+public final class LoadHarness {
+    private static final String PASSWORD = "Load-test-password-1";
+    private static final String[] WORDS = {
+        "ledger", "map", "decree", "ballad", "chronicle", "recipe", "treaty", "letter", "census", "almanac"
+    };
+
+    enum Operation { LOGIN, BROWSE, SEARCH, PREVIEW, UPLOAD, DOWNLOAD, ADMIN }
+
+    /**
+     * Options
+     * Run settings, from the command line or set directly by tests.
+     */
+    static final class Options {
+        int users = 50;
+        int scrollsPerUser = 5;
+        long durationMs = 60_000;
+        double rate = 0;                 // operations per second; 0 = closed loop
+        long thinkMs = 1_000;            // mean think time (closed loop)
+        boolean virtualThreads = true;
+        long seed = 1;
+        Path dataDir = null;             // null = fresh temporary directory
+        Path csv = null;
+        final Map<Operation, Integer> mix = new EnumMap<>(Operation.class);
+
+        Options() {
+            mix.put(Operation.LOGIN, 5);
+            mix.put(Operation.BROWSE, 25);
+            mix.put(Operation.SEARCH, 25);
+            mix.put(Operation.PREVIEW, 20);
+            mix.put(Operation.UPLOAD, 8);
+            mix.put(Operation.DOWNLOAD, 15);
+            mix.put(Operation.ADMIN, 2);
+        }
+
+        static Options parse(String[] args) {
+            Options o = new Options();
+            for (int i = 0; i < args.length; i++) {
+                String a = args[i];
+                if (a.equals("--platform-threads")) {
+                    o.virtualThreads = false;
+                    continue;
+                }
+                if (i + 1 >= args.length) {
+                    throw new IllegalArgumentException("Missing value for " + a);
+                }
+                String v = args[++i];
+                switch (a) {
+                    case "--users" -> o.users = Integer.parseInt(v);
+                    case "--scrolls-per-user" -> o.scrollsPerUser = Integer.parseInt(v);
+                    case "--duration" -> o.durationMs = (long) (Double.parseDouble(v) * 1000);
+                    case "--rate" -> o.rate = Double.parseDouble(v);
+                    case "--think" -> o.thinkMs = Long.parseLong(v);
+                    case "--seed" -> o.seed = Long.parseLong(v);
+                    case "--data" -> o.dataDir = Path.of(v);
+                    case "--csv" -> o.csv = Path.of(v);
+                    case "--mix" -> o.parseMix(v);
+                    default -> throw new IllegalArgumentException("Unknown option: " + a);
+                }
+            }
+            if (o.users < 1 || o.durationMs < 1 || o.rate < 0 || o.thinkMs < 0) {
+                throw new IllegalArgumentException("users and duration must be positive, rate and think not negative");
+            }
+            return o;
+        }
+
+        // "browse=30,search=20,..."; operations left out keep their default weight
+        void parseMix(String spec) {
+            for (String part : spec.split(",")) {
+                String[] kv = part.split("=");
+                if (kv.length != 2) {
+                    throw new IllegalArgumentException("Bad mix entry: " + part);
+                }
+                int weight = Integer.parseInt(kv[1].trim());
+                if (weight < 0) {
+                    throw new IllegalArgumentException("Negative weight: " + part);
+                }
+                mix.put(Operation.valueOf(kv[0].trim().toUpperCase(Locale.ROOT)), weight);
+            }
+            if (mix.values().stream().mapToInt(Integer::intValue).sum() == 0) {
+                throw new IllegalArgumentException("The mix has no operations");
+            }
+        }
+    }
+
+    /**
+     * Report
+     * Latency histogram and error count per operation for one run.
+     */
+    static final class Report {
+        private final Map<Operation, LatencyHistogram> latency = new EnumMap<>(Operation.class);
+        private final Map<Operation, LongAdder> errors = new EnumMap<>(Operation.class);
+        private long elapsedNanos;
+
+        Report() {
+            for (Operation op : Operation.values()) {
+                latency.put(op, new LatencyHistogram());
+                errors.put(op, new LongAdder());
+            }
+        }
+
+        void record(Operation op, long nanos, boolean ok) {
+            latency.get(op).record(nanos);
+            if (!ok) {
+                errors.get(op).increment();
+            }
+        }
+
+        long getCalls(Operation op) { return latency.get(op).snapshot().getCount(); }
+        long getErrors(Operation op) { return errors.get(op).sum(); }
+        LatencyHistogram.Snapshot getLatency(Operation op) { return latency.get(op).snapshot(); }
+
+        long getTotalCalls() {
+            long n = 0;
+            for (Operation op : Operation.values()) {
+                n += getCalls(op);
+            }
+            return n;
+        }
+
+        double getThroughput() {
+            return elapsedNanos == 0 ? 0 : getTotalCalls() / (elapsedNanos / 1e9);
+        }
+
+        void print(PrintStream out) {
+            double secs = elapsedNanos / 1e9;
+            out.printf("%-10s %9s %8s %7s %9s %9s %9s %9s %9s%n",
+                    "operation", "calls", "errors", "error%", "ops/s", "p50 ms", "p99 ms", "p999 ms", "max ms");
+            for (Operation op : Operation.values()) {
+                LatencyHistogram.Snapshot s = getLatency(op);
+                if (s.getCount() == 0) {
+                    continue;
+                }
+                long err = getErrors(op);
+                out.printf("%-10s %9d %8d %6.2f%% %9.1f %9.2f %9.2f %9.2f %9.2f%n",
+                        op.name().toLowerCase(Locale.ROOT), s.getCount(), err, 100.0 * err / s.getCount(),
+                        s.getCount() / secs, ms(s.percentile(50)), ms(s.percentile(99)), ms(s.percentile(99.9)),
+                        ms(s.getMaxNanos()));
+            }
+            out.printf("%-10s %9d %27.1f ops/s over %.1f s%n", "total", getTotalCalls(), getThroughput(), secs);
+        }
+
+        void writeCsv(Path file) throws IOException {
+            double secs = elapsedNanos / 1e9;
+            try (PrintWriter w = new PrintWriter(Files.newBufferedWriter(file))) {
+                w.println("operation,calls,errors,ops_per_sec,p50_ms,p99_ms,p999_ms,max_ms");
+                for (Operation op : Operation.values()) {
+                    LatencyHistogram.Snapshot s = getLatency(op);
+                    w.printf(Locale.ROOT, "%s,%d,%d,%.2f,%.3f,%.3f,%.3f,%.3f%n",
+                            op.name().toLowerCase(Locale.ROOT), s.getCount(), getErrors(op), s.getCount() / secs,
+                            ms(s.percentile(50)), ms(s.percentile(99)), ms(s.percentile(99.9)), ms(s.getMaxNanos()));
+                }
+            }
+        }
+
+        private static double ms(long nanos) {
+            return nanos / 1e6;
+        }
+    }
+
+    // One simulated user: credentials and the User returned by its last login
+    private static final class SimUser {
+        final String username;
+        volatile User user;
+        final AtomicInteger uploads = new AtomicInteger();
+
+        SimUser(String username) {
+            this.username = username;
+        }
+    }
+
+    private final Options options;
+    private final Report report = new Report();
+    private final Operation[] weighted;
+    private final List<String> scrollIds = Collections.synchronizedList(new ArrayList<>());
+    private final List<SimUser> simUsers = new ArrayList<>();
+    private Path dataDir;
+    private Path uploadSource;
+    private String password = PASSWORD;
+    private UserManager userManager;
+    private ScrollManager scrollManager;
+    private UserManagerProxy userProxy;
+    private ScrollManagerProxy scrollProxy;
+    private AdminManagerProxy adminProxy;
+    private User admin;
+
+    private LoadHarness(Options options) {
+        this.options = options;
+        List<Operation> ops = new ArrayList<>();
+        options.mix.forEach((op, weight) -> {
+            for (int i = 0; i < weight; i++) {
+                ops.add(op);
+            }
+        });
+        this.weighted = ops.toArray(new Operation[0]);
+    }
+
+    static Report run(Options options) throws IOException, InterruptedException {
+        LoadHarness h = new LoadHarness(options);
+        String originalLog = EventLogManager.LOG_FILE;
+        try {
+            h.prepare();
+            h.drive();
+            return h.report;
+        } finally {
+            EventLogManager.getInstance().shutdown();
+            EventLogManager.LOG_FILE = originalLog;
+            if (options.dataDir == null && h.dataDir != null) {
+                deleteTree(h.dataDir);
+            }
+        }
+    }
+
+    private static void deleteTree(Path root) throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    // ---[ Setup ]---
+    private void prepare() throws IOException, InterruptedException {
+        dataDir = options.dataDir != null ? Files.createDirectories(options.dataDir) : Files.createTempDirectory("vsas-load");
+        EventLogManager.LOG_FILE = dataDir.resolve("event_logs.txt").toString();
+
+        String userRoot = dataDir.resolve("users").toString();
+        userManager = new UserManager(userRoot);
+        scrollManager = new ScrollManager(dataDir.resolve("scrolls").toString());
+        userProxy = new UserManagerProxy(userManager);
+        scrollProxy = new ScrollManagerProxy(scrollManager);
+
+        uploadSource = dataDir.resolve("upload.txt");
+        StringBuilder text = new StringBuilder();
+        while (text.length() < 4096) {
+            text.append("The quick brown fox jumps over the lazy dog.\n");
+        }
+        Files.writeString(uploadSource, text);
+
+        Path dataset = dataDir.resolve(DatasetGenerator.PROPERTIES);
+        if (Files.exists(dataset)) {
+            useDataset(dataset);
+        } else {
+            createUsers();
+        }
+        adminProxy = new AdminManagerProxy(new AdminManager(userRoot, admin, scrollManager), admin);
+
+        for (Scroll s : scrollManager.getAllScrolls()) {
+            scrollIds.add(s.getScrollId());
+        }
+        System.out.printf("Prepared %d users and %d scrolls in %s%n", options.users, scrollIds.size(), dataDir);
+    }
+
+    // A directory written by DatasetGenerator: simulate its first users, which are also its busiest
+    private void useDataset(Path file) throws IOException {
+        Properties p = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            p.load(in);
+        }
+        password = p.getProperty("password");
+        int available = Integer.parseInt(p.getProperty("users"));
+        if (options.users > available) {
+            throw new IOException("The dataset has only " + available + " users");
+        }
+        for (int i = 0; i < options.users; i++) {
+            simUsers.add(new SimUser(String.format(p.getProperty("user.format"), i)));
+        }
+        admin = userManager.getUser(p.getProperty("admin"));
+        if (admin == null) {
+            throw new IOException("Dataset admin " + p.getProperty("admin") + " not found");
+        }
+    }
+
+    private void createUsers() throws IOException, InterruptedException {
+        admin = ensureUser("loadadmin");
+        admin.setAdmin(true);
+
+        // Password hashing dominates setup, so users are created on every core
+        ExecutorService pool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        try {
+            List<Future<User>> created = new ArrayList<>();
+            for (int i = 0; i < options.users; i++) {
+                String name = String.format("load%05d", i);
+                simUsers.add(new SimUser(name));
+                created.add(pool.submit(() -> ensureUser(name)));
+            }
+            for (int i = 0; i < created.size(); i++) {
+                seedScrolls(created.get(i).get(), i);
+            }
+        } catch (java.util.concurrent.ExecutionException e) {
+            throw new IOException("Failed to create load test users", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // Creates the user, or reuses it when a data directory from an earlier run is given
+    private User ensureUser(String name) throws IOException {
+        User u = userManager.getUser(name);
+        if (u != null) {
+            return u;
+        }
+        try {
+            u = userProxy.createUser(name, name, password);
+        } catch (UserAlreadyExistsException e) {
+            return userManager.getUser(name);
+        }
+        if (u == null) {
+            throw new IOException("Failed to create user " + name);
+        }
+        return u;
+    }
+
+    private void seedScrolls(User owner, int index) throws IOException {
+        for (int k = 0; k < options.scrollsPerUser; k++) {
+            String id = "s" + owner.getUserId() + "-" + k;
+            if (!scrollManager.childExists(id)) {
+                upload(owner, id, WORDS[(index + k) % WORDS.length] + " " + id);
+            }
+        }
+    }
+
+    // The same steps as UserInterface's upload: create, describe, copy the file in
+    private boolean upload(User owner, String id, String name) throws IOException {
+        Scroll s = scrollProxy.createScroll(owner, id);
+        if (s == null) {
+            return false;
+        }
+        s.setScrollName(name);
+        s.setUploaderId(owner.getUserId());
+        s.setUploadDate(new Date());
+        Files.copy(uploadSource, s.getFileObj().toPath().resolve("scroll_blob"), StandardCopyOption.REPLACE_EXISTING);
+        return true;
+    }
+
+    // ---[ Driving ]---
+    private void drive() throws InterruptedException {
+        ExecutorService executor = newExecutor();
+        String mode = options.rate > 0
+                ? String.format("open loop at %.0f ops/s", options.rate)
+                : String.format("closed loop, %d ms mean think time", options.thinkMs);
+        System.out.printf("Running %d users for %.0f s, %s%n", options.users, options.durationMs / 1000.0, mode);
+
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(options.durationMs);
+        try {
+            if (options.rate > 0) {
+                openLoop(executor, deadline);
+            } else {
+                for (int i = 0; i < simUsers.size(); i++) {
+                    SimUser u = simUsers.get(i);
+                    SplittableRandom random = new SplittableRandom(options.seed + i);
+                    executor.execute(() -> closedLoop(u, random, deadline));
+                }
+            }
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(options.durationMs + 60_000, TimeUnit.MILLISECONDS);
+            report.elapsedNanos = System.nanoTime() - start;
+        }
+    }
+
+    private void closedLoop(SimUser u, SplittableRandom random, long deadline) {
+        timed(Operation.LOGIN, u, random, System.nanoTime());
+        while (System.nanoTime() < deadline) {
+            timed(next(random), u, random, System.nanoTime());
+            if (options.thinkMs > 0) {
+                LockSupport.parkNanos(exponential(random, TimeUnit.MILLISECONDS.toNanos(options.thinkMs)));
+            }
+        }
+    }
+
+    private void openLoop(ExecutorService executor, long deadline) {
+        SplittableRandom random = new SplittableRandom(options.seed);
+        for (SimUser u : simUsers) {
+            timed(Operation.LOGIN, u, random, System.nanoTime());
+        }
+        long meanGap = (long) (1e9 / options.rate);
+        long next = System.nanoTime();
+        while (next < deadline) {
+            long wait = next - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            long scheduled = next;
+            SimUser u = simUsers.get(random.nextInt(simUsers.size()));
+            Operation op = next(random);
+            SplittableRandom taskRandom = random.split();
+            executor.execute(() -> timed(op, u, taskRandom, scheduled));
+            next += exponential(random, meanGap);
+        }
+    }
+
+    private Operation next(SplittableRandom random) {
+        return weighted[random.nextInt(weighted.length)];
+    }
+
+    private static long exponential(SplittableRandom random, long mean) {
+        return (long) (-Math.log(1 - random.nextDouble()) * mean);
+    }
+
+    private void timed(Operation op, SimUser u, SplittableRandom random, long startNanos) {
+        boolean ok;
+        try {
+            ok = perform(op, u, random);
+        } catch (Exception e) {
+            ok = false;
+        }
+        report.record(op, System.nanoTime() - startNanos, ok);
+    }
+
+    private boolean perform(Operation op, SimUser u, SplittableRandom random) throws IOException {
+        User user = u.user;
+        if (user == null && op != Operation.LOGIN) {
+            op = Operation.LOGIN;
+        }
+        switch (op) {
+            case LOGIN: {
+                User logged = userProxy.login(u.username, password);
+                if (logged != null) {
+                    u.user = logged;
+                }
+                return logged != null;
+            }
+            case BROWSE:
+                return scrollProxy.getAllScrolls(user) != null;
+            case SEARCH:
+                return scrollManager.searchScrolls(null, null, WORDS[random.nextInt(WORDS.length)], null, null) != null;
+            case PREVIEW:
+                return scrollManager.previewScrollText(randomScroll(random)) != null;
+            case UPLOAD: {
+                String id = "u" + user.getUserId() + "-" + u.uploads.incrementAndGet() + "-" + System.nanoTime();
+                boolean ok = upload(user, id, WORDS[random.nextInt(WORDS.length)] + " " + id);
+                if (ok) {
+                    scrollIds.add(id);
+                }
+                return ok;
+            }
+            case DOWNLOAD: {
+                java.io.File f = scrollProxy.downloadScroll(user, randomScroll(random));
+                if (f == null) {
+                    return false;
+                }
+                Path dest = Files.createTempFile(dataDir, "download", ".txt");
+                try {
+                    Files.copy(f.toPath(), dest, StandardCopyOption.REPLACE_EXISTING);
+                } finally {
+                    Files.deleteIfExists(dest);
+                }
+                return true;
+            }
+            case ADMIN:
+                if (random.nextBoolean()) {
+                    return adminProxy.queryUsers(new UserQuery().limit(UserQuery.DEFAULT_LIMIT)) != null;
+                }
+                return !adminProxy.viewScrollStats(admin).isEmpty();
+            default:
+                throw new IllegalStateException("Unhandled operation " + op);
+        }
+    }
+
+    private String randomScroll(SplittableRandom random) {
+        synchronized (scrollIds) {
+            return scrollIds.get(random.nextInt(scrollIds.size()));
+        }
+    }
+
+    // Virtual threads when the runtime has them (Java 21+), otherwise one platform thread per task
+    private ExecutorService newExecutor() {
+        if (options.virtualThreads) {
+            try {
+                Method m = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                return (ExecutorService) m.invoke(null);
+            } catch (ReflectiveOperationException e) {
+                System.out.println("Virtual threads are not available on this JVM; using platform threads");
+            }
+        }
+        return Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "load-user");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options;
+        try {
+            options = Options.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: LoadHarness [--users N] [--duration SECONDS] [--think MS | --rate OPS_PER_SEC]");
+            System.err.println("                   [--mix login=5,browse=25,search=25,preview=20,upload=8,download=15,admin=2]");
+            System.err.println("                   [--scrolls-per-user N] [--data DIR] [--csv FILE] [--seed N] [--platform-threads]");
+            System.exit(2);
+            return;
+        }
+
+        Report report = run(options);
+        report.print(System.out);
+        if (options.csv != null) {
+            report.writeCsv(options.csv);
+            System.out.println("Wrote " + options.csv);
+        }
+        System.exit(0);
+    }
+}
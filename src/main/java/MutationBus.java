@@ -0,0 +1,228 @@
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+import fsam.ProcessLocks;
+
+/**
+ * MutationBus
+ * In-process publish/subscribe for changes to users and scrolls. UserManager,
+ * ScrollManager and the User and Scroll setters publish a MutationEvent for every
+ * change once it is on disk, while still holding the record's lock, so the
+ * events for one record arrive in the order the changes were made.
+ *
+ * Publishing also bumps the root's generation, so other processes learn about
+ * the change whether or not anything here is listening.
+ *
+ * Synchronous subscribers run on the publishing thread, with the record lock held
+ * (across processes), and must never block; UserTable and ScrollIndex stay current
+ * this way, queueing each event without a lock and applying the queue on their
+ * next read. Asynchronous subscribers each get a
+ * lock-free queue drained by their own daemon thread, and receive the events in
+ * batches of up to maxBatch. A full queue drops events rather than blocking the
+ * writer; the subscription counts them.
+ */
+public final class MutationBus {
+    public static final int DEFAULT_MAX_BATCH = 256;
+    public static final int DEFAULT_CAPACITY = 65_536;
+
+    private static final MutationBus INSTANCE = new MutationBus();
+
+    private final List<Consumer<MutationEvent>> sync = new CopyOnWriteArrayList<>();
+    private final List<AsyncSubscriber> async = new CopyOnWriteArrayList<>();
+    private final Map<String, Object> rootOrder = new ConcurrentHashMap<>();
+
+    private MutationBus() {}
+
+    public static MutationBus getInstance() {
+        return INSTANCE;
+    }
+
+    // ---[ Subscribing ]---
+    public Subscription subscribe(Consumer<MutationEvent> subscriber) {
+        sync.add(subscriber);
+        return new Subscription(() -> sync.remove(subscriber), null);
+    }
+
+    public Subscription subscribeAsync(String name, Consumer<List<MutationEvent>> subscriber) {
+        return subscribeAsync(name, subscriber, DEFAULT_MAX_BATCH, DEFAULT_CAPACITY);
+    }
+
+    public Subscription subscribeAsync(String name, Consumer<List<MutationEvent>> subscriber, int maxBatch, int capacity) {
+        AsyncSubscriber a = new AsyncSubscriber(name, subscriber, Math.max(1, maxBatch), Math.max(1, capacity));
+        async.add(a);
+        a.worker.start();
+        return new Subscription(() -> {
+            async.remove(a);
+            a.close();
+        }, a);
+    }
+
+    // ---[ Publishing ]---
+    void created(MutationEvent.Entity entity, File root, String id) {
+        publish(entity, MutationEvent.Type.CREATED, root, id, null, null, null);
+    }
+
+    // Records still being staged (dot-prefixed) are announced once, by CREATED, when moved into place
+    void attributeChanged(MutationEvent.Entity entity, File recordDir, String attribute, String value) {
+        if (recordDir.getName().startsWith(".")) {
+            return;
+        }
+        publish(entity, MutationEvent.Type.ATTRIBUTE_CHANGED, recordDir.getAbsoluteFile().getParentFile(),
+                recordDir.getName(), null, attribute, value);
+    }
+
+    void renamed(MutationEvent.Entity entity, File root, String oldId, String newId) {
+        publish(entity, MutationEvent.Type.RENAMED, root, newId, oldId, null, null);
+    }
+
+    void deleted(MutationEvent.Entity entity, File root, String id) {
+        publish(entity, MutationEvent.Type.DELETED, root, id, null, null, null);
+    }
+
+    private void publish(MutationEvent.Entity entity, MutationEvent.Type type, File root, String id,
+                         String previousId, String attribute, String value) {
+        File r = root.getAbsoluteFile().toPath().normalize().toFile();
+        // Bump and deliver together, so every subscriber sees a root's events in
+        // generation order even when different records change at once
+        synchronized (rootOrder.computeIfAbsent(r.getPath(), k -> new Object())) {
+            long generation = ProcessLocks.forRoot(r).bumpGeneration();
+            MutationEvent e = new MutationEvent(entity, type, r, id, previousId, attribute, value, generation);
+            for (Consumer<MutationEvent> s : sync) {
+                try {
+                    s.accept(e);
+                } catch (RuntimeException ex) {
+                    System.err.println("Mutation subscriber failed on " + e + ": " + ex.getMessage());
+                }
+            }
+            for (AsyncSubscriber a : async) {
+                a.offer(e);
+            }
+        }
+    }
+
+    // ---[ Subscriptions ]---
+    public static final class Subscription implements AutoCloseable {
+        private final Runnable cancel;
+        private final AsyncSubscriber async;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Subscription(Runnable cancel, AsyncSubscriber async) {
+            this.cancel = cancel;
+            this.async = async;
+        }
+
+        // Events an async subscriber lost to a full queue
+        public long getDropped() {
+            return async == null ? 0 : async.dropped.sum();
+        }
+
+        // Wait until everything queued so far has been delivered (tests and shutdown)
+        public boolean awaitIdle(long timeout, TimeUnit unit) throws InterruptedException {
+            if (async == null) {
+                return true;
+            }
+            long deadline = System.nanoTime() + unit.toNanos(timeout);
+            while (async.pending.get() > 0) {
+                if (System.nanoTime() - deadline >= 0) {
+                    return false;
+                }
+                Thread.sleep(1);
+            }
+            return true;
+        }
+
+        // Async subscribers get what is already queued before their thread stops
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                cancel.run();
+            }
+        }
+    }
+
+    private static final class AsyncSubscriber implements Runnable {
+        private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+        private final Consumer<List<MutationEvent>> subscriber;
+        private final int maxBatch;
+        private final int capacity;
+        private final Thread worker;
+        private final ConcurrentLinkedQueue<MutationEvent> queue = new ConcurrentLinkedQueue<>();
+        // Queued plus being delivered
+        private final AtomicInteger pending = new AtomicInteger();
+        private final AtomicBoolean signalled = new AtomicBoolean();
+        private final LongAdder dropped = new LongAdder();
+        private volatile boolean open = true;
+
+        AsyncSubscriber(String name, Consumer<List<MutationEvent>> subscriber, int maxBatch, int capacity) {
+            this.subscriber = subscriber;
+            this.maxBatch = maxBatch;
+            this.capacity = capacity;
+            this.worker = new Thread(this, "mutation-" + name);
+            this.worker.setDaemon(true);
+        }
+
+        void offer(MutationEvent e) {
+            if (pending.incrementAndGet() > capacity) {
+                pending.decrementAndGet();
+                dropped.increment();
+                return;
+            }
+            queue.offer(e);
+            // Only the first event after the worker went idle pays for a wake-up
+            if (!signalled.getAndSet(true)) {
+                LockSupport.unpark(worker);
+            }
+        }
+
+        void close() {
+            open = false;
+            LockSupport.unpark(worker);
+        }
+
+        @Override
+        public void run() {
+            List<MutationEvent> batch = new ArrayList<>(Math.min(maxBatch, 1024));
+            while (true) {
+                signalled.set(false);
+                MutationEvent e;
+                while ((e = queue.poll()) != null) {
+                    batch.add(e);
+                    if (batch.size() == maxBatch) {
+                        deliver(batch);
+                    }
+                }
+                if (!batch.isEmpty()) {
+                    deliver(batch);
+                }
+                if (!open && queue.isEmpty()) {
+                    return;
+                }
+                if (queue.isEmpty() && !signalled.get()) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                }
+            }
+        }
+
+        private void deliver(List<MutationEvent> batch) {
+            try {
+                subscriber.accept(List.copyOf(batch));
+            } catch (RuntimeException ex) {
+                System.err.println("Async mutation subscriber " + worker.getName() + " failed: " + ex.getMessage());
+            }
+            pending.addAndGet(-batch.size());
+            batch.clear();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+import java.io.File;
+
+/**
+ * MutationEvent
+ * One change made through UserManager, ScrollManager, User or Scroll, published on
+ * the MutationBus once it is on disk. The generation is the value the change moved
+ * its root's generation to (see fsam.ProcessLocks), or -1 if that failed.
+ *
+ * Values of password attributes are never included, and neither is the contents
+ * of a scroll blob; those events carry a null value.
+ */
+public final class MutationEvent {
+    public enum Entity { USER, SCROLL }
+    public enum Type { CREATED, ATTRIBUTE_CHANGED, RENAMED, DELETED }
+
+    private final Entity entity;
+    private final Type type;
+    private final File root;
+    private final String id;
+    private final String previousId;
+    private final String attribute;
+    private final String value;
+    private final long generation;
+
+    MutationEvent(Entity entity, Type type, File root, String id, String previousId,
+                  String attribute, String value, long generation) {
+        this.entity = entity;
+        this.type = type;
+        this.root = root;
+        this.id = id;
+        this.previousId = previousId;
+        this.attribute = attribute;
+        this.value = value;
+        this.generation = generation;
+    }
+
+    public Entity getEntity() { return entity; }
+    public Type getType() { return type; }
+    // Absolute, normalised users or scrolls root the record lives under
+    public File getRoot() { return root; }
+    public String getId() { return id; }
+    // Only set for RENAMED
+    public String getPreviousId() { return previousId; }
+    // Only set for ATTRIBUTE_CHANGED
+    public String getAttribute() { return attribute; }
+    public String getValue() { return value; }
+    public long getGeneration() { return generation; }
+
+    @Override
+    public String toString() {
+        String what = switch (type) {
+            case RENAMED -> previousId + " -> " + id;
+            case ATTRIBUTE_CHANGED -> id + "/" + attribute;
+            default -> id;
+        };
+        return entity + " " + type + " " + what;
+    }
+}
@@ -3,10 +3,9 @@ import fsam.FilesystemMemory;
 import java.io.File;
 import java.io.IOException;
 
-import java.nio.file.Files;
-import java.nio.file.StandardCopyOption;
 
 import java.util.Date;
+import java.util.concurrent.locks.ReentrantLock;
 
 class Scroll extends FilesystemMemory{
     // Internal FilesystemMemory object for the underlying data
@@ -42,14 +41,21 @@ class Scroll extends FilesystemMemory{
 
     public boolean setScrollName(String newName)
     {
+        ReentrantLock lock = recordLock();
+        lock.lock();
         try
         {
             setChildString("scroll_name", newName);
+            changed("scroll_name", newName);
         }
         catch (IOException e)
         {
             return false;
         }
+        finally
+        {
+            lock.unlock();
+        }
 
         return true;
     }
@@ -67,16 +73,25 @@ class Scroll extends FilesystemMemory{
     }
 
 
+    // The record lock keeps the uploader index in step with the file when two
+    // threads set the uploader at once (the index follows the published events)
     public boolean setUploaderId(String id)
     {
+        ReentrantLock lock = recordLock();
+        lock.lock();
         try
         {
             setChildString("uploader_id", id);
+            changed("uploader_id", id);
         }
         catch (IOException e)
         {
             return false;
         }
+        finally
+        {
+            lock.unlock();
+        }
 
         return true;
     }
@@ -104,19 +119,26 @@ class Scroll extends FilesystemMemory{
             return false;
         }
 
-        if (! childExists("upload_timestamp"))
+        ReentrantLock lock = recordLock();
+        lock.lock();
+        try
         {
-            try
+            if (! childExists("upload_timestamp"))
             {
                 createChildFile("upload_timestamp");
             }
-            catch (IOException e)
-            {
-                return false;
-            }
+            getChild("upload_timestamp").getFileObj().setLastModified(epoch_stamp);
+            changed("upload_timestamp", Long.toString(epoch_stamp));
+        }
+        catch (IOException e)
+        {
+            return false;
+        }
+        finally
+        {
+            lock.unlock();
         }
 
-        getChild("upload_timestamp").getFileObj().setLastModified(epoch_stamp);
         return true;
     }
 
@@ -135,25 +157,38 @@ class Scroll extends FilesystemMemory{
     public boolean setScrollFile(String path)
     {
         File source = new File(path);
-        File target = getChild("scroll_blob").getFileObj();
 
         if (! source.isFile())
         {
             return false;
         }
 
+        // Copied beside the blob and renamed over it, so downloads never see half a file
+        ReentrantLock lock = recordLock();
+        lock.lock();
         try
         {
-            Files.copy(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            copyToChild(source, "scroll_blob");
+            changed("scroll_blob", null);
         }
         catch (IOException e)
         {
             return false;
         }
+        finally
+        {
+            lock.unlock();
+        }
 
         return true;
     }
 
+    // Announce a change written under the record lock; the blob's contents are never published
+    private void changed(String attribute, String value)
+    {
+        MutationBus.getInstance().attributeChanged(MutationEvent.Entity.SCROLL, getFileObj(), attribute, value);
+    }
+
     public File getScrollFile()
     {
         File c = getChild("scroll_blob").getFileObj();
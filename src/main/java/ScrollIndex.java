@@ -0,0 +1,323 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import fsam.ChangeEvent;
+import fsam.ChangeFeed;
+import fsam.ProcessLocks;
+import metrics.CacheMetrics;
+import metrics.Metrics;
+
+/**
+ * ScrollIndex
+ * In-memory uploader lookup for one scroll root (uploader ID -> scroll IDs and back),
+ * plus the set of "hidden" uploaders whose scrolls are pending deletion.
+ *
+ * As with UserTable there is one index per root, shared by every ScrollManager on it.
+ * The uploader map is built on first use and kept current from the scroll events
+ * on the MutationBus (published by ScrollManager and the Scroll setters), queued
+ * without blocking the writer and applied by the next lookup, as in UserTable. Hidden
+ * uploaders are persisted as marker files in "<root>/.hidden_uploaders" so they
+ * survive a restart until the deletion finishes.
+ *
+ * Events and hidden-set changes bump the root's generation (see ProcessLocks).
+ * When another process has moved it, the uploader map is rebuilt and the hidden
+ * set re-read. Both are built aside and swapped in whole, so a lookup that runs
+ * meanwhile sees the old state, never an empty one. An index that follows a
+ * ChangeFeed keeps its uploader map and updates just the scrolls the feed
+ * reports; only the hidden set is still re-read on a generation change.
+ */
+public class ScrollIndex {
+    private static final Map<String, ScrollIndex> INDEXES = new ConcurrentHashMap<>();
+    private static final CacheMetrics CACHE = Metrics.cache("scroll_index");
+    static final String HIDDEN_DIR = ".hidden_uploaders";
+    static final int MAX_PENDING = 65_536;
+
+    static {
+        MutationBus.getInstance().subscribe(e -> {
+            if (e.getEntity() == MutationEvent.Entity.SCROLL) {
+                ScrollIndex i = INDEXES.get(key(e.getRoot()));
+                if (i != null) {
+                    i.onMutation(e);
+                }
+            }
+        });
+    }
+
+    private final File root;
+    private final ProcessLocks locks;
+    private volatile Uploaders uploaders = new Uploaders();
+    private volatile Set<String> hiddenUploaders = ConcurrentHashMap.newKeySet();
+    private volatile boolean loaded = false;
+    private volatile long seenGeneration;
+    private volatile boolean following = false;
+
+    private final ConcurrentLinkedQueue<MutationEvent> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private volatile boolean overflowed = false;
+
+    private ScrollIndex(File root) {
+        this.root = root;
+        this.locks = ProcessLocks.forRoot(root);
+        this.seenGeneration = locks.generation();
+        readHidden();
+    }
+
+    private void readHidden() {
+        Set<String> fresh = ConcurrentHashMap.newKeySet();
+        String[] hidden = new File(root, HIDDEN_DIR).list();
+        if (hidden != null) {
+            for (String id : hidden) {
+                fresh.add(id);
+            }
+        }
+        hiddenUploaders = fresh;
+    }
+
+    public static ScrollIndex forRoot(File root) {
+        return INDEXES.computeIfAbsent(key(root), k -> new ScrollIndex(new File(k)));
+    }
+
+    private static String key(File root) {
+        return root.getAbsoluteFile().toPath().normalize().toString();
+    }
+
+    // ---[ Maintenance ]---
+
+    // A change made in this process, already on disk; lock-free, as the writer
+    // still holds the record lock
+    private void onMutation(MutationEvent e) {
+        if (pendingCount.incrementAndGet() > MAX_PENDING) {
+            pendingCount.decrementAndGet();
+            overflowed = true;
+            return;
+        }
+        pending.offer(e);
+    }
+
+    // Called with the monitor held, before the uploader map is used
+    private void applyPending() {
+        boolean dropped = overflowed;
+        overflowed = false;
+        MutationEvent e;
+        while ((e = pending.poll()) != null) {
+            pendingCount.decrementAndGet();
+            if (!dropped) {
+                applyEvent(e);
+            }
+        }
+        if (dropped) {
+            // Lookups keep the current map until the reload replaces it
+            loaded = false;
+        }
+    }
+
+    private void applyEvent(MutationEvent e) {
+        if (loaded) {
+            switch (e.getType()) {
+                case CREATED -> reread(e.getId());
+                case ATTRIBUTE_CHANGED -> {
+                    if ("uploader_id".equals(e.getAttribute())) {
+                        unlink(e.getId());
+                        link(e.getId(), e.getValue() == null ? "" : e.getValue());
+                    }
+                }
+                case RENAMED -> {
+                    String uploader = unlink(e.getPreviousId());
+                    if (uploader != null) {
+                        link(e.getId(), uploader);
+                    }
+                }
+                case DELETED -> unlink(e.getId());
+            }
+        }
+        applied(e.getGeneration());
+    }
+
+    // Our own change is already applied; a gap means another process wrote in
+    // between, and the next lookup resynchronises
+    private void applied(long generation) {
+        if (generation == seenGeneration + 1) {
+            seenGeneration = generation;
+        }
+    }
+
+    // Cheap unless events are queued or another process has changed the root
+    // since we last looked
+    private void syncWithDisk() {
+        if (pendingCount.get() == 0 && !overflowed && locks.generation() == seenGeneration) {
+            return;
+        }
+        synchronized (this) {
+            applyPending();
+            long g = locks.generation();
+            if (g == seenGeneration) {
+                return;
+            }
+            if (!following) {
+                loaded = false;
+            }
+            readHidden();
+            seenGeneration = g;
+        }
+    }
+
+    private void link(String scrollId, String uploaderId) {
+        uploaders.link(scrollId, uploaderId);
+    }
+
+    private String unlink(String scrollId) {
+        return uploaders.unlink(scrollId);
+    }
+
+    // Both directions of the uploader map, replaced together on a reload
+    private static final class Uploaders {
+        final Map<String, String> uploaderOf = new ConcurrentHashMap<>();
+        final Map<String, Set<String>> byUploader = new ConcurrentHashMap<>();
+
+        void link(String scrollId, String uploaderId) {
+            uploaderOf.put(scrollId, uploaderId);
+            byUploader.computeIfAbsent(uploaderId, k -> ConcurrentHashMap.newKeySet()).add(scrollId);
+        }
+
+        String unlink(String scrollId) {
+            String prev = uploaderOf.remove(scrollId);
+            if (prev != null) {
+                Set<String> owned = byUploader.get(prev);
+                if (owned != null) {
+                    owned.remove(scrollId);
+                    if (owned.isEmpty()) {
+                        byUploader.remove(prev);
+                    }
+                }
+            }
+            return prev;
+        }
+    }
+
+    // Keep the uploader map current from the feed's events
+    public void follow(ChangeFeed feed) {
+        feed.subscribe(this::apply);
+        following = true;
+    }
+
+    synchronized void apply(List<ChangeEvent> events) {
+        if (!loaded) {
+            return;
+        }
+        for (ChangeEvent e : events) {
+            switch (e.getType()) {
+                case CREATED -> reread(e.getRecordId());
+                case ATTRIBUTE_CHANGED -> {
+                    if (e.getAttribute() == null || "uploader_id".equals(e.getAttribute())) {
+                        reread(e.getRecordId());
+                    }
+                }
+                case RENAMED -> {
+                    unlink(e.getPreviousId());
+                    reread(e.getRecordId());
+                }
+                case DELETED -> unlink(e.getRecordId());
+            }
+        }
+    }
+
+    private void reread(String scrollId) {
+        unlink(scrollId);
+        File dir = new File(root, scrollId);
+        if (dir.isDirectory()) {
+            Scroll s = new Scroll();
+            s.setFileObj(dir);
+            String uploader = s.getUploaderId();
+            link(scrollId, uploader == null ? "" : uploader);
+        }
+    }
+
+    // The map to answer from; a reload builds a new one and swaps it in when complete
+    private Uploaders ensureLoaded() {
+        syncWithDisk();
+        if (loaded) {
+            CACHE.hit();
+            return uploaders;
+        }
+        synchronized (this) {
+            if (loaded) {
+                CACHE.hit();
+                return uploaders;
+            }
+            CACHE.miss();
+            Uploaders fresh = new Uploaders();
+            File[] dirs = root.listFiles(f -> f.isDirectory() && !f.getName().startsWith("."));
+            if (dirs != null) {
+                for (File d : dirs) {
+                    Scroll s = new Scroll();
+                    s.setFileObj(d);
+                    String uploader = s.getUploaderId();
+                    fresh.link(d.getName(), uploader == null ? "" : uploader);
+                }
+            }
+            uploaders = fresh;
+            loaded = true;
+            return fresh;
+        }
+    }
+
+    // ---[ Lookups ]---
+    public String uploaderOf(String scrollId) {
+        return ensureLoaded().uploaderOf.get(scrollId);
+    }
+
+    // Snapshot of the scroll IDs uploaded by the given user, in ID order
+    public Set<String> scrollsBy(String uploaderId) {
+        Set<String> owned = ensureLoaded().byUploader.get(uploaderId);
+        return owned == null ? new TreeSet<>() : new TreeSet<>(owned);
+    }
+
+    // ---[ Hidden uploaders ]---
+    public void hideUploader(String uploaderId) throws IOException {
+        File dir = new File(root, HIDDEN_DIR);
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Failed to create " + dir.getPath());
+        }
+        File marker = new File(dir, uploaderId);
+        if (!marker.exists() && !marker.createNewFile()) {
+            throw new IOException("Failed to create " + marker.getPath());
+        }
+        hiddenChanged(() -> hiddenUploaders.add(uploaderId));
+    }
+
+    public void unhideUploader(String uploaderId) {
+        new File(new File(root, HIDDEN_DIR), uploaderId).delete();
+        hiddenChanged(() -> hiddenUploaders.remove(uploaderId));
+    }
+
+    private synchronized void hiddenChanged(Runnable apply) {
+        applyPending();
+        long g = locks.bumpGeneration();
+        apply.run();
+        applied(g);
+    }
+
+    public boolean isUploaderHidden(String uploaderId) {
+        syncWithDisk();
+        return hiddenUploaders.contains(uploaderId);
+    }
+
+    // True if the scroll belongs to a hidden uploader
+    // Costs only a generation check (and never loads the index) while no uploader is hidden
+    public boolean isHidden(String scrollId) {
+        syncWithDisk();
+        Set<String> hidden = hiddenUploaders;
+        if (hidden.isEmpty()) {
+            return false;
+        }
+        String uploader = uploaderOf(scrollId);
+        return uploader != null && hidden.contains(uploader);
+    }
+}
@@ -1,4 +1,5 @@
 import fsam.FilesystemMemory;
+import metrics.ScrollSearchEvent;
 
 import java.util.Date;
 
@@ -14,6 +15,7 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.concurrent.locks.ReentrantLock;
 
 
 public class ScrollManager extends FilesystemMemory {
@@ -27,104 +29,225 @@ public class ScrollManager extends FilesystemMemory {
         if (!root.exists()) {
             root.mkdirs();
         }
+
+        // Resumes purging of anything left in the trash
+        getTrash();
     }
 
     // Attempt to get a reference to an existing scroll
-    // Returns null if there isn't a scroll with the given ID
+    // Returns null if there isn't a scroll with the given ID (or it is pending deletion)
     public Scroll getScroll(String scrollId)
     {
-        if (!childExists(scrollId))
+        if (scrollId.startsWith(".") || !childExists(scrollId))
+        {
+            return null;
+        }
+        if (getIndex().isHidden(scrollId))
         {
             return null;
         }
         return getChild(scrollId);
     }
 
+    // Shared uploader index for this scroll root
+    public ScrollIndex getIndex()
+    {
+        return ScrollIndex.forRoot(getFileObj());
+    }
+
     // Attempt to create a new scroll and get a reference to that scroll
     // Returns null if a filesystem error occurred
+    // Creating the directory is itself the existence check, so of several concurrent
+    // creators of one ID exactly one succeeds; the record lock keeps renames and
+    // deletes of the ID out until the defaults are written
     public Scroll createScroll(String scrollId) throws ScrollAlreadyExistsException
     {
-        if (childExists(scrollId))
-        {
-            throw new ScrollAlreadyExistsException(String.format("Scroll %s already exists", scrollId));
-        }
-
         Scroll newScroll = getChild(scrollId);
 
-        // If the scroll doesn't exist, try to create it with default values
+        ReentrantLock lock = newScroll.recordLock();
+        lock.lock();
         try
         {
-            newScroll.createSelfDir();
-            newScroll.setScrollName("");
-            newScroll.setUploaderId("");
-            newScroll.setUploadDate(new Date());
+            try
+            {
+                newScroll.createSelfDirExclusive();
+            }
+            catch (FileAlreadyExistsException e)
+            {
+                throw new ScrollAlreadyExistsException(String.format("Scroll %s already exists", scrollId));
+            }
+
+            // Fill in default values directly, so the record is announced once, by CREATED
+            newScroll.setChildString("scroll_name", "");
+            newScroll.setChildString("uploader_id", "");
+            newScroll.createChildFile("upload_timestamp");
+            new File(newScroll.getFileObj(), "upload_timestamp").setLastModified(System.currentTimeMillis());
             // Create empty blob file
             newScroll.createChildFile("scroll_blob");
+            bus().created(MutationEvent.Entity.SCROLL, getFileObj(), scrollId);
         }
-        catch (FileAlreadyExistsException e) {}
         catch (IOException e)
         {
             return null;
         }
+        finally
+        {
+            lock.unlock();
+        }
 
         return newScroll;
     }
 
     public boolean changeScrollId(String oldId, String newId) throws ScrollAlreadyExistsException, ScrollDoesNotExistException
     {
-        if (! childExists(oldId))
+        ReentrantLock[] held = lockChildren(oldId, newId);
+        try
+        {
+            if (! childExists(oldId))
+            {
+                throw new ScrollDoesNotExistException(String.format("Scroll %s does not exist, cannot be moved", oldId));
+            }
+            if (childExists(newId))
+            {
+                throw new ScrollAlreadyExistsException(String.format("Scroll ID %s already in use, cannot move to it", newId));
+            }
+
+            try
+            {
+                moveChild(oldId, newId);
+            }
+            catch (IOException e)
+            {
+                return false;
+            }
+
+            bus().renamed(MutationEvent.Entity.SCROLL, getFileObj(), oldId, newId);
+            return true;
+        }
+        finally
         {
-            throw new ScrollDoesNotExistException(String.format("Scroll %s does not exist, cannot be moved", oldId));
+            unlock(held);
         }
-        if (childExists(newId))
+    }
+
+    // Moves the scroll into the trash with a single rename; the files are reclaimed
+    // later by the trash purger and the scroll can be restored until then
+    public boolean deleteScroll(String scrollId)
+    {
+        if (scrollId.startsWith("."))
         {
-            throw new ScrollAlreadyExistsException(String.format("Scroll ID %s already in use, cannot move to it", newId));
+            return false;
         }
 
+        ReentrantLock lock = childLock(scrollId);
+        lock.lock();
         try
         {
-            moveChild(oldId, newId);
+            if (! childExists(scrollId))
+            {
+                return false;
+            }
+
+            try
+            {
+                getTrash().moveToTrash(getChild(scrollId).getFileObj());
+            }
+            catch (IOException e)
+            {
+                return false;
+            }
+
+            bus().deleted(MutationEvent.Entity.SCROLL, getFileObj(), scrollId);
+            return true;
         }
-        catch (IOException e)
+        finally
         {
-            return false;
+            lock.unlock();
         }
-
-        return true;
     }
 
-    public boolean deleteScroll(String scrollId)
+    // Bring back the most recently deleted scroll with this ID
+    public Scroll restoreScroll(String scrollId) throws ScrollAlreadyExistsException, ScrollDoesNotExistException
     {
-        Scroll s = getChild(scrollId);
+        return restore(scrollId, null, null);
+    }
 
-        if (! s.exists())
+    // Bring back one particular trash entry (see ScrollTrash.Entry.getEntryName)
+    // A non-null uploaderId restricts this to entries uploaded by that user, so an ID
+    // reused by someone else never lets one user restore another's scroll
+    public Scroll restoreScrollEntry(String entryName, String uploaderId) throws ScrollAlreadyExistsException, ScrollDoesNotExistException
+    {
+        ScrollTrash.Entry entry = getTrash().entry(entryName);
+        if (entry == null)
         {
-            return false;
+            throw new ScrollDoesNotExistException(String.format("Trash entry %s does not exist", entryName));
         }
+        return restore(entry.getScrollId(), entryName, uploaderId);
+    }
 
-        File scrollF = s.getFileObj();
-
-        File[] scrollData = scrollF.listFiles();
-
-        if (scrollData != null)
+    private Scroll restore(String scrollId, String entryName, String uploaderId) throws ScrollAlreadyExistsException, ScrollDoesNotExistException
+    {
+        ReentrantLock lock = childLock(scrollId);
+        lock.lock();
+        try
         {
-            for (File dataF : scrollData)
+            ScrollTrash.Entry entry = entryName == null ? getTrash().latest(scrollId) : getTrash().entry(entryName);
+            if (entry == null)
+            {
+                throw new ScrollDoesNotExistException(String.format("Scroll %s is not in the trash", scrollId));
+            }
+            if (uploaderId != null && ! uploaderId.equals(entry.getUploaderId()))
             {
-                dataF.delete();
+                throw new ScrollDoesNotExistException(String.format("Scroll %s is not in the trash of %s", scrollId, uploaderId));
             }
+            if (childExists(scrollId))
+            {
+                throw new ScrollAlreadyExistsException(String.format("Scroll ID %s already in use, cannot restore to it", scrollId));
+            }
+
+            try
+            {
+                moveChild(ScrollTrash.TRASH_DIR + "/" + entry.getEntryName(), scrollId);
+            }
+            catch (IOException e)
+            {
+                // Most likely claimed by the purger in the meantime
+                throw new ScrollDoesNotExistException(String.format("Scroll %s could not be restored", scrollId));
+            }
+
+            bus().created(MutationEvent.Entity.SCROLL, getFileObj(), scrollId);
+            return getChild(scrollId);
         }
+        finally
+        {
+            lock.unlock();
+        }
+    }
 
-        scrollF.delete();
+    private static MutationBus bus()
+    {
+        return MutationBus.getInstance();
+    }
 
-        return true;
+    // Deleted scrolls for this root
+    public ScrollTrash getTrash()
+    {
+        return ScrollTrash.forRoot(getFileObj());
     }
 
+    // Skips internal (dot-prefixed) entries and scrolls pending deletion
     public List<Scroll> getAllScrolls()
     {
+        ScrollIndex index = getIndex();
         ArrayList<Scroll> scrolls = new ArrayList<>();
         for (File f : getFileObj().listFiles())
         {
-            scrolls.add(getChild(f.getName()));
+            String id = f.getName();
+            if (id.startsWith(".") || index.isHidden(id))
+            {
+                continue;
+            }
+            scrolls.add(getChild(id));
         }
 
         return scrolls;
@@ -236,6 +359,8 @@ public class ScrollManager extends FilesystemMemory {
                                   Date uploadedAfter,
                                   Date uploadedBefore)
     {
+        ScrollSearchEvent event = new ScrollSearchEvent();
+        event.begin();
         ArrayList<Scroll> search = new ArrayList<>();
 
         List<Scroll> all = getAllScrollsSorted();
@@ -299,9 +424,46 @@ public class ScrollManager extends FilesystemMemory {
             }
             search.add(s);
         }
+
+        event.end();
+        if (event.shouldCommit())
+        {
+            event.criteria = describeCriteria(uploaderId, scrollId, nameContains, uploadedAfter, uploadedBefore);
+            event.scanned = all.size();
+            event.matched = search.size();
+            event.commit();
+        }
         return search;
     }
 
+    // Which search filters were set, e.g. "uploader,name"; values are left out
+    private static String describeCriteria(String uploaderId, String scrollId, String nameContains,
+                                           Date uploadedAfter, Date uploadedBefore)
+    {
+        StringBuilder sb = new StringBuilder();
+        if (uploaderId != null && !uploaderId.isBlank())
+        {
+            sb.append("uploader,");
+        }
+        if (scrollId != null && !scrollId.isBlank())
+        {
+            sb.append("id,");
+        }
+        if (nameContains != null && !nameContains.isBlank())
+        {
+            sb.append("name,");
+        }
+        if (uploadedAfter != null)
+        {
+            sb.append("after,");
+        }
+        if (uploadedBefore != null)
+        {
+            sb.append("before,");
+        }
+        return sb.length() == 0 ? "none" : sb.substring(0, sb.length() - 1);
+    }
+
     private Date startOfDay(Date d)
     {
         java.util.Calendar c = java.util.Calendar.getInstance();
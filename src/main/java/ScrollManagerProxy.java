@@ -2,7 +2,21 @@ import java.io.File;
 import java.util.Date;
 import java.util.List;
 
+import metrics.Metrics;
+import metrics.OperationMetrics;
+
 public class ScrollManagerProxy {
+    private static final OperationMetrics CREATE_SCROLL = Metrics.operation("scroll.createScroll");
+    private static final OperationMetrics UPDATE_SCROLL_NAME = Metrics.operation("scroll.updateScrollName");
+    private static final OperationMetrics DELETE_SCROLL = Metrics.operation("scroll.deleteScroll");
+    private static final OperationMetrics RESTORE_SCROLL = Metrics.operation("scroll.restoreScroll");
+    private static final OperationMetrics DOWNLOAD_SCROLL = Metrics.operation("scroll.downloadScroll");
+    private static final OperationMetrics CHANGE_SCROLL_ID = Metrics.operation("scroll.changeScrollId");
+    private static final OperationMetrics UPDATE_SCROLL_FILE = Metrics.operation("scroll.updateScrollFile");
+    private static final OperationMetrics VIEW_SCROLL = Metrics.operation("scroll.viewScroll");
+    private static final OperationMetrics FIND_SCROLL_BY_NAME = Metrics.operation("scroll.findScrollByName");
+    private static final OperationMetrics GET_ALL_SCROLLS = Metrics.operation("scroll.getAllScrolls");
+
     private final ScrollManager scrollManager;
     private final EventLogManager logManager = EventLogManager.getInstance();
 
@@ -11,17 +25,24 @@ public class ScrollManagerProxy {
     }
 
     public Scroll createScroll(User user, String scrollId) {
+        long start = CREATE_SCROLL.start();
+        boolean ok = false;
         try {
             Scroll scroll = scrollManager.createScroll(scrollId);
             logManager.log(user.getUserId(), user.getUsername(), "ADD_SCROLL", "Created scroll ID: " + scrollId);
+            ok = true;
             return scroll;
         } catch (ScrollAlreadyExistsException e) {
             logManager.log(user.getUserId(), user.getUsername(), "ADD_SCROLL_FAILED", e.getMessage());
             return null;
+        } finally {
+            CREATE_SCROLL.stop(start, ok);
         }
     }
 
     public boolean updateScrollName(User user, String scrollId, String newName) {
+        long start = UPDATE_SCROLL_NAME.start();
+        boolean ok = false;
         try {
             Scroll scroll = scrollManager.getScroll(scrollId);
             if (scroll == null) {
@@ -38,16 +59,21 @@ public class ScrollManagerProxy {
                 logManager.log(user.getUserId(), user.getUsername(), "UPDATE_SCROLL_FAILED",
                         "Failed to set new name for scroll ID: " + scrollId);
             }
+            ok = success;
             return success;
 
         } catch (Exception e) {
             logManager.log(user.getUserId(), user.getUsername(), "UPDATE_SCROLL_FAILED", e.getMessage());
             return false;
+        } finally {
+            UPDATE_SCROLL_NAME.stop(start, ok);
         }
     }
 
 
     public boolean deleteScroll(User user, String scrollId) {
+        long start = DELETE_SCROLL.start();
+        boolean ok = false;
         try {
             boolean deleted = scrollManager.deleteScroll(scrollId);
             if (deleted) {
@@ -56,14 +82,38 @@ public class ScrollManagerProxy {
                 logManager.log(user.getUserId(), user.getUsername(), "DELETE_SCROLL_FAILED",
                     "Scroll not found: " + scrollId);
             }
+            ok = deleted;
             return deleted;
         } catch (Exception e) {
             logManager.log(user.getUserId(), user.getUsername(), "DELETE_SCROLL_FAILED", e.getMessage());
             return false;
+        } finally {
+            DELETE_SCROLL.stop(start, ok);
+        }
+    }
+
+    // Restores the trash entry the user picked; only admins may restore scrolls they did not upload
+    public boolean restoreScroll(User user, ScrollTrash.Entry entry) {
+        long start = RESTORE_SCROLL.start();
+        boolean ok = false;
+        try {
+            String owner = user.getAdmin() ? null : user.getUserId();
+            Scroll restored = scrollManager.restoreScrollEntry(entry.getEntryName(), owner);
+            logManager.log(user.getUserId(), user.getUsername(), "RESTORE_SCROLL",
+                    "Restored scroll ID: " + restored.getScrollId());
+            ok = true;
+            return true;
+        } catch (Exception e) {
+            logManager.log(user.getUserId(), user.getUsername(), "RESTORE_SCROLL_FAILED", e.getMessage());
+            return false;
+        } finally {
+            RESTORE_SCROLL.stop(start, ok);
         }
     }
 
     public File downloadScroll(User user, String scrollId) {
+        long start = DOWNLOAD_SCROLL.start();
+        boolean ok = false;
         try {
             Scroll scroll = scrollManager.getScroll(scrollId);
             if (scroll == null) {
@@ -76,6 +126,7 @@ public class ScrollManagerProxy {
             if (file != null && file.exists()) {
                 logManager.log(user.getUserId(), user.getUsername(), "DOWNLOAD_SCROLL",
                     "Downloaded scroll ID: " + scrollId);
+                ok = true;
                 return file;
             } else {
                 logManager.log(user.getUserId(), user.getUsername(), "DOWNLOAD_SCROLL_FAILED",
@@ -85,10 +136,14 @@ public class ScrollManagerProxy {
         } catch (Exception e) {
             logManager.log(user.getUserId(), user.getUsername(), "DOWNLOAD_SCROLL_FAILED", e.getMessage());
             return null;
+        } finally {
+            DOWNLOAD_SCROLL.stop(start, ok);
         }
     }
 
     public boolean changeScrollId(User user, String oldId, String newId) {
+        long start = CHANGE_SCROLL_ID.start();
+        boolean ok = false;
         try {
             boolean success = scrollManager.changeScrollId(oldId, newId);
             if (success) {
@@ -98,14 +153,19 @@ public class ScrollManagerProxy {
                 logManager.log(user.getUserId(), user.getUsername(), "CHANGE_SCROLL_ID_FAILED",
                         "Failed to change scroll ID from " + oldId + " to " + newId);
             }
+            ok = success;
             return success;
         } catch (ScrollAlreadyExistsException | ScrollDoesNotExistException e) {
             logManager.log(user.getUserId(), user.getUsername(), "CHANGE_SCROLL_ID_FAILED", e.getMessage());
             return false;
+        } finally {
+            CHANGE_SCROLL_ID.stop(start, ok);
         }
     }
 
     public boolean updateScrollFile(User user, String scrollId, String filePath) {
+        long start = UPDATE_SCROLL_FILE.start();
+        boolean ok = false;
         try {
             Scroll scroll = scrollManager.getScroll(scrollId);
             if (scroll == null) {
@@ -123,36 +183,58 @@ public class ScrollManagerProxy {
                 logManager.log(user.getUserId(), user.getUsername(), "UPDATE_SCROLL_FILE_FAILED",
                         "Failed to update file for scroll ID: " + scrollId);
             }
+            ok = success;
             return success;
 
         } catch (Exception e) {
             logManager.log(user.getUserId(), user.getUsername(), "UPDATE_SCROLL_FILE_FAILED", e.getMessage());
             return false;
+        } finally {
+            UPDATE_SCROLL_FILE.stop(start, ok);
         }
     }
 
     // Gray area
     public Scroll viewScroll(User user, String scrollId) {
-        Scroll scroll = scrollManager.getScroll(scrollId);
-        if (scroll != null) {
-            logManager.log(user.getUserId(), user.getUsername(), "VIEW_SCROLL", "Viewed scroll ID: " + scrollId);
+        long start = VIEW_SCROLL.start();
+        Scroll scroll = null;
+        try {
+            scroll = scrollManager.getScroll(scrollId);
+            if (scroll != null) {
+                logManager.log(user.getUserId(), user.getUsername(), "VIEW_SCROLL", "Viewed scroll ID: " + scrollId);
+            }
+            return scroll;
+        } finally {
+            VIEW_SCROLL.stop(start, scroll != null);
         }
-        return scroll;
     }
 
     public Scroll findScrollByName(User user, String scrollName) {
-        Scroll scroll = scrollManager.findScrollByScrollName(scrollName);
-        if (scroll != null) {
-            logManager.log(user.getUserId(), user.getUsername(), "SEARCH_SCROLL",
-                    "Searched scroll name: " + scrollName);
+        long start = FIND_SCROLL_BY_NAME.start();
+        Scroll scroll = null;
+        try {
+            scroll = scrollManager.findScrollByScrollName(scrollName);
+            if (scroll != null) {
+                logManager.log(user.getUserId(), user.getUsername(), "SEARCH_SCROLL",
+                        "Searched scroll name: " + scrollName);
+            }
+            return scroll;
+        } finally {
+            FIND_SCROLL_BY_NAME.stop(start, scroll != null);
         }
-        return scroll;
     }
 
     public List<Scroll> getAllScrolls(User user) {
-        List<Scroll> scrolls = scrollManager.getAllScrolls();
-        logManager.log(user.getUserId(), user.getUsername(), "VIEW_ALL_SCROLLS", "Listed all scrolls");
-        return scrolls;
-    } 
+        long start = GET_ALL_SCROLLS.start();
+        boolean ok = false;
+        try {
+            List<Scroll> scrolls = scrollManager.getAllScrolls();
+            logManager.log(user.getUserId(), user.getUsername(), "VIEW_ALL_SCROLLS", "Listed all scrolls");
+            ok = true;
+            return scrolls;
+        } finally {
+            GET_ALL_SCROLLS.stop(start, ok);
+        }
+    }
 
 }
@@ -0,0 +1,301 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import fsam.ProcessLocks;
+
+/**
+ * ScrollTrash
+ * Holding area for deleted scrolls under "<root>/.trash". Deleting a scroll is a single
+ * rename into the trash (entry name "<scrollId>@<deletedAtMillis>"), so it is O(1)
+ * whatever the size of the blob. Entries can be restored until the retention window
+ * runs out; after that a background purger removes them recursively, rate limited so
+ * a large purge does not starve the rest of the system of disk I/O.
+ *
+ * The purger claims an entry by renaming it to ".purging-<entry>" before deleting it,
+ * so a restore can never pick up a half-deleted scroll, and an interrupted purge is
+ * simply finished on the next run. Only the process holding the root's "trash-purge"
+ * lease purges, so instances sharing the data do not repeat each other's work.
+ */
+public class ScrollTrash {
+    private static final Map<String, ScrollTrash> TRASHES = new ConcurrentHashMap<>();
+    static final String TRASH_DIR = ".trash";
+    static final String PURGING_PREFIX = ".purging-";
+
+    public static final long DEFAULT_RETENTION_MS = TimeUnit.HOURS.toMillis(1);
+    public static final int DEFAULT_MAX_DELETES_PER_SECOND = 500;
+    private static final long PURGE_INTERVAL_MS = TimeUnit.MINUTES.toMillis(1);
+
+    // One daemon thread shared by every root; purges are short and rate limited anyway
+    private static final ScheduledExecutorService PURGER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "scroll-trash-purger");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final File dir;
+    private volatile long retentionMs = DEFAULT_RETENTION_MS;
+    private volatile int maxDeletesPerSecond = DEFAULT_MAX_DELETES_PER_SECOND;
+    private final Object taskLock = new Object();
+    private ScheduledFuture<?> purgeTask;
+
+    private ScrollTrash(File root) {
+        this.dir = new File(root, TRASH_DIR);
+
+        // Pick up entries left over from a previous run
+        String[] leftover = dir.list();
+        if (leftover != null && leftover.length > 0) {
+            schedulePurge();
+        }
+    }
+
+    public static ScrollTrash forRoot(File root) {
+        String key = root.getAbsoluteFile().toPath().normalize().toString();
+        return TRASHES.computeIfAbsent(key, k -> new ScrollTrash(new File(k)));
+    }
+
+    // ---[ Settings ]---
+    public void setRetention(long ms) {
+        this.retentionMs = Math.max(0, ms);
+    }
+
+    public long getRetention() {
+        return retentionMs;
+    }
+
+    // 0 disables the limit
+    public void setMaxDeletesPerSecond(int n) {
+        this.maxDeletesPerSecond = Math.max(0, n);
+    }
+
+    // ---[ Trash / restore ]---
+
+    // Move a scroll directory into the trash; returns the entry it was stored under
+    String moveToTrash(File scrollDir) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Failed to create " + dir.getPath());
+        }
+
+        long now = System.currentTimeMillis();
+        File target = new File(dir, scrollDir.getName() + "@" + now);
+        while (target.exists()) {
+            target = new File(dir, scrollDir.getName() + "@" + (++now));
+        }
+
+        if (!scrollDir.renameTo(target)) {
+            throw new IOException("Failed to move scroll " + scrollDir.getName() + " to the trash");
+        }
+        schedulePurge();
+        return target.getName();
+    }
+
+    // Restorable entries, newest first
+    public List<Entry> list() {
+        List<Entry> out = new ArrayList<>();
+        File[] files = dir.listFiles(f -> !f.getName().startsWith("."));
+        if (files == null) {
+            return out;
+        }
+
+        long cutoff = System.currentTimeMillis() - retentionMs;
+        for (File f : files) {
+            Entry e = Entry.parse(f);
+            if (e != null && e.deletedAt >= cutoff) {
+                out.add(e);
+            }
+        }
+        out.sort((a, b) -> Long.compare(b.deletedAt, a.deletedAt));
+        return out;
+    }
+
+    public List<Entry> listFor(String uploaderId) {
+        List<Entry> out = new ArrayList<>();
+        for (Entry e : list()) {
+            if (uploaderId != null && uploaderId.equals(e.getUploaderId())) {
+                out.add(e);
+            }
+        }
+        return out;
+    }
+
+    // The restorable entry stored under exactly this name, or null
+    public Entry entry(String entryName) {
+        for (Entry e : list()) {
+            if (e.getEntryName().equals(entryName)) {
+                return e;
+            }
+        }
+        return null;
+    }
+
+    // Most recent restorable entry for the scroll ID, or null
+    public Entry latest(String scrollId) {
+        for (Entry e : list()) {
+            if (e.scrollId.equals(scrollId)) {
+                return e;
+            }
+        }
+        return null;
+    }
+
+    // ---[ Purging ]---
+    // Separate lock from purgeExpired so trashing never waits on a running purge
+    private void schedulePurge() {
+        synchronized (taskLock) {
+            if (purgeTask == null || purgeTask.isDone()) {
+                purgeTask = PURGER.scheduleWithFixedDelay(this::purgeTick,
+                        PURGE_INTERVAL_MS, PURGE_INTERVAL_MS, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private void purgeTick() {
+        try {
+            purgeExpired(System.currentTimeMillis());
+        } catch (RuntimeException e) {
+            System.err.println("Scroll trash purge failed: " + e.getMessage());
+        }
+
+        synchronized (taskLock) {
+            String[] left = dir.list();
+            if ((left == null || left.length == 0) && purgeTask != null) {
+                purgeTask.cancel(false);
+                purgeTask = null;
+            }
+        }
+    }
+
+    // Remove every entry deleted before (now - retention); returns how many were reclaimed
+    // Returns 0 straight away while another process is purging this root
+    synchronized int purgeExpired(long now) {
+        try (ProcessLocks.Lease lease = ProcessLocks.forRoot(dir.getParentFile()).tryLease("trash-purge")) {
+            return lease == null ? 0 : purgeClaimable(now);
+        } catch (IOException e) {
+            System.err.println("Scroll trash purge skipped: " + e.getMessage());
+            return 0;
+        }
+    }
+
+    private int purgeClaimable(long now) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return 0;
+        }
+
+        RateLimiter limiter = new RateLimiter(maxDeletesPerSecond);
+        int purged = 0;
+        for (File f : files) {
+            File claimed;
+            if (f.getName().startsWith(PURGING_PREFIX)) {
+                claimed = f;
+            } else {
+                Entry e = Entry.parse(f);
+                if (e == null || e.deletedAt > now - retentionMs) {
+                    continue;
+                }
+                claimed = new File(dir, PURGING_PREFIX + f.getName());
+                if (!f.renameTo(claimed)) {
+                    continue;
+                }
+            }
+
+            if (deleteRecursively(claimed, limiter)) {
+                purged++;
+            }
+        }
+        return purged;
+    }
+
+    private static boolean deleteRecursively(File f, RateLimiter limiter) {
+        File[] children = f.listFiles();
+        if (children != null) {
+            for (File c : children) {
+                deleteRecursively(c, limiter);
+            }
+        }
+        limiter.acquire();
+        return f.delete() || !f.exists();
+    }
+
+    // Simple per-second budget for file deletions
+    private static class RateLimiter {
+        private final int perSecond;
+        private long windowStart = System.nanoTime();
+        private int used = 0;
+
+        RateLimiter(int perSecond) {
+            this.perSecond = perSecond;
+        }
+
+        void acquire() {
+            if (perSecond <= 0) {
+                return;
+            }
+            if (used >= perSecond) {
+                long wait = TimeUnit.SECONDS.toNanos(1) - (System.nanoTime() - windowStart);
+                if (wait > 0) {
+                    try {
+                        TimeUnit.NANOSECONDS.sleep(wait);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                windowStart = System.nanoTime();
+                used = 0;
+            }
+            used++;
+        }
+    }
+
+    public static class Entry {
+        private final File dir;
+        private final String scrollId;
+        private final long deletedAt;
+
+        private Entry(File dir, String scrollId, long deletedAt) {
+            this.dir = dir;
+            this.scrollId = scrollId;
+            this.deletedAt = deletedAt;
+        }
+
+        static Entry parse(File f) {
+            String name = f.getName();
+            int at = name.lastIndexOf('@');
+            if (at <= 0) {
+                return null;
+            }
+            try {
+                return new Entry(f, name.substring(0, at), Long.parseLong(name.substring(at + 1)));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        File getDir() { return dir; }
+        public String getEntryName() { return dir.getName(); }
+        public String getScrollId() { return scrollId; }
+        public Date getDeletedAt() { return new Date(deletedAt); }
+
+        public String getUploaderId() {
+            return scroll().getUploaderId();
+        }
+
+        public String getScrollName() {
+            return scroll().getScrollName();
+        }
+
+        private Scroll scroll() {
+            Scroll s = new Scroll();
+            s.setFileObj(dir);
+            return s;
+        }
+    }
+}
@@ -0,0 +1,343 @@
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * SegmentTimeIndex
+ * Sparse time index of one sealed event log segment ("<log>.<seq>.tidx").
+ *
+ * The segment is cut into blocks of a fixed number of events. For each block the
+ * index records the byte offset where it starts in the stored file and the lowest
+ * and highest event time in it. In a gzipped segment every block is a separate
+ * gzip member, so reading can start at any block offset.
+ *
+ * Event times are only roughly ordered (they are taken before the writer orders
+ * events), so lookups use the running maximum of the block maxima to find the
+ * first block that can hold an event at or after "from", and the minimum over all
+ * later blocks to find where every remaining event is at or after "to". Both are
+ * monotonic, so both are binary searches.
+ *
+ * File format: "file<TAB><indexed file name>" then one "offset<TAB>min_ms<TAB>max_ms"
+ * line per block. An index naming a different file (e.g. written before the
+ * segment was compressed) is ignored.
+ */
+final class SegmentTimeIndex {
+    static final String SUFFIX = ".tidx";
+
+    private final String fileName;
+    private final long[] offsets;
+    private final long[] mins;
+    private final long[] maxes;
+    private final long[] runningMax;
+    private final long[] minFromHere;
+
+    private SegmentTimeIndex(String fileName, long[] offsets, long[] mins, long[] maxes) {
+        this.fileName = fileName;
+        this.offsets = offsets;
+        this.mins = mins;
+        this.maxes = maxes;
+
+        int n = offsets.length;
+        runningMax = new long[n];
+        minFromHere = new long[n];
+        for (int i = 0; i < n; i++) {
+            runningMax[i] = i == 0 ? maxes[i] : Math.max(runningMax[i - 1], maxes[i]);
+        }
+        for (int i = n - 1; i >= 0; i--) {
+            minFromHere[i] = i == n - 1 ? mins[i] : Math.min(minFromHere[i + 1], mins[i]);
+        }
+    }
+
+    String getFileName() {
+        return fileName;
+    }
+
+    int blocks() {
+        return offsets.length;
+    }
+
+    /**
+     * Byte range [start, end) of the stored file holding every event with
+     * from <= time < to; end is -1 for "to the end of the file". Null if no
+     * block can hold such an event.
+     */
+    long[] range(long from, long to) {
+        int n = offsets.length;
+        int first = firstAtLeast(runningMax, from);
+        if (first == n) {
+            return null;
+        }
+        // Blocks from `last` on only hold events at or after `to`
+        int last = firstAtLeast(minFromHere, to);
+        if (last <= first) {
+            return null;
+        }
+        return new long[] {offsets[first], last == n ? -1 : offsets[last]};
+    }
+
+    // First index whose value is >= key in a non-decreasing array (length if none)
+    private static int firstAtLeast(long[] sorted, long key) {
+        int lo = 0;
+        int hi = sorted.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (sorted[mid] < key) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    void write(Path p) throws IOException {
+        StringBuilder sb = new StringBuilder(32 + offsets.length * 40);
+        sb.append("file\t").append(fileName).append('\n');
+        for (int i = 0; i < offsets.length; i++) {
+            sb.append(offsets[i]).append('\t').append(mins[i]).append('\t').append(maxes[i]).append('\n');
+        }
+        Path tmp = p.resolveSibling(p.getFileName() + ".tmp");
+        Files.writeString(tmp, sb.toString(), StandardCharsets.UTF_8);
+        Files.move(tmp, p, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Null if the file is missing or unreadable
+    static SegmentTimeIndex read(Path p) {
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(p, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            return null;
+        }
+        if (lines.isEmpty() || !lines.get(0).startsWith("file\t")) {
+            return null;
+        }
+        Builder b = new Builder(lines.get(0).substring(5));
+        try {
+            for (String line : lines.subList(1, lines.size())) {
+                String[] f = line.split("\t");
+                if (f.length == 3) {
+                    b.block(Long.parseLong(f[0]), Long.parseLong(f[1]), Long.parseLong(f[2]));
+                }
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return b.blocks == 0 ? null : b.build();
+    }
+
+    /**
+     * Reads a whole segment from in, cutting it into blocks of `every` lines, and
+     * returns the index. With gzOut set, every block is also written there as its own
+     * gzip member and offsets are positions in that output; otherwise offsets are
+     * positions in the input.
+     */
+    static SegmentTimeIndex build(InputStream in, OutputStream gzOut, String fileName, int every) throws IOException {
+        BlockWriter w = new BlockWriter(gzOut, new Builder(fileName), every);
+        byte[] buf = new byte[64 * 1024];
+        int n;
+        while ((n = in.read(buf)) > 0) {
+            int start = 0;
+            for (int i = 0; i < n; i++) {
+                if (buf[i] == '\n') {
+                    w.line.write(buf, start, i + 1 - start);
+                    w.endLine();
+                    start = i + 1;
+                }
+            }
+            w.line.write(buf, start, n - start);
+        }
+        if (w.line.size() > 0) {
+            w.endLine();
+        }
+        w.endBlock();
+        if (w.deflater != null) {
+            w.deflater.end();
+        }
+        return w.index.build();
+    }
+
+    // Line bytes with direct access for timeOf
+    private static final class LineBuffer extends ByteArrayOutputStream {
+        LineBuffer() {
+            super(256);
+        }
+
+        long time() {
+            return timeOf(buf, count);
+        }
+
+        void addTo(CRC32 crc) {
+            crc.update(buf, 0, count);
+        }
+    }
+
+    private static final class BlockWriter {
+        private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+        final LineBuffer line = new LineBuffer();
+        final Builder index;
+        final Deflater deflater;
+        private final OutputStream out;
+        private final int every;
+        private final CRC32 crc = new CRC32();
+
+        private long inOffset = 0;
+        private long outOffset = 0;
+        private int lines = 0;
+        private long blockOffset;
+        private long min;
+        private long max;
+        private long blockBytes;
+        private DeflaterOutputStream member;
+
+        BlockWriter(OutputStream out, Builder index, int every) {
+            this.out = out == null ? null : new FilterOutputStream(out) {
+                @Override
+                public void write(int b) throws IOException {
+                    out.write(b);
+                    outOffset++;
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    out.write(b, off, len);
+                    outOffset += len;
+                }
+            };
+            this.deflater = out == null ? null : new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+            this.index = index;
+            this.every = Math.max(1, every);
+        }
+
+        void endLine() throws IOException {
+            if (lines == 0) {
+                startBlock();
+            }
+            long t = line.time();
+            if (t != Long.MIN_VALUE) {
+                min = Math.min(min, t);
+                max = Math.max(max, t);
+            }
+            if (member != null) {
+                line.writeTo(member);
+                line.addTo(crc);
+            }
+            inOffset += line.size();
+            blockBytes += line.size();
+            line.reset();
+            if (++lines == every) {
+                endBlock();
+            }
+        }
+
+        private void startBlock() throws IOException {
+            min = Long.MAX_VALUE;
+            max = Long.MIN_VALUE;
+            blockBytes = 0;
+            if (out == null) {
+                blockOffset = inOffset;
+                return;
+            }
+            blockOffset = outOffset;
+            out.write(GZIP_HEADER);
+            crc.reset();
+            deflater.reset();
+            member = new DeflaterOutputStream(out, deflater, 64 * 1024);
+        }
+
+        void endBlock() throws IOException {
+            if (lines == 0) {
+                return;
+            }
+            if (member != null) {
+                member.finish();
+                writeIntLE((int) crc.getValue());
+                writeIntLE((int) blockBytes);
+                member = null;
+            }
+            index.block(blockOffset, min, max);
+            lines = 0;
+        }
+
+        private void writeIntLE(int v) throws IOException {
+            out.write(v & 0xff);
+            out.write((v >>> 8) & 0xff);
+            out.write((v >>> 16) & 0xff);
+            out.write((v >>> 24) & 0xff);
+        }
+    }
+
+    // Time of a stored line without a full parse; Long.MIN_VALUE if there is none
+    static long timeOf(byte[] line, int len) {
+        // Lines written by EventEncoder start with {"ts":<millis>
+        if (len > 6 && line[0] == '{' && line[1] == '"' && line[2] == 't' && line[3] == 's' && line[4] == '"'
+                && line[5] == ':') {
+            long v = 0;
+            int i = 6;
+            boolean neg = i < len && line[i] == '-';
+            if (neg) {
+                i++;
+            }
+            int start = i;
+            while (i < len && line[i] >= '0' && line[i] <= '9') {
+                v = v * 10 + (line[i++] - '0');
+            }
+            if (i > start) {
+                return neg ? -v : v;
+            }
+        }
+        EventLogger e = EventLogger.parse(new String(line, 0, len, StandardCharsets.UTF_8).trim());
+        return e == null ? Long.MIN_VALUE : e.getTimeMillis();
+    }
+
+    /**
+     * Builder
+     * Collects blocks in file order.
+     */
+    static final class Builder {
+        private final String fileName;
+        private long[] offsets = new long[64];
+        private long[] mins = new long[64];
+        private long[] maxes = new long[64];
+        private int blocks = 0;
+
+        Builder(String fileName) {
+            this.fileName = fileName;
+        }
+
+        // A block with no datable events is left out; its events are still read
+        // as part of the block before it
+        Builder block(long offset, long min, long max) {
+            if (min > max) {
+                return this;
+            }
+            if (blocks == offsets.length) {
+                offsets = Arrays.copyOf(offsets, blocks * 2);
+                mins = Arrays.copyOf(mins, blocks * 2);
+                maxes = Arrays.copyOf(maxes, blocks * 2);
+            }
+            offsets[blocks] = offset;
+            mins[blocks] = min;
+            maxes[blocks] = max;
+            blocks++;
+            return this;
+        }
+
+        SegmentTimeIndex build() {
+            return new SegmentTimeIndex(fileName, Arrays.copyOf(offsets, blocks), Arrays.copyOf(mins, blocks),
+                    Arrays.copyOf(maxes, blocks));
+        }
+    }
+}
@@ -0,0 +1,169 @@
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * SessionManager
+ * Issues opaque session tokens at login and keeps an immutable snapshot of the
+ * logged in user's identity and role, so permission checks and menu rendering
+ * never have to go back to the user directory.
+ *
+ * Snapshots are replaced (with a new version stamp) through the invalidation
+ * hooks below whenever the underlying user changes, and revocation is visible
+ * to every holder of the session immediately.
+ */
+public class SessionManager {
+    protected static SessionManager instance;
+
+    private static final int TOKEN_BYTES = 32;
+
+    private final SecureRandom random = new SecureRandom();
+    private final AtomicLong versions = new AtomicLong();
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private final Map<String, Set<Session>> sessionsByUser = new ConcurrentHashMap<>();
+
+    protected SessionManager() {}
+
+    public static synchronized SessionManager getInstance() {
+        if (instance == null) {
+            instance = new SessionManager();
+        }
+        return instance;
+    }
+
+    static synchronized void setInstanceForTesting(SessionManager newInstance) {
+        instance = newInstance;
+    }
+
+    // Start a new session for the given user (reads the user's attributes once)
+    public Session open(User user) {
+        byte[] raw = new byte[TOKEN_BYTES];
+        random.nextBytes(raw);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(raw);
+
+        Session session = new Session(token, snapshot(user));
+        sessions.put(token, session);
+        sessionsByUser.computeIfAbsent(session.getPrincipal().getUserId(), k -> ConcurrentHashMap.newKeySet()).add(session);
+        return session;
+    }
+
+    // Returns null if the token is unknown or has been revoked
+    public Session get(String token) {
+        if (token == null) {
+            return null;
+        }
+        Session s = sessions.get(token);
+        if (s == null || !s.isValid()) {
+            return null;
+        }
+        return s;
+    }
+
+    public void close(String token) {
+        if (token == null) {
+            return;
+        }
+        Session s = sessions.remove(token);
+        if (s == null) {
+            return;
+        }
+        s.revoked = true;
+        Set<Session> owned = sessionsByUser.get(s.getPrincipal().getUserId());
+        if (owned != null) {
+            owned.remove(s);
+        }
+    }
+
+    // ---[ Invalidation hooks ]---
+
+    // Re-read the user's attributes and publish a new snapshot to all of their sessions
+    public void refresh(User user) {
+        if (user == null) {
+            return;
+        }
+        Set<Session> owned = sessionsByUser.get(user.getUserId());
+        if (owned == null || owned.isEmpty()) {
+            return;
+        }
+
+        Principal p = snapshot(user);
+        for (Session s : owned) {
+            s.principal = p;
+        }
+    }
+
+    // Revoke every session belonging to the user (deletion, ID change)
+    public void revokeUser(String userId) {
+        if (userId == null) {
+            return;
+        }
+        Set<Session> owned = sessionsByUser.remove(userId);
+        if (owned == null) {
+            return;
+        }
+        for (Session s : owned) {
+            s.revoked = true;
+            sessions.remove(s.getToken());
+        }
+    }
+
+    public int activeSessions() {
+        return sessions.size();
+    }
+
+    private Principal snapshot(User user) {
+        return new Principal(
+                user.getUserId(),
+                user.getUsername(),
+                user.getName(),
+                user.getAdmin(),
+                versions.incrementAndGet()
+        );
+    }
+
+    // Immutable view of a user at a point in time
+    public static final class Principal {
+        private final String userId;
+        private final String username;
+        private final String name;
+        private final boolean admin;
+        private final long version;
+
+        private Principal(String userId, String username, String name, boolean admin, long version) {
+            this.userId = userId;
+            this.username = username;
+            this.name = name;
+            this.admin = admin;
+            this.version = version;
+        }
+
+        public String getUserId() { return userId; }
+        public String getUsername() { return username; }
+        public String getName() { return name; }
+        public boolean isAdmin() { return admin; }
+        public long getVersion() { return version; }
+    }
+
+    public static final class Session {
+        private final String token;
+        private volatile Principal principal;
+        private volatile boolean revoked = false;
+
+        private Session(String token, Principal principal) {
+            this.token = token;
+            this.principal = principal;
+        }
+
+        public String getToken() { return token; }
+        public Principal getPrincipal() { return principal; }
+        public boolean isValid() { return !revoked; }
+
+        // A revoked session never carries admin rights
+        public boolean isAdmin() {
+            return !revoked && principal.isAdmin();
+        }
+    }
+}
@@ -2,6 +2,7 @@ import fsam.FilesystemMemory;
 
 import java.io.File;
 import java.io.IOException;;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class User extends FilesystemMemory {
     // Internal FilesystemMemory object for the underlying data
@@ -37,16 +38,7 @@ public class User extends FilesystemMemory {
 
     public boolean setUsername(String newName)
     {
-        try
-        {
-            setChildString("username", newName);
-        }
-        catch (IOException e)
-        {
-            return false;
-        }
-
-        return true;
+        return setTracked("username", newName);
     }
 
     public String getUsername()
@@ -64,16 +56,7 @@ public class User extends FilesystemMemory {
 
     public boolean setName(String newName)
     {
-        try
-        {
-            setChildString("name", newName);
-        }
-        catch (IOException e)
-        {
-            return false;
-        }
-
-        return true;
+        return setTracked("name", newName);
     }
 
     public String getName()
@@ -91,16 +74,7 @@ public class User extends FilesystemMemory {
 
     public boolean setPhone(String newPhone)
     {
-        try
-        {
-            setChildString("phone", newPhone);
-        }
-        catch (IOException e)
-        {
-            return false;
-        }
-
-        return true;
+        return setTracked("phone", newPhone);
     }
 
     public String getPhone()
@@ -118,16 +92,7 @@ public class User extends FilesystemMemory {
 
     public boolean setEmail(String newEmail)
     {
-        try
-        {
-            setChildString("email", newEmail);
-        }
-        catch (IOException e)
-        {
-            return false;
-        }
-
-        return true;
+        return setTracked("email", newEmail);
     }
 
     public String getEmail()
@@ -144,16 +109,7 @@ public class User extends FilesystemMemory {
 
     public boolean setPasswordHash(String newPasswordHash)
     {
-        try
-        {
-            setChildString("password_hash", newPasswordHash);
-        }
-        catch (IOException e)
-        {
-            return false;
-        }
-
-        return true;
+        return setTracked("password_hash", newPasswordHash);
     }
 
     public String getPasswordHash()
@@ -169,30 +125,52 @@ public class User extends FilesystemMemory {
     }
 
     public boolean setAdmin(boolean adminStatus)
+    {
+        return setTracked("admin", Boolean.toString(adminStatus));
+    }
+
+    // Defaults to false if an error occurs
+    public boolean getAdmin()
     {
         try
         {
-            setChildBoolean("admin", adminStatus);
+            return getChildBoolean("admin");
         }
         catch (IOException e)
         {
             return false;
         }
-
-        return true;
     }
 
-    // Defaults to false if an error occurs
-    public boolean getAdmin()
+    // Write an attribute and publish the change
+    // The record lock covers both steps, so subscribers such as the listing table
+    // see a record's changes in the order the files were written
+    private boolean setTracked(String attribute, String value)
     {
+        ReentrantLock lock = recordLock();
+        lock.lock();
         try
         {
-            return getChildBoolean("admin");
+            setChildString(attribute, value);
+            changed(attribute, value);
         }
         catch (IOException e)
         {
             return false;
         }
+        finally
+        {
+            lock.unlock();
+        }
+
+        return true;
+    }
+
+    // Password fields are announced without their values
+    private void changed(String attribute, String value)
+    {
+        String published = attribute.startsWith("password_") ? null : value;
+        MutationBus.getInstance().attributeChanged(MutationEvent.Entity.USER, getFileObj(), attribute, published);
     }
 
     public UserData getChild(String dataPath)
@@ -206,12 +184,7 @@ public class User extends FilesystemMemory {
     }
 
     public boolean setPasswordSalt(String saltB64) {
-        try {
-            setChildString("password_salt", saltB64);
-        } catch (IOException e) {
-            return false;
-        }
-        return true;
+        return setTracked("password_salt", saltB64);
     }
 
     public String getPasswordSalt() {
@@ -223,12 +196,7 @@ public class User extends FilesystemMemory {
     }
 
     public boolean setPasswordAlgo(String algo) {
-        try {
-            setChildString("password_algo", algo);
-        } catch (IOException e) {
-            return false;
-        }
-        return true;
+        return setTracked("password_algo", algo);
     }
 
     public String getPasswordAlgo() {
@@ -240,12 +208,7 @@ public class User extends FilesystemMemory {
     }
 
     public boolean setPasswordIters(int iters) {
-        try {
-            setChildString("password_iters", Integer.toString(iters));
-        } catch (IOException e) {
-            return false;
-        }
-        return true;
+        return setTracked("password_iters", Integer.toString(iters));
     }
 
     public Integer getPasswordIters() {
@@ -0,0 +1,190 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import fsam.ProcessLocks;
+
+/**
+ * UserDeletionWorker
+ * Finishes user deletions in the background. AdminManager.deleteUser only tombstones
+ * the user and hides their scrolls; this worker then looks up the user's scrolls
+ * through the ScrollIndex, deletes them one by one and finally removes the tombstone.
+ *
+ * Progress is kept in memory for reporting and written to a small file inside the
+ * tombstone, and any tombstones left behind by a crash are picked up again the first
+ * time a worker is created for the pair of roots. Each deletion runs under a
+ * per-user lease on the user root, so when several instances resume the same
+ * tombstone only one of them works on it.
+ */
+public class UserDeletionWorker {
+    private static final Map<String, UserDeletionWorker> WORKERS = new ConcurrentHashMap<>();
+    static final String PROGRESS_FILE = ".cascade_progress";
+    private static final int PROGRESS_EVERY = 32;
+
+    private final UserManager userManager;
+    private final ScrollManager scrollManager;
+    private final ThreadPoolExecutor executor;
+    private final Map<String, Progress> progress = new ConcurrentHashMap<>();
+    private final Map<String, Future<?>> jobs = new ConcurrentHashMap<>();
+
+    private UserDeletionWorker(UserManager userManager, ScrollManager scrollManager) {
+        this.userManager = userManager;
+        this.scrollManager = scrollManager;
+
+        // Single worker thread, only alive while there is work
+        this.executor = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread t = new Thread(r, "user-deletion");
+            t.setDaemon(true);
+            return t;
+        });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    public static UserDeletionWorker forManagers(UserManager userManager, ScrollManager scrollManager) {
+        String key = key(userManager.getFileObj()) + "|" + key(scrollManager.getFileObj());
+        return WORKERS.computeIfAbsent(key, k -> {
+            UserDeletionWorker w = new UserDeletionWorker(userManager, scrollManager);
+            w.resumePending();
+            return w;
+        });
+    }
+
+    private static String key(File root) {
+        return root.getAbsoluteFile().toPath().normalize().toString();
+    }
+
+    // Re-queue deletions interrupted by a crash or shutdown
+    private void resumePending() {
+        for (String userId : userManager.getTombstones()) {
+            try {
+                scrollManager.getIndex().hideUploader(userId);
+            } catch (IOException e) {
+                System.err.println("Failed to hide scrolls of deleted user " + userId + ": " + e.getMessage());
+            }
+            submit(userId);
+        }
+    }
+
+    public synchronized void submit(String userId) {
+        Future<?> running = jobs.get(userId);
+        if (running != null && !running.isDone()) {
+            return;
+        }
+
+        Progress p = new Progress(userId, readProgress(userId));
+        progress.put(userId, p);
+        jobs.put(userId, executor.submit(() -> run(p)));
+    }
+
+    private void run(Progress p) {
+        String userId = p.userId;
+        ScrollIndex index = scrollManager.getIndex();
+
+        try (ProcessLocks.Lease lease = ProcessLocks.forRoot(userManager.getFileObj()).tryLease("delete-" + userId)) {
+            if (lease == null) {
+                // Another instance is already finishing this deletion
+                return;
+            }
+
+            Set<String> scrollIds = index.scrollsBy(userId);
+            p.total = p.done + scrollIds.size();
+
+            for (String scrollId : scrollIds) {
+                // Skip anything that changed owner since the lookup
+                if (userId.equals(index.uploaderOf(scrollId))) {
+                    scrollManager.deleteScroll(scrollId);
+                }
+                p.done++;
+                if (p.done % PROGRESS_EVERY == 0) {
+                    writeProgress(userId, p.done);
+                }
+            }
+
+            // Unhide before dropping the tombstone so a crash in between is simply resumed
+            index.unhideUploader(userId);
+            if (!userManager.purgeTombstone(userId)) {
+                System.err.println("Failed to remove all files of deleted user " + userId);
+            }
+            p.finished = true;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Background deletion of user " + userId + " failed: " + e.getMessage());
+        } finally {
+            progress.remove(userId, p);
+        }
+    }
+
+    private int readProgress(String userId) {
+        File f = new File(userManager.getTombstoneDir(userId), PROGRESS_FILE);
+        try {
+            return f.isFile() ? Integer.parseInt(Files.readString(f.toPath()).trim()) : 0;
+        } catch (IOException | NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private void writeProgress(String userId, int done) {
+        File f = new File(userManager.getTombstoneDir(userId), PROGRESS_FILE);
+        try {
+            Files.writeString(f.toPath(), Integer.toString(done));
+        } catch (IOException e) {
+            // Progress is advisory; a lost update only means some work is redone
+        }
+    }
+
+    // Deletions still in flight
+    public List<Progress> getProgress() {
+        return new ArrayList<>(progress.values());
+    }
+
+    // Wait for all queued deletions (mainly for tests and shutdown)
+    public boolean awaitIdle(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (Future<?> f : new ArrayList<>(jobs.values())) {
+            try {
+                f.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (ExecutionException e) {
+                // reported by run()
+            } catch (TimeoutException e) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static class Progress {
+        public final String userId;
+        volatile int done;
+        volatile int total = -1;
+        volatile boolean finished = false;
+
+        Progress(String userId, int done) {
+            this.userId = userId;
+            this.done = done;
+        }
+
+        public int getDone() { return done; }
+
+        // -1 until the scroll lookup has run
+        public int getTotal() { return total; }
+
+        public boolean isFinished() { return finished; }
+
+        @Override
+        public String toString() {
+            return total < 0
+                    ? String.format("%s: queued", userId)
+                    : String.format("%s: %d/%d scrolls removed", userId, done, total);
+        }
+    }
+}
@@ -0,0 +1,331 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * UserImporter
+ * Bulk user creation from a CSV (with a header row) or JSONL file.
+ * Recognised fields (case-insensitive): userId, username, password, admin, name, email, phone.
+ *
+ * Rows are read in batches; the PBKDF2 hashing for a batch runs on a worker pool
+ * (one thread per core) while the previous batch is being written, and each user
+ * is written through UserManager.createUserRecord so it appears atomically.
+ * Bad rows are reported and skipped. After every written batch the last processed
+ * line number is saved to "<input>.checkpoint", so an interrupted import picks up
+ * where it stopped when run again; the checkpoint is removed once the file is done.
+ */
+public class UserImporter {
+    public static final int DEFAULT_BATCH_SIZE = 256;
+
+    private final UserManager userManager;
+    private final int threads;
+    private final int batchSize;
+
+    public UserImporter(UserManager userManager) {
+        this(userManager, Runtime.getRuntime().availableProcessors(), DEFAULT_BATCH_SIZE);
+    }
+
+    public UserImporter(UserManager userManager, int threads, int batchSize) {
+        this.userManager = userManager;
+        this.threads = Math.max(1, threads);
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    public static Path checkpointFor(Path input) {
+        return input.resolveSibling(input.getFileName() + ".checkpoint");
+    }
+
+    public ImportReport importFile(Path input) throws IOException {
+        ImportReport report = new ImportReport();
+        Path checkpoint = checkpointFor(input);
+        long resumeAfter = readCheckpoint(checkpoint);
+        report.resumedAfterLine = resumeAfter;
+
+        boolean jsonl = isJsonl(input);
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "user-import-hash");
+            t.setDaemon(true);
+            return t;
+        });
+
+        try (BufferedReader reader = Files.newBufferedReader(input, StandardCharsets.UTF_8)) {
+            String[] header = null;
+            long lineNo = 0;
+
+            if (!jsonl) {
+                String headerLine = reader.readLine();
+                lineNo++;
+                if (headerLine == null) {
+                    return report;
+                }
+                header = splitCsv(headerLine).toArray(new String[0]);
+                for (int i = 0; i < header.length; i++) {
+                    header[i] = header[i].trim().toLowerCase(Locale.ROOT);
+                }
+            }
+
+            // Batches whose hashes are in flight, oldest first
+            ArrayDeque<Batch> pending = new ArrayDeque<>();
+            Batch current = new Batch();
+
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNo++;
+                if (lineNo <= resumeAfter) {
+                    report.skipped++;
+                    continue;
+                }
+                if (line.isBlank()) {
+                    current.lastLine = lineNo;
+                    continue;
+                }
+
+                Row row = new Row();
+                row.line = lineNo;
+                try {
+                    row.fields = jsonl ? parseJsonl(line) : parseCsv(header, line);
+                    validate(row.fields);
+                    String password = row.fields.get("password");
+                    row.hash = pool.submit(() -> UserManager.hashPassword(password));
+                } catch (IllegalArgumentException e) {
+                    row.error = e.getMessage();
+                }
+                current.rows.add(row);
+                current.lastLine = lineNo;
+
+                if (current.rows.size() >= batchSize) {
+                    pending.add(current);
+                    current = new Batch();
+                    // Keep one batch hashing while the previous one is written
+                    if (pending.size() > 1) {
+                        writeBatch(pending.poll(), report, checkpoint);
+                    }
+                }
+            }
+
+            pending.add(current);
+            while (!pending.isEmpty()) {
+                writeBatch(pending.poll(), report, checkpoint);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        Files.deleteIfExists(checkpoint);
+        return report;
+    }
+
+    private void writeBatch(Batch batch, ImportReport report, Path checkpoint) throws IOException {
+        for (Row row : batch.rows) {
+            String userId = row.fields != null ? row.fields.get("userid") : null;
+            if (row.error != null) {
+                report.fail(row.line, userId, row.error);
+                continue;
+            }
+
+            try {
+                UserManager.PasswordRecord password = row.hash.get();
+
+                Map<String, String> attrs = new LinkedHashMap<>();
+                attrs.put("username", row.fields.get("username"));
+                attrs.put("admin", Boolean.toString(parseBoolean(row.fields.get("admin"))));
+                copyIfPresent(row.fields, attrs, "name");
+                copyIfPresent(row.fields, attrs, "email");
+                copyIfPresent(row.fields, attrs, "phone");
+
+                userManager.createUserRecord(userId, attrs, password);
+                report.imported++;
+            } catch (UserAlreadyExistsException e) {
+                report.fail(row.line, userId, e.getMessage());
+            } catch (ExecutionException e) {
+                report.fail(row.line, userId, "Password hashing failed: " + e.getCause().getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Import interrupted", e);
+            } catch (IOException e) {
+                report.fail(row.line, userId, e.getMessage());
+            }
+        }
+
+        if (batch.lastLine > 0) {
+            writeCheckpoint(checkpoint, batch.lastLine);
+        }
+    }
+
+    private static void copyIfPresent(Map<String, String> from, Map<String, String> to, String key) {
+        String v = from.get(key);
+        if (v != null) {
+            to.put(key, v);
+        }
+    }
+
+    // Same rules as AdminManager.createUser
+    private static void validate(Map<String, String> fields) {
+        String userId = fields.get("userid");
+        String username = fields.get("username");
+        String password = fields.get("password");
+
+        if (userId == null || userId.isBlank()) {
+            throw new IllegalArgumentException("Missing userId");
+        }
+        if (!userId.matches("[A-Za-z0-9_-]+")) {
+            throw new IllegalArgumentException("Invalid user ID: " + userId);
+        }
+        if (username == null || username.isBlank() || username.equalsIgnoreCase("null")) {
+            throw new IllegalArgumentException("Missing username");
+        }
+        if (password == null || password.isEmpty()) {
+            throw new IllegalArgumentException("Missing password");
+        }
+    }
+
+    static boolean parseBoolean(String input) {
+        if (input == null) return false;
+        input = input.trim().toLowerCase(Locale.ROOT);
+        return input.equals("true") || input.equals("yes") || input.equals("y") || input.equals("1");
+    }
+
+    private static boolean isJsonl(Path input) {
+        String name = input.getFileName().toString().toLowerCase(Locale.ROOT);
+        return name.endsWith(".jsonl") || name.endsWith(".ndjson") || name.endsWith(".json");
+    }
+
+    // ---[ Parsing ]---
+    private static Map<String, String> parseJsonl(String line) {
+        Map<String, String> raw = FlatJson.parse(line);
+        Map<String, String> fields = new LinkedHashMap<>();
+        for (Map.Entry<String, String> e : raw.entrySet()) {
+            fields.put(e.getKey().toLowerCase(Locale.ROOT), e.getValue());
+        }
+        fields.put("userid", fields.containsKey("userid") ? fields.get("userid") : fields.get("id"));
+        return fields;
+    }
+
+    private static Map<String, String> parseCsv(String[] header, String line) {
+        List<String> cols = splitCsv(line);
+        if (cols.size() > header.length) {
+            throw new IllegalArgumentException("Too many columns");
+        }
+
+        Map<String, String> fields = new LinkedHashMap<>();
+        for (int i = 0; i < cols.size(); i++) {
+            fields.put(header[i], cols.get(i).trim());
+        }
+        return fields;
+    }
+
+    // RFC 4180 style: comma separated, fields may be quoted, "" is an escaped quote
+    static List<String> splitCsv(String line) {
+        List<String> out = new ArrayList<>();
+        StringBuilder sb = new StringBuilder();
+        boolean quoted = false;
+
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        sb.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    sb.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                out.add(sb.toString());
+                sb.setLength(0);
+            } else {
+                sb.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quoted field");
+        }
+        out.add(sb.toString());
+        return out;
+    }
+
+    // ---[ Checkpoint ]---
+    private static long readCheckpoint(Path checkpoint) {
+        try {
+            if (!Files.exists(checkpoint)) {
+                return 0;
+            }
+            return Long.parseLong(Files.readString(checkpoint).trim());
+        } catch (IOException | NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static void writeCheckpoint(Path checkpoint, long line) throws IOException {
+        Path tmp = checkpoint.resolveSibling(checkpoint.getFileName() + ".tmp");
+        Files.writeString(tmp, Long.toString(line));
+        Files.move(tmp, checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static class Row {
+        long line;
+        Map<String, String> fields;
+        Future<UserManager.PasswordRecord> hash;
+        String error;
+    }
+
+    private static class Batch {
+        final List<Row> rows = new ArrayList<>();
+        long lastLine = 0;
+    }
+
+    public static class RowError {
+        public final long line;
+        public final String userId;
+        public final String message;
+
+        RowError(long line, String userId, String message) {
+            this.line = line;
+            this.userId = userId;
+            this.message = message;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("line %d (%s): %s", line, userId == null ? "-" : userId, message);
+        }
+    }
+
+    public static class ImportReport {
+        public int imported = 0;
+        public int skipped = 0;
+        public long resumedAfterLine = 0;
+        private final List<RowError> errors = new ArrayList<>();
+
+        void fail(long line, String userId, String message) {
+            errors.add(new RowError(line, userId, message));
+        }
+
+        public int failed() {
+            return errors.size();
+        }
+
+        public List<RowError> getErrors() {
+            return Collections.unmodifiableList(errors);
+        }
+    }
+}
@@ -16,6 +16,7 @@ public class UserInterface {
     private final ScrollManager realScrollManager;
     private final ScrollManagerProxy scrollManager;
     private User userLoggedIn;
+    private SessionManager.Session session;
     private boolean isGuest;
     private Scanner scanner;
 
@@ -33,10 +34,40 @@ public class UserInterface {
 
     // For testing purposes
     public void setUserLoggedIn(User user) {
-        this.userLoggedIn = user;
+        startSession(user);
         this.isGuest = false;
     }
 
+    // Replace the current session (if any) with one for the given user
+    private void startSession(User user) {
+        SessionManager sessions = SessionManager.getInstance();
+        if (session != null) {
+            sessions.close(session.getToken());
+            session = null;
+        }
+
+        userLoggedIn = user;
+        if (user != null) {
+            session = sessions.open(user);
+        }
+    }
+
+    // Snapshot of the logged in user, used for rendering and role checks
+    private SessionManager.Principal principal() {
+        if (session == null || session.getPrincipal() == null) {
+            return null;
+        }
+        return session.getPrincipal();
+    }
+
+    private boolean loggedInAsAdmin() {
+        return session != null && session.isAdmin();
+    }
+
+    private String roleLabel() {
+        return loggedInAsAdmin() ? "Admin" : "User";
+    }
+
     private void initRootAdmin() {
         try {
             User root = realUserManager.createUser("root");
@@ -83,7 +114,7 @@ public class UserInterface {
                 // Guest cases -> manage scrolls or logout from
                 guestInterface(choice);
             } else {
-                if (userLoggedIn.getAdmin()) {
+                if (loggedInAsAdmin()) {
                     switch (choice) {
                         case "1":
                             scrollManagement();
@@ -93,8 +124,8 @@ public class UserInterface {
                             break;
                         case "3":// open AdminMenu
                             ScrollManager scrollManager = new ScrollManager("vsas_data/scrolls");
-                            AdminManager adminManager = new AdminManager("vsas_data/users", userLoggedIn, scrollManager);
-                            AdminMenu adminMenu = new AdminMenu(adminManager, realUserManager, scrollManager, userLoggedIn);
+                            AdminManager adminManager = new AdminManager("vsas_data/users", userLoggedIn, scrollManager, session);
+                            AdminMenu adminMenu = new AdminMenu(adminManager, realUserManager, scrollManager, userLoggedIn, session);
                             adminMenu.show();
                             break;
                         case "4":
@@ -128,9 +159,9 @@ public class UserInterface {
 
         // if current user option
         if (userLoggedIn != null){
-            System.out.println("Logged In As " + userLoggedIn.getName() + " (" + (userLoggedIn.getAdmin() ? "Admin" : "User") + ")");
+            System.out.println("Logged In As " + principal().getName() + " (" + roleLabel() + ")");
                 // admin interface
-                if (userLoggedIn.getAdmin()) {
+                if (loggedInAsAdmin()) {
                     System.out.println("1. Manage Scrolls");
                     System.out.println("2. Change User Information");
                     System.out.println("3. Admin Menu");
@@ -165,13 +196,14 @@ public class UserInterface {
         System.out.println("=== Manage Scrolls ===");
 
         // might give option where it displays all options for user while only view for guest
-        System.out.println("Logged In As " + userLoggedIn.getName() + " (" + (userLoggedIn.getAdmin() ? "Admin" : "User") + ")");
+        System.out.println("Logged In As " + principal().getName() + " (" + roleLabel() + ")");
         System.out.println("1. View Scrolls");
         System.out.println("2. Add Scrolls"); // vince
         System.out.println("3. Modify Scrolls"); // vince
         System.out.println("4. Delete Scrolls"); // vince
         System.out.println("5. Search Scrolls");
-        System.out.println("0. Return to " + (userLoggedIn.getAdmin() ? "Admin" : "User") + " menu");
+        System.out.println("6. Restore Deleted Scrolls");
+        System.out.println("0. Return to " + roleLabel() + " menu");
 
         System.out.print("Enter Option: ");
     }
@@ -313,7 +345,7 @@ public class UserInterface {
                 return;
             }
 
-            userLoggedIn = newUser;
+            startSession(newUser);
             System.out.println("New User Successfully Registered!\n");
 
         } catch (UserAlreadyExistsException e) {
@@ -357,7 +389,7 @@ public class UserInterface {
             return;
         }
 
-        userLoggedIn = loggedInUser;
+        startSession(loggedInUser);
         System.out.println("User Successfully Logged In!\n");
     }
 
@@ -423,6 +455,7 @@ public class UserInterface {
                         }
 
                         userLoggedIn.setUsername(newUsername);
+                        SessionManager.getInstance().refresh(userLoggedIn);
                         System.out.println("Username updated successfully!\n");
                         break;
                     }
@@ -453,6 +486,7 @@ public class UserInterface {
                         }
 
                         userLoggedIn.setName(newName);
+                        SessionManager.getInstance().refresh(userLoggedIn);
                         System.out.println("Full name updated successfully!\n");
                         break;
                     }
@@ -489,6 +523,7 @@ public class UserInterface {
                         if (phoneUsed) continue;
 
                         userLoggedIn.setPhone(newPhone);
+                        SessionManager.getInstance().refresh(userLoggedIn);
                         System.out.println("Phone number updated successfully!\n");
                         break;
                     }
@@ -525,6 +560,7 @@ public class UserInterface {
                         if (emailUsed) continue;
 
                         userLoggedIn.setEmail(newEmail);
+                        SessionManager.getInstance().refresh(userLoggedIn);
                         System.out.println("Email updated successfully!\n");
                         break;
                     }
@@ -595,9 +631,13 @@ public class UserInterface {
                     // Search scrolls
                     searchScrolls();
                     break;
+                case "6":
+                    // Restore scrolls from the trash
+                    restoreScrolls();
+                    break;
                 case "0":
                     // exit menu
-                    System.out.println("Returning to " + (userLoggedIn.getAdmin() ? "Admin" : "User") + " menu\n");
+                    System.out.println("Returning to " + roleLabel() + " menu\n");
                     break;
                 default:
                     System.out.println("Invalid Choice. Please Enter A Valid Choice \n");
@@ -608,7 +648,7 @@ public class UserInterface {
 
     public void addScrolls() {
         System.out.println("=== Adding Scrolls ===");
-        System.out.println("Logged In As " + userLoggedIn.getName() + " (" + (userLoggedIn.getAdmin() ? "Admin" : "User") + ")");
+        System.out.println("Logged In As " + principal().getName() + " (" + roleLabel() + ")");
 
         String scrollId, scrollName;
         while (true) {
@@ -678,7 +718,7 @@ public class UserInterface {
 
     public void modifyScrolls() {
         System.out.println("=== Modifying Scrolls ===");
-        System.out.println("Logged In As " + userLoggedIn.getName() + " (" + (userLoggedIn.getAdmin() ? "Admin" : "User") + ")\n");
+        System.out.println("Logged In As " + principal().getName() + " (" + roleLabel() + ")\n");
 
         // Get all scrolls uploaded by the logged-in user
         List<Scroll> myScrolls = realScrollManager.searchScrolls(userLoggedIn.getUserId(), null, null, null, null);
@@ -795,7 +835,7 @@ public class UserInterface {
 
     public void deleteScrolls(){
         System.out.println("=== Deleting Scrolls ===");
-        System.out.println("Logged In As " + userLoggedIn.getName() + " (" + (userLoggedIn.getAdmin() ? "Admin" : "User") + ")\n");
+        System.out.println("Logged In As " + principal().getName() + " (" + roleLabel() + ")\n");
 
         // View all scrolls user has made
         List<Scroll> myScrolls = realScrollManager.searchScrolls(userLoggedIn.getUserId(), null, null, null, null);
@@ -839,7 +879,8 @@ public class UserInterface {
 
             if (confirm.equals("y")) {
                 if (scrollManager.deleteScroll(userLoggedIn,deletingScroll.getScrollId())) {
-                    System.out.println("\nScroll successfully deleted.\n");
+                    long minutes = realScrollManager.getTrash().getRetention() / 60000;
+                    System.out.println("\nScroll successfully deleted. It can be restored for the next " + minutes + " minutes.\n");
                 } else {
                     System.out.println("\nError: Failed to delete scroll.\n");
                 }
@@ -854,6 +895,51 @@ public class UserInterface {
 
     }
 
+    public void restoreScrolls() {
+        System.out.println("=== Restoring Scrolls ===");
+        System.out.println("Logged In As " + principal().getName() + " (" + roleLabel() + ")\n");
+
+        List<ScrollTrash.Entry> deleted = realScrollManager.getTrash().listFor(userLoggedIn.getUserId());
+        if (deleted.isEmpty()) {
+            System.out.println("You have no recently deleted scrolls.\n");
+            return;
+        }
+
+        System.out.println("Recently deleted scrolls: ");
+        for (int i = 0; i < deleted.size(); i++) {
+            ScrollTrash.Entry e = deleted.get(i);
+            System.out.println((i + 1) + ". " + e.getScrollId() + " - " + e.getScrollName() + " (deleted " + e.getDeletedAt() + ")");
+        }
+
+        int choice;
+        while (true) {
+            System.out.print("\nEnter the number of the scroll you want to restore (0 to cancel):");
+            String input = scanner.nextLine().trim();
+
+            try {
+                choice = Integer.parseInt(input);
+                if (choice == 0) {
+                    return;
+                }
+                if (choice < 1 || choice > deleted.size()) {
+                    System.out.println("Invalid choice. Try again.");
+                    continue;
+                }
+                break;
+            } catch (NumberFormatException e) {
+                System.out.println("Please enter a valid number.");
+            }
+        }
+
+        ScrollTrash.Entry entry = deleted.get(choice - 1);
+        String scrollId = entry.getScrollId();
+        if (scrollManager.restoreScroll(userLoggedIn, entry)) {
+            System.out.println("\nScroll " + scrollId + " restored.\n");
+        } else {
+            System.out.println("\nError: Could not restore scroll " + scrollId + " (the ID may be in use again).\n");
+        }
+    }
+
     private void viewScrolls()
     {
         boolean canDownload = (userLoggedIn != null) && !isGuest;
@@ -1048,12 +1134,12 @@ public class UserInterface {
 
     public void logOutUser() {
         System.out.println("Logging out. Returning to start page...\n");
-        userLoggedIn = null;
+        startSession(null);
         isGuest = false;
     }
 
     public void setToGuest() {
-        this.userLoggedIn = null;
+        startSession(null);
         this.isGuest = true;
     }
 
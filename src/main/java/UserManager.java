@@ -1,4 +1,5 @@
 import fsam.FilesystemMemory;
+import metrics.PasswordCheckEvent;
 import security.PasswordHasher;
 
 import java.io.File;
@@ -7,8 +8,13 @@ import java.nio.file.FileAlreadyExistsException;
 
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class UserManager extends FilesystemMemory {
+    // Deleted users are renamed in here until their data has been removed
+    static final String TOMBSTONE_DIR = ".tombstones";
+
     public UserManager(String userRoot)
     {
         super(userRoot);
@@ -18,7 +24,7 @@ public class UserManager extends FilesystemMemory {
     // Returns null if there isn't a user with the given ID
     public User getUser(String userId)
     {
-        if (! childExists(userId))
+        if (userId.startsWith(".") || ! childExists(userId))
         {
             return null;
         }
@@ -28,63 +34,251 @@ public class UserManager extends FilesystemMemory {
 
     // Attempt to create a new user and get a reference to that user
     // Returns null if a filesystem error occurred
+    // As with scrolls, creating the directory is the existence check, so only one
+    // concurrent creator of an ID succeeds
     public User createUser(String userId) throws UserAlreadyExistsException
     {
-        if (childExists(userId))
-        {
-            throw new UserAlreadyExistsException(String.format("User %s already exists", userId));
-        }
-
         User newUser = getChild(userId);
 
-        // If the user doesn't exist, try to create them with default values
+        ReentrantLock lock = newUser.recordLock();
+        lock.lock();
         try
         {
-            newUser.createSelfDir();
-            newUser.setUsername("");
-            newUser.setName("");
-            newUser.setPhone("");
-            newUser.setEmail("");
-            newUser.setPasswordHash("");
-            newUser.setAdmin(false);
+            if (hasTombstone(userId))
+            {
+                throw new UserAlreadyExistsException(String.format("User %s is still being deleted", userId));
+            }
+
+            try
+            {
+                newUser.createSelfDirExclusive();
+            }
+            catch (FileAlreadyExistsException e)
+            {
+                throw new UserAlreadyExistsException(String.format("User %s already exists", userId));
+            }
+
+            // Fill in default values directly, so the record is announced once, by CREATED
+            newUser.setChildString("username", "");
+            newUser.setChildString("name", "");
+            newUser.setChildString("phone", "");
+            newUser.setChildString("email", "");
+            newUser.setChildString("password_hash", "");
+            newUser.setChildBoolean("admin", false);
+            bus().created(MutationEvent.Entity.USER, getFileObj(), userId);
         }
-        catch (FileAlreadyExistsException e) {}
         catch (IOException e)
         {
             return null;
         }
+        finally
+        {
+            lock.unlock();
+        }
 
         return newUser;
     }
 
     public boolean changeUserId(String oldId, String newId) throws UserAlreadyExistsException, UserDoesNotExistException
     {
-        if (! childExists(oldId))
+        ReentrantLock[] held = lockChildren(oldId, newId);
+        try
+        {
+            if (! childExists(oldId))
+            {
+                throw new UserDoesNotExistException(String.format("User %s does not exist, cannot be moved", oldId));
+            }
+            if (childExists(newId))
+            {
+                throw new UserAlreadyExistsException(String.format("User ID %s already in use, cannot move to it", newId));
+            }
+
+            try
+            {
+                moveChild(oldId, newId);
+            }
+            catch (IOException e)
+            {
+                return false;
+            }
+
+            bus().renamed(MutationEvent.Entity.USER, getFileObj(), oldId, newId);
+            return true;
+        }
+        finally
         {
-            throw new UserDoesNotExistException(String.format("User %s does not exist, cannot be moved", oldId));
+            unlock(held);
         }
-        if (childExists(newId))
+    }
+
+    // ---[ Tombstones ]---
+
+    // Hide a user immediately by renaming their directory into the tombstone area
+    // The user stops resolving through getUser/getAllUsers at once; the files are
+    // removed later with purgeTombstone
+    public void tombstoneUser(String userId) throws UserDoesNotExistException, IOException
+    {
+        if (userId.startsWith("."))
         {
-            throw new UserAlreadyExistsException(String.format("User ID %s already in use, cannot move to it", newId));
+            throw new UserDoesNotExistException(String.format("User %s does not exist", userId));
         }
 
+        ReentrantLock lock = childLock(userId);
+        lock.lock();
         try
         {
-            moveChild(oldId, newId);
+            if (! childExists(userId))
+            {
+                throw new UserDoesNotExistException(String.format("User %s does not exist", userId));
+            }
+
+            createChildDir(TOMBSTONE_DIR);
+            moveChild(userId, TOMBSTONE_DIR + "/" + userId);
+            bus().deleted(MutationEvent.Entity.USER, getFileObj(), userId);
         }
-        catch (IOException e)
+        finally
         {
-            return false;
+            lock.unlock();
+        }
+    }
+
+    public boolean hasTombstone(String userId)
+    {
+        return childExists(TOMBSTONE_DIR + "/" + userId);
+    }
+
+    public List<String> getTombstones()
+    {
+        ArrayList<String> ids = new ArrayList<>();
+        String[] names = new File(getFileObj(), TOMBSTONE_DIR).list();
+        if (names != null)
+        {
+            for (String n : names)
+            {
+                ids.add(n);
+            }
+        }
+        return ids;
+    }
+
+    public File getTombstoneDir(String userId)
+    {
+        return new File(new File(getFileObj(), TOMBSTONE_DIR), userId);
+    }
+
+    // Remove a tombstoned user's files for good (recursive)
+    public boolean purgeTombstone(String userId)
+    {
+        return deleteRecursively(getTombstoneDir(userId));
+    }
+
+    private static boolean deleteRecursively(File f)
+    {
+        boolean ok = true;
+        File[] children = f.listFiles();
+        if (children != null)
+        {
+            for (File c : children)
+            {
+                ok &= deleteRecursively(c);
+            }
+        }
+        return f.delete() && ok;
+    }
+
+    private static MutationBus bus()
+    {
+        return MutationBus.getInstance();
+    }
+
+    // Shared in-memory listing of every user under this root
+    public UserTable getTable()
+    {
+        return UserTable.forRoot(getFileObj());
+    }
+
+    // Attempt to create a fully populated user in one step
+    // The attributes are written into a hidden staging directory which is then renamed into place,
+    // so the user either appears with every attribute or not at all
+    public User createUserRecord(String userId, Map<String, String> attributes, PasswordRecord password)
+            throws UserAlreadyExistsException, IOException
+    {
+        String stagingName = ".staging-" + userId;
+        ReentrantLock[] held = lockChildren(userId, stagingName);
+        try
+        {
+            if (childExists(userId))
+            {
+                throw new UserAlreadyExistsException(String.format("User %s already exists", userId));
+            }
+            if (hasTombstone(userId))
+            {
+                throw new UserAlreadyExistsException(String.format("User %s is still being deleted", userId));
+            }
+
+            User staging = getChild(stagingName);
+            try
+            {
+                staging.createSelfDir();
+                staging.setChildString("username", "");
+                staging.setChildString("name", "");
+                staging.setChildString("phone", "");
+                staging.setChildString("email", "");
+                staging.setChildBoolean("admin", false);
+                for (Map.Entry<String, String> a : attributes.entrySet())
+                {
+                    staging.setChildString(a.getKey(), a.getValue());
+                }
+                if (! setPasswordRecord(staging, password))
+                {
+                    throw new IOException("Failed to write password for " + userId);
+                }
+
+                moveChild(stagingName, userId);
+                bus().created(MutationEvent.Entity.USER, getFileObj(), userId);
+            }
+            catch (FileAlreadyExistsException e)
+            {
+                deleteStaging(staging.getFileObj());
+                throw new UserAlreadyExistsException(String.format("User %s already exists", userId));
+            }
+            catch (IOException e)
+            {
+                deleteStaging(staging.getFileObj());
+                throw e;
+            }
+        }
+        finally
+        {
+            unlock(held);
         }
 
-        return true;
+        return getChild(userId);
+    }
+
+    private static void deleteStaging(File dir)
+    {
+        File[] files = dir.listFiles();
+        if (files != null)
+        {
+            for (File f : files)
+            {
+                f.delete();
+            }
+        }
+        dir.delete();
     }
 
+    // Entries starting with '.' are internal (staging, tombstones, etc.) and are not users
     public List<User> getAllUsers()
     {
         ArrayList<User> users = new ArrayList<>();
         for (File f : getFileObj().listFiles())
         {
+            if (f.getName().startsWith("."))
+            {
+                continue;
+            }
             users.add(getChild(f.getName()));
         }
 
@@ -118,26 +312,71 @@ public class UserManager extends FilesystemMemory {
 
     public boolean setPassword(User u, String plaintext) {
         try {
-            byte[] salt = PasswordHasher.generateSalt();
-            byte[] derived = PasswordHasher.deriveKey(
-                    plaintext.toCharArray(),
-                    salt,
-                    PasswordHasher.DEFAULT_ITERATIONS,
-                    PasswordHasher.DEFAULT_KEY_LENGTH_BITS
-            );
-
-            boolean ok = true;
-            ok &= u.setPasswordHash(PasswordHasher.toBase64(derived));
-            ok &= u.setPasswordSalt(PasswordHasher.toBase64(salt));
-            ok &= u.setPasswordAlgo(PasswordHasher.DEFAULT_ALGO);
-            ok &= u.setPasswordIters(PasswordHasher.DEFAULT_ITERATIONS);
-            return ok;
+            return setPasswordRecord(u, hashPassword(plaintext));
         } catch (RuntimeException e) {
             return false;
         }
     }
 
+    // Derive the stored password fields without touching disk
+    // This is the expensive (PBKDF2) half of setPassword, safe to call from any thread
+    public static PasswordRecord hashPassword(String plaintext) {
+        byte[] salt = PasswordHasher.generateSalt();
+        byte[] derived = PasswordHasher.deriveKey(
+                plaintext.toCharArray(),
+                salt,
+                PasswordHasher.DEFAULT_ITERATIONS,
+                PasswordHasher.DEFAULT_KEY_LENGTH_BITS
+        );
+
+        return new PasswordRecord(
+                PasswordHasher.toBase64(derived),
+                PasswordHasher.toBase64(salt),
+                PasswordHasher.DEFAULT_ALGO,
+                PasswordHasher.DEFAULT_ITERATIONS
+        );
+    }
+
+    public boolean setPasswordRecord(User u, PasswordRecord r) {
+        boolean ok = true;
+        ok &= u.setPasswordHash(r.hashB64);
+        ok &= u.setPasswordSalt(r.saltB64);
+        ok &= u.setPasswordAlgo(r.algo);
+        ok &= u.setPasswordIters(r.iterations);
+        return ok;
+    }
+
+    public static class PasswordRecord {
+        public final String hashB64;
+        public final String saltB64;
+        public final String algo;
+        public final int iterations;
+
+        public PasswordRecord(String hashB64, String saltB64, String algo, int iterations) {
+            this.hashB64 = hashB64;
+            this.saltB64 = saltB64;
+            this.algo = algo;
+            this.iterations = iterations;
+        }
+    }
+
     public boolean checkPassword(User u, String candidate) {
+        PasswordCheckEvent event = new PasswordCheckEvent();
+        event.begin();
+        boolean matched = matchesStoredHash(u, candidate);
+        event.end();
+        if (event.shouldCommit()) {
+            Integer iters = u.getPasswordIters();
+            event.userId = u.getUserId();
+            event.algorithm = u.getPasswordAlgo();
+            event.iterations = iters == null ? 0 : iters;
+            event.matched = matched;
+            event.commit();
+        }
+        return matched;
+    }
+
+    private boolean matchesStoredHash(User u, String candidate) {
         try {
             String algo = u.getPasswordAlgo();
             String saltB64 = u.getPasswordSalt();
@@ -1,6 +1,17 @@
 import java.util.List;
 
+import metrics.Metrics;
+import metrics.OperationMetrics;
+
 public class UserManagerProxy {
+    private static final OperationMetrics CREATE_USER = Metrics.operation("user.createUser");
+    private static final OperationMetrics LOGOUT = Metrics.operation("user.logout");
+    private static final OperationMetrics LOGIN = Metrics.operation("user.login");
+    private static final OperationMetrics UPDATE_PROFILE = Metrics.operation("user.updateProfile");
+    private static final OperationMetrics CHANGE_PASSWORD = Metrics.operation("user.changePassword");
+    private static final OperationMetrics GET_ALL_USERS = Metrics.operation("user.getAllUsers");
+    private static final OperationMetrics CHANGE_USER_ID = Metrics.operation("user.changeUserId");
+
     private final UserManager userManager;
     private final EventLogManager logManager = EventLogManager.getInstance();
 
@@ -9,6 +20,8 @@ public class UserManagerProxy {
     }
 
     public User createUser(String userId, String username, String password) throws UserAlreadyExistsException {
+        long start = CREATE_USER.start();
+        boolean ok = false;
         try {
             User user = userManager.createUser(userId);
             if (user == null) {
@@ -24,22 +37,29 @@ public class UserManagerProxy {
                 logManager.log(user.getUserId(), user.getUsername(), "CREATE_USER_FAILED", "Failed to set password");
             }
 
+            ok = passwordSet;
             return user;
         } catch (UserAlreadyExistsException e) {
-            throw e; 
+            throw e;
         } catch (Exception e) {
             logManager.log("SYSTEM", "SYSTEM", "CREATE_USER_FAILED", e.getMessage());
             return null;
+        } finally {
+            CREATE_USER.stop(start, ok);
         }
     }
 
     public void logout(User user) {
+        long start = LOGOUT.start();
         if (user != null) {
             logManager.log(user.getUserId(), user.getUsername(), "LOGOUT", "User logged out");
         }
+        LOGOUT.stop(start, user != null);
     }
 
     public User login(String username, String password) {
+        long start = LOGIN.start();
+        boolean ok = false;
         try {
             User user = userManager.findUserByUsername(username);
             if (user == null) {
@@ -51,6 +71,7 @@ public class UserManagerProxy {
 
             if (passwordCorrect) {
                 logManager.log(user.getUserId(), user.getUsername(), "LOGIN_SUCCESS", "User logged in");
+                ok = true;
                 return user;
             } else {
                 logManager.log(user.getUserId(), user.getUsername(), "LOGIN_FAILED", "Incorrect password");
@@ -59,10 +80,14 @@ public class UserManagerProxy {
         } catch (Exception e) {
             logManager.log("SYSTEM", "SYSTEM", "LOGIN_ERROR", e.getMessage());
             return null;
+        } finally {
+            LOGIN.stop(start, ok);
         }
     }
 
     public boolean updateProfile(User user, String field, String newValue) {
+        long start = UPDATE_PROFILE.start();
+        boolean ok = false;
         try {
             boolean updated = false;
 
@@ -78,18 +103,24 @@ public class UserManagerProxy {
             }
 
             if (updated) {
+                SessionManager.getInstance().refresh(user);
                 logManager.log(user.getUserId(), user.getUsername(), "UPDATE_PROFILE", "Updated field: " + field);
             }
 
+            ok = updated;
             return updated;
 
         } catch (Exception e) {
             logManager.log(user.getUserId(), user.getUsername(), "UPDATE_PROFILE_FAILED", e.getMessage());
             return false;
+        } finally {
+            UPDATE_PROFILE.stop(start, ok);
         }
     }
 
     public boolean changePassword(User user, String newPassword) {
+        long start = CHANGE_PASSWORD.start();
+        boolean ok = false;
         try {
             boolean updated = userManager.setPassword(user, newPassword);
 
@@ -99,38 +130,52 @@ public class UserManagerProxy {
                 logManager.log(user.getUserId(), user.getUsername(), "UPDATE_PASSWORD_FAILED", "Password update failed");
             }
 
+            ok = updated;
             return updated;
         } catch (Exception e) {
             logManager.log(user.getUserId(), user.getUsername(), "CHANGE_PASSWORD_FAILED", e.getMessage());
             return false;
+        } finally {
+            CHANGE_PASSWORD.stop(start, ok);
         }
     }
 
     public List<User> getAllUsers() {
+        long start = GET_ALL_USERS.start();
+        boolean ok = false;
         try {
             List<User> users = userManager.getAllUsers();
             logManager.log("SYSTEM", "SYSTEM", "VIEW_ALL_USERS", "Retrieved user list");
+            ok = true;
             return users;
         } catch (Exception e) {
             logManager.log("SYSTEM", "SYSTEM", "VIEW_ALL_USERS_FAILED", e.getMessage());
             return List.of();
+        } finally {
+            GET_ALL_USERS.stop(start, ok);
         }
     }
 
     public boolean changeUserId(String oldId, String newId) {
+        long start = CHANGE_USER_ID.start();
+        boolean ok = false;
         try {
             boolean changed = userManager.changeUserId(oldId, newId);
 
             if (changed) {
+                SessionManager.getInstance().revokeUser(oldId);
                 logManager.log(oldId, newId, "CHANGE_USER_ID", "User ID changed");
             } else {
                 logManager.log(oldId, newId, "CHANGE_USER_ID_FAILED", "Failed to change User ID");
             }
 
+            ok = changed;
             return changed;
         } catch (Exception e) {
             logManager.log(oldId, newId, "CHANGE_USER_ID_FAILED", e.getMessage());
             return false;
+        } finally {
+            CHANGE_USER_ID.stop(start, ok);
         }
     }
 
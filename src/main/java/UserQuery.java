@@ -0,0 +1,149 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.Locale;
+
+/**
+ * UserQuery
+ * Filter, sort and page parameters for UserTable.query / UserTable.count.
+ * Unset filters match everything. Cursors are opaque strings taken from a
+ * previous UserTable.UserPage.
+ */
+public class UserQuery {
+    public enum SortKey { USER_ID, USERNAME, NAME, EMAIL }
+
+    public static final int DEFAULT_LIMIT = 20;
+
+    private Boolean admin = null;
+    private String usernamePrefix = null;
+    private String emailDomain = null;
+    private SortKey sortBy = SortKey.USER_ID;
+    private boolean descending = false;
+    private int limit = DEFAULT_LIMIT;
+    private String cursor = null;
+    // Decoded on first use, so a query decodes its cursor once rather than per row
+    private String[] cursorKey = null;
+
+    public UserQuery admin(Boolean admin) {
+        this.admin = admin;
+        return this;
+    }
+
+    public UserQuery usernamePrefix(String prefix) {
+        this.usernamePrefix = blankToNull(prefix);
+        return this;
+    }
+
+    // Matches the part after '@', case-insensitive; a leading '@' is ignored
+    public UserQuery emailDomain(String domain) {
+        domain = blankToNull(domain);
+        if (domain != null && domain.startsWith("@")) {
+            domain = domain.substring(1);
+        }
+        this.emailDomain = domain == null ? null : domain.toLowerCase(Locale.ROOT);
+        return this;
+    }
+
+    public UserQuery sortBy(SortKey key, boolean descending) {
+        this.sortBy = key == null ? SortKey.USER_ID : key;
+        this.descending = descending;
+        return this;
+    }
+
+    public UserQuery limit(int limit) {
+        this.limit = Math.max(1, limit);
+        return this;
+    }
+
+    public UserQuery after(String cursor) {
+        this.cursor = blankToNull(cursor);
+        this.cursorKey = null;
+        return this;
+    }
+
+    public SortKey getSortBy() { return sortBy; }
+    public boolean isDescending() { return descending; }
+    public int getLimit() { return limit; }
+    public String getCursor() { return cursor; }
+
+    boolean hasFilters() {
+        return admin != null || usernamePrefix != null || emailDomain != null;
+    }
+
+    boolean matches(UserTable.Row r) {
+        if (admin != null && r.isAdmin() != admin) {
+            return false;
+        }
+        if (usernamePrefix != null && (r.getUsername() == null || !r.getUsername().startsWith(usernamePrefix))) {
+            return false;
+        }
+        if (emailDomain != null) {
+            String email = r.getEmail();
+            int at = email == null ? -1 : email.lastIndexOf('@');
+            if (at < 0 || !email.substring(at + 1).equalsIgnoreCase(emailDomain)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    String sortValue(UserTable.Row r) {
+        String v = switch (sortBy) {
+            case USER_ID -> r.getUserId();
+            case USERNAME -> r.getUsername();
+            case NAME -> r.getName();
+            case EMAIL -> r.getEmail();
+        };
+        return v == null ? "" : v;
+    }
+
+    // Total order: sort value, then user ID as the tie breaker
+    Comparator<UserTable.Row> comparator() {
+        Comparator<UserTable.Row> c = Comparator.comparing(this::sortValue).thenComparing(UserTable.Row::getUserId);
+        return descending ? c.reversed() : c;
+    }
+
+    // User ID of the cursor row; with USER_ID ordering the page starts right after it
+    String cursorUserId() {
+        return cursorKey()[1];
+    }
+
+    // Position of a row relative to the cursor (> 0 means the row comes after it)
+    int compareToCursor(UserTable.Row r) {
+        String[] key = cursorKey();
+        int c = sortValue(r).compareTo(key[0]);
+        if (c == 0) {
+            c = r.getUserId().compareTo(key[1]);
+        }
+        return descending ? -c : c;
+    }
+
+    String cursorFor(UserTable.Row r) {
+        String raw = sortValue(r) + '\u0000' + r.getUserId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String[] cursorKey() {
+        if (cursorKey == null) {
+            cursorKey = decodeCursor(cursor);
+        }
+        return cursorKey;
+    }
+
+    private static String[] decodeCursor(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int sep = raw.indexOf('\u0000');
+            if (sep < 0) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            return new String[] { raw.substring(0, sep), raw.substring(sep + 1) };
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+
+    private static String blankToNull(String s) {
+        return (s == null || s.isBlank()) ? null : s.trim();
+    }
+}
@@ -0,0 +1,352 @@
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import fsam.ChangeEvent;
+import fsam.ChangeFeed;
+import fsam.ProcessLocks;
+import metrics.CacheMetrics;
+import metrics.Metrics;
+
+/**
+ * UserTable
+ * Compact in-memory copy of the listing attributes (username, name, email,
+ * admin flag) of every user under one user root, used to answer admin
+ * listings and queries without touching the user directories.
+ *
+ * There is one table per root, shared by every UserManager on that root. It is
+ * loaded from disk on first use and then kept current from the MutationBus, which
+ * carries every change made through UserManager and the User setters. The bus
+ * calls in with the writer's record lock held, so an event is only queued there;
+ * the next read applies the queue first. A writer never waits for a reload in
+ * progress, and a table nobody reads stops queueing and reloads instead. Events
+ * the load has already read from the files are skipped.
+ *
+ * Each of those events carries the root generation it moved to (see ProcessLocks).
+ * A table that finds the generation moved by anything other than the events it
+ * applied, i.e. by another process, reloads. The new rows are built aside and
+ * swapped in whole, so readers see the old table or the new one, never a part.
+ *
+ * A table that follows a ChangeFeed instead re-reads just the users the feed
+ * reports, which also covers changes made by tools that never touch the
+ * generation, and no longer reloads in full.
+ */
+public class UserTable {
+    private static final Map<String, UserTable> TABLES = new ConcurrentHashMap<>();
+    private static final CacheMetrics CACHE = Metrics.cache("user_table");
+    private static final Set<String> LISTED = Set.of("username", "name", "email", "admin");
+    static final int MAX_PENDING = 65_536;
+
+    static {
+        MutationBus.getInstance().subscribe(e -> {
+            if (e.getEntity() == MutationEvent.Entity.USER) {
+                UserTable t = TABLES.get(key(e.getRoot()));
+                if (t != null) {
+                    t.onMutation(e);
+                }
+            }
+        });
+    }
+
+    private final File root;
+    private final ProcessLocks locks;
+    // Replaced whole on a reload, so a reader never sees a half-built table
+    private volatile ConcurrentSkipListMap<String, Row> rows = new ConcurrentSkipListMap<>();
+    private volatile boolean loaded = false;
+    private volatile long seenGeneration;
+    private volatile boolean following = false;
+
+    private final ConcurrentLinkedQueue<MutationEvent> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private volatile boolean overflowed = false;
+
+    private UserTable(File root) {
+        this.root = root;
+        this.locks = ProcessLocks.forRoot(root);
+        this.seenGeneration = locks.generation();
+    }
+
+    public static UserTable forRoot(File root) {
+        return TABLES.computeIfAbsent(key(root), k -> new UserTable(new File(k)));
+    }
+
+    // Lexical normalisation only (no filesystem access)
+    private static String key(File root) {
+        return root.getAbsoluteFile().toPath().normalize().toString();
+    }
+
+    // ---[ Maintenance ]---
+
+    // A change made in this process, already on disk; lock-free, as the writer
+    // still holds the record lock
+    private void onMutation(MutationEvent e) {
+        if (pendingCount.incrementAndGet() > MAX_PENDING) {
+            pendingCount.decrementAndGet();
+            overflowed = true;
+            return;
+        }
+        pending.offer(e);
+    }
+
+    // Called with the monitor held, before the rows are used
+    private void applyPending() {
+        boolean dropped = overflowed;
+        overflowed = false;
+        MutationEvent e;
+        while ((e = pending.poll()) != null) {
+            pendingCount.decrementAndGet();
+            if (!dropped) {
+                applyEvent(e);
+            }
+        }
+        if (dropped) {
+            loaded = false;
+            rows = new ConcurrentSkipListMap<>();
+        }
+    }
+
+    private void applyEvent(MutationEvent e) {
+        // Anything up to seenGeneration was on disk when the rows were loaded
+        if (loaded && (e.getGeneration() < 0 || e.getGeneration() > seenGeneration)) {
+            switch (e.getType()) {
+                case CREATED -> reread(e.getId());
+                case ATTRIBUTE_CHANGED -> update(e.getId(), e.getAttribute(), e.getValue());
+                case RENAMED -> rename(e.getPreviousId(), e.getId());
+                case DELETED -> rows.remove(e.getId());
+            }
+        }
+        applied(e.getGeneration());
+    }
+
+    private void update(String userId, String attribute, String value) {
+        Row r = rows.getOrDefault(userId, new Row(userId, "", "", "", false));
+        switch (attribute) {
+            case "username" -> r = new Row(userId, value, r.name, r.email, r.admin);
+            case "name" -> r = new Row(userId, r.username, value, r.email, r.admin);
+            case "email" -> r = new Row(userId, r.username, r.name, value, r.admin);
+            case "admin" -> r = new Row(userId, r.username, r.name, r.email, "true".equals(value));
+            default -> {
+                // Not a listing attribute, but make sure the user is known
+            }
+        }
+        rows.put(userId, r);
+    }
+
+    private void rename(String oldId, String newId) {
+        Row r = rows.remove(oldId);
+        if (r != null) {
+            rows.put(newId, new Row(newId, r.username, r.name, r.email, r.admin));
+        }
+    }
+
+    // Our own change is already in the rows; a gap means another process wrote
+    // in between, and the next query reloads
+    private void applied(long generation) {
+        if (generation == seenGeneration + 1) {
+            seenGeneration = generation;
+        }
+    }
+
+    // Keep current from the feed's events rather than generation reloads
+    public void follow(ChangeFeed feed) {
+        feed.subscribe(this::apply);
+        following = true;
+    }
+
+    synchronized void apply(List<ChangeEvent> events) {
+        if (!loaded) {
+            return;
+        }
+        for (ChangeEvent e : events) {
+            switch (e.getType()) {
+                case CREATED -> reread(e.getRecordId());
+                case ATTRIBUTE_CHANGED -> {
+                    if (e.getAttribute() == null || LISTED.contains(e.getAttribute())) {
+                        reread(e.getRecordId());
+                    }
+                }
+                case RENAMED -> {
+                    rows.remove(e.getPreviousId());
+                    reread(e.getRecordId());
+                }
+                case DELETED -> rows.remove(e.getRecordId());
+            }
+        }
+    }
+
+    private void reread(String userId) {
+        File dir = new File(root, userId);
+        if (dir.isDirectory()) {
+            rows.put(userId, readRow(dir));
+        } else {
+            rows.remove(userId);
+        }
+    }
+
+    // Drop the in-memory copy; the next query reloads from disk
+    public synchronized void invalidate() {
+        loaded = false;
+        rows = new ConcurrentSkipListMap<>();
+    }
+
+    // The rows to answer from; readers keep using the map they got even if a
+    // reload replaces it meanwhile
+    private ConcurrentSkipListMap<String, Row> ensureLoaded() {
+        if (loaded && pendingCount.get() == 0 && !overflowed
+                && (following || locks.generation() == seenGeneration)) {
+            CACHE.hit();
+            return rows;
+        }
+        synchronized (this) {
+            applyPending();
+            long g = locks.generation();
+            if (loaded && (following || g == seenGeneration)) {
+                CACHE.hit();
+                return rows;
+            }
+            CACHE.miss();
+            // Read the generation before the files, so a change made during the
+            // scan still counts as unseen. The old rows stay readable until the
+            // new ones are complete, and only then does the generation move on
+            ConcurrentSkipListMap<String, Row> fresh = new ConcurrentSkipListMap<>();
+            File[] dirs = root.listFiles(f -> f.isDirectory() && !f.getName().startsWith("."));
+            if (dirs != null) {
+                Arrays.stream(dirs).parallel().map(UserTable::readRow).forEach(r -> fresh.put(r.userId, r));
+            }
+            rows = fresh;
+            seenGeneration = g;
+            loaded = true;
+            return fresh;
+        }
+    }
+
+    private static Row readRow(File dir) {
+        User u = new User();
+        u.setFileObj(dir);
+        return new Row(dir.getName(), u.getUsername(), u.getName(), u.getEmail(), u.getAdmin());
+    }
+
+    // ---[ Queries ]---
+    public int size() {
+        return ensureLoaded().size();
+    }
+
+    public Row get(String userId) {
+        return ensureLoaded().get(userId);
+    }
+
+    public int count(UserQuery q) {
+        ConcurrentSkipListMap<String, Row> current = ensureLoaded();
+        if (!q.hasFilters()) {
+            return current.size();
+        }
+        int n = 0;
+        for (Row r : current.values()) {
+            if (q.matches(r)) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    public UserPage query(UserQuery q) {
+        ConcurrentSkipListMap<String, Row> current = ensureLoaded();
+        int limit = q.getLimit();
+        List<Row> page = new ArrayList<>(limit);
+        boolean more = false;
+
+        if (q.getSortBy() == UserQuery.SortKey.USER_ID) {
+            // Rows are already ordered by ID: seek straight past the cursor and stop after one page
+            NavigableMap<String, Row> view = q.isDescending() ? current.descendingMap() : current;
+            if (q.getCursor() != null) {
+                view = view.tailMap(q.cursorUserId(), false);
+            }
+            for (Row r : view.values()) {
+                if (!q.matches(r)) {
+                    continue;
+                }
+                if (page.size() == limit) {
+                    more = true;
+                    break;
+                }
+                page.add(r);
+            }
+        } else {
+            List<Row> matching = new ArrayList<>();
+            for (Row r : current.values()) {
+                if (q.matches(r) && (q.getCursor() == null || q.compareToCursor(r) > 0)) {
+                    matching.add(r);
+                }
+            }
+            matching.sort(q.comparator());
+            more = matching.size() > limit;
+            page.addAll(matching.subList(0, Math.min(limit, matching.size())));
+        }
+
+        String next = (more && !page.isEmpty()) ? q.cursorFor(page.get(page.size() - 1)) : null;
+        return new UserPage(page, next);
+    }
+
+    // Immutable listing row
+    public static final class Row {
+        private final String userId;
+        private final String username;
+        private final String name;
+        private final String email;
+        private final boolean admin;
+
+        public Row(String userId, String username, String name, String email, boolean admin) {
+            this.userId = userId;
+            this.username = username;
+            this.name = name;
+            this.email = email;
+            this.admin = admin;
+        }
+
+        public String getUserId() { return userId; }
+        public String getUsername() { return username; }
+        public String getName() { return name; }
+        public String getEmail() { return email; }
+        public boolean isAdmin() { return admin; }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Row)) return false;
+            Row r = (Row) o;
+            return admin == r.admin && userId.equals(r.userId) && Objects.equals(username, r.username)
+                    && Objects.equals(name, r.name) && Objects.equals(email, r.email);
+        }
+
+        @Override
+        public int hashCode() {
+            return userId.hashCode();
+        }
+    }
+
+    public static final class UserPage {
+        private final List<Row> rows;
+        private final String nextCursor;
+
+        UserPage(List<Row> rows, String nextCursor) {
+            this.rows = Collections.unmodifiableList(rows);
+            this.nextCursor = nextCursor;
+        }
+
+        public List<Row> getRows() { return rows; }
+
+        // null on the last page
+        public String getNextCursor() { return nextCursor; }
+
+        public boolean hasMore() { return nextCursor != null; }
+    }
+}
@@ -0,0 +1,74 @@
+package fsam;
+
+import java.util.Objects;
+
+/**
+ * ChangeEvent
+ * One change to a record under a root watched by a ChangeFeed. The attribute of
+ * an ATTRIBUTE_CHANGED event is null when only a scan noticed the change and it
+ * is not known which attribute it was.
+ */
+public final class ChangeEvent {
+    public enum Type { CREATED, ATTRIBUTE_CHANGED, RENAMED, DELETED }
+
+    private final Type type;
+    private final String recordId;
+    private final String previousId;
+    private final String attribute;
+
+    private ChangeEvent(Type type, String recordId, String previousId, String attribute) {
+        this.type = type;
+        this.recordId = recordId;
+        this.previousId = previousId;
+        this.attribute = attribute;
+    }
+
+    public static ChangeEvent created(String recordId) {
+        return new ChangeEvent(Type.CREATED, recordId, null, null);
+    }
+
+    public static ChangeEvent attributeChanged(String recordId, String attribute) {
+        return new ChangeEvent(Type.ATTRIBUTE_CHANGED, recordId, null, attribute);
+    }
+
+    public static ChangeEvent renamed(String previousId, String recordId) {
+        return new ChangeEvent(Type.RENAMED, recordId, previousId, null);
+    }
+
+    public static ChangeEvent deleted(String recordId) {
+        return new ChangeEvent(Type.DELETED, recordId, null, null);
+    }
+
+    public Type getType() { return type; }
+    public String getRecordId() { return recordId; }
+    // Only set for RENAMED
+    public String getPreviousId() { return previousId; }
+    public String getAttribute() { return attribute; }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof ChangeEvent)) {
+            return false;
+        }
+        ChangeEvent e = (ChangeEvent) o;
+        return type == e.type && recordId.equals(e.recordId)
+                && Objects.equals(previousId, e.previousId) && Objects.equals(attribute, e.attribute);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(type, recordId, previousId, attribute);
+    }
+
+    @Override
+    public String toString() {
+        switch (type) {
+            case RENAMED:
+                return "RENAMED " + previousId + " -> " + recordId;
+            case ATTRIBUTE_CHANGED:
+                return "ATTRIBUTE_CHANGED " + recordId + "/" + (attribute == null ? "*" : attribute);
+            default:
+                return type + " " + recordId;
+        }
+    }
+}
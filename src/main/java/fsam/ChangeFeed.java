@@ -0,0 +1,453 @@
+package fsam;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * ChangeFeed
+ * Reports changes to the records under one root (a users or scrolls directory),
+ * whoever makes them: this process, another instance, an admin script or a
+ * restore. Subscribers receive batches of typed ChangeEvents on the feed's own
+ * thread and can update their in-memory state without rescanning the root.
+ *
+ * A WatchService watches the root (records appearing and disappearing) and each
+ * record directory (attribute files being replaced). Raw events are collected
+ * until none has arrived for the debounce time, or at most for the maximum delay
+ * while they keep coming, then coalesced against what is on disk: a record that
+ * vanished and one that appeared with the same file key (inode) are a rename,
+ * repeated writes of an attribute are one change, and entries starting with '.'
+ * (temp files, locks, staging and trash) are ignored.
+ *
+ * When the watch service overflows, or there are more records than watches
+ * allowed, the feed falls back to scanning the root and comparing record
+ * directory modification times, every scan interval, until a scan finds
+ * nothing new and every record is watched again. A scan cannot tell which
+ * attribute changed, so its ATTRIBUTE_CHANGED events carry a null attribute.
+ */
+public final class ChangeFeed implements Closeable {
+    public static final long DEFAULT_DEBOUNCE_MS = 50;
+    public static final long DEFAULT_MAX_DELAY_MS = 1000;
+    public static final long DEFAULT_SCAN_INTERVAL_MS = TimeUnit.SECONDS.toMillis(5);
+    public static final int DEFAULT_MAX_WATCHED = 8192;
+
+    private static final Map<String, ChangeFeed> FEEDS = new ConcurrentHashMap<>();
+
+    private final Path root;
+    private final List<Consumer<List<ChangeEvent>>> subscribers = new CopyOnWriteArrayList<>();
+    private volatile long debounceMs = DEFAULT_DEBOUNCE_MS;
+    private volatile long maxDelayMs = DEFAULT_MAX_DELAY_MS;
+    private volatile long scanIntervalMs = DEFAULT_SCAN_INTERVAL_MS;
+    private volatile int maxWatched = DEFAULT_MAX_WATCHED;
+    private volatile boolean rescanRequested = false;
+    private volatile boolean running = false;
+    private Thread thread;
+    private WatchService watcher;
+
+    // Everything below is only touched by the feed thread (and start() before it runs)
+    private final Map<WatchKey, String> keyIds = new HashMap<>();
+    private final Map<String, WatchKey> idKeys = new HashMap<>();
+    private Map<String, Known> known = new HashMap<>();
+    private final Set<String> touched = new LinkedHashSet<>();
+    private final Map<String, Set<String>> attributes = new LinkedHashMap<>();
+    private WatchKey rootKey;
+    private boolean overflowed = false;
+    private boolean watchLimited = false;
+    private boolean scanning = false;
+
+    private ChangeFeed(Path root) {
+        this.root = root;
+    }
+
+    public static ChangeFeed forRoot(File root) {
+        return FEEDS.computeIfAbsent(StripedLocks.key(root), k -> new ChangeFeed(new File(k).toPath()));
+    }
+
+    // ---[ Settings, before start() ]---
+    public void setDebounce(long ms) {
+        this.debounceMs = Math.max(1, ms);
+    }
+
+    public void setMaxDelay(long ms) {
+        this.maxDelayMs = Math.max(1, ms);
+    }
+
+    public void setScanInterval(long ms) {
+        this.scanIntervalMs = Math.max(1, ms);
+    }
+
+    // Beyond this many record directories the rest are covered by scans
+    public void setMaxWatched(int n) {
+        this.maxWatched = Math.max(0, n);
+    }
+
+    // ---[ Subscribers ]---
+    public void subscribe(Consumer<List<ChangeEvent>> subscriber) {
+        subscribers.add(subscriber);
+    }
+
+    public void unsubscribe(Consumer<List<ChangeEvent>> subscriber) {
+        subscribers.remove(subscriber);
+    }
+
+    // Compare the root with what the feed knows on its next turn, e.g. after a
+    // restore that may have outrun the watches
+    public void rescan() {
+        rescanRequested = true;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    // ---[ Lifecycle ]---
+    public synchronized ChangeFeed start() throws IOException {
+        if (running) {
+            return this;
+        }
+        Files.createDirectories(root);
+        watcher = root.getFileSystem().newWatchService();
+        // Watch the root before taking the baseline so nothing falls in between
+        rootKey = root.register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+        known = listRecords();
+        for (String id : known.keySet()) {
+            watch(id);
+        }
+
+        running = true;
+        thread = new Thread(this::loop, "change-feed-" + root.getFileName());
+        thread.setDaemon(true);
+        thread.start();
+        return this;
+    }
+
+    @Override
+    public void close() {
+        Thread t;
+        synchronized (this) {
+            if (!running) {
+                return;
+            }
+            running = false;
+            t = thread;
+            try {
+                watcher.close();
+            } catch (IOException e) {
+                // the thread stops on the closed service regardless
+            }
+        }
+        try {
+            t.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        FEEDS.remove(StripedLocks.key(root.toFile()), this);
+    }
+
+    // ---[ Feed thread ]---
+    private void loop() {
+        long firstPending = 0;
+        long lastEvent = 0;
+        long nextScan = 0;
+        while (running) {
+            try {
+                WatchKey key = watcher.poll(debounceMs, TimeUnit.MILLISECONDS);
+                long now = System.nanoTime();
+                if (key != null) {
+                    do {
+                        collect(key);
+                        key = watcher.poll();
+                    } while (key != null);
+                    if (firstPending == 0) {
+                        firstPending = now;
+                    }
+                    lastEvent = now;
+                }
+
+                boolean pending = firstPending != 0;
+                if (pending && (now - lastEvent >= TimeUnit.MILLISECONDS.toNanos(debounceMs)
+                        || now - firstPending >= TimeUnit.MILLISECONDS.toNanos(maxDelayMs))) {
+                    flush();
+                    firstPending = 0;
+                }
+
+                if (rescanRequested || (scanning && now - nextScan >= 0)) {
+                    rescanRequested = false;
+                    scan();
+                    nextScan = now + TimeUnit.MILLISECONDS.toNanos(scanIntervalMs);
+                }
+            } catch (ClosedWatchServiceException e) {
+                return;
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                System.err.println("Change feed for " + root + " failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private void collect(WatchKey key) {
+        String id = key == rootKey ? null : keyIds.get(key);
+        for (WatchEvent<?> ev : key.pollEvents()) {
+            if (ev.kind() == StandardWatchEventKinds.OVERFLOW) {
+                overflowed = true;
+                continue;
+            }
+            String name = ev.context().toString();
+            if (name.startsWith(".")) {
+                continue;
+            }
+            if (key == rootKey) {
+                touched.add(name);
+            } else if (id != null) {
+                attributes.computeIfAbsent(id, k -> new LinkedHashSet<>()).add(name);
+            }
+        }
+        if (!key.reset() && key != rootKey) {
+            // The record directory is gone; its deletion arrives through the root
+            String gone = keyIds.remove(key);
+            if (gone != null) {
+                idKeys.remove(gone, key);
+            }
+        }
+    }
+
+    // Turn the collected raw events into typed ones and publish them
+    private void flush() {
+        if (overflowed) {
+            // Raw events were lost; only a scan can say what happened
+            overflowed = false;
+            touched.clear();
+            attributes.clear();
+            scanning = true;
+            scan();
+            return;
+        }
+
+        List<ChangeEvent> out = new ArrayList<>();
+        Map<String, Known> gone = new LinkedHashMap<>();
+        Map<String, Known> appeared = new LinkedHashMap<>();
+        for (String id : touched) {
+            Known before = known.get(id);
+            Known now = stat(root.resolve(id));
+            boolean same = before != null && now != null && before.sameDirectory(now);
+            if (before != null && !same) {
+                gone.put(id, before);
+                known.remove(id);
+            }
+            if (now != null) {
+                if (!same) {
+                    appeared.put(id, now);
+                }
+                known.put(id, now);
+            }
+        }
+        touched.clear();
+        Map<String, String> renamedTo = reconcile(gone, appeared, out);
+
+        for (Map.Entry<String, Set<String>> e : attributes.entrySet()) {
+            String id = renamedTo.getOrDefault(e.getKey(), e.getKey());
+            if (appeared.containsKey(id) && !renamedTo.containsValue(id)) {
+                // A new record; CREATED covers its attributes
+                continue;
+            }
+            Known now = stat(root.resolve(id));
+            if (now == null) {
+                continue;
+            }
+            known.put(id, now);
+            for (String attribute : e.getValue()) {
+                out.add(ChangeEvent.attributeChanged(id, attribute));
+            }
+        }
+        attributes.clear();
+
+        publish(out);
+    }
+
+    // Pair records that vanished with ones that appeared under the same file key
+    // as renames; report the rest as deleted and created. Returns old -> new IDs
+    private Map<String, String> reconcile(Map<String, Known> gone, Map<String, Known> appeared, List<ChangeEvent> out) {
+        Map<Object, String> goneByKey = new HashMap<>();
+        for (Map.Entry<String, Known> g : gone.entrySet()) {
+            if (g.getValue().fileKey != null) {
+                goneByKey.put(g.getValue().fileKey, g.getKey());
+            }
+        }
+
+        Map<String, String> renamedTo = new HashMap<>();
+        for (Map.Entry<String, Known> a : appeared.entrySet()) {
+            String newId = a.getKey();
+            String oldId = a.getValue().fileKey == null ? null : goneByKey.remove(a.getValue().fileKey);
+            if (oldId != null) {
+                gone.remove(oldId);
+                renamedTo.put(oldId, newId);
+                // The directory's watch follows it to the new name
+                WatchKey k = idKeys.remove(oldId);
+                if (k != null && k.isValid()) {
+                    keyIds.put(k, newId);
+                    idKeys.put(newId, k);
+                } else {
+                    watch(newId);
+                }
+                out.add(ChangeEvent.renamed(oldId, newId));
+            }
+        }
+        for (String id : gone.keySet()) {
+            unwatch(id);
+            out.add(ChangeEvent.deleted(id));
+        }
+        for (String id : appeared.keySet()) {
+            if (!renamedTo.containsValue(id)) {
+                watch(id);
+                out.add(ChangeEvent.created(id));
+            }
+        }
+        return renamedTo;
+    }
+
+    // Compare every record directory with what is known
+    private void scan() {
+        Map<String, Known> current;
+        try {
+            current = listRecords();
+        } catch (IOException e) {
+            System.err.println("Change feed scan of " + root + " failed: " + e.getMessage());
+            return;
+        }
+
+        List<ChangeEvent> out = new ArrayList<>();
+        Map<String, Known> gone = new LinkedHashMap<>();
+        Map<String, Known> appeared = new LinkedHashMap<>();
+        for (Map.Entry<String, Known> k : known.entrySet()) {
+            Known now = current.get(k.getKey());
+            if (now == null || !k.getValue().sameDirectory(now)) {
+                gone.put(k.getKey(), k.getValue());
+            }
+        }
+        for (Map.Entry<String, Known> c : current.entrySet()) {
+            Known before = known.get(c.getKey());
+            if (before == null || !before.sameDirectory(c.getValue())) {
+                appeared.put(c.getKey(), c.getValue());
+            } else if (before.modified != c.getValue().modified) {
+                out.add(ChangeEvent.attributeChanged(c.getKey(), null));
+            }
+        }
+        known = current;
+        reconcile(gone, appeared, out);
+
+        // Stay in scan mode while scans still find things the watches missed
+        if (out.isEmpty() && !watchLimited) {
+            scanning = false;
+        }
+        publish(out);
+    }
+
+    private void publish(List<ChangeEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        List<ChangeEvent> batch = List.copyOf(events);
+        for (Consumer<List<ChangeEvent>> s : subscribers) {
+            try {
+                s.accept(batch);
+            } catch (RuntimeException e) {
+                System.err.println("Change feed subscriber failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private void watch(String id) {
+        if (idKeys.containsKey(id)) {
+            return;
+        }
+        if (idKeys.size() >= maxWatched) {
+            watchLimited = true;
+            scanning = true;
+            return;
+        }
+        try {
+            WatchKey k = root.resolve(id).register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+            keyIds.put(k, id);
+            idKeys.put(id, k);
+        } catch (IOException e) {
+            // Usually the OS watch limit; scans cover the rest
+            watchLimited = true;
+            scanning = true;
+        }
+    }
+
+    private void unwatch(String id) {
+        WatchKey k = idKeys.remove(id);
+        if (k != null) {
+            keyIds.remove(k);
+            k.cancel();
+        }
+    }
+
+    private Map<String, Known> listRecords() throws IOException {
+        Map<String, Known> out = new HashMap<>();
+        try (DirectoryStream<Path> dirs = Files.newDirectoryStream(root)) {
+            for (Path p : dirs) {
+                String id = p.getFileName().toString();
+                if (id.startsWith(".")) {
+                    continue;
+                }
+                Known k = stat(p);
+                if (k != null) {
+                    out.put(id, k);
+                }
+            }
+        }
+        return out;
+    }
+
+    // Identity and modification time of a record directory, or null if there is none
+    private static Known stat(Path dir) {
+        try {
+            BasicFileAttributes a = Files.readAttributes(dir, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            return a.isDirectory() ? new Known(a.fileKey(), a.lastModifiedTime().to(TimeUnit.NANOSECONDS)) : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static final class Known {
+        final Object fileKey;
+        final long modified;
+
+        Known(Object fileKey, long modified) {
+            this.fileKey = fileKey;
+            this.modified = modified;
+        }
+
+        // Without file keys (some platforms) a directory is only known by its name
+        boolean sameDirectory(Known other) {
+            return fileKey == null || Objects.equals(fileKey, other.fileKey);
+        }
+    }
+}
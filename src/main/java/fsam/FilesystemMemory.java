@@ -6,8 +6,17 @@ import java.io.FileWriter;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
 import java.nio.file.NotDirectoryException;
 import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.locks.ReentrantLock;
+
+import metrics.Counter;
+import metrics.FsamIoEvent;
+import metrics.Metrics;
 
 public abstract class FilesystemMemory {
     /*
@@ -16,6 +25,13 @@ public abstract class FilesystemMemory {
      * removes internal state
      */
 
+    // I/O counters for the metrics endpoint
+    private static final Counter READS = Metrics.counter("vsas_fsam_reads_total", "FSAM value reads");
+    private static final Counter READ_BYTES = Metrics.counter("vsas_fsam_read_bytes_total", "Bytes read by FSAM value reads");
+    private static final Counter WRITES = Metrics.counter("vsas_fsam_writes_total", "FSAM value writes");
+    private static final Counter WRITTEN_BYTES = Metrics.counter("vsas_fsam_written_bytes_total",
+            "Bytes written by FSAM value writes");
+
     // The filesystem object (dir/file) for this FSAM instance
     private File fileObj;
     private File parentObj = null;
@@ -205,9 +221,83 @@ public abstract class FilesystemMemory {
         }
     }
 
+    // Create this object's directory, failing if anything already exists at the path
+    // Unlike createSelfDir this is a single atomic step, so exactly one of several
+    // concurrent creators succeeds
+    public void createSelfDirExclusive() throws IOException, FileAlreadyExistsException
+    {
+        Path self = fileObj.getAbsoluteFile().toPath();
+        Files.createDirectories(self.getParent());
+        Files.createDirectory(self);
+    }
+
+    // Replace a child file with a copy of source, atomically as with values
+    public void copyToChild(File source, String childPath) throws IOException
+    {
+        File target = new File(fileObj, childPath);
+        File tmp = tempSibling(target);
+        try
+        {
+            Files.copy(source.toPath(), tmp.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            replace(tmp.toPath(), target.toPath());
+        }
+        finally
+        {
+            tmp.delete();
+        }
+    }
+
+    // ---[ Record locks ]---
+    // Only compound changes (create, rename, delete, write plus cache update) take
+    // these; single values are replaced atomically, so reads never lock
+    // The locks are shared with other processes on the same root (see ProcessLocks)
+
+    // Lock for mutations of this object's record; hold it only around changes
+    // to this record, never while taking the lock of another one
+    public ReentrantLock recordLock()
+    {
+        return lockOf(fileObj);
+    }
+
+    public ReentrantLock childLock(String childPath)
+    {
+        return lockOf(new File(fileObj, childPath));
+    }
+
+    // Lock two child records without risking deadlock; release with unlock()
+    public ReentrantLock[] lockChildren(String childA, String childB)
+    {
+        Path a = normalised(new File(fileObj, childA));
+        Path b = normalised(new File(fileObj, childB));
+        if (! a.getParent().equals(b.getParent()))
+        {
+            throw new IllegalArgumentException("Records must share a parent to be locked together");
+        }
+        return ProcessLocks.forRoot(a.getParent().toFile()).lockBoth(a.getFileName().toString(), b.getFileName().toString());
+    }
+
+    public static void unlock(ReentrantLock[] held)
+    {
+        StripedLocks.unlock(held);
+    }
+
+    private static ReentrantLock lockOf(File record)
+    {
+        Path p = normalised(record);
+        return ProcessLocks.forRoot(p.getParent().toFile()).lockFor(p.getFileName().toString());
+    }
+
+    private static Path normalised(File f)
+    {
+        return f.getAbsoluteFile().toPath().normalize();
+    }
+
     // ---[ Data I/O ]---
     private static String readSerialisedValue(File target) throws IOException
     {
+        FsamIoEvent event = new FsamIoEvent();
+        event.begin();
+
         if (! target.exists())
         {
             throw new IOException("Read target does not exist");
@@ -227,36 +317,84 @@ public abstract class FilesystemMemory {
         }
         r.close();
 
+        if (Metrics.isEnabled())
+        {
+            READS.increment();
+            READ_BYTES.add(target.length());
+        }
+        event.end();
+        if (event.shouldCommit())
+        {
+            commitIo(event, "read", target);
+        }
         return res.toString();
     }
 
     private static void writeSerialisedValue(File target, String data) throws IOException, FileAlreadyExistsException
     {
-        // Try to create the file if it doesn't exist
-        if (! target.isFile())
+        FsamIoEvent event = new FsamIoEvent();
+        event.begin();
+
+        if (target.isDirectory())
         {
-            if (! target.exists())
-            {
-                try
-                {
-                    target.createNewFile();
-                }
-                catch (IOException e)
-                {
-                    throw e;
-                }
-            }
-            else
-            {
-                // The target is a directory
-                throw new FileAlreadyExistsException(target.getPath());
-            }
+            throw new FileAlreadyExistsException(target.getPath());
+        }
+
+        // Write a sibling temp file and rename it over the target, so a concurrent
+        // reader sees the old value or the new one, never a truncated file
+        File tmp = tempSibling(target);
+        try
+        {
+            BufferedWriter w = new BufferedWriter(new FileWriter(tmp));
+            w.write(data);
+            w.close();
+            replace(tmp.toPath(), target.toPath());
+        }
+        finally
+        {
+            tmp.delete();
         }
 
-        // Write to the file (overwrite)
-        BufferedWriter w = new BufferedWriter(new FileWriter(target));
-        w.write(data);
-        w.close();
+        if (Metrics.isEnabled())
+        {
+            WRITES.increment();
+            WRITTEN_BYTES.add(target.length());
+        }
+        event.end();
+        if (event.shouldCommit())
+        {
+            commitIo(event, "write", target);
+        }
+    }
+
+    // Unique per process and thread so concurrent writers never share a temp file
+    private static File tempSibling(File target)
+    {
+        return new File(target.getAbsoluteFile().getParentFile(), String.format(".%s.%d-%d.tmp",
+                target.getName(), ProcessHandle.current().pid(), Thread.currentThread().getId()));
+    }
+
+    private static void replace(Path source, Path target) throws IOException
+    {
+        try
+        {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+        catch (AtomicMoveNotSupportedException e)
+        {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    // Only runs while a recording wants the event, so the path work is not paid otherwise
+    private static void commitIo(FsamIoEvent event, String operation, File target)
+    {
+        File record = target.getParentFile();
+        File store = record == null ? null : record.getParentFile();
+        event.operation = operation;
+        event.pathCategory = (store == null ? "" : store.getName() + "/") + target.getName();
+        event.bytes = target.length();
+        event.commit();
     }
 
     // =[ Self ]=
@@ -0,0 +1,294 @@
+package fsam;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * ProcessLocks
+ * Coordination between every process (and thread) using one data root, such as
+ * a users or scrolls directory shared by several running instances. Everything
+ * lives in "<root>/.locks":
+ *
+ *  - stripe-<n>.lock   record locks. The stripes are ReentrantLocks that also hold
+ *                      an exclusive FileChannel lock on their file while the
+ *                      outermost hold lasts, so a record is mutated by one thread
+ *                      of one process at a time.
+ *  - generation        an 8 byte counter, bumped under a file lock after every
+ *                      change an in-memory index cares about. The file is mapped,
+ *                      so polling it is a memory read; a cache whose last seen
+ *                      value is behind reloads.
+ *  - <name>.lease      single-writer leases for background work (trash purge,
+ *                      user deletion, event log compaction), taken with tryLock.
+ *
+ * All of these are kernel locks, so a process killed with kill -9 releases them
+ * with its file descriptors; nothing needs cleaning up and the lock files are
+ * never deleted. A torn generation write can only yield a different value, which
+ * readers treat as a change.
+ *
+ * Start with -Dvsas.fsam.processLocks=false to keep everything in-process when
+ * only one instance uses the data.
+ */
+public final class ProcessLocks {
+    public static final String LOCK_DIR = ".locks";
+    static final int STRIPES = 128;
+
+    private static final boolean ENABLED =
+            Boolean.parseBoolean(System.getProperty("vsas.fsam.processLocks", "true"));
+    private static final Map<String, ProcessLocks> ROOTS = new ConcurrentHashMap<>();
+    private static final VarHandle LONG =
+            MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private final File root;
+    private final File dir;
+    private final StripedLocks stripes;
+    private final Set<String> leases = ConcurrentHashMap.newKeySet();
+
+    // Generation: the mapped file when enabled, otherwise just a counter
+    private final AtomicLong localGeneration = new AtomicLong();
+    private final Object bumpLock = new Object();
+    private volatile MappedByteBuffer generation;
+
+    private ProcessLocks(File root) {
+        this.root = root;
+        this.dir = new File(root, LOCK_DIR);
+        this.stripes = new StripedLocks(STRIPES, StripeLock::new);
+    }
+
+    public static ProcessLocks forRoot(File root) {
+        return ROOTS.computeIfAbsent(StripedLocks.key(root), k -> new ProcessLocks(new File(k)));
+    }
+
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    // ---[ Record locks ]---
+    public ReentrantLock lockFor(String name) {
+        return stripes.lockFor(name);
+    }
+
+    public ReentrantLock[] lockBoth(String a, String b) {
+        return stripes.lockBoth(a, b);
+    }
+
+    // Only lock() and unlock() take the file lock; the other ReentrantLock methods
+    // are not used on record locks. Never serialised; the file state stays local
+    private final class StripeLock extends ReentrantLock {
+        private static final long serialVersionUID = 1L;
+
+        private final transient File file;
+        private transient FileChannel channel;
+
+        StripeLock(int stripe) {
+            this.file = new File(dir, String.format("stripe-%03d.lock", stripe));
+        }
+
+        @Override
+        public void lock() {
+            super.lock();
+            if (ENABLED && getHoldCount() == 1) {
+                try {
+                    acquireFile();
+                } catch (IOException e) {
+                    super.unlock();
+                    throw new UncheckedIOException("Failed to lock " + file.getPath(), e);
+                }
+            }
+        }
+
+        @Override
+        public void unlock() {
+            if (channel != null && isHeldByCurrentThread() && getHoldCount() == 1) {
+                try {
+                    // Closing the channel releases its lock
+                    channel.close();
+                } catch (IOException e) {
+                    // the descriptor is gone either way
+                }
+                channel = null;
+            }
+            super.unlock();
+        }
+
+        // Nothing to coordinate until the root exists, and creating it here would
+        // leave directories behind for writes that are about to fail anyway
+        private void acquireFile() throws IOException {
+            if (!root.isDirectory()) {
+                return;
+            }
+            Files.createDirectories(dir.toPath());
+            FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            try {
+                ch.lock();
+            } catch (IOException | RuntimeException e) {
+                ch.close();
+                throw e;
+            }
+            channel = ch;
+        }
+    }
+
+    // ---[ Generation ]---
+
+    // Current value; a plain memory read once the file is mapped
+    public long generation() {
+        if (!ENABLED) {
+            return localGeneration.get();
+        }
+        MappedByteBuffer g = generation;
+        if (g == null) {
+            try {
+                g = mapGeneration();
+            } catch (IOException e) {
+                return 0;
+            }
+            if (g == null) {
+                return 0;
+            }
+        }
+        return (long) LONG.getVolatile(g, 0);
+    }
+
+    // Record a change; returns the new value, or -1 if it could not be written
+    // (other processes then miss this change until their next reload)
+    public long bumpGeneration() {
+        if (!ENABLED) {
+            return localGeneration.incrementAndGet();
+        }
+        synchronized (bumpLock) {
+            try {
+                MappedByteBuffer g = mapGeneration();
+                if (g == null) {
+                    return -1;
+                }
+                try (FileChannel ch = FileChannel.open(generationFile().toPath(), StandardOpenOption.WRITE)) {
+                    FileLock l = ch.lock(0, Long.BYTES, false);
+                    try {
+                        long next = (long) LONG.getVolatile(g, 0) + 1;
+                        LONG.setVolatile(g, 0, next);
+                        return next;
+                    } finally {
+                        l.release();
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println("Failed to update " + generationFile().getPath() + ": " + e.getMessage());
+                return -1;
+            }
+        }
+    }
+
+    private File generationFile() {
+        return new File(dir, "generation");
+    }
+
+    // The mapping outlives the channel, so no descriptor is kept open
+    private synchronized MappedByteBuffer mapGeneration() throws IOException {
+        if (generation != null) {
+            return generation;
+        }
+        if (!root.isDirectory()) {
+            return null;
+        }
+        Files.createDirectories(dir.toPath());
+        try (FileChannel ch = FileChannel.open(generationFile().toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            if (ch.size() < Long.BYTES) {
+                // Zero-fill under the lock so two processes creating it agree
+                FileLock l = ch.lock(0, Long.BYTES, false);
+                try {
+                    if (ch.size() < Long.BYTES) {
+                        ch.write(ByteBuffer.allocate(Long.BYTES), 0);
+                    }
+                } finally {
+                    l.release();
+                }
+            }
+            generation = ch.map(FileChannel.MapMode.READ_WRITE, 0, Long.BYTES);
+        }
+        return generation;
+    }
+
+    // ---[ Leases ]---
+
+    // Lease for single-writer background work, or null if another thread or
+    // process holds it; close the lease when the work is done
+    public Lease tryLease(String name) throws IOException {
+        if (!leases.add(name)) {
+            return null;
+        }
+        if (!ENABLED) {
+            return new Lease(name, null);
+        }
+
+        FileChannel ch = null;
+        try {
+            Files.createDirectories(dir.toPath());
+            ch = FileChannel.open(new File(dir, name + ".lease").toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            if (ch.tryLock() == null) {
+                ch.close();
+                leases.remove(name);
+                return null;
+            }
+            // Who holds it, for anyone looking at the file
+            ch.truncate(0);
+            ch.write(ByteBuffer.wrap(String.format("pid=%d since=%d%n",
+                    ProcessHandle.current().pid(), System.currentTimeMillis()).getBytes(StandardCharsets.UTF_8)));
+            return new Lease(name, ch);
+        } catch (IOException | RuntimeException e) {
+            if (ch != null) {
+                ch.close();
+            }
+            leases.remove(name);
+            throw e;
+        }
+    }
+
+    public final class Lease implements AutoCloseable {
+        private final String name;
+        private final FileChannel channel;
+        private boolean closed = false;
+
+        private Lease(String name, FileChannel channel) {
+            this.name = name;
+            this.channel = channel;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public synchronized void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    // released with the descriptor regardless
+                }
+            }
+            leases.remove(name);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package fsam;
+
+import java.io.File;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntFunction;
+
+/**
+ * StripedLocks
+ * Fixed array of locks indexed by key hash, so any number of records can be locked
+ * without a lock object per record. Two keys may share a stripe; that only costs
+ * some needless waiting, never correctness.
+ *
+ * ProcessLocks keeps one set per data root, keyed by record name, so every
+ * manager and record object on the same directory, however it was reached,
+ * serialises on the same lock.
+ */
+public final class StripedLocks {
+    private final ReentrantLock[] locks;
+    private final int mask;
+
+    public StripedLocks(int stripes) {
+        this(stripes, i -> new ReentrantLock());
+    }
+
+    // The factory gets the stripe number, e.g. to back each stripe with a lock file
+    public StripedLocks(int stripes, IntFunction<ReentrantLock> factory) {
+        int n = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+        locks = new ReentrantLock[n];
+        for (int i = 0; i < n; i++) {
+            locks[i] = factory.apply(i);
+        }
+        mask = n - 1;
+    }
+
+    public int stripes() {
+        return locks.length;
+    }
+
+    int stripeOf(String key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        h *= 0x85EBCA6B;
+        h ^= (h >>> 13);
+        return h & mask;
+    }
+
+    public ReentrantLock lockFor(String key) {
+        return locks[stripeOf(key)];
+    }
+
+    // Locks both keys, lower stripe first so two callers locking the same pair in
+    // opposite order cannot deadlock; pass the result to unlock()
+    public ReentrantLock[] lockBoth(String a, String b) {
+        int sa = stripeOf(a);
+        int sb = stripeOf(b);
+        ReentrantLock[] held = sa == sb
+                ? new ReentrantLock[] { locks[sa] }
+                : new ReentrantLock[] { locks[Math.min(sa, sb)], locks[Math.max(sa, sb)] };
+        for (ReentrantLock l : held) {
+            l.lock();
+        }
+        return held;
+    }
+
+    public static void unlock(ReentrantLock[] held) {
+        for (int i = held.length - 1; i >= 0; i--) {
+            held[i].unlock();
+        }
+    }
+
+    static String key(File dir) {
+        return dir.getAbsoluteFile().toPath().normalize().toString();
+    }
+}
@@ -0,0 +1,33 @@
+package metrics;
+
+/**
+ * CacheMetrics
+ * Hit and miss counts of one in-memory cache, exported as
+ * vsas_cache_requests_total{cache,result} and vsas_cache_hit_ratio{cache}.
+ */
+public final class CacheMetrics {
+    private final Counter hits;
+    private final Counter misses;
+
+    CacheMetrics(String cache) {
+        String help = "Cache lookups by result (miss = loaded from disk)";
+        this.hits = Metrics.counter("vsas_cache_requests_total", help, "cache", cache, "result", "hit");
+        this.misses = Metrics.counter("vsas_cache_requests_total", help, "cache", cache, "result", "miss");
+        Metrics.gauge("vsas_cache_hit_ratio", "Share of cache lookups served from memory", this::hitRatio,
+                "cache", cache);
+    }
+
+    public void hit() {
+        hits.increment();
+    }
+
+    public void miss() {
+        misses.increment();
+    }
+
+    public double hitRatio() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0 : (double) h / total;
+    }
+}
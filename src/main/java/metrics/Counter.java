@@ -0,0 +1,35 @@
+package metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counter
+ * Monotonic count (events, bytes) for the Prometheus export. Like OperationMetrics
+ * it does nothing while metrics are disabled.
+ */
+public final class Counter {
+    private final String family;
+    private final String labels;
+    private final LongAdder value = new LongAdder();
+
+    Counter(String family, String labels) {
+        this.family = family;
+        this.labels = labels;
+    }
+
+    public void increment() {
+        if (Metrics.enabled) {
+            value.increment();
+        }
+    }
+
+    public void add(long n) {
+        if (Metrics.enabled) {
+            value.add(n);
+        }
+    }
+
+    public String getFamily() { return family; }
+    public String getLabels() { return labels; }
+    public long get() { return value.sum(); }
+}
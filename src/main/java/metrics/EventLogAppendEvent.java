@@ -0,0 +1,33 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * EventLogAppendEvent
+ * Flight Recorder event for EventLogManager.log. The duration covers the caller's
+ * side only (sampling, stats and handing the entry to the writer), which is what
+ * request threads pay; time spent blocked on a full queue shows up here.
+ */
+@Name("vsas.EventLogAppend")
+@Label("Event Log Append")
+@Category({"VSAS", "Event Log"})
+@Description("Audit event handed to the event log writer")
+@StackTrace(false)
+public final class EventLogAppendEvent extends jdk.jfr.Event {
+    @Label("Action")
+    public String action;
+
+    @Label("Category")
+    public String category;
+
+    @Label("Written")
+    @Description("False when the category's sampling policy dropped the event")
+    public boolean written;
+
+    @Label("Queue Depth")
+    public long queueDepth;
+}
@@ -0,0 +1,31 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * FsamIoEvent
+ * Flight Recorder event for one FSAM value read or write. The path category is the
+ * store and attribute ("users/password_hash"), never the record id, so recordings
+ * can be grouped without collecting user data.
+ */
+@Name("vsas.FsamIo")
+@Label("FSAM I/O")
+@Category({"VSAS", "Storage"})
+@Description("Read or write of a single FSAM value file")
+@StackTrace(false)
+public final class FsamIoEvent extends jdk.jfr.Event {
+    @Label("Operation")
+    public String operation;
+
+    @Label("Path Category")
+    public String pathCategory;
+
+    @Label("Bytes")
+    @DataAmount
+    public long bytes;
+}
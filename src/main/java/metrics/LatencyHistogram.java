@@ -0,0 +1,110 @@
+package metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LatencyHistogram
+ * Lock-free histogram of durations in nanoseconds, bucketed the way HdrHistogram
+ * does it: values below 128 get a bucket each, and every power-of-two range above
+ * that is split into 64 equal buckets. Any recorded value is therefore known to
+ * within 1/64 (about 1.6%) whatever its size, with a fixed array of a few thousand
+ * counters. Recording is one array increment plus two adders, safe from any thread.
+ *
+ * Values above MAX_TRACKABLE (about 4.9 hours) are counted in the top bucket.
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BITS = 7;
+    private static final int SUB_COUNT = 1 << SUB_BITS;      // 128 exact values
+    private static final int HALF = SUB_COUNT / 2;           // buckets per power of two
+    private static final int MAX_SHIFT = 37;
+
+    public static final long MAX_TRACKABLE = ((long) SUB_COUNT << MAX_SHIFT) - 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray((MAX_SHIFT + 2) * HALF);
+    private final LongAdder total = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long nanos) {
+        long v = Math.max(0, Math.min(nanos, MAX_TRACKABLE));
+        counts.incrementAndGet(indexOf(v));
+        total.increment();
+        sum.add(v);
+        long m = max.get();
+        while (v > m && !max.compareAndSet(m, v)) {
+            m = max.get();
+        }
+    }
+
+    static int indexOf(long v) {
+        if (v < SUB_COUNT) {
+            return (int) v;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(v) - (SUB_BITS - 1);
+        return shift * HALF + (int) (v >>> shift);
+    }
+
+    // Highest value that falls into the bucket
+    static long highestInBucket(int index) {
+        if (index < SUB_COUNT) {
+            return index;
+        }
+        int shift = index / HALF - 1;
+        long sub = index - (long) shift * HALF;
+        return ((sub + 1) << shift) - 1;
+    }
+
+    public Snapshot snapshot() {
+        long[] copy = new long[counts.length()];
+        long n = 0;
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] = counts.get(i);
+            n += copy[i];
+        }
+        return new Snapshot(copy, n, sum.sum(), max.get());
+    }
+
+    /**
+     * Snapshot
+     * Counts copied at one moment; percentiles are computed from the copy.
+     */
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        private Snapshot(long[] counts, long count, long sum, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        public long getCount() { return count; }
+        public long getSumNanos() { return sum; }
+        public long getMaxNanos() { return max; }
+
+        public double getMeanNanos() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        // Value (ns) at or below which p percent (0-100) of the recorded values fall
+        public long percentile(double p) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(p / 100.0 * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(highestInBucket(i), max);
+                }
+            }
+            return max;
+        }
+    }
+}
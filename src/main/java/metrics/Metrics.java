@@ -0,0 +1,153 @@
+package metrics;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Metrics
+ * Registry of per-operation metrics (see OperationMetrics), plus the counters and
+ * gauges exported by MetricsServer.
+ *
+ * Recording is on unless started with -Dvsas.metrics=false; it can also be switched
+ * at runtime. Everything is registered once, by name, and kept for the life of the
+ * process. Counter and gauge names follow Prometheus conventions (vsas_..._total);
+ * labels are given as name/value pairs.
+ */
+public final class Metrics {
+    private Metrics() {} // static registry only
+
+    static volatile boolean enabled = Boolean.parseBoolean(System.getProperty("vsas.metrics", "true"));
+
+    private static final ConcurrentSkipListMap<String, OperationMetrics> OPERATIONS = new ConcurrentSkipListMap<>();
+    private static final ConcurrentSkipListMap<String, Counter> COUNTERS = new ConcurrentSkipListMap<>();
+    private static final ConcurrentSkipListMap<String, Gauge> GAUGES = new ConcurrentSkipListMap<>();
+    private static final Map<String, CacheMetrics> CACHES = new ConcurrentHashMap<>();
+    private static final Map<String, String> HELP = new ConcurrentHashMap<>();
+
+    /**
+     * Gauge
+     * A value read when metrics are exported.
+     */
+    public static final class Gauge {
+        final String family;
+        final String labels;
+        final DoubleSupplier value;
+
+        private Gauge(String family, String labels, DoubleSupplier value) {
+            this.family = family;
+            this.labels = labels;
+            this.value = value;
+        }
+    }
+
+    public static OperationMetrics operation(String name) {
+        return OPERATIONS.computeIfAbsent(name, OperationMetrics::new);
+    }
+
+    public static Counter counter(String family, String help, String... labelPairs) {
+        String labels = labels(labelPairs);
+        HELP.putIfAbsent(family, help);
+        return COUNTERS.computeIfAbsent(family + "{" + labels + "}", k -> new Counter(family, labels));
+    }
+
+    public static CacheMetrics cache(String name) {
+        return CACHES.computeIfAbsent(name, CacheMetrics::new);
+    }
+
+    // Registering the same name and labels again replaces the supplier
+    public static void gauge(String family, String help, DoubleSupplier value, String... labelPairs) {
+        String labels = labels(labelPairs);
+        HELP.putIfAbsent(family, help);
+        GAUGES.put(family + "{" + labels + "}", new Gauge(family, labels, value));
+    }
+
+    // name1, value1, name2, value2 ... -> name1="value1",name2="value2"
+    private static String labels(String... pairs) {
+        if (pairs.length % 2 != 0) {
+            throw new IllegalArgumentException("Labels must be name/value pairs");
+        }
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < pairs.length; i += 2) {
+            if (sb.length() > 0) {
+                sb.append(',');
+            }
+            sb.append(pairs[i]).append("=\"").append(PrometheusFormat.escape(pairs[i + 1])).append('"');
+        }
+        return sb.toString();
+    }
+
+    static Collection<Counter> counters() {
+        return COUNTERS.values();
+    }
+
+    static Collection<Gauge> gauges() {
+        return GAUGES.values();
+    }
+
+    static String help(String family) {
+        return HELP.getOrDefault(family, family);
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean on) {
+        enabled = on;
+    }
+
+    // Operations that have been called at least once, by name
+    public static List<OperationMetrics> operations() {
+        List<OperationMetrics> out = new ArrayList<>();
+        for (OperationMetrics op : OPERATIONS.values()) {
+            if (op.getSuccesses() + op.getFailures() > 0) {
+                out.add(op);
+            }
+        }
+        return out;
+    }
+
+    // One row per operation; times in microseconds
+    public static String report() {
+        StringBuilder sb = new StringBuilder(String.format(Locale.ROOT, "%-36s %8s %6s %10s %10s %10s %10s%n",
+                "operation", "calls", "failed", "p50 us", "p99 us", "p999 us", "max us"));
+        for (OperationMetrics op : operations()) {
+            LatencyHistogram.Snapshot s = op.getLatency();
+            sb.append(String.format(Locale.ROOT, "%-36s %8d %6d %10.1f %10.1f %10.1f %10.1f%n", op.getName(),
+                    s.getCount(), op.getFailures(), micros(s.percentile(50)), micros(s.percentile(99)),
+                    micros(s.percentile(99.9)), micros(s.getMaxNanos())));
+        }
+        return sb.toString();
+    }
+
+    // CSV with a header line, replacing the file atomically
+    public static void export(Path file) throws IOException {
+        StringBuilder sb = new StringBuilder(
+                "operation,calls,successes,failures,mean_us,p50_us,p99_us,p999_us,max_us\n");
+        for (OperationMetrics op : operations()) {
+            LatencyHistogram.Snapshot s = op.getLatency();
+            sb.append(String.format(Locale.ROOT, "%s,%d,%d,%d,%.1f,%.1f,%.1f,%.1f,%.1f\n", op.getName(),
+                    s.getCount(), op.getSuccesses(), op.getFailures(), s.getMeanNanos() / 1000.0,
+                    micros(s.percentile(50)), micros(s.percentile(99)), micros(s.percentile(99.9)),
+                    micros(s.getMaxNanos())));
+        }
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.writeString(tmp, sb.toString(), StandardCharsets.UTF_8);
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static double micros(long nanos) {
+        return nanos / 1000.0;
+    }
+}
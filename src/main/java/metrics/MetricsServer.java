@@ -0,0 +1,93 @@
+package metrics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * MetricsServer
+ * Opt-in HTTP endpoint serving PrometheusFormat at /metrics.
+ *
+ * It is off unless -Dvsas.metrics.port is set, and listens on 127.0.0.1 unless
+ * -Dvsas.metrics.host says otherwise. Scrapes are answered by a pool of two daemon
+ * threads of its own, so a slow or busy scraper never takes threads from the
+ * application; rendering only reads counters and histograms.
+ */
+public final class MetricsServer {
+    private static final int THREADS = 2;
+
+    private final HttpServer server;
+    private final ExecutorService pool;
+
+    private MetricsServer(HttpServer server, ExecutorService pool) {
+        this.server = server;
+        this.pool = pool;
+    }
+
+    // Port 0 picks a free port (see getPort)
+    public static MetricsServer start(String host, int port) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(host, port), 0);
+        AtomicInteger n = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS, r -> {
+            Thread t = new Thread(r, "metrics-http-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        server.setExecutor(pool);
+        server.createContext("/metrics", MetricsServer::handle);
+        server.start();
+        return new MetricsServer(server, pool);
+    }
+
+    // Null when no port is configured or the server could not start
+    public static MetricsServer startFromSystemProperties() {
+        Integer port = Integer.getInteger("vsas.metrics.port");
+        if (port == null) {
+            return null;
+        }
+        String host = System.getProperty("vsas.metrics.host", "127.0.0.1");
+        try {
+            MetricsServer s = start(host, port);
+            System.out.println("Metrics available at http://" + host + ":" + s.getPort() + "/metrics");
+            return s;
+        } catch (IOException e) {
+            System.err.println("Failed to start metrics server: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!exchange.getRequestMethod().equals("GET") && !exchange.getRequestMethod().equals("HEAD")) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = PrometheusFormat.render().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", PrometheusFormat.CONTENT_TYPE);
+            if (exchange.getRequestMethod().equals("HEAD")) {
+                exchange.sendResponseHeaders(200, -1);
+                return;
+            }
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public void stop() {
+        server.stop(0);
+        pool.shutdownNow();
+    }
+}
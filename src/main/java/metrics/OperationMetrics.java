@@ -0,0 +1,44 @@
+package metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * OperationMetrics
+ * Latency histogram and success / failure counts of one operation.
+ *
+ * Callers hold on to the instance from Metrics.operation and bracket each call:
+ *
+ *   long start = OP.start();
+ *   ... OP.stop(start, ok);
+ *
+ * While metrics are disabled start() skips the clock and stop() returns at once.
+ */
+public final class OperationMetrics {
+    static final long OFF = Long.MIN_VALUE;
+
+    private final String name;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder successes = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    OperationMetrics(String name) {
+        this.name = name;
+    }
+
+    public long start() {
+        return Metrics.enabled ? System.nanoTime() : OFF;
+    }
+
+    public void stop(long start, boolean ok) {
+        if (start == OFF) {
+            return;
+        }
+        latency.record(System.nanoTime() - start);
+        (ok ? successes : failures).increment();
+    }
+
+    public String getName() { return name; }
+    public long getSuccesses() { return successes.sum(); }
+    public long getFailures() { return failures.sum(); }
+    public LatencyHistogram.Snapshot getLatency() { return latency.snapshot(); }
+}
@@ -0,0 +1,31 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * PasswordCheckEvent
+ * Flight Recorder event for UserManager.checkPassword. Records the hashing
+ * parameters and the outcome; the candidate password is never captured.
+ */
+@Name("vsas.PasswordCheck")
+@Label("Password Check")
+@Category({"VSAS", "Security"})
+@Description("Verification of a candidate password against the stored hash")
+@StackTrace(false)
+public final class PasswordCheckEvent extends jdk.jfr.Event {
+    @Label("User Id")
+    public String userId;
+
+    @Label("Algorithm")
+    public String algorithm;
+
+    @Label("Iterations")
+    public int iterations;
+
+    @Label("Matched")
+    public boolean matched;
+}
@@ -0,0 +1,143 @@
+package metrics;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * PrometheusFormat
+ * Renders everything in Metrics, plus JVM memory, GC and thread figures, in the
+ * Prometheus text exposition format (version 0.0.4).
+ *
+ * Proxy operations become one summary family with p50/p99/p999 quantiles in
+ * seconds; counters and gauges are written under their registered names.
+ */
+public final class PrometheusFormat {
+    private PrometheusFormat() {} // static helper only
+
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final double[] QUANTILES = {0.5, 0.99, 0.999};
+
+    public static String render() {
+        StringBuilder sb = new StringBuilder(4096);
+        operations(sb);
+        counters(sb);
+        gauges(sb);
+        jvm(sb);
+        return sb.toString();
+    }
+
+    private static void operations(StringBuilder sb) {
+        List<OperationMetrics> ops = Metrics.operations();
+        if (ops.isEmpty()) {
+            return;
+        }
+        header(sb, "vsas_operation_duration_seconds", "Latency of proxy and security operations", "summary");
+        for (OperationMetrics op : ops) {
+            LatencyHistogram.Snapshot s = op.getLatency();
+            String label = "operation=\"" + escape(op.getName()) + "\"";
+            for (double q : QUANTILES) {
+                sample(sb, "vsas_operation_duration_seconds", label + ",quantile=\"" + q + "\"",
+                        seconds(s.percentile(q * 100)));
+            }
+            sample(sb, "vsas_operation_duration_seconds_sum", label, seconds(s.getSumNanos()));
+            sample(sb, "vsas_operation_duration_seconds_count", label, s.getCount());
+        }
+        header(sb, "vsas_operation_failures_total", "Operations that reported failure", "counter");
+        for (OperationMetrics op : ops) {
+            sample(sb, "vsas_operation_failures_total", "operation=\"" + escape(op.getName()) + "\"", op.getFailures());
+        }
+    }
+
+    private static void counters(StringBuilder sb) {
+        Map<String, List<Counter>> families = new LinkedHashMap<>();
+        for (Counter c : Metrics.counters()) {
+            families.computeIfAbsent(c.getFamily(), k -> new ArrayList<>()).add(c);
+        }
+        families.forEach((family, counters) -> {
+            header(sb, family, Metrics.help(family), "counter");
+            for (Counter c : counters) {
+                sample(sb, family, c.getLabels(), c.get());
+            }
+        });
+    }
+
+    private static void gauges(StringBuilder sb) {
+        Map<String, List<Metrics.Gauge>> families = new LinkedHashMap<>();
+        for (Metrics.Gauge g : Metrics.gauges()) {
+            families.computeIfAbsent(g.family, k -> new ArrayList<>()).add(g);
+        }
+        families.forEach((family, gauges) -> {
+            header(sb, family, Metrics.help(family), "gauge");
+            for (Metrics.Gauge g : gauges) {
+                double v;
+                try {
+                    v = g.value.getAsDouble();
+                } catch (RuntimeException e) {
+                    continue; // a broken gauge must not break the scrape
+                }
+                sample(sb, family, g.labels, v);
+            }
+        });
+    }
+
+    private static void jvm(StringBuilder sb) {
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        MemoryUsage nonHeap = ManagementFactory.getMemoryMXBean().getNonHeapMemoryUsage();
+        header(sb, "jvm_memory_bytes_used", "Used bytes of a given JVM memory area", "gauge");
+        sample(sb, "jvm_memory_bytes_used", "area=\"heap\"", heap.getUsed());
+        sample(sb, "jvm_memory_bytes_used", "area=\"nonheap\"", nonHeap.getUsed());
+        header(sb, "jvm_memory_bytes_committed", "Committed bytes of a given JVM memory area", "gauge");
+        sample(sb, "jvm_memory_bytes_committed", "area=\"heap\"", heap.getCommitted());
+        sample(sb, "jvm_memory_bytes_committed", "area=\"nonheap\"", nonHeap.getCommitted());
+        header(sb, "jvm_memory_bytes_max", "Max bytes of a given JVM memory area (-1 if undefined)", "gauge");
+        sample(sb, "jvm_memory_bytes_max", "area=\"heap\"", heap.getMax());
+        sample(sb, "jvm_memory_bytes_max", "area=\"nonheap\"", nonHeap.getMax());
+
+        List<GarbageCollectorMXBean> gcs = ManagementFactory.getGarbageCollectorMXBeans();
+        header(sb, "jvm_gc_collection_seconds", "Time spent in a given JVM garbage collector", "summary");
+        for (GarbageCollectorMXBean gc : gcs) {
+            String label = "gc=\"" + escape(gc.getName()) + "\"";
+            sample(sb, "jvm_gc_collection_seconds_count", label, Math.max(0, gc.getCollectionCount()));
+            sample(sb, "jvm_gc_collection_seconds_sum", label, Math.max(0, gc.getCollectionTime()) / 1000.0);
+        }
+
+        header(sb, "jvm_threads_current", "Current thread count of the JVM", "gauge");
+        sample(sb, "jvm_threads_current", "", ManagementFactory.getThreadMXBean().getThreadCount());
+        header(sb, "process_uptime_seconds", "Time since the JVM started", "gauge");
+        sample(sb, "process_uptime_seconds", "", ManagementFactory.getRuntimeMXBean().getUptime() / 1000.0);
+    }
+
+    private static void header(StringBuilder sb, String family, String help, String type) {
+        sb.append("# HELP ").append(family).append(' ').append(help.replace("\\", "\\\\").replace("\n", "\\n"))
+                .append('\n');
+        sb.append("# TYPE ").append(family).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder sb, String name, String labels, double value) {
+        sb.append(name);
+        if (!labels.isEmpty()) {
+            sb.append('{').append(labels).append('}');
+        }
+        sb.append(' ');
+        if (value == Math.rint(value) && !Double.isInfinite(value) && Math.abs(value) < 1e15) {
+            sb.append((long) value);
+        } else {
+            sb.append(value);
+        }
+        sb.append('\n');
+    }
+
+    private static double seconds(long nanos) {
+        return nanos / 1e9;
+    }
+
+    static String escape(String labelValue) {
+        return labelValue.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
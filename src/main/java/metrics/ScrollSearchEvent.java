@@ -0,0 +1,28 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * ScrollSearchEvent
+ * Flight Recorder event for ScrollManager.searchScrolls: which criteria were set,
+ * how many scrolls were scanned and how many matched.
+ */
+@Name("vsas.ScrollSearch")
+@Label("Scroll Search")
+@Category({"VSAS", "Scrolls"})
+@Description("Filtered scan over all scrolls")
+@StackTrace(false)
+public final class ScrollSearchEvent extends jdk.jfr.Event {
+    @Label("Criteria")
+    public String criteria;
+
+    @Label("Scanned")
+    public int scanned;
+
+    @Label("Matched")
+    public int matched;
+}
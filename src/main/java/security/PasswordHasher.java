@@ -6,6 +6,9 @@ import java.security.MessageDigest;
 import java.security.SecureRandom;      
 import java.util.Base64;                
 
+import metrics.Metrics;
+import metrics.OperationMetrics;
+
 /**
  * PasswordHasher
  * Helper for password hashing and verification.
@@ -19,6 +22,8 @@ public final class PasswordHasher {
     public static final int DEFAULT_KEY_LENGTH_BITS = 256; //Size of the derived key in bits (256 = 32 bytes)
     public static final int DEFAULT_SALT_BYTES = 16; //Size of the per-password random salt in bytes.
 
+    private static final OperationMetrics DERIVE_KEY = Metrics.operation("security.deriveKey"); // PBKDF2 timings
+
     /** Generate a new cryptographically-strong random salt. */
     public static byte[] generateSalt() {
         byte[] salt = new byte[DEFAULT_SALT_BYTES]; // 16 bytes
@@ -36,15 +41,21 @@ public final class PasswordHasher {
      * @return raw bytes of the derived key (this is your password hash)
      */
     public static byte[] deriveKey(char[] passwordChars, byte[] salt, int iterations, int keyLenBits) {
+        long start = DERIVE_KEY.start();
+        boolean ok = false;
         try {
             // PBEKeySpec inputs: password, salt, iteration count, and desired key length.
             PBEKeySpec spec = new PBEKeySpec(passwordChars, salt, iterations, keyLenBits);
 
             // SecretKeyFactory with our algorithm name runs PBKDF2 and returns the derived key bytes.
             SecretKeyFactory factory = SecretKeyFactory.getInstance(DEFAULT_ALGO);
-            return factory.generateSecret(spec).getEncoded();
+            byte[] key = factory.generateSecret(spec).getEncoded();
+            ok = true;
+            return key;
         } catch (Exception e) {
             throw new RuntimeException("PBKDF2 deriveKey failed", e);
+        } finally {
+            DERIVE_KEY.stop(start, ok);
         }
     }
 
@@ -439,22 +439,14 @@ public class AdminManagerTest {
     }
 
     @Test
-    void testDeleteUserFileDeletionFailsRealMethod() {
+    void testDeleteUserFailsWhenTombstoneAreaUnusable() throws IOException {
         File userDir = new File(tempDir, "lockedUserDir");
         userDir.mkdir();
+        // A plain file where the tombstone directory should go
+        new File(tempDir, UserManager.TOMBSTONE_DIR).createNewFile();
+
         User u = new User(userDir.getAbsolutePath()) {
             @Override public String getUserId() { return "lockedUserDir"; }
-            @Override
-            public File getFileObj() {
-                return new File(userDir.getAbsolutePath()) {
-                    @Override public boolean delete() { return false; }
-                    @Override public File[] listFiles() {
-                        return new File[]{ new File(userDir, "fail.txt") {
-                            @Override public boolean delete() { return false; }
-                        }};
-                    }
-                };
-            }
         };
 
         UserManager localManager = new UserManager(tempDir.getAbsolutePath()) {
@@ -466,24 +458,19 @@ public class AdminManagerTest {
         TestUtils.setField(am, "userManager", localManager);
 
         assertFalse(am.deleteUser("lockedUserDir"),
-            "deleteUser should fail if file cannot be deleted");
-    }
-
-
-    class UnDeletableDir extends File {
-        public UnDeletableDir(String pathname) { super(pathname); }
-        @Override
-        public boolean delete() { return false; }
+            "deleteUser should fail if the user cannot be tombstoned");
+        assertTrue(userDir.isDirectory());
     }
 
     @Test
-    void testDeleteUserDirectoryDeletionFailsRealMethod() throws IOException {
-        File userDir = new UnDeletableDir(tempDir.getAbsolutePath() + "/lockedDir");
+    void testDeleteUserFailsWhenTombstoneTaken() throws IOException {
+        File userDir = new File(tempDir, "lockedDir");
         userDir.mkdir();
+        // Leftover tombstone with the same ID that has not been purged yet
+        new File(tempDir, UserManager.TOMBSTONE_DIR + "/lockedDir").mkdirs();
 
         User u = new User(userDir.getAbsolutePath()) {
             @Override public String getUserId() { return "lockedDir"; }
-            @Override public File getFileObj() { return userDir; }
         };
 
         UserManager localManager = new UserManager(tempDir.getAbsolutePath()) {
@@ -494,7 +481,8 @@ public class AdminManagerTest {
         AdminManager am = new AdminManager(tempDir.getAbsolutePath(), adminUser, scrollManager);
         TestUtils.setField(am, "userManager", localManager);
 
-        assertFalse(am.deleteUser("lockedDir"), "deleteUser should fail if directory cannot be deleted");
+        assertFalse(am.deleteUser("lockedDir"), "deleteUser should fail if the tombstone slot is taken");
+        assertTrue(userDir.isDirectory());
     }
 
 
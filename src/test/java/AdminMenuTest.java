@@ -112,7 +112,7 @@ class AdminMenuTest {
 
     @Test
     void testCreateUserYes() {
-        String input = "2\nuser1\nuser1name\npass1\nyes\n8\n";
+        String input = "2\nuser1\nuser1name\npass1\nyes\n12\n";
         runMenuWithInput(input);
 
         var user = adminManager.getUser("user1");
@@ -123,7 +123,7 @@ class AdminMenuTest {
 
     @Test
     void testCreateUserY() {
-        String input = "2\nuser2\nuser2name\npass2\ny\n8\n"; 
+        String input = "2\nuser2\nuser2name\npass2\ny\n12\n"; 
         runMenuWithInput(input);
 
         var user = adminManager.getUser("user2");
@@ -133,7 +133,7 @@ class AdminMenuTest {
 
     @Test
     void testCreateUserTrue() {
-        String input = "2\nuser3\nuser3name\npass3\ntrue\n8\n"; 
+        String input = "2\nuser3\nuser3name\npass3\ntrue\n12\n"; 
         runMenuWithInput(input);
 
         var user = adminManager.getUser("user3");
@@ -143,7 +143,7 @@ class AdminMenuTest {
 
     @Test
     void testCreateUserBlankId() {
-        String input = "2\n\n\n\n\n8\n"; 
+        String input = "2\n\n\n\n\n12\n"; 
         runMenuWithInput(input);
 
         assertEquals(2, adminManager.getAllUsers().size());
@@ -152,7 +152,7 @@ class AdminMenuTest {
     @Test
     void testDeleteUserConfirmYes() throws IOException {
         adminManager.createUser("user4", "user4name", "pass4", false);
-        String input = "3\nuser4\nyes\n8\n";
+        String input = "3\nuser4\nyes\n12\n";
         runMenuWithInput(input);
         assertNull(adminManager.getUser("user4"));
     }
@@ -160,7 +160,7 @@ class AdminMenuTest {
     @Test
     void testDeleteUserConfirmNo() throws IOException {
         adminManager.createUser("user5", "user5name", "pass5", false);
-        String input = "3\nuser5\nno\n8\n"; 
+        String input = "3\nuser5\nno\n12\n"; 
         runMenuWithInput(input);
         assertNotNull(adminManager.getUser("user5"));
     }
@@ -168,7 +168,7 @@ class AdminMenuTest {
     @Test
     void testUpdateAdminStatusYes() throws IOException {
         adminManager.createUser("user6", "user6name", "pass6", false);
-        String input = "4\nuser6\nyes\n8\n"; 
+        String input = "4\nuser6\nyes\n12\n"; 
         runMenuWithInput(input);
         var user = adminManager.getUser("user6");
         assertTrue(user.getAdmin());
@@ -177,7 +177,7 @@ class AdminMenuTest {
     @Test
     void testUpdateAdminStatusNo() throws IOException {
         adminManager.createUser("user8", "user8name", "pass8", true);
-        String input = "4\nuser8\nno\n8\n"; 
+        String input = "4\nuser8\nno\n12\n"; 
         runMenuWithInput(input);
         var user = adminManager.getUser("user8");
         assertFalse(user.getAdmin());
@@ -185,19 +185,19 @@ class AdminMenuTest {
 
     @Test
     void testViewAllUsers() {
-        String input = "1\n8\n"; 
+        String input = "1\n12\n"; 
         runMenuWithInput(input);
     }
 
     @Test
     void testInvalidChoice() {
-        String input = "99\n8\n"; 
+        String input = "99\n12\n"; 
         runMenuWithInput(input);
     }
 
     @Test
     void testUpdateAdminStatusBlankId() {
-        String input = "4\n\n8\n"; 
+        String input = "4\n\n12\n"; 
         runMenuWithInput(input);
     }
 
@@ -225,7 +225,7 @@ class AdminMenuTest {
 
     @Test
     void testViewEventLogsFilterByUserId() {
-        String input = "yes\nu1\n\n"; 
+        String input = "yes\nu1\n\n\n"; 
         InputStream sysInBackup = System.in;
         System.setIn(new ByteArrayInputStream(input.getBytes()));
 
@@ -249,7 +249,7 @@ class AdminMenuTest {
 
     @Test
     void testViewEventLogsFilterByUsername() {
-        String input = "yes\n\nuser2\n"; 
+        String input = "yes\n\nuser2\n\n"; 
         InputStream sysInBackup = System.in;
         System.setIn(new ByteArrayInputStream(input.getBytes()));
 
@@ -273,7 +273,7 @@ class AdminMenuTest {
 
     @Test
     void testViewEventLogsFilterByUserIdAndUsername() {
-        String input = "yes\nu1\nuser1\n"; 
+        String input = "yes\nu1\nuser1\n\n"; 
         InputStream sysInBackup = System.in;
         System.setIn(new ByteArrayInputStream(input.getBytes()));
 
@@ -297,7 +297,7 @@ class AdminMenuTest {
 
     @Test
     void testViewEventLogsFilterNoMatches() {
-        String input = "yes\nu99\nuserX\n"; 
+        String input = "yes\nu99\nuserX\n\n"; 
         InputStream sysInBackup = System.in;
         System.setIn(new ByteArrayInputStream(input.getBytes()));
 
@@ -319,9 +319,25 @@ class AdminMenuTest {
         EventLogManager.setInstanceForTesting(null);
     }
 
+    @Test
+    void testViewEventStats() {
+        String input = "10\n12\n";
+        runMenuWithInput(input);
+    }
+
+    @Test
+    void testViewOperationMetrics() throws IOException {
+        Path csv = tempDir.resolve("metrics.csv");
+        runMenuWithInput("1\n11\n" + csv + "\n12\n");
+
+        List<String> lines = Files.readAllLines(csv);
+        assertTrue(lines.get(0).startsWith("operation,calls,successes,failures"));
+        assertTrue(lines.stream().anyMatch(l -> l.startsWith("admin.queryUsers,")));
+    }
+
     @Test
     void testViewScrollStats() {
-        String input = "6\n8\n"; 
+        String input = "6\n12\n"; 
         runMenuWithInput(input);
     }
 
@@ -334,7 +350,7 @@ class AdminMenuTest {
             e.printStackTrace();
         }
 
-        String input = "6\n8\n"; 
+        String input = "6\n12\n"; 
         runMenuWithInput(input);
     }
 }
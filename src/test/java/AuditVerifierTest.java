@@ -0,0 +1,214 @@
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class AuditVerifierTest {
+    private static final long BASE = 1_700_000_000_000L;
+
+    @TempDir
+    File tempDir;
+
+    private String originalLogFile;
+    private String log;
+
+    @BeforeEach
+    void setUp() {
+        originalLogFile = EventLogManager.LOG_FILE;
+        log = new File(tempDir, "events.txt").getAbsolutePath();
+        EventLogManager.LOG_FILE = log;
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        EventLogSegments.awaitBackgroundWork();
+        EventLogManager.LOG_FILE = originalLogFile;
+    }
+
+    private EventLogConfig config(boolean compress) {
+        return new EventLogConfig().async(false).segmentBytes(20_000).segmentAgeMs(0).chainBlockBytes(2_000)
+                .compressSealed(compress);
+    }
+
+    private void write(EventLogConfig config, int from, int n) throws Exception {
+        EventLogWriter w = EventLogWriter.open(log, config);
+        try {
+            for (int i = from; i < from + n; i++) {
+                w.append(BASE + i * 1000L, "u" + (i % 5), "user", "VIEW_SCROLL", "event-" + i);
+            }
+        } finally {
+            w.close();
+        }
+        EventLogSegments.awaitBackgroundWork();
+    }
+
+    private Path sealed(int index) {
+        List<EventLogSegments.Segment> sealed = EventLogSegments.load(Path.of(log)).sealed();
+        return tempDir.toPath().resolve(sealed.get(index).name);
+    }
+
+    @Test
+    void testUntouchedLogVerifies() throws Exception {
+        write(config(true), 0, 600);
+        // A reopened writer continues the same chain
+        write(config(true), 600, 50);
+
+        AuditVerifier.Report report = AuditVerifier.verify(log, true);
+        assertTrue(report.isOk(), report.toString());
+        assertTrue(report.getSegmentsChecked() > 3);
+        assertTrue(report.getBytesChecked() > 60_000);
+        assertEquals(0, report.getPendingBytes());
+    }
+
+    @Test
+    void testEditedEventIsFound() throws Exception {
+        write(config(false), 0, 600);
+        Path segment = sealed(1);
+        try (RandomAccessFile f = new RandomAccessFile(segment.toFile(), "rw")) {
+            f.seek(5_000);
+            int b = f.read();
+            f.seek(5_000);
+            f.write(b == '1' ? '2' : '1');
+        }
+
+        AuditVerifier.Report report = AuditVerifier.verify(log, true);
+        assertFalse(report.isOk());
+        assertEquals(1, report.getProblems().size(), report.toString());
+        assertTrue(report.getProblems().get(0).startsWith(segment.getFileName() + ": bytes 4"), report.toString());
+    }
+
+    @Test
+    void testRemovedSegmentBreaksTheChain() throws Exception {
+        write(config(true), 0, 600);
+        Path segment = sealed(1);
+        Files.delete(segment);
+        Files.delete(AuditChain.chainPath(tempDir.toPath().resolve(segment.getFileName().toString().replace(".gz", ""))));
+
+        AuditVerifier.Report report = AuditVerifier.verify(log, true);
+        assertFalse(report.isOk());
+        assertTrue(report.getProblems().stream().anyMatch(p -> p.contains("does not follow")), report.toString());
+    }
+
+    @Test
+    void testRewrittenChainNeedsTheKey() throws Exception {
+        write(config(false), 0, 600);
+        Path chain = AuditChain.chainPath(sealed(0));
+        List<String> lines = Files.readAllLines(chain);
+        String[] f = lines.get(1).split("\t");
+        lines.set(1, f[0] + "\t" + "0".repeat(64) + "\t" + f[2]);
+        Files.write(chain, lines);
+
+        AuditVerifier.Report report = AuditVerifier.verify(log, true);
+        assertTrue(report.getProblems().stream().anyMatch(p -> p.contains("signature is invalid")), report.toString());
+    }
+
+    @Test
+    void testLaterRunsOnlyCheckNewData() throws Exception {
+        write(config(true), 0, 600);
+        AuditVerifier.Report first = AuditVerifier.verify(log, false);
+        assertTrue(first.isOk(), first.toString());
+
+        write(config(true), 600, 20);
+        AuditVerifier.Report second = AuditVerifier.verify(log, false);
+        assertTrue(second.isOk(), second.toString());
+        assertTrue(second.getSegmentsSkipped() > 0);
+        assertTrue(second.getBytesChecked() < 5_000, second.toString());
+
+        AuditVerifier.Report full = AuditVerifier.verify(log, true);
+        assertEquals(0, full.getSegmentsSkipped());
+        assertTrue(full.getBytesChecked() > first.getBytesChecked());
+    }
+
+    private Path active() {
+        return Path.of(log);
+    }
+
+    private boolean reports(AuditVerifier.Report report, String text) {
+        return report.getProblems().stream().anyMatch(p -> p.contains(text));
+    }
+
+    @Test
+    void testDeletedChainIsReportedNotSilentlyRestarted() throws Exception {
+        write(config(false), 0, 50);
+        Files.delete(AuditChain.chainPath(active()));
+        write(config(false), 50, 10);
+
+        AuditVerifier.Report report = AuditVerifier.verify(log, true);
+        assertFalse(report.isOk());
+        assertTrue(reports(report, "restarted at byte"), report.toString());
+        assertTrue(reports(report, "no chain"), report.toString());
+        // The restart is in the log as a security event as well
+        assertTrue(Files.readString(active()).contains("SYSTEM_AUDIT_CHAIN_RESTARTED"));
+    }
+
+    @Test
+    void testTruncatedLogIsReported() throws Exception {
+        write(config(false), 0, 50);
+        try (RandomAccessFile f = new RandomAccessFile(log, "rw")) {
+            f.setLength(f.length() / 2);
+        }
+        write(config(false), 50, 10);
+
+        AuditVerifier.Report report = AuditVerifier.verify(log, true);
+        assertFalse(report.isOk());
+        assertTrue(reports(report, "(truncated)"), report.toString());
+        assertTrue(reports(report, "restarted at byte"), report.toString());
+    }
+
+    @Test
+    void testEditWhileStoppedIsNotSignedOnReopen() throws Exception {
+        write(config(false), 0, 50);
+        try (RandomAccessFile f = new RandomAccessFile(log, "rw")) {
+            // Change a checkpointed byte and leave an unchained tail, as after a crash
+            f.seek(f.length() - 10);
+            int b = f.read();
+            f.seek(f.length() - 10);
+            f.write(b == '1' ? '2' : '1');
+            f.seek(f.length());
+            f.write("forged\n".getBytes());
+        }
+        write(config(false), 50, 10);
+
+        AuditVerifier.Report report = AuditVerifier.verify(log, true);
+        assertFalse(report.isOk());
+        assertTrue(reports(report, "no longer matched"), report.toString());
+        assertTrue(reports(report, "restarted at byte"), report.toString());
+    }
+
+    @Test
+    void testTailAfterCrashIsReported() throws Exception {
+        write(config(false), 0, 50);
+        long end = Files.size(active());
+        Files.writeString(active(), "unchecked\n", StandardOpenOption.APPEND);
+        write(config(false), 50, 10);
+
+        AuditVerifier.Report report = AuditVerifier.verify(log, true);
+        assertEquals(1, report.getProblems().size(), report.toString());
+        assertTrue(reports(report, "bytes " + end + "-" + (end + 10) + " were chained on restart"), report.toString());
+    }
+
+    @Test
+    void testVerifierNeedsTheExistingKey() throws Exception {
+        write(config(false), 0, 50);
+        Path copy = tempDir.toPath().resolve("copy");
+        Files.createDirectories(copy);
+        Files.copy(active(), copy.resolve("events.txt"));
+        Files.copy(AuditChain.chainPath(active()), AuditChain.chainPath(copy.resolve("events.txt")));
+
+        String copied = copy.resolve("events.txt").toString();
+        assertThrows(NoSuchFileException.class, () -> AuditVerifier.verify(copied, true));
+        assertFalse(Files.exists(AuditChain.keyPath(copy.resolve("events.txt"))));
+    }
+}
@@ -0,0 +1,174 @@
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import fsam.ChangeEvent;
+import fsam.ChangeFeed;
+
+class ChangeFeedTest {
+
+    @TempDir
+    File tempDir;
+
+    private File userRoot;
+    private UserManager userManager;
+    private ChangeFeed feed;
+    private final List<List<ChangeEvent>> batches = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        userRoot = new File(tempDir, "users");
+        userManager = new UserManager(userRoot.getAbsolutePath());
+        userManager.createUser("existing").setUsername("old");
+        feed = ChangeFeed.forRoot(userRoot);
+        feed.setDebounce(100);
+        feed.subscribe(this::record);
+    }
+
+    @AfterEach
+    void tearDown() {
+        feed.close();
+    }
+
+    private synchronized void record(List<ChangeEvent> batch) {
+        batches.add(batch);
+    }
+
+    private synchronized List<ChangeEvent> events() {
+        List<ChangeEvent> all = new ArrayList<>();
+        for (List<ChangeEvent> b : batches) {
+            all.addAll(b);
+        }
+        return all;
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "timed out waiting for change events");
+            Thread.sleep(20);
+        }
+    }
+
+    private void awaitEvent(ChangeEvent expected) throws InterruptedException {
+        await(() -> events().contains(expected));
+    }
+
+    @Test
+    void testReportsCreateAttributeChangeAndDelete() throws Exception {
+        feed.start();
+
+        userManager.createUser("alice");
+        awaitEvent(ChangeEvent.created("alice"));
+
+        userManager.getUser("existing").setEmail("e@example.com");
+        awaitEvent(ChangeEvent.attributeChanged("existing", "email"));
+
+        userManager.tombstoneUser("existing");
+        awaitEvent(ChangeEvent.deleted("existing"));
+
+        // Temp files, tombstones and lock files never show up
+        for (ChangeEvent e : events()) {
+            assertFalse(e.getRecordId().startsWith("."), e.toString());
+            assertTrue(e.getAttribute() == null || !e.getAttribute().startsWith("."), e.toString());
+        }
+    }
+
+    @Test
+    void testRenameIsOneEvent() throws Exception {
+        feed.start();
+
+        assertTrue(userManager.changeUserId("existing", "renamed"));
+        awaitEvent(ChangeEvent.renamed("existing", "renamed"));
+        assertFalse(events().contains(ChangeEvent.deleted("existing")));
+        assertFalse(events().contains(ChangeEvent.created("renamed")));
+
+        // The watch follows the directory to its new name
+        userManager.getUser("renamed").setName("New Name");
+        awaitEvent(ChangeEvent.attributeChanged("renamed", "name"));
+    }
+
+    @Test
+    void testBurstOfWritesIsCoalesced() throws Exception {
+        feed.setDebounce(300);
+        feed.start();
+
+        User u = userManager.getUser("existing");
+        for (int i = 0; i < 50; i++) {
+            u.setUsername("name" + i);
+        }
+        awaitEvent(ChangeEvent.attributeChanged("existing", "username"));
+        Thread.sleep(500);
+
+        long reported = events().stream().filter(ChangeEvent.attributeChanged("existing", "username")::equals).count();
+        assertTrue(reported < 5, "50 writes reported " + reported + " times");
+        synchronized (this) {
+            for (List<ChangeEvent> b : batches) {
+                assertEquals(b.size(), b.stream().distinct().count(), "duplicates in " + b);
+            }
+        }
+    }
+
+    @Test
+    void testScanCoversRecordsWithoutWatches() throws Exception {
+        feed.setMaxWatched(0);
+        feed.setScanInterval(100);
+        feed.start();
+
+        userManager.getUser("existing").setPhone("123");
+        awaitEvent(ChangeEvent.attributeChanged("existing", null));
+
+        userManager.createUser("bob");
+        awaitEvent(ChangeEvent.created("bob"));
+    }
+
+    @Test
+    void testUserTableFollowsChangesFromOutsideTheProcess() throws Exception {
+        UserTable table = userManager.getTable();
+        assertEquals("old", table.get("existing").getUsername());
+        table.follow(feed.start());
+
+        // As an admin script would: straight to the files, no locks, no generation bump
+        Files.writeString(new File(userRoot, "existing/username").toPath(), "scripted");
+        await(() -> "scripted".equals(table.get("existing").getUsername()));
+
+        File restored = new File(userRoot, "restored");
+        assertTrue(restored.mkdir());
+        Files.writeString(new File(restored, "username").toPath(), "back");
+        await(() -> table.get("restored") != null && "back".equals(table.get("restored").getUsername()));
+
+        Files.move(restored.toPath(), new File(userRoot, "moved").toPath());
+        await(() -> table.get("moved") != null);
+        assertNull(table.get("restored"));
+    }
+
+    @Test
+    void testScrollIndexFollowsRenameFromOutsideTheProcess() throws Exception {
+        File scrollRoot = new File(tempDir, "scrolls");
+        ScrollManager scrollManager = new ScrollManager(scrollRoot.getAbsolutePath());
+        scrollManager.createScroll("s1").setUploaderId("alice");
+        ScrollIndex index = scrollManager.getIndex();
+        assertEquals("alice", index.uploaderOf("s1"));
+
+        try (ChangeFeed scrollFeed = ChangeFeed.forRoot(scrollRoot)) {
+            scrollFeed.setDebounce(100);
+            index.follow(scrollFeed.start());
+
+            Files.move(new File(scrollRoot, "s1").toPath(), new File(scrollRoot, "s2").toPath());
+            await(() -> "alice".equals(index.uploaderOf("s2")));
+            assertNull(index.uploaderOf("s1"));
+        }
+    }
+}
@@ -0,0 +1,240 @@
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Races many threads against the same records and checks the outcomes the
+ * record locks and atomic writes promise: one winner per create, caches that
+ * agree with the files, and readers that never see a partial value.
+ */
+class ConcurrencyStressTest {
+    private static final int THREADS = 8;
+    private static final int ROUNDS = 40;
+
+    @TempDir
+    File tempDir;
+
+    private ExecutorService pool;
+
+    @BeforeEach
+    void setUp() {
+        pool = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        pool.shutdownNow();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    // Runs the task on every thread at once, released together by a latch
+    private <T> List<T> race(Callable<T> task) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<T>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                return task.call();
+            }));
+        }
+        start.countDown();
+        List<T> results = new ArrayList<>();
+        for (Future<T> f : futures) {
+            results.add(f.get(30, TimeUnit.SECONDS));
+        }
+        return results;
+    }
+
+    @Test
+    void testConcurrentScrollCreatesHaveOneWinner() throws Exception {
+        ScrollManager manager = new ScrollManager(new File(tempDir, "scrolls").getPath());
+        for (int round = 0; round < ROUNDS; round++) {
+            String id = "scroll" + round;
+            List<String> outcomes = race(() -> {
+                try {
+                    return manager.createScroll(id) == null ? "error" : "created";
+                } catch (ScrollAlreadyExistsException e) {
+                    return "exists";
+                }
+            });
+
+            assertEquals(1, outcomes.stream().filter("created"::equals).count(), id + ": " + outcomes);
+            assertEquals(THREADS - 1, outcomes.stream().filter("exists"::equals).count(), id + ": " + outcomes);
+            assertEquals("", manager.getScroll(id).getUploaderId());
+        }
+    }
+
+    @Test
+    void testConcurrentUserCreatesHaveOneWinner() throws Exception {
+        UserManager manager = new UserManager(new File(tempDir, "users").getPath());
+        for (int round = 0; round < ROUNDS; round++) {
+            String id = "user" + round;
+            List<String> outcomes = race(() -> {
+                try {
+                    return manager.createUser(id) == null ? "error" : "created";
+                } catch (UserAlreadyExistsException e) {
+                    return "exists";
+                }
+            });
+
+            assertEquals(1, outcomes.stream().filter("created"::equals).count(), id + ": " + outcomes);
+            assertEquals(THREADS - 1, outcomes.stream().filter("exists"::equals).count(), id + ": " + outcomes);
+        }
+        assertEquals(ROUNDS, manager.getAllUsers().size());
+    }
+
+    @Test
+    void testUploaderIndexMatchesFileAfterRacingSetters() throws Exception {
+        ScrollManager manager = new ScrollManager(new File(tempDir, "scrolls").getPath());
+        manager.createScroll("shared");
+        // Loaded up front so every setter goes through the incremental update
+        ScrollIndex index = manager.getIndex();
+        index.uploaderOf("shared");
+
+        for (int round = 0; round < ROUNDS; round++) {
+            AtomicInteger next = new AtomicInteger();
+            race(() -> manager.getScroll("shared").setUploaderId("uploader" + next.getAndIncrement()));
+
+            String onDisk = manager.getScroll("shared").getUploaderId();
+            assertEquals(onDisk, index.uploaderOf("shared"));
+            assertEquals(1, index.scrollsBy(onDisk).size());
+        }
+    }
+
+    @Test
+    void testUserTableMatchesFileAfterRacingSetters() throws Exception {
+        UserManager manager = new UserManager(new File(tempDir, "users").getPath());
+        manager.createUser("shared");
+        UserTable table = manager.getTable();
+
+        for (int round = 0; round < ROUNDS; round++) {
+            AtomicInteger next = new AtomicInteger();
+            race(() -> manager.getUser("shared").setUsername("name" + next.getAndIncrement()));
+
+            assertEquals(manager.getUser("shared").getUsername(), table.get("shared").getUsername());
+        }
+    }
+
+    @Test
+    void testReadersNeverSeePartialValues() throws Exception {
+        ScrollManager manager = new ScrollManager(new File(tempDir, "scrolls").getPath());
+        Scroll scroll = manager.createScroll("torn");
+        String a = "a".repeat(64 * 1024);
+        String b = "b".repeat(64 * 1024);
+        scroll.setScrollName(a);
+
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<String> bad = new AtomicReference<>();
+        List<Future<?>> readers = new ArrayList<>();
+        for (int t = 0; t < THREADS - 1; t++) {
+            readers.add(pool.submit(() -> {
+                Scroll view = manager.getScroll("torn");
+                while (!done.get()) {
+                    String v = view.getScrollName();
+                    if (!a.equals(v) && !b.equals(v)) {
+                        bad.compareAndSet(null, v == null ? "null" : "length " + v.length());
+                    }
+                }
+            }));
+        }
+
+        for (int i = 0; i < 500; i++) {
+            assertTrue(scroll.setScrollName(i % 2 == 0 ? b : a));
+        }
+        done.set(true);
+        for (Future<?> f : readers) {
+            f.get(30, TimeUnit.SECONDS);
+        }
+
+        assertNull(bad.get(), "reader saw a partial value");
+        String[] leftovers = scroll.getFileObj().list((dir, name) -> name.endsWith(".tmp"));
+        assertEquals(0, leftovers.length);
+    }
+
+    @Test
+    void testRenameRacingCreateOfTargetHasOneWinner() throws Exception {
+        ScrollManager manager = new ScrollManager(new File(tempDir, "scrolls").getPath());
+        for (int round = 0; round < ROUNDS; round++) {
+            String from = "from" + round;
+            String to = "to" + round;
+            Scroll original = manager.createScroll(from);
+            original.setUploaderId("renamer");
+
+            AtomicInteger turn = new AtomicInteger();
+            List<String> outcomes = race(() -> {
+                if (turn.getAndIncrement() % 2 == 0) {
+                    try {
+                        return manager.changeScrollId(from, to) ? "renamed" : "error";
+                    } catch (ScrollAlreadyExistsException e) {
+                        return "rename-lost";
+                    } catch (ScrollDoesNotExistException e) {
+                        return "rename-gone";
+                    }
+                }
+                try {
+                    Scroll s = manager.createScroll(to);
+                    if (s == null) {
+                        return "error";
+                    }
+                    s.setUploaderId("creator");
+                    return "created";
+                } catch (ScrollAlreadyExistsException e) {
+                    return "create-lost";
+                }
+            });
+
+            long renamed = outcomes.stream().filter("renamed"::equals).count();
+            long created = outcomes.stream().filter("created"::equals).count();
+            assertEquals(1, renamed + created, to + ": " + outcomes);
+            assertTrue(!outcomes.contains("error"), to + ": " + outcomes);
+
+            Scroll target = manager.getScroll(to);
+            assertNotNull(target);
+            String expected = renamed == 1 ? "renamer" : "creator";
+            assertEquals(expected, target.getUploaderId());
+            assertEquals(expected, manager.getIndex().uploaderOf(to));
+            assertEquals(renamed == 1, manager.getScroll(from) == null);
+        }
+    }
+
+    @Test
+    void testOppositeOrderPairLocksDoNotDeadlock() throws Exception {
+        ScrollManager manager = new ScrollManager(new File(tempDir, "scrolls").getPath());
+        AtomicInteger turn = new AtomicInteger();
+        AtomicInteger inside = new AtomicInteger();
+        race(() -> {
+            boolean forward = turn.getAndIncrement() % 2 == 0;
+            for (int i = 0; i < 5000; i++) {
+                String a = "k" + (i % 17);
+                String b = "k" + (i % 23);
+                ReentrantLock[] held = forward ? manager.lockChildren(a, b) : manager.lockChildren(b, a);
+                try {
+                    inside.incrementAndGet();
+                } finally {
+                    ScrollManager.unlock(held);
+                }
+            }
+            return null;
+        });
+        assertEquals(THREADS * 5000, inside.get());
+    }
+}
@@ -0,0 +1,108 @@
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class DatasetGeneratorTest {
+    @TempDir
+    Path tempDir;
+
+    private String originalLogFile;
+
+    @BeforeEach
+    void setUp() {
+        originalLogFile = EventLogManager.LOG_FILE;
+    }
+
+    @AfterEach
+    void tearDown() {
+        EventLogManager.LOG_FILE = originalLogFile;
+    }
+
+    private DatasetGenerator.Options options(String dir, int threads) {
+        DatasetGenerator.Options o = DatasetGenerator.Options.parse(new String[] {
+            "--users", "40", "--scrolls", "300", "--events", "2000", "--seed", "5", "--blob-median", "512"
+        });
+        o.out = tempDir.resolve(dir);
+        o.threads = threads;
+        return o;
+    }
+
+    @Test
+    void testSameSeedSameFilesAnyThreadCount() throws Exception {
+        DatasetGenerator.generate(options("a", 4));
+        DatasetGenerator.generate(options("b", 1));
+
+        for (String scroll : List.of("s00000000", "s00000150", "s00000299")) {
+            for (String attr : List.of("scroll_name", "uploader_id", "scroll_blob")) {
+                assertEquals(Files.readString(tempDir.resolve("a/scrolls/" + scroll + "/" + attr)),
+                        Files.readString(tempDir.resolve("b/scrolls/" + scroll + "/" + attr)));
+            }
+            assertEquals(Files.getLastModifiedTime(tempDir.resolve("a/scrolls/" + scroll + "/upload_timestamp")),
+                    Files.getLastModifiedTime(tempDir.resolve("b/scrolls/" + scroll + "/upload_timestamp")));
+        }
+        assertEquals(Files.readString(tempDir.resolve("a/users/user0000007/email")),
+                Files.readString(tempDir.resolve("b/users/user0000007/email")));
+        assertEquals(Files.readAllLines(tempDir.resolve("a/event_logs.txt")),
+                Files.readAllLines(tempDir.resolve("b/event_logs.txt")));
+    }
+
+    @Test
+    void testManagersReadTheDataset() throws Exception {
+        DatasetGenerator.Options o = options("data", 2);
+        DatasetGenerator.generate(o);
+
+        ScrollManager scrolls = new ScrollManager(o.out.resolve("scrolls").toString());
+        assertEquals(300, scrolls.getAllScrolls().size());
+        Scroll s = scrolls.getScroll("s00000042");
+        assertNotNull(s.getUploadDate());
+        assertTrue(s.getScrollFile().length() > 0);
+
+        UserManager users = new UserManager(o.out.resolve("users").toString());
+        User admin = users.getUser("user0000000");
+        assertTrue(admin.getAdmin());
+        assertTrue(users.checkPassword(users.findUserByUsername("user0000013"), o.password));
+
+        EventLogManager.LOG_FILE = o.out.resolve("event_logs.txt").toString();
+        EventLogManager manager = new EventLogManager() {};
+        try {
+            assertEquals(2000, manager.query(new EventQuery()).size());
+        } finally {
+            manager.shutdown();
+        }
+    }
+
+    @Test
+    void testRefusesToMixWithExistingData() throws Exception {
+        DatasetGenerator.Options o = options("data", 2);
+        DatasetGenerator.generate(o);
+        assertThrows(java.io.IOException.class, () -> DatasetGenerator.generate(o));
+    }
+
+    @Test
+    void testZipfFavoursLowRanks() {
+        DatasetGenerator.Zipf zipf = new DatasetGenerator.Zipf(1000, 1.1);
+        SplittableRandom r = new SplittableRandom(3);
+        Map<Long, Integer> counts = new HashMap<>();
+        for (int i = 0; i < 100_000; i++) {
+            long k = zipf.sample(r);
+            assertTrue(k >= 1 && k <= 1000);
+            counts.merge(k, 1, Integer::sum);
+        }
+        // P(1)/P(2) = 2^1.1, about 2.14
+        double ratio = (double) counts.get(1L) / counts.get(2L);
+        assertTrue(ratio > 1.9 && ratio < 2.4, "ratio " + ratio);
+        assertTrue(counts.get(1L) > 10 * counts.getOrDefault(100L, 0));
+    }
+}
@@ -0,0 +1,95 @@
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class EventEncoderTest {
+
+    @TempDir
+    File tempDir;
+
+    private final EventEncoder encoder = new EventEncoder(ZoneOffset.UTC);
+
+    private String encode(long millis, long seq, String userId, String username, String action, String details) {
+        ByteBuffer buf = encoder.encode(ByteBuffer.allocate(1024), millis, seq, userId, username, action, details);
+        return new String(buf.array(), 0, buf.position(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void testWritesJsonLineWithTimeAndSequence() {
+        String line = encode(1700000000123L, 42, "u1", "bob", "LOGIN", "ok");
+        assertEquals("{\"ts\":1700000000123,\"seq\":42,\"time\":\"2023-11-14 22:13:20.123\",\"userId\":\"u1\","
+                + "\"username\":\"bob\",\"action\":\"LOGIN\",\"details\":\"ok\"}\n", line);
+    }
+
+    @Test
+    void testTimePrefixFollowsTheSecond() {
+        assertTrue(encode(1700000000999L, 1, "u", "n", "A", "d").contains("\"2023-11-14 22:13:20.999\""));
+        assertTrue(encode(1700000001000L, 2, "u", "n", "A", "d").contains("\"2023-11-14 22:13:21.000\""));
+        assertTrue(encode(1700000001007L, 3, "u", "n", "A", "d").contains("\"2023-11-14 22:13:21.007\""));
+    }
+
+    @Test
+    void testEscapesAndEncodesUtf8() {
+        String details = "a \"quote\" \\ back\nnew\ttab = sign \u0001 ünï 中文 😀";
+        String line = encode(5, 0, "u=1", null, "ACT ION", details);
+
+        Map<String, String> f = FlatJson.parse(line.trim());
+        assertEquals(details, f.get("details"));
+        assertEquals("u=1", f.get("userId"));
+        assertEquals(null, f.get("username"));
+        assertEquals("ACT ION", f.get("action"));
+        assertFalse(line.trim().contains("\n"));
+        assertEquals(line.getBytes(StandardCharsets.UTF_8).length,
+                encoder.encode(ByteBuffer.allocate(1024), 5, 0, "u=1", null, "ACT ION", details).position());
+    }
+
+    @Test
+    void testUnpairedSurrogateBecomesQuestionMark() {
+        assertEquals("x?y", FlatJson.parse(encode(1, 1, "u", "n", "A", "x\uD800y").trim()).get("details"));
+    }
+
+    @Test
+    void testGrowsBufferOnlyWhenNeeded() {
+        ByteBuffer small = ByteBuffer.allocate(16);
+        ByteBuffer out = encoder.encode(small, 1, 1, "u", "n", "A", "x".repeat(500));
+        assertNotSame(small, out);
+        assertTrue(out.position() > 500);
+
+        ByteBuffer big = ByteBuffer.allocate(64 * 1024);
+        assertSame(big, encoder.encode(big, 1, 1, "u", "n", "A", "d"));
+    }
+
+    @Test
+    void testSequenceContinuesAcrossWriters() throws Exception {
+        String original = EventLogManager.LOG_FILE;
+        EventLogManager.LOG_FILE = new File(tempDir, "events.txt").getAbsolutePath();
+        EventLogManager manager = new EventLogManager() {};
+        try {
+            manager.log("u1", "alice", "A", "1");
+            manager.log("u1", "alice", "A", "2");
+            manager.shutdown();
+            manager.log("u1", "alice", "A", "3");
+            manager.flush();
+
+            List<String> lines = Files.readAllLines(new File(EventLogManager.LOG_FILE).toPath());
+            for (int i = 0; i < 3; i++) {
+                assertEquals(i, EventLogger.parse(lines.get(i)).getSequence());
+            }
+        } finally {
+            manager.shutdown();
+            EventLogManager.LOG_FILE = original;
+        }
+    }
+}
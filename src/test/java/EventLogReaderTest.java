@@ -0,0 +1,119 @@
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class EventLogReaderTest {
+
+    @TempDir
+    File tempDir;
+
+    private String originalLogFile;
+    private EventLogManager manager;
+
+    @BeforeEach
+    void setUp() {
+        originalLogFile = EventLogManager.LOG_FILE;
+        EventLogManager.LOG_FILE = new File(tempDir, "events.txt").getAbsolutePath();
+        manager = new EventLogManager() {};
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        manager.shutdown();
+        EventLogSegments.awaitBackgroundWork();
+        EventLogManager.LOG_FILE = originalLogFile;
+    }
+
+    private void logMany(int n) {
+        for (int i = 0; i < n; i++) {
+            manager.log("u" + (i % 3), "user", "ACTION", "event-" + i);
+        }
+    }
+
+    @Test
+    void testReadsNewestFirstAcrossSegments() throws Exception {
+        manager.setConfig(new EventLogConfig().async(false).segmentBytes(1500));
+        logMany(120);
+        EventLogSegments.awaitBackgroundWork();
+        assertTrue(manager.segments().sealed().size() > 2);
+
+        try (EventLogReader reader = manager.readBackward(new EventQuery())) {
+            for (int i = 119; i >= 0; i--) {
+                assertTrue(reader.hasNext());
+                assertEquals("event-" + i, reader.next().getDetails());
+            }
+            assertFalse(reader.hasNext());
+        }
+    }
+
+    @Test
+    void testPagesAndFilters() {
+        manager.setConfig(new EventLogConfig().async(false).segmentBytes(1000).compressSealed(false));
+        logMany(90);
+
+        try (EventLogReader reader = manager.readBackward(new EventQuery().userId("u1"))) {
+            List<EventLogger> first = reader.nextPage(10);
+            assertEquals(10, first.size());
+            assertEquals("event-88", first.get(0).getDetails());
+            assertEquals("event-61", first.get(9).getDetails());
+
+            assertEquals(20, reader.nextPage(100).size());
+            assertTrue(reader.nextPage(10).isEmpty());
+        }
+
+        try (EventLogReader reader = manager.readBackward(new EventQuery().limit(5))) {
+            assertEquals(5, reader.nextPage(50).size());
+        }
+    }
+
+    @Test
+    void testLinesSpanningBlocks() throws Exception {
+        // Tiny blocks force lines, including multi-byte characters, across block edges
+        Path log = tempDir.toPath().resolve("plain.txt");
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 40; i++) {
+            sb.append(new EventLogger(1000L + i, "u" + i, "ünïcødé", "A", "détails " + i).toJson()).append('\n');
+        }
+        Files.writeString(log, sb.toString());
+
+        try (EventLogReader reader = new EventLogReader(List.of(log), null, 7)) {
+            List<EventLogger> all = reader.nextPage(100);
+            assertEquals(40, all.size());
+            for (int i = 0; i < 40; i++) {
+                EventLogger e = all.get(i);
+                assertEquals("u" + (39 - i), e.getUserId());
+                assertEquals("ünïcødé", e.getUsername());
+                assertEquals("détails " + (39 - i), e.getDetails());
+            }
+        }
+    }
+
+    @Test
+    void testMissingLogIsEmpty() {
+        try (EventLogReader reader = manager.readBackward(new EventQuery())) {
+            assertFalse(reader.hasNext());
+        }
+    }
+
+    @Test
+    void testForwardStreamIsLazyAndOrdered() {
+        manager.setConfig(new EventLogConfig().async(false).segmentBytes(1000));
+        logMany(50);
+
+        try (Stream<EventLogger> events = manager.stream(new EventQuery().action("ACTION"))) {
+            List<String> first = events.limit(3).map(EventLogger::getDetails).collect(Collectors.toList());
+            assertEquals(List.of("event-0", "event-1", "event-2"), first);
+        }
+    }
+}
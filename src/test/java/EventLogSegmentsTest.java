@@ -0,0 +1,120 @@
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class EventLogSegmentsTest {
+
+    @TempDir
+    File tempDir;
+
+    private String originalLogFile;
+    private EventLogManager manager;
+
+    @BeforeEach
+    void setUp() {
+        originalLogFile = EventLogManager.LOG_FILE;
+        EventLogManager.LOG_FILE = new File(tempDir, "events.txt").getAbsolutePath();
+        manager = new EventLogManager() {};
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        manager.shutdown();
+        EventLogSegments.awaitBackgroundWork();
+        EventLogManager.LOG_FILE = originalLogFile;
+    }
+
+    private void logMany(int n) {
+        for (int i = 0; i < n; i++) {
+            manager.log("u" + (i % 3), "user", "ACTION", "event-" + i);
+        }
+    }
+
+    private Path file(String name) {
+        return tempDir.toPath().resolve(name);
+    }
+
+    @Test
+    void testRotatesBySizeAndReadsInOrder() throws Exception {
+        // Sync writes so every event is checked against the size cap
+        manager.setConfig(new EventLogConfig().async(false).segmentBytes(1000).compressSealed(false));
+        logMany(100);
+
+        List<EventLogSegments.Segment> sealed = manager.segments().sealed();
+        assertTrue(sealed.size() > 3, "expected several sealed segments");
+        for (EventLogSegments.Segment s : sealed) {
+            assertTrue(s.firstMillis <= s.lastMillis);
+            assertTrue(Files.exists(file(s.name)));
+        }
+        assertTrue(Files.exists(file("events.txt.manifest")));
+
+        List<String> lines = manager.getAllLogs();
+        assertEquals(100, lines.size());
+        for (int i = 0; i < 100; i++) {
+            assertTrue(lines.get(i).endsWith("details=event-" + i), lines.get(i));
+        }
+    }
+
+    @Test
+    void testSealedSegmentsAreCompressed() throws Exception {
+        manager.setConfig(new EventLogConfig().async(false).segmentBytes(2000));
+        logMany(60);
+        EventLogSegments.awaitBackgroundWork();
+
+        List<EventLogSegments.Segment> sealed = manager.segments().sealed();
+        assertFalse(sealed.isEmpty());
+        for (EventLogSegments.Segment s : sealed) {
+            assertTrue(s.isCompressed(), s.name);
+            assertTrue(Files.exists(file(s.name)));
+            assertFalse(Files.exists(file(s.name.replace(".gz", ""))));
+        }
+        assertEquals(60, manager.getAllLogs().size());
+    }
+
+    @Test
+    void testRetentionDropsWholeOldSegments() throws Exception {
+        manager.setConfig(new EventLogConfig().async(false).segmentBytes(1000).compressSealed(false).retainSegments(2));
+        logMany(100);
+        EventLogSegments.awaitBackgroundWork();
+
+        List<EventLogSegments.Segment> sealed = manager.segments().sealed();
+        assertEquals(2, sealed.size());
+
+        // What is left is the newest part of the log, still complete and in order
+        List<String> lines = manager.getAllLogs();
+        assertTrue(lines.size() < 100);
+        assertTrue(lines.get(lines.size() - 1).endsWith("details=event-99"));
+    }
+
+    @Test
+    void testManifestRebuiltWhenMissing() throws Exception {
+        manager.setConfig(new EventLogConfig().async(false).segmentBytes(1000).compressSealed(false));
+        logMany(50);
+        manager.shutdown();
+        int sealedCount = EventLogSegments.load(file("events.txt")).sealed().size();
+
+        Files.delete(file("events.txt.manifest"));
+
+        EventLogSegments rebuilt = EventLogSegments.load(file("events.txt"));
+        assertEquals(sealedCount, rebuilt.sealed().size());
+        assertEquals(50, manager.getAllLogs().size());
+    }
+
+    @Test
+    void testAsyncWriterRotatesToo() throws Exception {
+        manager.setConfig(new EventLogConfig().segmentBytes(4000).batchSize(8).flushIntervalMs(5));
+        logMany(300);
+
+        assertEquals(300, manager.getAllLogs().size());
+        assertFalse(manager.segments().sealed().isEmpty());
+    }
+}
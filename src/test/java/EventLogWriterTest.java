@@ -0,0 +1,240 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class EventLogWriterTest {
+
+    @TempDir
+    File tempDir;
+
+    private String originalLogFile;
+    private EventLogManager manager;
+
+    @BeforeEach
+    void setUp() {
+        originalLogFile = EventLogManager.LOG_FILE;
+        EventLogManager.LOG_FILE = new File(tempDir, "logs/events.txt").getAbsolutePath();
+        manager = new EventLogManager() {};
+    }
+
+    @AfterEach
+    void tearDown() {
+        manager.shutdown();
+        EventLogManager.LOG_FILE = originalLogFile;
+    }
+
+    @Test
+    void testConcurrentProducersLoseNothing() throws Exception {
+        // Small buffer so producers have to wait for the consumer
+        manager.setConfig(new EventLogConfig().bufferSize(64).batchSize(16).flushIntervalMs(5));
+
+        int threads = 16;
+        int perThread = 500;
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            String uid = "u" + t;
+            Thread th = new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    manager.log(uid, "user", "ACTION", "n" + i);
+                }
+            });
+            workers.add(th);
+            th.start();
+        }
+        for (Thread th : workers) {
+            th.join();
+        }
+
+        List<String> lines = manager.getAllLogs();
+        assertEquals(threads * perThread, lines.size());
+
+        Set<String> unique = new HashSet<>();
+        for (String l : lines) {
+            unique.add(l.substring(l.indexOf("userId=")));
+        }
+        assertEquals(threads * perThread, unique.size());
+    }
+
+    @Test
+    void testSequenceStaysInFileOrderWhileClosing() throws Exception {
+        // Producers that log after close() has started write on their own thread
+        // while the consumer is still draining the ring
+        String file = new File(tempDir, "closing/events.txt").getAbsolutePath();
+        EventLogWriter w = EventLogWriter.open(file, new EventLogConfig()
+                .bufferSize(4096).batchSize(4096).flushIntervalMs(60_000));
+
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            String uid = "u" + t;
+            Thread th = new Thread(() -> {
+                try {
+                    for (int i = 0; i < 2000; i++) {
+                        w.append(System.currentTimeMillis(), uid, "user", "ACTION", "n" + i);
+                    }
+                } catch (IOException e) {
+                    // Channel closed under us: expected once close() finishes
+                }
+            });
+            workers.add(th);
+            th.start();
+        }
+        Thread.sleep(5);
+        w.close();
+        for (Thread th : workers) {
+            th.join();
+        }
+
+        long last = -1;
+        for (String line : Files.readAllLines(new File(file).toPath())) {
+            long seq = EventLogger.parse(line).getSequence();
+            assertTrue(seq > last, "sequence " + seq + " after " + last);
+            last = seq;
+        }
+    }
+
+    @Test
+    void testEveryAcceptedAppendIsWrittenWhenCloseRaces() throws Exception {
+        // An append that returns normally must be in the file, however it overlaps close()
+        for (int round = 0; round < 30; round++) {
+            String file = new File(tempDir, "race/events-" + round + ".txt").getAbsolutePath();
+            EventLogWriter w = EventLogWriter.open(file, new EventLogConfig()
+                    .bufferSize(1024).batchSize(64).flushIntervalMs(1));
+            AtomicInteger accepted = new AtomicInteger();
+            CountDownLatch go = new CountDownLatch(1);
+            List<Thread> workers = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                Thread th = new Thread(() -> {
+                    try {
+                        go.await();
+                        for (int i = 0; i < 500; i++) {
+                            w.append(System.currentTimeMillis(), "u", "user", "ACTION", "n" + i);
+                            accepted.incrementAndGet();
+                        }
+                    } catch (IOException e) {
+                        // Refused after close: not counted, and reported to the caller
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+                workers.add(th);
+                th.start();
+            }
+            go.countDown();
+            w.close();
+            for (Thread th : workers) {
+                th.join();
+            }
+            assertEquals(accepted.get(), Files.readAllLines(new File(file).toPath()).size(), "round " + round);
+        }
+    }
+
+    @Test
+    void testFlushMakesEventsVisible() {
+        // Long interval: only the explicit flush can push the event out quickly
+        manager.setConfig(new EventLogConfig().flushIntervalMs(60_000).batchSize(1000));
+        manager.log("u1", "alice", "LOGIN", "ok");
+
+        List<String> lines = manager.getAllLogs();
+        assertEquals(1, lines.size());
+        assertTrue(lines.get(0).contains("action=LOGIN"));
+    }
+
+    @Test
+    void testShutdownDrainsBuffer() throws Exception {
+        manager.setConfig(new EventLogConfig().flushIntervalMs(60_000).batchSize(1000)
+                .policy(EventCategory.READ, EventPolicy.ALWAYS));
+        for (int i = 0; i < 10; i++) {
+            manager.log("u1", "alice", "VIEW_SCROLL", "s" + i);
+        }
+        manager.shutdown();
+
+        List<String> lines = Files.readAllLines(new File(EventLogManager.LOG_FILE).toPath());
+        assertEquals(10, lines.size());
+        assertEquals("s9", EventLogger.parse(lines.get(9)).getDetails());
+    }
+
+    @Test
+    void testSyncModeWritesImmediately() throws Exception {
+        manager.setConfig(new EventLogConfig().async(false));
+        manager.log("u1", "alice", "LOGOUT", "bye");
+
+        List<String> lines = Files.readAllLines(new File(EventLogManager.LOG_FILE).toPath());
+        assertEquals(1, lines.size());
+    }
+
+    @Test
+    void testReopensWhenLogFileChanges() throws Exception {
+        manager.log("u1", "alice", "A", "first");
+        manager.flush();
+
+        EventLogManager.LOG_FILE = new File(tempDir, "other.txt").getAbsolutePath();
+        manager.log("u1", "alice", "B", "second");
+
+        List<String> lines = manager.getAllLogs();
+        assertEquals(1, lines.size());
+        assertTrue(lines.get(0).contains("action=B"));
+    }
+
+    @Test
+    void testSecondWriterTakesAnInstanceFile() throws Exception {
+        String log = new File(tempDir, "shared.txt").getAbsolutePath();
+        EventLogWriter first = EventLogWriter.open(log, new EventLogConfig().async(false));
+        try {
+            // The same file would interleave rotations and chains; the next free instance file is used
+            EventLogWriter second = EventLogWriter.open(log, new EventLogConfig().async(false));
+            try {
+                first.append(System.currentTimeMillis(), "u1", "alice", "A", "first");
+                second.append(System.currentTimeMillis(), "u2", "bob", "B", "second");
+                assertTrue(second.isFor(log));
+            } finally {
+                second.close();
+            }
+        } finally {
+            first.close();
+        }
+        assertEquals(1, Files.readAllLines(new File(log).toPath()).size());
+        assertEquals(1, Files.readAllLines(new File(tempDir, "shared-2.txt").toPath()).size());
+
+        // Free again once the first writer is closed
+        EventLogWriter again = EventLogWriter.open(log, new EventLogConfig().async(false));
+        try {
+            again.append(System.currentTimeMillis(), "u1", "alice", "C", "again");
+        } finally {
+            again.close();
+        }
+        assertEquals(2, Files.readAllLines(new File(log).toPath()).size());
+    }
+
+    @Test
+    void testTwoInstancesOnOneLogLoseNothing() throws Exception {
+        // Two managers stand in for two instances started in the same directory
+        EventLogManager other = new EventLogManager() {};
+        try {
+            manager.setConfig(new EventLogConfig().async(false));
+            other.setConfig(new EventLogConfig().async(false));
+            for (int i = 0; i < 10; i++) {
+                manager.log("u1", "alice", "A", "mine-" + i);
+                other.log("u2", "bob", "B", "theirs-" + i);
+            }
+            assertEquals(10, manager.getAllLogs().size());
+            assertEquals(10, other.getAllLogs().size());
+        } finally {
+            other.shutdown();
+        }
+        assertTrue(manager.getAllLogs().stream().noneMatch(l -> l.contains("theirs-")));
+        assertTrue(new File(tempDir, "logs/events-2.txt").exists());
+    }
+}
@@ -2,7 +2,9 @@ import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import org.junit.jupiter.api.Test;
 
@@ -26,11 +28,50 @@ public class EventLoggerTest {
         assertTrue(output.contains(details), "Output should contain details");
 
         String timestampPart = output.substring(output.indexOf("[") + 1, output.indexOf("]"));
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
 
         assertDoesNotThrow(() -> {
             LocalDateTime parsed = LocalDateTime.parse(timestampPart, formatter);
             assertNotNull(parsed, "Timestamp should parse correctly");
         });
     }
+
+    @Test
+    void testJsonRoundTrip() {
+        EventLogger e = new EventLogger(1700000000123L, 42, "u1", "bob", "LOGIN", "said \"hi\" with = and spaces");
+
+        EventLogger back = EventLogger.parse(e.toJson());
+        assertNotNull(back);
+        assertEquals(1700000000123L, back.getTimeMillis());
+        assertEquals(42, back.getSequence());
+        assertEquals("u1", back.getUserId());
+        assertEquals("bob", back.getUsername());
+        assertEquals("LOGIN", back.getAction());
+        assertEquals("said \"hi\" with = and spaces", back.getDetails());
+    }
+
+    @Test
+    void testToStringShowsMillisAndSequence() {
+        EventLogger e = new EventLogger(1700000000123L, 7, "u1", "bob", "LOGIN", "ok");
+        assertTrue(e.toString().contains(".123] #7 userId=u1"), e.toString());
+        assertEquals(-1, new EventLogger("u1", "bob", "LOGIN", "ok").getSequence());
+    }
+
+    @Test
+    void testParsesOlderTextFormat() {
+        EventLogger e = EventLogger.parse("[2024-03-01 10:15] userId=u7 user=carol action=VIEW_SCROLL details=Viewed scroll ID: s1");
+        assertNotNull(e);
+        assertEquals("u7", e.getUserId());
+        assertEquals("carol", e.getUsername());
+        assertEquals("VIEW_SCROLL", e.getAction());
+        assertEquals("Viewed scroll ID: s1", e.getDetails());
+        assertEquals(LocalDateTime.of(2024, 3, 1, 10, 15), e.getTimestamp());
+    }
+
+    @Test
+    void testParseRejectsGarbage() {
+        assertNull(EventLogger.parse(""));
+        assertNull(EventLogger.parse("not an event"));
+        assertNull(EventLogger.parse("{broken"));
+    }
 }
@@ -0,0 +1,125 @@
+import java.io.File;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class EventPolicyTest {
+
+    @TempDir
+    File tempDir;
+
+    private String originalLogFile;
+    private EventLogManager manager;
+
+    @BeforeEach
+    void setUp() {
+        originalLogFile = EventLogManager.LOG_FILE;
+        EventLogManager.LOG_FILE = new File(tempDir, "events.txt").getAbsolutePath();
+        manager = new EventLogManager() {};
+    }
+
+    @AfterEach
+    void tearDown() {
+        manager.shutdown();
+        EventLogManager.LOG_FILE = originalLogFile;
+    }
+
+    @Test
+    void testClassification() {
+        assertEquals(EventCategory.READ, EventCategory.of("VIEW_SCROLL"));
+        assertEquals(EventCategory.READ, EventCategory.of("SEARCH_SCROLL"));
+        assertEquals(EventCategory.READ, EventCategory.of("VIEW_ALL_SCROLLS"));
+        assertEquals(EventCategory.SECURITY, EventCategory.of("LOGIN_SUCCESS"));
+        assertEquals(EventCategory.SECURITY, EventCategory.of("DELETE_SCROLL"));
+        assertEquals(EventCategory.SECURITY, EventCategory.of("ADMIN_IMPORT_USERS"));
+        assertEquals(EventCategory.SECURITY, EventCategory.of("VIEW_AS_USER"));
+        assertEquals(EventCategory.WRITE, EventCategory.of("ADD_SCROLL"));
+        // Downloads are not sampled like browsing
+        assertEquals(EventCategory.WRITE, EventCategory.of("DOWNLOAD_SCROLL"));
+        // Admin views and account changes are security events, whatever their names look like
+        assertEquals(EventCategory.SECURITY, EventCategory.of("VIEW_SCROLL_STATS"));
+        assertEquals(EventCategory.SECURITY, EventCategory.of("VIEW_AS_GUEST"));
+        assertEquals(EventCategory.SECURITY, EventCategory.of("UPDATE_PROFILE"));
+        assertEquals(EventCategory.SECURITY, EventCategory.of("CHANGE_PASSWORD_FAILED"));
+        assertEquals(EventCategory.SECURITY, EventCategory.of("ADMIN_DELETION_STATUS_DENIED"));
+
+        assertEquals(EventSeverity.WARNING, EventSeverity.of("DOWNLOAD_SCROLL_FAILED"));
+        assertEquals(EventSeverity.WARNING, EventSeverity.of("ADMIN_VIEW_USERS_DENIED"));
+        assertEquals(EventSeverity.INFO, EventSeverity.of("VIEW_SCROLL"));
+    }
+
+    @Test
+    void testParse() {
+        assertSame(EventPolicy.ALWAYS, EventPolicy.parse("always"));
+        assertSame(EventPolicy.COUNT_ONLY, EventPolicy.parse(" Count "));
+        assertEquals(0.25, EventPolicy.parse("sample:0.25").getRate());
+        assertEquals(EventPolicy.Mode.SAMPLE, EventPolicy.parse("sample:0.25").getMode());
+        assertThrows(IllegalArgumentException.class, () -> EventPolicy.parse("sample:2"));
+        assertThrows(IllegalArgumentException.class, () -> EventPolicy.parse("sometimes"));
+    }
+
+    @Test
+    void testSecurityEventsCannotBeSampled() {
+        EventLogConfig config = new EventLogConfig();
+        assertThrows(IllegalArgumentException.class,
+                () -> config.policy(EventCategory.SECURITY, EventPolicy.sample(0.5)));
+        assertSame(EventPolicy.ALWAYS, config.getPolicy(EventCategory.SECURITY));
+    }
+
+    @Test
+    void testAdminViewsAreAlwaysWrittenUnderTheDefaults() {
+        manager.setConfig(new EventLogConfig().async(false));
+        for (int i = 0; i < 50; i++) {
+            manager.log("admin", "root", "VIEW_SCROLL_STATS", "Accessed scroll statistics");
+        }
+        assertEquals(50, manager.query(new EventQuery().action("VIEW_SCROLL_STATS")).size());
+    }
+
+    @Test
+    void testAccountChangesIgnoreTheWritePolicy() {
+        manager.setConfig(new EventLogConfig().async(false).policy(EventCategory.WRITE, EventPolicy.COUNT_ONLY));
+        manager.log("u1", "alice", "UPDATE_PROFILE", "Updated field: email");
+        manager.log("u1", "alice", "ADD_SCROLL", "Created scroll ID: s1");
+
+        List<EventLogger> written = manager.query(new EventQuery());
+        assertEquals(1, written.size());
+        assertEquals("UPDATE_PROFILE", written.get(0).getAction());
+    }
+
+    @Test
+    void testCountOnlyKeepsCountersButNotLines() {
+        manager.setConfig(new EventLogConfig().async(false).policy(EventCategory.READ, EventPolicy.COUNT_ONLY));
+        for (int i = 0; i < 20; i++) {
+            manager.log("u1", "alice", "VIEW_SCROLL", "s" + i);
+        }
+        manager.log("u1", "alice", "DOWNLOAD_SCROLL_FAILED", "missing");
+        manager.log("u1", "alice", "LOGIN_SUCCESS", "ok");
+
+        List<EventLogger> written = manager.query(new EventQuery());
+        assertEquals(2, written.size());
+        assertEquals("DOWNLOAD_SCROLL_FAILED", written.get(0).getAction());
+
+        assertEquals(20, manager.getStats(5).count("VIEW_SCROLL"));
+        assertEquals(20L, manager.getSuppressedCounts().get("VIEW_SCROLL"));
+    }
+
+    @Test
+    void testSamplingWritesAboutTheRate() {
+        manager.setConfig(new EventLogConfig().async(false).policy(EventCategory.READ, EventPolicy.sample(0.1)));
+        for (int i = 0; i < 2000; i++) {
+            manager.log("guest", "guest", "VIEW_SCROLL", "s" + i);
+        }
+
+        int written = manager.query(new EventQuery().action("VIEW_SCROLL")).size();
+        assertTrue(written > 100 && written < 300, "written: " + written);
+        assertEquals(2000 - written, manager.getSuppressedCounts().get("VIEW_SCROLL"));
+        assertEquals(2000, manager.getStats(5).count("VIEW_SCROLL"));
+    }
+}
@@ -0,0 +1,103 @@
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class EventQueryTest {
+
+    @TempDir
+    File tempDir;
+
+    private String originalLogFile;
+    private EventLogManager manager;
+
+    @BeforeEach
+    void setUp() {
+        originalLogFile = EventLogManager.LOG_FILE;
+        EventLogManager.LOG_FILE = new File(tempDir, "events.txt").getAbsolutePath();
+        manager = new EventLogManager() {};
+        manager.setConfig(new EventLogConfig().async(false).segmentBytes(1500).compressSealed(false)
+                .policy(EventCategory.READ, EventPolicy.ALWAYS));
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        manager.shutdown();
+        EventLogSegments.awaitBackgroundWork();
+        EventLogManager.LOG_FILE = originalLogFile;
+    }
+
+    @Test
+    void testFiltersByFields() {
+        for (int i = 0; i < 40; i++) {
+            manager.log("u" + (i % 4), "user" + (i % 4), i % 5 == 0 ? "LOGIN_FAILED" : "VIEW_SCROLL", "n" + i);
+        }
+
+        List<EventLogger> byUser = manager.query(new EventQuery().userId("u1"));
+        assertEquals(10, byUser.size());
+        for (EventLogger e : byUser) {
+            assertEquals("u1", e.getUserId());
+        }
+
+        assertEquals(8, manager.query(new EventQuery().action("LOGIN_FAILED")).size());
+        assertEquals(2, manager.query(new EventQuery().userId("u0").action("LOGIN_FAILED")).size());
+        assertEquals(10, manager.query(new EventQuery().username("user3")).size());
+        assertEquals(3, manager.query(new EventQuery().limit(3)).size());
+    }
+
+    @Test
+    void testTimeRange() throws Exception {
+        manager.log("u1", "a", "EARLY", "");
+        Thread.sleep(20);
+        long mid = System.currentTimeMillis();
+        Thread.sleep(20);
+        manager.log("u1", "a", "LATE", "");
+
+        List<EventLogger> late = manager.query(new EventQuery().from(mid));
+        assertEquals(1, late.size());
+        assertEquals("LATE", late.get(0).getAction());
+        assertEquals("EARLY", manager.query(new EventQuery().to(mid)).get(0).getAction());
+    }
+
+    @Test
+    void testSegmentsSkippedByIndex() throws Exception {
+        for (int i = 0; i < 30; i++) {
+            manager.log("early", "e", "VIEW_SCROLL", "padding padding padding " + i);
+        }
+        manager.log("late", "l", "DELETE_SCROLL", "x");
+
+        EventLogSegments segments = manager.segments();
+        List<EventLogSegments.Segment> sealed = segments.sealed();
+        assertFalse(sealed.isEmpty());
+        for (EventLogSegments.Segment s : sealed) {
+            assertTrue(Files.exists(tempDir.toPath().resolve(s.name.replaceFirst("(\\.gz)?$", "") + EventLogSegments.INDEX_SUFFIX)));
+            assertFalse(segments.mayContain(s, new EventQuery().userId("late")));
+            assertFalse(segments.mayContain(s, new EventQuery().action("DELETE_SCROLL")));
+            assertTrue(segments.mayContain(s, new EventQuery().userId("early")));
+            assertFalse(segments.mayContain(s, new EventQuery().from(System.currentTimeMillis() + 60_000)));
+        }
+
+        assertEquals(1, manager.query(new EventQuery().userId("late")).size());
+        assertEquals(30, manager.query(new EventQuery().userId("early")).size());
+    }
+
+    @Test
+    void testOlderTextLinesStillQueryable() throws Exception {
+        Files.writeString(new File(EventLogManager.LOG_FILE).toPath(),
+                "[2024-03-01 10:15] userId=old user=legacy action=LOGIN details=ok\n");
+        manager.log("new", "n", "LOGIN", "ok");
+
+        assertEquals(1, manager.query(new EventQuery().userId("old")).size());
+        assertEquals(2, manager.query(new EventQuery().action("LOGIN")).size());
+        // The old line has no audit chain, so opening the log records the restart too
+        assertEquals(1, manager.query(new EventQuery().action("SYSTEM_AUDIT_CHAIN_RESTARTED")).size());
+        assertEquals(3, manager.getAllLogs().size());
+    }
+}
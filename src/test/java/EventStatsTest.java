@@ -0,0 +1,117 @@
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class EventStatsTest {
+    private static final long MINUTE = 60_000L;
+    private static final long T0 = 1_700_000_000_000L / MINUTE * MINUTE;
+
+    @TempDir
+    File tempDir;
+
+    @Test
+    void testCountsPerMinuteActionAndUser() {
+        EventStats stats = new EventStats();
+        stats.record(T0, "u1", "LOGIN_FAILED");
+        stats.record(T0 + 1000, "u1", "LOGIN_FAILED");
+        stats.record(T0 + MINUTE, "u2", "LOGIN_SUCCESS");
+        stats.record(T0 + 3 * MINUTE, "u2", "VIEW_SCROLL");
+
+        EventStats.Snapshot s = stats.snapshot(T0 + 3 * MINUTE + 5, 4);
+        assertEquals(4, s.getTotal());
+        assertArrayEquals(new long[] {2, 1, 0, 1}, s.getPerMinute());
+        assertEquals(2, s.count("LOGIN_FAILED"));
+        assertEquals("LOGIN_FAILED", s.getByAction().keySet().iterator().next());
+        assertEquals(2L, s.getByUser().get("u1"));
+
+        EventStats.Snapshot last2 = stats.snapshot(T0 + 3 * MINUTE + 5, 2);
+        assertEquals(1, last2.getTotal());
+        assertEquals(0, last2.count("LOGIN_FAILED"));
+    }
+
+    @Test
+    void testOldMinutesAreReplacedAndIgnored() {
+        EventStats stats = new EventStats();
+        stats.record(T0, "u1", "A");
+        long later = T0 + EventStats.WINDOW_MINUTES * MINUTE; // same ring slot, next pass
+        stats.record(later, "u1", "B");
+        stats.record(T0 + 1, "u1", "A"); // now outside the window
+
+        EventStats.Snapshot s = stats.snapshot(later, EventStats.WINDOW_MINUTES);
+        assertEquals(1, s.getTotal());
+        assertEquals(0, s.count("A"));
+    }
+
+    @Test
+    void testPerMinutePercentiles() {
+        EventStats stats = new EventStats();
+        for (int m = 0; m < 10; m++) {
+            for (int i = 0; i <= m; i++) {
+                stats.record(T0 + m * MINUTE, "u", "A");
+            }
+        }
+        EventStats.Snapshot s = stats.snapshot(T0 + 9 * MINUTE, 10);
+        assertEquals(55, s.getTotal());
+        assertEquals(5.5, s.perMinuteAverage(), 1e-9);
+        assertEquals(5, s.perMinutePercentile(50));
+        assertEquals(10, s.perMinutePercentile(95));
+        assertEquals(10, s.perMinutePercentile(100));
+    }
+
+    @Test
+    void testConcurrentRecordsAreAllCounted() throws Exception {
+        EventStats stats = new EventStats();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            String uid = "u" + t;
+            Thread th = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    stats.record(T0 + (i % 3) * MINUTE, uid, "A" + (i % 5));
+                }
+            });
+            threads.add(th);
+            th.start();
+        }
+        for (Thread th : threads) {
+            th.join();
+        }
+        EventStats.Snapshot s = stats.snapshot(T0 + 2 * MINUTE, 3);
+        assertEquals(80_000, s.getTotal());
+        assertEquals(8, s.getByUser().size());
+        assertEquals(16_000L, s.count("A0"));
+    }
+
+    @Test
+    void testRebuiltFromLogWithoutDoubleCounting() throws Exception {
+        String original = EventLogManager.LOG_FILE;
+        EventLogManager.LOG_FILE = new File(tempDir, "events.txt").getAbsolutePath();
+        EventLogManager first = new EventLogManager() {};
+        EventLogManager second = new EventLogManager() {};
+        try {
+            for (int i = 0; i < 5; i++) {
+                first.log("u1", "alice", "LOGIN_FAILED", "attempt " + i);
+            }
+            first.shutdown();
+
+            // A fresh manager (as after a restart) reads back what is already in the log
+            second.log("u2", "bob", "LOGIN_SUCCESS", "ok");
+            second.awaitStatsRebuild();
+            assertFalse(second.isStatsRebuilding());
+
+            EventStats.Snapshot s = second.getStats(5);
+            assertEquals(6, s.getTotal());
+            assertEquals(5, s.count("LOGIN_FAILED"));
+            assertEquals(1, s.count("LOGIN_SUCCESS"));
+        } finally {
+            first.shutdown();
+            second.shutdown();
+            EventLogManager.LOG_FILE = original;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+import java.io.File;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+class FlightRecorderEventsTest {
+    @TempDir
+    File tempDir;
+
+    private String originalLogFile;
+    private Recording recording;
+
+    @BeforeEach
+    void setUp() {
+        originalLogFile = EventLogManager.LOG_FILE;
+        EventLogManager.LOG_FILE = new File(tempDir, "events.txt").getAbsolutePath();
+
+        recording = new Recording();
+        for (String name : List.of("vsas.FsamIo", "vsas.ScrollSearch", "vsas.PasswordCheck", "vsas.EventLogAppend")) {
+            recording.enable(name).withThreshold(Duration.ZERO);
+        }
+        recording.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        recording.close();
+        EventLogManager.LOG_FILE = originalLogFile;
+    }
+
+    private List<RecordedEvent> stop() throws Exception {
+        recording.stop();
+        Path out = tempDir.toPath().resolve("test.jfr");
+        recording.dump(out);
+        return RecordingFile.readAllEvents(out);
+    }
+
+    private static List<RecordedEvent> named(List<RecordedEvent> events, String name) {
+        return events.stream()
+                .filter(e -> e.getEventType().getName().equals(name))
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    void testFsamIoCarriesCategoryNotIds() throws Exception {
+        UserManager users = new UserManager(new File(tempDir, "users").getPath());
+        User u = users.createUser("alice");
+        u.setUsername("alice_w");
+        u.getUsername();
+
+        List<RecordedEvent> events = named(stop(), "vsas.FsamIo");
+        List<RecordedEvent> writes = events.stream()
+                .filter(e -> e.getString("operation").equals("write") && e.getString("pathCategory").equals("users/username"))
+                .collect(Collectors.toList());
+        assertFalse(writes.isEmpty());
+        assertEquals(7, writes.get(writes.size() - 1).getLong("bytes"));
+        assertTrue(events.stream().anyMatch(e -> e.getString("operation").equals("read")));
+        assertFalse(events.stream().anyMatch(e -> e.getString("pathCategory").contains("alice")));
+    }
+
+    @Test
+    void testSearchAndPasswordCheck() throws Exception {
+        ScrollManager scrolls = new ScrollManager(new File(tempDir, "scrolls").getPath());
+        scrolls.createScroll("s1").setUploaderId("u1");
+        scrolls.createScroll("s2").setUploaderId("u2");
+        scrolls.searchScrolls("u1", null, null, null, new java.util.Date());
+
+        UserManager users = new UserManager(new File(tempDir, "users").getPath());
+        User u = users.createUser("bob");
+        users.setPassword(u, "correct horse");
+        users.checkPassword(u, "wrong");
+
+        List<RecordedEvent> all = stop();
+
+        RecordedEvent search = named(all, "vsas.ScrollSearch").get(0);
+        assertEquals("uploader,before", search.getString("criteria"));
+        assertEquals(2, search.getInt("scanned"));
+        assertEquals(1, search.getInt("matched"));
+
+        RecordedEvent check = named(all, "vsas.PasswordCheck").get(0);
+        assertEquals("bob", check.getString("userId"));
+        assertFalse(check.getBoolean("matched"));
+        assertTrue(check.getInt("iterations") > 0);
+    }
+
+    @Test
+    void testEventLogAppendRecordsSampling() throws Exception {
+        EventLogManager manager = new EventLogManager() {};
+        try {
+            manager.log("u1", "alice", "LOGIN_SUCCESS", "User logged in");
+        } finally {
+            manager.shutdown();
+        }
+
+        List<RecordedEvent> events = named(stop(), "vsas.EventLogAppend");
+        assertEquals(1, events.size());
+        assertEquals("LOGIN_SUCCESS", events.get(0).getString("action"));
+        assertEquals("SECURITY", events.get(0).getString("category"));
+        assertTrue(events.get(0).getBoolean("written"));
+    }
+}
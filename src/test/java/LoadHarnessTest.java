@@ -0,0 +1,78 @@
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class LoadHarnessTest {
+    @TempDir
+    Path tempDir;
+
+    private LoadHarness.Options options() {
+        LoadHarness.Options o = LoadHarness.Options.parse(new String[] {
+            "--users", "3", "--duration", "1", "--think", "5", "--scrolls-per-user", "2"
+        });
+        o.dataDir = tempDir.resolve("data");
+        return o;
+    }
+
+    @Test
+    void testClosedLoopRunsEveryOperation() throws Exception {
+        LoadHarness.Report report = LoadHarness.run(options());
+
+        assertTrue(report.getTotalCalls() > 20, "calls: " + report.getTotalCalls());
+        for (LoadHarness.Operation op : LoadHarness.Operation.values()) {
+            assertEquals(0, report.getErrors(op), op.name());
+        }
+        assertTrue(report.getCalls(LoadHarness.Operation.LOGIN) >= 3);
+        assertTrue(report.getLatency(LoadHarness.Operation.BROWSE).percentile(99) > 0);
+    }
+
+    @Test
+    void testOpenLoopReusesDataAndWritesCsv() throws Exception {
+        LoadHarness.run(options());
+
+        LoadHarness.Options o = options();
+        o.rate = 50;
+        o.parseMix("upload=0,admin=0");
+        o.csv = tempDir.resolve("load.csv");
+        LoadHarness.Report report = LoadHarness.run(o);
+        report.writeCsv(o.csv);
+
+        assertEquals(0, report.getCalls(LoadHarness.Operation.UPLOAD));
+        assertTrue(report.getTotalCalls() > 10);
+        List<String> lines = Files.readAllLines(o.csv);
+        assertEquals("operation,calls,errors,ops_per_sec,p50_ms,p99_ms,p999_ms,max_ms", lines.get(0));
+        assertEquals(LoadHarness.Operation.values().length + 1, lines.size());
+    }
+
+    @Test
+    void testRunsAgainstGeneratedDataset() throws Exception {
+        DatasetGenerator.Options d = DatasetGenerator.Options.parse(new String[] {
+            "--users", "20", "--scrolls", "50", "--events", "0", "--blob-median", "256"
+        });
+        d.out = tempDir.resolve("data");
+        DatasetGenerator.generate(d);
+
+        LoadHarness.Options o = options();
+        o.parseMix("upload=0");
+        LoadHarness.Report report = LoadHarness.run(o);
+
+        assertTrue(report.getCalls(LoadHarness.Operation.LOGIN) >= 3);
+        assertEquals(0, report.getErrors(LoadHarness.Operation.LOGIN));
+        assertEquals(0, report.getErrors(LoadHarness.Operation.DOWNLOAD));
+        assertTrue(Files.notExists(tempDir.resolve("data/users/load00000")));
+    }
+
+    @Test
+    void testBadArguments() {
+        assertThrows(IllegalArgumentException.class, () -> LoadHarness.Options.parse(new String[] {"--users"}));
+        assertThrows(IllegalArgumentException.class, () -> LoadHarness.Options.parse(new String[] {"--speed", "3"}));
+        assertThrows(IllegalArgumentException.class,
+                () -> LoadHarness.Options.parse(new String[] {"--mix", "login=0,browse=0,search=0,preview=0,upload=0,download=0,admin=0"}));
+    }
+}
@@ -0,0 +1,98 @@
+import java.io.File;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import fsam.FilesystemMemory;
+import metrics.Metrics;
+import metrics.MetricsServer;
+import metrics.PrometheusFormat;
+
+class MetricsServerTest {
+    @TempDir
+    Path tempDir;
+
+    private MetricsServer server;
+
+    private static class TestFsam extends FilesystemMemory {
+        TestFsam(File f) {
+            setFileObj(f);
+        }
+
+        public TestFsam getChild(String childPath) {
+            return new TestFsam(new File(getFileObj(), childPath));
+        }
+    }
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = MetricsServer.start("127.0.0.1", 0);
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop();
+        EventLogManager.setInstanceForTesting(null);
+    }
+
+    private HttpURLConnection open(String method) throws Exception {
+        HttpURLConnection c = (HttpURLConnection) URI.create("http://127.0.0.1:" + server.getPort() + "/metrics")
+                .toURL().openConnection();
+        c.setRequestMethod(method);
+        return c;
+    }
+
+    private String scrape() throws Exception {
+        HttpURLConnection c = open("GET");
+        assertEquals(200, c.getResponseCode());
+        assertEquals(PrometheusFormat.CONTENT_TYPE, c.getContentType());
+        try (var in = c.getInputStream()) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    @Test
+    void testScrapeIncludesApplicationAndJvmMetrics() throws Exception {
+        TestFsam value = new TestFsam(tempDir.resolve("value").toFile());
+        value.setSelfString("hello");
+        assertEquals("hello", value.getSelfString());
+        Metrics.operation("test.scrape").stop(Metrics.operation("test.scrape").start(), false);
+        EventLogManager.setInstanceForTesting(new EventLogManager() {});
+
+        String body = scrape();
+        assertTrue(body.contains("# TYPE vsas_fsam_reads_total counter"), body);
+        assertTrue(body.matches("(?s).*\\nvsas_fsam_written_bytes_total [1-9]\\d*\\n.*"), body);
+        assertTrue(body.contains("vsas_operation_duration_seconds{operation=\"test.scrape\",quantile=\"0.99\"}"));
+        assertTrue(body.contains("vsas_operation_failures_total{operation=\"test.scrape\"} 1"));
+        assertTrue(body.contains("vsas_eventlog_queue_depth "));
+        assertTrue(body.contains("jvm_memory_bytes_used{area=\"heap\"}"));
+        assertTrue(body.contains("jvm_gc_collection_seconds_count{gc="));
+    }
+
+    @Test
+    void testEveryLineIsWellFormed() throws Exception {
+        Metrics.counter("vsas_test_total", "Label escaping", "name", "a \"quoted\"\\value").increment();
+        for (String line : scrape().split("\n")) {
+            if (line.startsWith("#")) {
+                assertTrue(line.startsWith("# HELP ") || line.startsWith("# TYPE "), line);
+            } else {
+                assertTrue(line.matches("[a-zA-Z_:][a-zA-Z0-9_:]*(\\{.*\\})? -?[0-9.E-]+"), line);
+            }
+        }
+        assertTrue(scrape().contains("vsas_test_total{name=\"a \\\"quoted\\\"\\\\value\"} 1"));
+    }
+
+    @Test
+    void testOnlyGetAndHead() throws Exception {
+        assertEquals(405, open("POST").getResponseCode());
+        assertEquals(200, open("HEAD").getResponseCode());
+    }
+}
@@ -0,0 +1,113 @@
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import metrics.LatencyHistogram;
+import metrics.Metrics;
+import metrics.OperationMetrics;
+
+class MetricsTest {
+    @TempDir
+    Path tempDir;
+
+    @AfterEach
+    void tearDown() {
+        Metrics.setEnabled(true);
+    }
+
+    @Test
+    void testSmallValuesAreExact() {
+        LatencyHistogram h = new LatencyHistogram();
+        for (int i = 1; i <= 100; i++) {
+            h.record(i);
+        }
+        LatencyHistogram.Snapshot s = h.snapshot();
+        assertEquals(100, s.getCount());
+        assertEquals(50, s.percentile(50));
+        assertEquals(99, s.percentile(99));
+        assertEquals(100, s.percentile(100));
+        assertEquals(50.5, s.getMeanNanos(), 1e-9);
+    }
+
+    @Test
+    void testLargeValuesStayWithinTwoPercent() {
+        LatencyHistogram h = new LatencyHistogram();
+        long last = 0;
+        for (long v = 1_000; v <= 1_000_000_000L; v = v * 11 / 10) {
+            last = v;
+            LatencyHistogram single = new LatencyHistogram();
+            single.record(v);
+            h.record(v);
+            long reported = single.snapshot().percentile(50);
+            assertTrue(Math.abs(reported - v) <= v / 50, v + " reported as " + reported);
+        }
+        assertEquals(last, h.snapshot().getMaxNanos());
+        assertEquals(last, h.snapshot().percentile(100));
+    }
+
+    @Test
+    void testTailPercentiles() {
+        LatencyHistogram h = new LatencyHistogram();
+        for (int i = 0; i < 9_990; i++) {
+            h.record(TimeUnit.MICROSECONDS.toNanos(100));
+        }
+        for (int i = 0; i < 10; i++) {
+            h.record(TimeUnit.MILLISECONDS.toNanos(50));
+        }
+        LatencyHistogram.Snapshot s = h.snapshot();
+        assertEquals(100_000, s.percentile(50), 2_000);
+        assertEquals(100_000, s.percentile(99), 2_000);
+        assertEquals(50_000_000, s.percentile(99.95), 1_000_000);
+    }
+
+    @Test
+    void testConcurrentRecordingLosesNothing() throws Exception {
+        OperationMetrics op = Metrics.operation("test.concurrent");
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        for (int t = 0; t < 8; t++) {
+            pool.execute(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    op.stop(op.start(), i % 10 != 0);
+                }
+            });
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(30, TimeUnit.SECONDS));
+        assertEquals(72_000, op.getSuccesses());
+        assertEquals(8_000, op.getFailures());
+        assertEquals(80_000, op.getLatency().getCount());
+    }
+
+    @Test
+    void testDisabledRecordsNothing() {
+        OperationMetrics op = Metrics.operation("test.disabled");
+        Metrics.setEnabled(false);
+        op.stop(op.start(), true);
+        assertEquals(0, op.getSuccesses());
+        assertEquals(0, op.getLatency().getCount());
+    }
+
+    @Test
+    void testExport() throws Exception {
+        OperationMetrics op = Metrics.operation("test.export");
+        op.stop(op.start(), true);
+        op.stop(op.start(), false);
+
+        Path csv = tempDir.resolve("metrics.csv");
+        Metrics.export(csv);
+        List<String> lines = Files.readAllLines(csv);
+        assertEquals("operation,calls,successes,failures,mean_us,p50_us,p99_us,p999_us,max_us", lines.get(0));
+        String row = lines.stream().filter(l -> l.startsWith("test.export,")).findFirst().orElseThrow();
+        assertTrue(row.startsWith("test.export,2,1,1,"), row);
+        assertTrue(Metrics.report().contains("test.export"));
+    }
+}
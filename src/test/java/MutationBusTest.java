@@ -0,0 +1,219 @@
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class MutationBusTest {
+
+    @TempDir
+    File tempDir;
+
+    private UserManager userManager;
+    private ScrollManager scrollManager;
+    private MutationBus.Subscription subscription;
+    private final List<MutationEvent> events = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        userManager = new UserManager(new File(tempDir, "users").getAbsolutePath());
+        scrollManager = new ScrollManager(new File(tempDir, "scrolls").getAbsolutePath());
+        // The bus is shared by the whole JVM; only keep events for this test's roots
+        subscription = MutationBus.getInstance().subscribe(e -> {
+            if (mine(e)) {
+                synchronized (events) {
+                    events.add(e);
+                }
+            }
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        subscription.close();
+    }
+
+    private List<String> described() {
+        synchronized (events) {
+            return events.stream().map(MutationEvent::toString).collect(Collectors.toList());
+        }
+    }
+
+    private boolean mine(MutationEvent e) {
+        return e.getRoot().toPath().startsWith(tempDir.getAbsoluteFile().toPath());
+    }
+
+    @Test
+    void testUserLifecycleIsPublishedInOrder() throws Exception {
+        User u = userManager.createUser("alice");
+        u.setEmail("a@example.com");
+        assertTrue(userManager.changeUserId("alice", "alicia"));
+        userManager.tombstoneUser("alicia");
+
+        List<String> seen = described();
+        // The defaults are part of the creation, not changes of their own
+        assertEquals(List.of(
+                "USER CREATED alice",
+                "USER ATTRIBUTE_CHANGED alice/email",
+                "USER RENAMED alice -> alicia",
+                "USER DELETED alicia"), seen);
+
+        synchronized (events) {
+            MutationEvent email = events.get(1);
+            assertEquals("a@example.com", email.getValue());
+            assertEquals(new File(tempDir, "users").getAbsoluteFile(), email.getRoot());
+            // One generation step per event
+            for (int i = 1; i < events.size(); i++) {
+                assertEquals(events.get(i - 1).getGeneration() + 1, events.get(i).getGeneration());
+            }
+        }
+    }
+
+    @Test
+    void testPasswordValuesAreNeverPublished() throws Exception {
+        User u = userManager.createUser("bob");
+        synchronized (events) {
+            events.clear();
+        }
+        assertTrue(userManager.setPassword(u, "correct horse"));
+
+        synchronized (events) {
+            assertTrue(events.size() >= 4, events.toString());
+            for (MutationEvent e : events) {
+                assertTrue(e.getAttribute().startsWith("password_"), e.toString());
+                assertNull(e.getValue(), e.toString());
+            }
+        }
+    }
+
+    @Test
+    void testCreateUserRecordIsOneEvent() throws Exception {
+        userManager.createUserRecord("carol", Map.of("username", "carol", "email", "c@example.com"),
+                UserManager.hashPassword("pw"));
+
+        // Nothing from the staging directory
+        assertEquals(List.of("USER CREATED carol"), described());
+        assertEquals("c@example.com", userManager.getTable().get("carol").getEmail());
+    }
+
+    @Test
+    void testScrollChangesArePublished() throws Exception {
+        Scroll s = scrollManager.createScroll("s1");
+        s.setScrollName("Alpha");
+        s.setUploaderId("alice");
+        File blob = new File(tempDir, "blob.txt");
+        Files.writeString(blob.toPath(), "text");
+        assertTrue(s.setScrollFile(blob.getPath()));
+        assertTrue(scrollManager.changeScrollId("s1", "s2"));
+        assertTrue(scrollManager.deleteScroll("s2"));
+        scrollManager.restoreScroll("s2");
+
+        List<String> seen = described();
+        assertEquals(List.of(
+                "SCROLL CREATED s1",
+                "SCROLL ATTRIBUTE_CHANGED s1/scroll_name",
+                "SCROLL ATTRIBUTE_CHANGED s1/uploader_id",
+                "SCROLL ATTRIBUTE_CHANGED s1/scroll_blob",
+                "SCROLL RENAMED s1 -> s2",
+                "SCROLL DELETED s2",
+                "SCROLL CREATED s2"), seen);
+        synchronized (events) {
+            assertNull(events.get(3).getValue());
+        }
+        assertEquals("alice", scrollManager.getIndex().uploaderOf("s2"));
+    }
+
+    @Test
+    void testCachesFollowTheBus() throws Exception {
+        userManager.createUser("dave").setUsername("d");
+        UserTable table = userManager.getTable();
+        assertEquals("d", table.get("dave").getUsername());
+
+        scrollManager.createScroll("s1").setUploaderId("dave");
+        ScrollIndex index = scrollManager.getIndex();
+        assertEquals("dave", index.uploaderOf("s1"));
+
+        userManager.getUser("dave").setUsername("dd");
+        assertTrue(userManager.changeUserId("dave", "david"));
+        scrollManager.getScroll("s1").setUploaderId("david");
+        assertTrue(scrollManager.changeScrollId("s1", "s9"));
+
+        assertNull(table.get("dave"));
+        assertEquals("dd", table.get("david").getUsername());
+        assertNull(index.uploaderOf("s1"));
+        assertEquals(Set.of("s9"), index.scrollsBy("david"));
+    }
+
+    @Test
+    void testAsyncSubscriberReceivesBatches() throws Exception {
+        List<List<MutationEvent>> batches = new ArrayList<>();
+        try (MutationBus.Subscription async = MutationBus.getInstance().subscribeAsync("test-batches", batch -> {
+            List<MutationEvent> kept = batch.stream().filter(this::mine).collect(Collectors.toList());
+            synchronized (batches) {
+                batches.add(kept);
+            }
+        }, 16, 10_000)) {
+            User u = userManager.createUser("erin");
+            for (int i = 0; i < 200; i++) {
+                u.setName("name" + i);
+            }
+            assertTrue(async.awaitIdle(10, TimeUnit.SECONDS));
+            assertEquals(0, async.getDropped());
+        }
+
+        List<MutationEvent> all = new ArrayList<>();
+        synchronized (batches) {
+            for (List<MutationEvent> b : batches) {
+                assertTrue(b.size() <= 16, "batch of " + b.size());
+                all.addAll(b);
+            }
+        }
+        assertEquals(described(), all.stream().map(MutationEvent::toString).collect(Collectors.toList()));
+        assertEquals("name199", all.get(all.size() - 1).getValue());
+    }
+
+    @Test
+    void testFullQueueDropsInsteadOfBlocking() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        try (MutationBus.Subscription slow = MutationBus.getInstance().subscribeAsync("test-slow", batch -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, 1, 4)) {
+            User u = userManager.createUser("frank");
+            for (int i = 0; i < 50; i++) {
+                u.setName("name" + i);
+            }
+            // The writer was never held up by the stalled subscriber
+            assertEquals("name49", u.getName());
+            assertTrue(slow.getDropped() > 0);
+
+            release.countDown();
+            assertTrue(slow.awaitIdle(10, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    void testClosedSubscriptionStopsReceiving() throws Exception {
+        userManager.createUser("gina");
+        int before = described().size();
+
+        subscription.close();
+        userManager.getUser("gina").setName("G");
+        assertEquals(before, described().size());
+    }
+}
@@ -0,0 +1,196 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import fsam.ProcessLocks;
+
+/**
+ * Runs a second JVM against the same root to check the locks really are shared
+ * between processes, and that killing the holder with SIGKILL frees them.
+ */
+class ProcessLocksTest {
+
+    @TempDir
+    File tempDir;
+
+    private final List<Process> children = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() throws Exception {
+        for (Process p : children) {
+            p.destroyForcibly().waitFor(10, TimeUnit.SECONDS);
+        }
+    }
+
+    // Starts Child in a new JVM and waits for its first line of output
+    private Process spawn(String mode, File root, String arg) throws Exception {
+        String java = ProcessHandle.current().info().command().orElse("java");
+        ProcessBuilder pb = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                Child.class.getName(), mode, root.getAbsolutePath(), arg);
+        pb.redirectErrorStream(true);
+        Process p = pb.start();
+        children.add(p);
+        return p;
+    }
+
+    private static String firstLine(Process p) throws Exception {
+        BufferedReader r = new BufferedReader(new InputStreamReader(p.getInputStream(), StandardCharsets.UTF_8));
+        return r.readLine();
+    }
+
+    private static void kill9(Process p) throws Exception {
+        p.destroyForcibly();
+        assertTrue(p.waitFor(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testLeaseIsExclusiveWithinProcess() throws Exception {
+        ProcessLocks locks = ProcessLocks.forRoot(tempDir);
+        ProcessLocks.Lease first = locks.tryLease("purge");
+        assertNotNull(first);
+        assertNull(locks.tryLease("purge"));
+        assertNotNull(locks.tryLease("other"));
+
+        first.close();
+        ProcessLocks.Lease again = locks.tryLease("purge");
+        assertNotNull(again);
+        again.close();
+    }
+
+    @Test
+    void testLeaseHeldByKilledProcessIsReleased() throws Exception {
+        Process child = spawn("lease", tempDir, "compaction");
+        assertEquals("HELD", firstLine(child));
+
+        ProcessLocks locks = ProcessLocks.forRoot(tempDir);
+        assertNull(locks.tryLease("compaction"));
+
+        kill9(child);
+        ProcessLocks.Lease lease = locks.tryLease("compaction");
+        assertNotNull(lease);
+        lease.close();
+    }
+
+    @Test
+    void testRecordLockWaitsForOtherProcessUntilKilled() throws Exception {
+        Process child = spawn("lock", tempDir, "alice");
+        assertEquals("HELD", firstLine(child));
+
+        ReentrantLock lock = ProcessLocks.forRoot(tempDir).lockFor("alice");
+        CountDownLatch acquired = new CountDownLatch(1);
+        Thread t = new Thread(() -> {
+            lock.lock();
+            try {
+                acquired.countDown();
+            } finally {
+                lock.unlock();
+            }
+        });
+        t.start();
+
+        assertFalse(acquired.await(500, TimeUnit.MILLISECONDS));
+        kill9(child);
+        assertTrue(acquired.await(10, TimeUnit.SECONDS));
+        t.join();
+    }
+
+    @Test
+    void testGenerationIsSharedBetweenProcesses() throws Exception {
+        ProcessLocks locks = ProcessLocks.forRoot(tempDir);
+        long before = locks.generation();
+
+        Process child = spawn("bump", tempDir, "25");
+        assertEquals("DONE", firstLine(child));
+        assertTrue(child.waitFor(10, TimeUnit.SECONDS));
+
+        assertEquals(before + 25, locks.generation());
+        assertEquals(before + 26, locks.bumpGeneration());
+    }
+
+    @Test
+    void testUserTableReloadsAfterChangeByOtherProcess() throws Exception {
+        File root = new File(tempDir, "users");
+        UserManager manager = new UserManager(root.getAbsolutePath());
+        manager.createUser("u1").setUsername("before");
+        UserTable table = manager.getTable();
+        assertEquals("before", table.get("u1").getUsername());
+
+        // Our own writes are applied in place and keep the table current
+        manager.getUser("u1").setUsername("mine");
+        assertEquals("mine", table.get("u1").getUsername());
+
+        Process child = spawn("rename", root, "theirs");
+        assertEquals("DONE", firstLine(child));
+        assertTrue(child.waitFor(10, TimeUnit.SECONDS));
+
+        assertEquals("theirs", table.get("u1").getUsername());
+    }
+
+    @Test
+    void testScrollIndexSeesHiddenUploaderFromOtherProcess() throws Exception {
+        File root = new File(tempDir, "scrolls");
+        ScrollManager manager = new ScrollManager(root.getAbsolutePath());
+        manager.createScroll("s1").setUploaderId("bob");
+        assertNotNull(manager.getScroll("s1"));
+
+        Process child = spawn("hide", root, "bob");
+        assertEquals("DONE", firstLine(child));
+        assertTrue(child.waitFor(10, TimeUnit.SECONDS));
+
+        assertTrue(manager.getIndex().isUploaderHidden("bob"));
+        assertNull(manager.getScroll("s1"));
+    }
+
+    // Entry point of the second JVM
+    static class Child {
+        public static void main(String[] args) throws Exception {
+            String mode = args[0];
+            File root = new File(args[1]);
+            ProcessLocks locks = ProcessLocks.forRoot(root);
+            switch (mode) {
+                case "lease" -> {
+                    ProcessLocks.Lease lease = locks.tryLease(args[2]);
+                    System.out.println(lease != null ? "HELD" : "BUSY");
+                    System.out.flush();
+                    Thread.sleep(60_000);
+                }
+                case "lock" -> {
+                    locks.lockFor(args[2]).lock();
+                    System.out.println("HELD");
+                    System.out.flush();
+                    Thread.sleep(60_000);
+                }
+                case "bump" -> {
+                    for (int i = 0; i < Integer.parseInt(args[2]); i++) {
+                        locks.bumpGeneration();
+                    }
+                    System.out.println("DONE");
+                }
+                case "rename" -> {
+                    new UserManager(root.getPath()).getUser("u1").setUsername(args[2]);
+                    System.out.println("DONE");
+                }
+                case "hide" -> {
+                    new ScrollManager(root.getPath()).getIndex().hideUploader(args[2]);
+                    System.out.println("DONE");
+                }
+                default -> System.out.println("UNKNOWN " + mode);
+            }
+        }
+    }
+}
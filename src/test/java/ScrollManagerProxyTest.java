@@ -286,5 +286,20 @@ class ScrollManagerProxyTest {
             .anyMatch(s -> s.contains("UPDATE_SCROLL_FILE_FAILED") && s.contains("Failed to update file")));
     }
 
+    @Test
+    void testRestoreScrollOnlyRestoresOwnEntries() throws Exception {
+        scrollManager.createScroll("mine").setUploaderId("u1");
+        scrollManager.createScroll("theirs").setUploaderId("someone-else");
+        scrollManager.deleteScroll("mine");
+        scrollManager.deleteScroll("theirs");
+
+        assertFalse(proxy.restoreScroll(testUser, scrollManager.getTrash().latest("theirs")));
+        assertNull(scrollManager.getScroll("theirs"));
 
+        assertTrue(proxy.restoreScroll(testUser, scrollManager.getTrash().latest("mine")));
+        assertNotNull(scrollManager.getScroll("mine"));
+
+        // Put the other scroll back so tearDown can clean up
+        scrollManager.restoreScroll("theirs");
+    }
 }
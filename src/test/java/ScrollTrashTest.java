@@ -0,0 +1,130 @@
+import java.io.File;
+import java.nio.file.Files;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ScrollTrashTest {
+
+    @TempDir
+    File tempDir;
+
+    private ScrollManager scrollManager;
+    private ScrollTrash trash;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        scrollManager = new ScrollManager(tempDir.getAbsolutePath());
+        trash = scrollManager.getTrash();
+        trash.setMaxDeletesPerSecond(0);
+
+        Scroll s = scrollManager.createScroll("s1");
+        s.setScrollName("First");
+        s.setUploaderId("alice");
+    }
+
+    private File trashDir() {
+        return new File(tempDir, ScrollTrash.TRASH_DIR);
+    }
+
+    @Test
+    void testDeleteMovesScrollToTrash() {
+        assertTrue(scrollManager.deleteScroll("s1"));
+
+        assertNull(scrollManager.getScroll("s1"));
+        assertTrue(scrollManager.getAllScrolls().isEmpty());
+        assertEquals(1, trash.list().size());
+        assertEquals("s1", trash.latest("s1").getScrollId());
+        assertEquals("alice", trash.listFor("alice").get(0).getUploaderId());
+        assertFalse(scrollManager.deleteScroll("s1"));
+    }
+
+    @Test
+    void testRestoreBringsScrollBack() throws Exception {
+        scrollManager.deleteScroll("s1");
+
+        Scroll restored = scrollManager.restoreScroll("s1");
+        assertEquals("First", restored.getScrollName());
+        assertNotNull(scrollManager.getScroll("s1"));
+        assertTrue(scrollManager.getIndex().scrollsBy("alice").contains("s1"));
+        assertTrue(trash.list().isEmpty());
+    }
+
+    @Test
+    void testRestoreRefusesTakenIdAndUnknownScroll() throws Exception {
+        scrollManager.deleteScroll("s1");
+        scrollManager.createScroll("s1");
+
+        assertThrows(ScrollAlreadyExistsException.class, () -> scrollManager.restoreScroll("s1"));
+        assertThrows(ScrollDoesNotExistException.class, () -> scrollManager.restoreScroll("nope"));
+    }
+
+    @Test
+    void testRestoreEntryOnlyRestoresTheCallersOwnScroll() throws Exception {
+        scrollManager.deleteScroll("s1");
+        String alices = trash.latest("s1").getEntryName();
+
+        // Bob reuses the ID and deletes his scroll too; it is now the newest "s1"
+        scrollManager.createScroll("s1").setUploaderId("bob");
+        scrollManager.deleteScroll("s1");
+        String bobs = trash.latest("s1").getEntryName();
+
+        assertThrows(ScrollDoesNotExistException.class, () -> scrollManager.restoreScrollEntry(bobs, "alice"));
+        assertNull(scrollManager.getScroll("s1"));
+
+        Scroll restored = scrollManager.restoreScrollEntry(alices, "alice");
+        assertEquals("alice", restored.getUploaderId());
+        assertEquals("First", restored.getScrollName());
+        assertNotNull(trash.entry(bobs));
+        assertNull(trash.entry(alices));
+        assertThrows(ScrollDoesNotExistException.class, () -> scrollManager.restoreScrollEntry(alices, "alice"));
+    }
+
+    @Test
+    void testPurgeRemovesExpiredEntriesRecursively() throws Exception {
+        // Nested content that the old per-file delete could not remove
+        File nested = new File(scrollManager.getScroll("s1").getFileObj(), "extra/deeper");
+        nested.mkdirs();
+        Files.writeString(new File(nested, "data.bin").toPath(), "xyz");
+
+        scrollManager.createScroll("s2");
+        scrollManager.deleteScroll("s1");
+        scrollManager.deleteScroll("s2");
+
+        // Nothing has expired yet
+        assertEquals(0, trash.purgeExpired(System.currentTimeMillis()));
+        assertEquals(2, trash.list().size());
+
+        long later = System.currentTimeMillis() + trash.getRetention() + 1;
+        assertEquals(2, trash.purgeExpired(later));
+        assertEquals(0, trashDir().list().length);
+    }
+
+    @Test
+    void testExpiredEntriesAreNotRestorable() throws Exception {
+        scrollManager.deleteScroll("s1");
+        trash.setRetention(0);
+        Thread.sleep(5);
+
+        assertTrue(trash.list().isEmpty());
+        assertThrows(ScrollDoesNotExistException.class, () -> scrollManager.restoreScroll("s1"));
+        trash.setRetention(ScrollTrash.DEFAULT_RETENTION_MS);
+    }
+
+    @Test
+    void testInterruptedPurgeIsFinished() throws Exception {
+        File claimed = new File(trashDir(), ScrollTrash.PURGING_PREFIX + "old@1");
+        new File(claimed, "sub").mkdirs();
+        Files.writeString(new File(claimed, "sub/blob").toPath(), "left over");
+
+        assertEquals(1, trash.purgeExpired(System.currentTimeMillis()));
+        assertFalse(claimed.exists());
+    }
+}
@@ -0,0 +1,186 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SegmentTimeIndexTest {
+    private static final long BASE = 1_700_000_000_000L;
+
+    @TempDir
+    File tempDir;
+
+    private String originalLogFile;
+
+    @BeforeEach
+    void setUp() {
+        originalLogFile = EventLogManager.LOG_FILE;
+        EventLogManager.LOG_FILE = new File(tempDir, "events.txt").getAbsolutePath();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        EventLogSegments.awaitBackgroundWork();
+        EventLogManager.LOG_FILE = originalLogFile;
+    }
+
+    private static String lines(long... times) {
+        StringBuilder sb = new StringBuilder();
+        long seq = 0;
+        for (long t : times) {
+            sb.append(new EventLogger(t, seq++, "u", "n", "A", "d").toJson()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    @Test
+    void testRangeUsesBlockBounds() {
+        SegmentTimeIndex idx = new SegmentTimeIndex.Builder("f")
+                .block(0, 100, 199)
+                .block(1000, 200, 299)
+                .block(2000, 300, 399)
+                .build();
+
+        assertArrayEquals(new long[] {1000, 2000}, idx.range(250, 260));
+        assertArrayEquals(new long[] {0, -1}, idx.range(0, 1000));
+        assertArrayEquals(new long[] {1000, -1}, idx.range(200, 400));
+        assertNull(idx.range(400, 500));
+        assertNull(idx.range(0, 100));
+    }
+
+    @Test
+    void testOutOfOrderBlocksWidenTheRange() {
+        // The middle block has a straggler from before the first block ended
+        SegmentTimeIndex idx = new SegmentTimeIndex.Builder("f")
+                .block(0, 100, 199)
+                .block(1000, 150, 299)
+                .block(2000, 300, 399)
+                .build();
+        assertArrayEquals(new long[] {0, 2000}, idx.range(160, 170));
+    }
+
+    @Test
+    void testGzipMembersCanBeReadFromEveryOffset() throws Exception {
+        long[] times = new long[10];
+        for (int i = 0; i < times.length; i++) {
+            times[i] = BASE + i * 1000;
+        }
+        byte[] raw = lines(times).getBytes(StandardCharsets.UTF_8);
+
+        ByteArrayOutputStream gz = new ByteArrayOutputStream();
+        SegmentTimeIndex idx = SegmentTimeIndex.build(new ByteArrayInputStream(raw), gz, "x.gz", 3);
+        assertEquals(4, idx.blocks());
+
+        // The whole file is ordinary (multi-member) gzip
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(gz.toByteArray()))) {
+            assertArrayEquals(raw, in.readAllBytes());
+        }
+
+        long[] r = idx.range(BASE + 6000, BASE + 7000);
+        byte[] all = gz.toByteArray();
+        byte[] part = Arrays.copyOfRange(all, (int) r[0], r[1] < 0 ? all.length : (int) r[1]);
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(part))) {
+            String text = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            assertEquals(3, text.split("\n").length);
+            assertTrue(text.contains("\"ts\":" + (BASE + 6000)));
+        }
+    }
+
+    @Test
+    void testUncompressedOffsetsPointAtLineStarts() throws Exception {
+        byte[] raw = lines(BASE, BASE + 1, BASE + 2, BASE + 3, BASE + 4).getBytes(StandardCharsets.UTF_8);
+        SegmentTimeIndex idx = SegmentTimeIndex.build(new ByteArrayInputStream(raw), null, "x", 2);
+        long[] r = idx.range(BASE + 2, BASE + 3);
+        assertEquals('{', raw[(int) r[0]]);
+        assertEquals('\n', raw[(int) r[1] - 1]);
+    }
+
+    private void writeSpread(EventLogConfig config, int n, long step, int jitter) throws Exception {
+        EventLogWriter w = EventLogWriter.open(EventLogManager.LOG_FILE, config);
+        Random rnd = new Random(7);
+        try {
+            for (int i = 0; i < n; i++) {
+                long t = BASE + i * step + (jitter == 0 ? 0 : rnd.nextInt(jitter));
+                w.append(t, "u" + (i % 5), "user", "A", "event-" + i);
+            }
+        } finally {
+            w.close();
+        }
+        EventLogSegments.awaitBackgroundWork();
+    }
+
+    private List<EventLogger> query(long from, long to) {
+        EventLogManager manager = new EventLogManager() {};
+        return manager.query(new EventQuery().from(from).to(to));
+    }
+
+    @Test
+    void testTimeRangeQueryReadsOnlyMatchingBlocks() throws Exception {
+        writeSpread(new EventLogConfig().async(false).segmentBytes(20_000).indexEvery(16), 1000, 1000, 0);
+
+        EventLogSegments segments = EventLogSegments.load(Path.of(EventLogManager.LOG_FILE));
+        List<EventLogSegments.Segment> sealed = segments.sealed();
+        assertTrue(sealed.size() > 3);
+        for (EventLogSegments.Segment s : sealed) {
+            assertTrue(s.isCompressed());
+            assertNotNull(segments.timeIndex(tempDir.toPath().resolve(s.name)), s.name);
+        }
+
+        List<EventLogger> hits = query(BASE + 500_000, BASE + 505_000);
+        assertEquals(5, hits.size());
+        assertEquals("event-500", hits.get(0).getDetails());
+        assertEquals("event-504", hits.get(4).getDetails());
+    }
+
+    @Test
+    void testUncompressedSegmentsAreIndexedToo() throws Exception {
+        writeSpread(new EventLogConfig().async(false).segmentBytes(20_000).indexEvery(16).compressSealed(false),
+                600, 1000, 0);
+
+        EventLogSegments segments = EventLogSegments.load(Path.of(EventLogManager.LOG_FILE));
+        EventLogSegments.Segment first = segments.sealed().get(0);
+        assertNotNull(segments.timeIndex(tempDir.toPath().resolve(first.name)));
+        assertEquals(10, query(BASE + 20_000, BASE + 30_000).size());
+    }
+
+    @Test
+    void testJitteredTimesMatchAFullScan() throws Exception {
+        writeSpread(new EventLogConfig().async(false).segmentBytes(15_000).indexEvery(8), 1500, 100, 3000);
+
+        EventLogManager manager = new EventLogManager() {};
+        List<EventLogger> all = manager.query(new EventQuery());
+        assertEquals(1500, all.size());
+
+        long from = BASE + 40_000;
+        long to = BASE + 60_000;
+        List<String> expected = new ArrayList<>();
+        for (EventLogger e : all) {
+            if (e.getTimeMillis() >= from && e.getTimeMillis() < to) {
+                expected.add(e.getDetails());
+            }
+        }
+        List<String> actual = new ArrayList<>();
+        for (EventLogger e : query(from, to)) {
+            actual.add(e.getDetails());
+        }
+        assertEquals(expected, actual);
+        assertTrue(Files.exists(tempDir.toPath().resolve("events.txt.1.tidx")));
+    }
+}
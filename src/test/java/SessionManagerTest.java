@@ -0,0 +1,127 @@
+import java.io.File;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SessionManagerTest {
+
+    @TempDir
+    File tempDir;
+
+    private UserManager userManager;
+    private User admin;
+    private SessionManager sessions;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        sessions = new SessionManager();
+        SessionManager.setInstanceForTesting(sessions);
+
+        userManager = new UserManager(tempDir.getAbsolutePath());
+        admin = userManager.createUser("admin");
+        admin.setUsername("adminName");
+        admin.setName("Ada Admin");
+        admin.setAdmin(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SessionManager.setInstanceForTesting(null);
+    }
+
+    @Test
+    void testOpenSnapshotsPrincipal() {
+        SessionManager.Session s = sessions.open(admin);
+
+        assertNotNull(s.getToken());
+        assertEquals("admin", s.getPrincipal().getUserId());
+        assertEquals("adminName", s.getPrincipal().getUsername());
+        assertEquals("Ada Admin", s.getPrincipal().getName());
+        assertTrue(s.isAdmin());
+        assertEquals(s, sessions.get(s.getToken()));
+    }
+
+    @Test
+    void testTokensAreUnique() {
+        SessionManager.Session a = sessions.open(admin);
+        SessionManager.Session b = sessions.open(admin);
+        assertNotEquals(a.getToken(), b.getToken());
+        assertEquals(2, sessions.activeSessions());
+    }
+
+    @Test
+    void testSnapshotDoesNotReadDisk() {
+        SessionManager.Session s = sessions.open(admin);
+
+        // Changes on disk are not visible until a hook refreshes the session
+        admin.setName("Renamed");
+        assertEquals("Ada Admin", s.getPrincipal().getName());
+
+        long before = s.getPrincipal().getVersion();
+        sessions.refresh(admin);
+        assertEquals("Renamed", s.getPrincipal().getName());
+        assertTrue(s.getPrincipal().getVersion() > before);
+    }
+
+    @Test
+    void testRevokeUserInvalidatesAllSessions() {
+        SessionManager.Session a = sessions.open(admin);
+        SessionManager.Session b = sessions.open(admin);
+
+        sessions.revokeUser("admin");
+
+        assertFalse(a.isValid());
+        assertFalse(b.isValid());
+        assertFalse(a.isAdmin());
+        assertNull(sessions.get(a.getToken()));
+        assertEquals(0, sessions.activeSessions());
+    }
+
+    @Test
+    void testCloseSession() {
+        SessionManager.Session s = sessions.open(admin);
+        sessions.close(s.getToken());
+        assertNull(sessions.get(s.getToken()));
+        assertFalse(s.isValid());
+    }
+
+    @Test
+    void testAdminManagerUsesSession() throws Exception {
+        User other = userManager.createUser("other");
+        other.setUsername("otherName");
+
+        SessionManager.Session s = sessions.open(admin);
+        ScrollManager scrollManager = new ScrollManager(new File(tempDir, "scrolls").getAbsolutePath());
+        AdminManager am = new AdminManager(tempDir.getAbsolutePath(), admin, scrollManager, s);
+
+        assertNotNull(am.getUser("other"));
+
+        // Demotion through the hook takes effect immediately
+        admin.setAdmin(false);
+        sessions.refresh(admin);
+        assertThrows(SecurityException.class, () -> am.getUser("other"));
+    }
+
+    @Test
+    void testUpdateAdminStatusRefreshesTargetSessions() throws Exception {
+        User other = userManager.createUser("other");
+        other.setUsername("otherName");
+        SessionManager.Session otherSession = sessions.open(other);
+        assertFalse(otherSession.isAdmin());
+
+        ScrollManager scrollManager = new ScrollManager(new File(tempDir, "scrolls").getAbsolutePath());
+        AdminManager am = new AdminManager(tempDir.getAbsolutePath(), admin, scrollManager, sessions.open(admin));
+
+        assertTrue(am.updateAdminStatus("other", true));
+        assertTrue(otherSession.isAdmin());
+    }
+}
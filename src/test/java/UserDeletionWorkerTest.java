@@ -0,0 +1,134 @@
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import fsam.ProcessLocks;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class UserDeletionWorkerTest {
+
+    @TempDir
+    File tempDir;
+
+    private UserManager userManager;
+    private ScrollManager scrollManager;
+    private User admin;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        userManager = new UserManager(new File(tempDir, "users").getAbsolutePath());
+        scrollManager = new ScrollManager(new File(tempDir, "scrolls").getAbsolutePath());
+        admin = userManager.createUser("admin");
+        admin.setAdmin(true);
+        userManager.createUser("gone");
+        userManager.createUser("kept");
+    }
+
+    private void addScroll(String scrollId, String uploaderId) throws Exception {
+        Scroll s = scrollManager.createScroll(scrollId);
+        s.setUploaderId(uploaderId);
+    }
+
+    private UserDeletionWorker worker() {
+        return UserDeletionWorker.forManagers(userManager, scrollManager);
+    }
+
+    @Test
+    void testDeleteHidesScrollsThenRemovesThem() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            addScroll("g" + i, "gone");
+        }
+        addScroll("k0", "kept");
+
+        AdminManager am = new AdminManager(userManager.getFileObj().getPath(), admin, scrollManager);
+        assertTrue(am.deleteUser("gone"));
+
+        // The user and their scrolls disappear before the background work runs
+        assertNull(userManager.getUser("gone"));
+        assertNull(scrollManager.getScroll("g0"));
+
+        assertTrue(worker().awaitIdle(10, TimeUnit.SECONDS));
+
+        assertFalse(userManager.hasTombstone("gone"));
+        assertFalse(scrollManager.getIndex().isUploaderHidden("gone"));
+        assertTrue(scrollManager.getIndex().scrollsBy("gone").isEmpty());
+        for (int i = 0; i < 5; i++) {
+            assertFalse(new File(scrollManager.getFileObj(), "g" + i).exists());
+        }
+        assertNotNull(scrollManager.getScroll("k0"));
+        assertEquals(1, scrollManager.getAllScrolls().size());
+    }
+
+    @Test
+    void testUserIdReusableOnceDeletionFinishes() throws Exception {
+        addScroll("g0", "gone");
+        AdminManager am = new AdminManager(userManager.getFileObj().getPath(), admin, scrollManager);
+        assertTrue(am.deleteUser("gone"));
+        assertTrue(worker().awaitIdle(10, TimeUnit.SECONDS));
+
+        assertNotNull(userManager.createUser("gone"));
+        addScroll("g1", "gone");
+        assertNotNull(scrollManager.getScroll("g1"));
+    }
+
+    @Test
+    void testResumesLeftoverTombstones() throws Exception {
+        addScroll("g0", "gone");
+        addScroll("g1", "gone");
+
+        // State left behind by a crash right after the tombstone rename
+        userManager.tombstoneUser("gone");
+        scrollManager.getIndex().hideUploader("gone");
+
+        assertTrue(worker().awaitIdle(10, TimeUnit.SECONDS));
+
+        assertFalse(userManager.hasTombstone("gone"));
+        assertTrue(scrollManager.getAllScrolls().isEmpty());
+        assertFalse(new File(scrollManager.getFileObj(), "g1").exists());
+    }
+
+    @Test
+    void testHiddenScrollsStayHiddenWhileTheIndexReloads() throws Exception {
+        File root = scrollManager.getFileObj();
+        for (int i = 0; i < 2000; i++) {
+            File dir = new File(root, String.format("g%04d", i));
+            assertTrue(dir.mkdir());
+            Files.writeString(new File(dir, "uploader_id").toPath(), "gone");
+        }
+        ScrollIndex index = scrollManager.getIndex();
+        index.hideUploader("gone");
+        assertTrue(index.isHidden("g0000"));
+
+        // Another process keeps moving the generation, so lookups keep reloading
+        ProcessLocks locks = ProcessLocks.forRoot(root);
+        AtomicInteger visible = new AtomicInteger();
+        List<Thread> readers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread r = new Thread(() -> {
+                for (int i = 0; i < 200; i++) {
+                    if (!index.isHidden("g1999")) {
+                        visible.incrementAndGet();
+                    }
+                }
+            });
+            readers.add(r);
+            r.start();
+        }
+        while (readers.stream().anyMatch(Thread::isAlive)) {
+            locks.bumpGeneration();
+            Thread.sleep(1);
+        }
+        assertEquals(0, visible.get());
+    }
+}
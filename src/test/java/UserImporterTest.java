@@ -0,0 +1,125 @@
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class UserImporterTest {
+
+    @TempDir
+    File tempDir;
+
+    private UserManager userManager;
+    private Path input;
+
+    @BeforeEach
+    void setUp() {
+        File users = new File(tempDir, "users");
+        users.mkdirs();
+        userManager = new UserManager(users.getAbsolutePath());
+    }
+
+    @Test
+    void testCsvImport() throws Exception {
+        input = tempDir.toPath().resolve("users.csv");
+        Files.writeString(input, String.join("\n",
+                "userId,username,password,admin,name,email",
+                "alice,alice1,pw1,yes,\"Alice, A.\",alice@example.com",
+                "bob,bob1,pw2,no,Bob,bob@example.com",
+                ""));
+
+        UserImporter.ImportReport report = new UserImporter(userManager, 2, 1).importFile(input);
+
+        assertEquals(2, report.imported);
+        assertEquals(0, report.failed());
+
+        User alice = userManager.getUser("alice");
+        assertNotNull(alice);
+        assertEquals("alice1", alice.getUsername());
+        assertEquals("Alice, A.", alice.getName());
+        assertEquals("", alice.getPhone());
+        assertTrue(alice.getAdmin());
+        assertTrue(userManager.checkPassword(alice, "pw1"));
+        assertFalse(userManager.getUser("bob").getAdmin());
+
+        assertFalse(Files.exists(UserImporter.checkpointFor(input)), "Checkpoint removed after a full import");
+    }
+
+    @Test
+    void testJsonlImport() throws Exception {
+        input = tempDir.toPath().resolve("users.jsonl");
+        Files.writeString(input, String.join("\n",
+                "{\"userId\": \"carol\", \"username\": \"carol1\", \"password\": \"pw\", \"admin\": true}",
+                "{\"userId\": \"dave\", \"username\": \"dave1\", \"password\": \"p\\\"w\"}"));
+
+        UserImporter.ImportReport report = new UserImporter(userManager).importFile(input);
+
+        assertEquals(2, report.imported);
+        assertTrue(userManager.getUser("carol").getAdmin());
+        assertTrue(userManager.checkPassword(userManager.getUser("dave"), "p\"w"));
+    }
+
+    @Test
+    void testRowErrorsDoNotStopImport() throws Exception {
+        userManager.createUser("taken");
+
+        input = tempDir.toPath().resolve("users.csv");
+        Files.writeString(input, String.join("\n",
+                "userId,username,password",
+                "bad id!,x,pw",
+                "nopass,nopass1,",
+                "taken,taken1,pw",
+                "{broken",
+                "good,good1,pw"));
+
+        UserImporter.ImportReport report = new UserImporter(userManager, 2, 2).importFile(input);
+
+        assertEquals(1, report.imported);
+        assertEquals(4, report.failed());
+        List<UserImporter.RowError> errors = report.getErrors();
+        assertEquals(2, errors.get(0).line);
+        assertEquals(3, errors.get(1).line);
+        assertEquals("taken", errors.get(2).userId);
+        assertNotNull(userManager.getUser("good"));
+        assertNull(userManager.getUser("nopass"));
+    }
+
+    @Test
+    void testResumeFromCheckpoint() throws Exception {
+        input = tempDir.toPath().resolve("users.csv");
+        Files.writeString(input, String.join("\n",
+                "userId,username,password",
+                "u1,user1,pw",
+                "u2,user2,pw",
+                "u3,user3,pw"));
+
+        // Pretend a previous run got through line 3 (header + two rows)
+        Files.writeString(UserImporter.checkpointFor(input), "3");
+
+        UserImporter.ImportReport report = new UserImporter(userManager).importFile(input);
+
+        assertEquals(3, report.resumedAfterLine);
+        assertEquals(2, report.skipped);
+        assertEquals(1, report.imported);
+        assertNull(userManager.getUser("u1"));
+        assertNotNull(userManager.getUser("u3"));
+    }
+
+    @Test
+    void testStagingIsNotListed() throws Exception {
+        input = tempDir.toPath().resolve("users.csv");
+        Files.writeString(input, "userId,username,password\nu1,user1,pw\n");
+        new UserImporter(userManager).importFile(input);
+
+        new File(userManager.getFileObj(), ".staging-left-over").mkdirs();
+        assertEquals(1, userManager.getAllUsers().size());
+    }
+}
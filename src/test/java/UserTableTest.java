@@ -0,0 +1,232 @@
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import fsam.ProcessLocks;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class UserTableTest {
+
+    @TempDir
+    File tempDir;
+
+    private UserManager userManager;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        userManager = new UserManager(tempDir.getAbsolutePath());
+        addUser("u01", "alice", "alice@example.com", true);
+        addUser("u02", "bob", "bob@test.org", false);
+        addUser("u03", "alfred", "alfred@EXAMPLE.com", false);
+        addUser("u04", "carol", "carol@test.org", false);
+        addUser("u05", "albert", "", true);
+    }
+
+    private void addUser(String id, String username, String email, boolean admin) throws Exception {
+        User u = userManager.createUser(id);
+        u.setUsername(username);
+        u.setName(username.toUpperCase());
+        u.setEmail(email);
+        u.setAdmin(admin);
+    }
+
+    private static List<String> ids(UserTable.UserPage page) {
+        List<String> out = new ArrayList<>();
+        for (UserTable.Row r : page.getRows()) out.add(r.getUserId());
+        return out;
+    }
+
+    @Test
+    void testLoadsFromDisk() {
+        UserTable table = userManager.getTable();
+        assertEquals(5, table.size());
+        UserTable.Row alice = table.get("u01");
+        assertEquals("alice", alice.getUsername());
+        assertEquals("ALICE", alice.getName());
+        assertTrue(alice.isAdmin());
+    }
+
+    @Test
+    void testCursorPagination() {
+        UserTable table = userManager.getTable();
+        UserQuery q = new UserQuery().limit(2);
+
+        UserTable.UserPage p1 = table.query(q);
+        assertEquals(List.of("u01", "u02"), ids(p1));
+        assertTrue(p1.hasMore());
+
+        UserTable.UserPage p2 = table.query(q.after(p1.getNextCursor()));
+        assertEquals(List.of("u03", "u04"), ids(p2));
+
+        UserTable.UserPage p3 = table.query(q.after(p2.getNextCursor()));
+        assertEquals(List.of("u05"), ids(p3));
+        assertFalse(p3.hasMore());
+    }
+
+    @Test
+    void testCursorPaginationByIdDescendingSurvivesDeletedCursorRow() throws Exception {
+        UserTable table = userManager.getTable();
+        UserQuery q = new UserQuery().sortBy(UserQuery.SortKey.USER_ID, true).limit(2);
+
+        UserTable.UserPage p1 = table.query(q);
+        assertEquals(List.of("u05", "u04"), ids(p1));
+
+        // The page seeks past the cursor's ID, whether or not that user still exists
+        userManager.tombstoneUser("u04");
+        UserTable.UserPage p2 = table.query(q.after(p1.getNextCursor()));
+        assertEquals(List.of("u03", "u02"), ids(p2));
+
+        UserTable.UserPage p3 = table.query(q.after(p2.getNextCursor()));
+        assertEquals(List.of("u01"), ids(p3));
+        assertFalse(p3.hasMore());
+    }
+
+    @Test
+    void testFiltersAndCount() {
+        UserTable table = userManager.getTable();
+
+        assertEquals(List.of("u01", "u05"), ids(table.query(new UserQuery().admin(true))));
+        assertEquals(List.of("u01", "u03", "u05"), ids(table.query(new UserQuery().usernamePrefix("al"))));
+        assertEquals(List.of("u01", "u03"), ids(table.query(new UserQuery().emailDomain("@example.com"))));
+
+        assertEquals(5, table.count(new UserQuery()));
+        assertEquals(1, table.count(new UserQuery().usernamePrefix("al").admin(false)));
+    }
+
+    @Test
+    void testSortByUsernameDescendingWithPaging() {
+        UserTable table = userManager.getTable();
+        UserQuery q = new UserQuery().sortBy(UserQuery.SortKey.USERNAME, true).limit(3);
+
+        UserTable.UserPage p1 = table.query(q);
+        // carol, bob, alice, alfred, albert
+        assertEquals(List.of("u04", "u02", "u01"), ids(p1));
+
+        UserTable.UserPage p2 = table.query(q.after(p1.getNextCursor()));
+        assertEquals(List.of("u03", "u05"), ids(p2));
+        assertNull(p2.getNextCursor());
+    }
+
+    @Test
+    void testSettersKeepTableCurrent() throws Exception {
+        UserTable table = userManager.getTable();
+        assertEquals(5, table.size());
+
+        userManager.getUser("u02").setAdmin(true);
+        userManager.getUser("u02").setUsername("bobby");
+        assertTrue(table.get("u02").isAdmin());
+        assertEquals("bobby", table.get("u02").getUsername());
+
+        addUser("u06", "dan", "dan@test.org", false);
+        assertEquals("dan", table.get("u06").getUsername());
+
+        assertTrue(userManager.changeUserId("u06", "u07"));
+        assertNull(table.get("u06"));
+        assertEquals("dan", table.get("u07").getUsername());
+    }
+
+    @Test
+    void testCreateUserRecordIsListed() throws Exception {
+        UserTable table = userManager.getTable();
+        userManager.createUserRecord("u09", Map.of("username", "zed", "admin", "true"),
+                UserManager.hashPassword("pw"));
+
+        UserTable.Row r = table.get("u09");
+        assertNotNull(r);
+        assertEquals("zed", r.getUsername());
+        assertTrue(r.isAdmin());
+    }
+
+    @Test
+    void testAdminManagerQuery() {
+        ScrollManager scrollManager = new ScrollManager(new File(tempDir, ".scrolls").getAbsolutePath());
+        AdminManager am = new AdminManager(tempDir.getAbsolutePath(), userManager.getUser("u01"), scrollManager);
+        AdminManager notAdmin = new AdminManager(tempDir.getAbsolutePath(), userManager.getUser("u02"), scrollManager);
+
+        assertEquals(2, am.countUsers(new UserQuery().admin(true)));
+        assertEquals(5, am.queryUsers(new UserQuery().limit(10)).getRows().size());
+        assertThrows(SecurityException.class, () -> notAdmin.queryUsers(new UserQuery()));
+    }
+
+    @Test
+    void testBadCursorRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> userManager.getTable().query(new UserQuery().after("!!not-a-cursor!!")));
+    }
+
+    @Test
+    void testWritersDoNotWaitWhileTheTableIsBusy() throws Exception {
+        UserTable table = userManager.getTable();
+        assertEquals(5, table.size());
+
+        // Stand-in for a long reload: something else holds the table's monitor
+        CountDownLatch held = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread busy = new Thread(() -> {
+            synchronized (table) {
+                held.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        busy.start();
+        try {
+            assertTrue(held.await(5, TimeUnit.SECONDS));
+            User bob = userManager.getUser("u02");
+            assertTrue(CompletableFuture.supplyAsync(() -> bob.setName("Robert")).get(5, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+            busy.join();
+        }
+
+        // Applied by the next read
+        assertEquals("Robert", table.get("u02").getName());
+    }
+
+    @Test
+    void testReadersNeverSeeAPartialReload() throws Exception {
+        for (int i = 0; i < 2000; i++) {
+            assertTrue(new File(tempDir, String.format("bulk%04d", i)).mkdir());
+        }
+        UserTable table = userManager.getTable();
+        table.invalidate();
+        assertEquals(2005, table.size());
+
+        // As if another process had changed something: the next reads reload
+        ProcessLocks.forRoot(tempDir).bumpGeneration();
+        AtomicInteger wrong = new AtomicInteger();
+        List<Thread> readers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread r = new Thread(() -> {
+                for (int i = 0; i < 200; i++) {
+                    if (table.size() != 2005) {
+                        wrong.incrementAndGet();
+                    }
+                }
+            });
+            readers.add(r);
+            r.start();
+        }
+        for (Thread r : readers) {
+            r.join();
+        }
+        assertEquals(0, wrong.get());
+    }
+}